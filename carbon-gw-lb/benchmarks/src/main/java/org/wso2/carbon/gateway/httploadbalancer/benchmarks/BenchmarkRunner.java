@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.benchmarks;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs benchmarks once for each requested thread count, so that scaling can be compared.
+ * <p>
+ * Usage: java -jar target/benchmarks.jar [benchmark regex] [comma separated thread counts]
+ * <p>
+ * Eg: java -jar target/benchmarks.jar RoundRobin 1,4,16,64
+ */
+public final class BenchmarkRunner {
+
+    private static final String DEFAULT_THREADS = "1,4,16,64";
+
+    private BenchmarkRunner() {
+
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        String include = args.length > 0 ? args[0] : ".*";
+        String threads = args.length > 1 ? args[1] : DEFAULT_THREADS;
+
+        for (String count : threads.split(",")) {
+
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(Integer.parseInt(count.trim()))
+                    .build();
+
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.benchmarks.algorithm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing.ConsistentHash;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing.ConsistentHashRing;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing.Hash;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing.MaglevHash;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing.hashcodegenerators.MD5;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing.hashcodegenerators.Murmur3;
+import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
+import org.wso2.carbon.gateway.httploadbalancer.utils.ClientIP;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares lookup cost of ConsistentHashRing (Murmur3, long[] ring) and MaglevHash (Murmur3, lookup table)
+ * against ConsistentHash (MD5, TreeMap).
+ * <p>
+ * State is per thread, so that threads do not contend on index of next client.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConsistentHashBenchmark {
+
+    private static final int CLIENTS = 1024;
+
+    @Param({"ring", "maglev", "treemap"})
+    public String implementation;
+
+    @Param({"10", "100"})
+    public int endpoints;
+
+    @Param({"160"})
+    public int virtualNodes;
+
+    private Hash hash;
+    private final String[] clientIPs = new String[CLIENTS];
+    private final ClientIP[] parsedClientIPs = new ClientIP[CLIENTS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+
+        List<String> hostAndPorts = new ArrayList<>();
+        for (int i = 0; i < endpoints; i++) {
+            hostAndPorts.add("10.0." + (i >>> 8) + "." + (i & 0xff) + ":8080");
+        }
+
+        if (implementation.equals("ring")) {
+            hash = new ConsistentHashRing(new Murmur3(), virtualNodes, hostAndPorts);
+        } else if (implementation.equals("maglev")) {
+            hash = new MaglevHash(new Murmur3(), LoadBalancerConstants.DEFAULT_MAGLEV_TABLE_SIZE, hostAndPorts);
+        } else {
+            //ConsistentHash always uses LoadBalancerConstants.REPLICATION_FACTOR points per endpoint.
+            hash = new ConsistentHash(new MD5(), hostAndPorts);
+        }
+
+        for (int i = 0; i < CLIENTS; i++) {
+            clientIPs[i] = "192.168." + (i >>> 8) + "." + (i & 0xff);
+            parsedClientIPs[i] = ClientIP.parse(clientIPs[i]);
+        }
+    }
+
+    @Benchmark
+    public String get() {
+
+        next = (next + 1) & (CLIENTS - 1);
+        return hash.get(clientIPs[next]);
+    }
+
+    /**
+     * Lookup with an already parsed address, as done by StrictClientIPHashing.
+     */
+    @Benchmark
+    public String getClientIP() {
+
+        next = (next + 1) & (CLIENTS - 1);
+        return hash.get(parsedClientIPs[next], endpoint -> false);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.benchmarks.algorithm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.LoadBalancingAlgorithm;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.simple.LeastConnections;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.simple.LeastResponseTime;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.simple.Random;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.simple.RoundRobin;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.simple.StrictClientIPHashing;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.weighted.WeightedRandom;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.weighted.WeightedRoundRobin;
+import org.wso2.carbon.gateway.httploadbalancer.benchmarks.stub.StubOutboundEndpoint;
+import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
+import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
+import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Endpoint selection cost of every LoadBalancingAlgorithm, as configured by LoadBalancerMediator.
+ * <p>
+ * Algorithm is shared by all benchmark threads. Each thread cycles through its own requests,
+ * which carry distinct client IPs for STRICT_IP_HASHING. eg:
+ * java -jar target/benchmarks.jar LoadBalancingAlgorithmBenchmark 1,4,16,64
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadBalancingAlgorithmBenchmark {
+
+    @Param({
+            LoadBalancerConstants.ROUND_ROBIN,
+            LoadBalancerConstants.RANDOM,
+            LoadBalancerConstants.LEAST_CONNECTIONS,
+            LoadBalancerConstants.LEAST_RESPONSE_TIME,
+            LoadBalancerConstants.STRICT_IP_HASHING,
+            LoadBalancerConstants.WEIGHTED_ROUND_ROBIN,
+            LoadBalancerConstants.WEIGHTED_RANDOM
+    })
+    public String algorithmName;
+
+    @Param({"5", "50"})
+    public int endpoints;
+
+    private LoadBalancingAlgorithm algorithm;
+    private final LoadBalancerConfigContext context = new LoadBalancerConfigContext();
+
+    @Setup
+    public void setUp() {
+
+        List<LBOutboundEndpoint> lbOutboundEndpoints = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        for (StubOutboundEndpoint endpoint : StubOutboundEndpoint.create(endpoints)) {
+            lbOutboundEndpoints.add(new LBOutboundEndpoint(endpoint));
+            weights.add(1 + (weights.size() % 5));
+        }
+
+        switch (algorithmName) {
+            case LoadBalancerConstants.ROUND_ROBIN:
+                algorithm = new RoundRobin(lbOutboundEndpoints);
+                break;
+            case LoadBalancerConstants.RANDOM:
+                algorithm = new Random(lbOutboundEndpoints);
+                break;
+            case LoadBalancerConstants.LEAST_CONNECTIONS:
+                algorithm = new LeastConnections(lbOutboundEndpoints);
+                break;
+            case LoadBalancerConstants.LEAST_RESPONSE_TIME:
+                algorithm = new LeastResponseTime(lbOutboundEndpoints);
+                break;
+            case LoadBalancerConstants.STRICT_IP_HASHING:
+                algorithm = new StrictClientIPHashing(lbOutboundEndpoints);
+                break;
+            case LoadBalancerConstants.WEIGHTED_ROUND_ROBIN:
+                algorithm = new WeightedRoundRobin(lbOutboundEndpoints, weights);
+                break;
+            default:
+                algorithm = new WeightedRandom(lbOutboundEndpoints, weights);
+                break;
+        }
+    }
+
+    /**
+     * Requests of a benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Requests {
+
+        private static final int CLIENTS = 1024;
+
+        private final CarbonMessage[] carbonMessages = new CarbonMessage[CLIENTS];
+        private int next;
+
+        @Setup
+        public void setUp() {
+
+            for (int i = 0; i < CLIENTS; i++) {
+                carbonMessages[i] = new DefaultCarbonMessage();
+                carbonMessages[i].setHeader(LoadBalancerConstants.X_FORWARDED_FOR_HEADER,
+                        "192.168." + (i >>> 8) + "." + (i & 0xff));
+            }
+        }
+
+        CarbonMessage next() {
+
+            next = (next + 1) & (CLIENTS - 1);
+            return carbonMessages[next];
+        }
+    }
+
+    @Benchmark
+    public LBOutboundEndpoint getNextLBOutboundEndpoint(Requests requests) {
+
+        return algorithm.getNextLBOutboundEndpoint(requests.next(), context);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.benchmarks.algorithm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.LoadBalancingAlgorithm;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.simple.RoundRobin;
+import org.wso2.carbon.gateway.httploadbalancer.benchmarks.baseline.SynchronizedRoundRobin;
+import org.wso2.carbon.gateway.httploadbalancer.benchmarks.stub.StubOutboundEndpoint;
+import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
+import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares lock free RoundRobin against the previous synchronized implementation.
+ * <p>
+ * Scaling from 1 to 64 threads is measured through BenchmarkRunner, eg:
+ * java -jar target/benchmarks.jar RoundRobinBenchmark 1,2,4,8,16,32,64
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoundRobinBenchmark {
+
+    @Param({"lockFree", "synchronized"})
+    public String implementation;
+
+    @Param({"5"})
+    public int endpoints;
+
+    private LoadBalancingAlgorithm algorithm;
+    private final CarbonMessage carbonMessage = new DefaultCarbonMessage();
+    private final LoadBalancerConfigContext context = new LoadBalancerConfigContext();
+
+    @Setup
+    public void setUp() {
+
+        List<LBOutboundEndpoint> lbOutboundEndpoints = new ArrayList<>();
+        for (StubOutboundEndpoint endpoint : StubOutboundEndpoint.create(endpoints)) {
+            lbOutboundEndpoints.add(new LBOutboundEndpoint(endpoint));
+        }
+
+        algorithm = implementation.equals("lockFree") ?
+                new RoundRobin(lbOutboundEndpoints) : new SynchronizedRoundRobin(lbOutboundEndpoints);
+    }
+
+    @Benchmark
+    public LBOutboundEndpoint getNextLBOutboundEndpoint() {
+
+        return algorithm.getNextLBOutboundEndpoint(carbonMessage, context);
+    }
+}
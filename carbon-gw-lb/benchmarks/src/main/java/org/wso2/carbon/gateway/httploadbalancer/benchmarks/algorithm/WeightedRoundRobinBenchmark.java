@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.benchmarks.algorithm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.LoadBalancingAlgorithm;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.weighted.WeightedRoundRobin;
+import org.wso2.carbon.gateway.httploadbalancer.benchmarks.baseline.WindowedWeightedRoundRobin;
+import org.wso2.carbon.gateway.httploadbalancer.benchmarks.stub.StubOutboundEndpoint;
+import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
+import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares smooth WeightedRoundRobin against the previous windowed implementation.
+ * <p>
+ * Weights are given as comma separated list, one per endpoint. eg:
+ * java -jar target/benchmarks.jar WeightedRoundRobinBenchmark 1,4,16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeightedRoundRobinBenchmark {
+
+    @Param({"smooth", "windowed"})
+    public String implementation;
+
+    @Param({"5,1,1", "10,8,6,4,2,1,1,1"})
+    public String weights;
+
+    private LoadBalancingAlgorithm algorithm;
+    private final CarbonMessage carbonMessage = new DefaultCarbonMessage();
+    private final LoadBalancerConfigContext context = new LoadBalancerConfigContext();
+
+    @Setup
+    public void setUp() {
+
+        List<Integer> weightsList = new ArrayList<>();
+        for (String weight : weights.split(",")) {
+            weightsList.add(Integer.parseInt(weight));
+        }
+
+        List<LBOutboundEndpoint> lbOutboundEndpoints = new ArrayList<>();
+        for (StubOutboundEndpoint endpoint : StubOutboundEndpoint.create(weightsList.size())) {
+            lbOutboundEndpoints.add(new LBOutboundEndpoint(endpoint));
+        }
+
+        algorithm = implementation.equals("smooth") ?
+                new WeightedRoundRobin(lbOutboundEndpoints, weightsList) :
+                new WindowedWeightedRoundRobin(lbOutboundEndpoints, weightsList);
+    }
+
+    @Benchmark
+    public LBOutboundEndpoint getNextLBOutboundEndpoint() {
+
+        return algorithm.getNextLBOutboundEndpoint(carbonMessage, context);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.benchmarks.baseline;
+
+import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Regex based LB cookie extraction as it was done in LoadBalancerMediator before LBCookieParser.
+ * <p>
+ * Kept only as a baseline for CookieParserBenchmark.
+ */
+public final class RegexCookieParser {
+
+    private RegexCookieParser() {
+
+    }
+
+    /**
+     * @param existingCookie  value of Cookie header.
+     * @param embeddedAllowed true for APPLICATION_COOKIE persistence.
+     * @return LB key present in cookie or null.
+     */
+    public static String getLBCookieValue(String existingCookie, boolean embeddedAllowed) {
+
+        if (existingCookie == null || !(existingCookie.contains(LoadBalancerConstants.LB_COOKIE_NAME))) {
+            return null;
+        }
+
+        if (embeddedAllowed) {
+
+            String regEx =
+                    "(" +
+                            LoadBalancerConstants.LB_COOKIE_DELIMITER +
+                            LoadBalancerConstants.LB_COOKIE_NAME +
+                            LoadBalancerConstants.COOKIE_NAME_VALUE_SEPARATOR +
+                            ")" +
+                            "(.*)" +
+                            "(" +
+                            LoadBalancerConstants.LB_COOKIE_DELIMITER +
+                            ")";
+
+            Pattern p = Pattern.compile(regEx);
+            Matcher m = p.matcher(existingCookie);
+            if (m.find()) {
+                return m.group(2);
+            }
+        }
+
+        String regEx = "(" +
+                LoadBalancerConstants.LB_COOKIE_NAME +
+                "=)(.*)";
+
+        Pattern p = Pattern.compile(regEx);
+        Matcher m = p.matcher(existingCookie);
+        if (m.find()) {
+            return m.group(2);
+        }
+
+        return null;
+    }
+
+    /**
+     * @param existingCookie value of Cookie header.
+     * @return Cookie header without LB specific cookie, or null.
+     */
+    public static String removeLBCookie(String existingCookie) {
+
+        if (existingCookie.contains(LoadBalancerConstants.LB_COOKIE_DELIMITER)) {
+
+            return existingCookie.substring(0,
+                    existingCookie.indexOf(LoadBalancerConstants.LB_COOKIE_DELIMITER));
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.benchmarks.baseline;
+
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.simple.SimpleAlgorithm;
+import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
+import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
+import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
+import org.wso2.carbon.messaging.CarbonMessage;
+
+import java.util.List;
+
+/**
+ * Random as it was implemented before it became lock free.
+ * <p>
+ * Kept only as a baseline for RandomBenchmark. Every request synchronizes on one monitor and
+ * then on the seed of Math.random(), which is shared by whole JVM.
+ */
+public class SynchronizedRandom implements SimpleAlgorithm {
+
+    private final Object lock = new Object();
+
+    private List<LBOutboundEndpoint> lbOutboundEndpoints;
+
+    public SynchronizedRandom(List<LBOutboundEndpoint> lbOutboundEndpoints) {
+
+        this.setLBOutboundEndpoints(lbOutboundEndpoints);
+    }
+
+    @Override
+    public String getName() {
+
+        return LoadBalancerConstants.RANDOM;
+    }
+
+    @Override
+    public void setLBOutboundEndpoints(List<LBOutboundEndpoint> lbOutboundEndpoints) {
+
+        synchronized (this.lock) {
+            this.lbOutboundEndpoints = lbOutboundEndpoints;
+        }
+    }
+
+    @Override
+    public void addLBOutboundEndpoint(LBOutboundEndpoint lbOutboundEndpoint) {
+
+        synchronized (this.lock) {
+            if (!this.lbOutboundEndpoints.contains(lbOutboundEndpoint)) {
+                this.lbOutboundEndpoints.add(lbOutboundEndpoint);
+            }
+        }
+    }
+
+    @Override
+    public void removeLBOutboundEndpoint(LBOutboundEndpoint lbOutboundEndpoint) {
+
+        synchronized (this.lock) {
+            this.lbOutboundEndpoints.remove(lbOutboundEndpoint);
+        }
+    }
+
+    @Override
+    public LBOutboundEndpoint getNextLBOutboundEndpoint(CarbonMessage cMsg, LoadBalancerConfigContext context) {
+
+        LBOutboundEndpoint endPoint = null;
+
+        synchronized (this.lock) {
+            if (this.lbOutboundEndpoints != null && this.lbOutboundEndpoints.size() > 0) {
+
+                endPoint = this.lbOutboundEndpoints.get((int) (Math.random() * (this.lbOutboundEndpoints.size())));
+            }
+        }
+
+        return endPoint;
+    }
+
+    @Override
+    public void reset() {
+
+    }
+
+    @Override
+    public Object getLock() {
+
+        return this.lock;
+    }
+}
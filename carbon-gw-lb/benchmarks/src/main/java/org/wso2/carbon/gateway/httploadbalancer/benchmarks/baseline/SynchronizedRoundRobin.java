@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.benchmarks.baseline;
+
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.simple.SimpleAlgorithm;
+import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
+import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
+import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
+import org.wso2.carbon.messaging.CarbonMessage;
+
+import java.util.List;
+
+/**
+ * Round Robin as it was implemented before it became lock free.
+ * <p>
+ * Kept only as a baseline for RoundRobinBenchmark. Every request synchronizes on one monitor.
+ */
+public class SynchronizedRoundRobin implements SimpleAlgorithm {
+
+    private final Object lock = new Object();
+
+    private int index = 0;
+
+    private List<LBOutboundEndpoint> lbOutboundEndpoints;
+
+    public SynchronizedRoundRobin(List<LBOutboundEndpoint> lbOutboundEndpoints) {
+
+        this.setLBOutboundEndpoints(lbOutboundEndpoints);
+    }
+
+    @Override
+    public String getName() {
+
+        return LoadBalancerConstants.ROUND_ROBIN;
+    }
+
+    @Override
+    public void setLBOutboundEndpoints(List<LBOutboundEndpoint> lbOutboundEndpoints) {
+
+        synchronized (this.lock) {
+            this.lbOutboundEndpoints = lbOutboundEndpoints;
+        }
+    }
+
+    @Override
+    public void addLBOutboundEndpoint(LBOutboundEndpoint lbOutboundEndpoint) {
+
+        synchronized (this.lock) {
+            if (!this.lbOutboundEndpoints.contains(lbOutboundEndpoint)) {
+                this.lbOutboundEndpoints.add(lbOutboundEndpoint);
+            }
+        }
+    }
+
+    @Override
+    public void removeLBOutboundEndpoint(LBOutboundEndpoint lbOutboundEndpoint) {
+
+        synchronized (this.lock) {
+            this.lbOutboundEndpoints.remove(lbOutboundEndpoint);
+        }
+    }
+
+    @Override
+    public LBOutboundEndpoint getNextLBOutboundEndpoint(CarbonMessage cMsg, LoadBalancerConfigContext context) {
+
+        LBOutboundEndpoint endPoint = null;
+
+        synchronized (this.lock) {
+            if (this.lbOutboundEndpoints != null && this.lbOutboundEndpoints.size() > 0) {
+
+                endPoint = this.lbOutboundEndpoints.get(this.index);
+                this.index++;
+                this.index %= this.lbOutboundEndpoints.size();
+            }
+        }
+
+        return endPoint;
+    }
+
+    @Override
+    public void reset() {
+
+        synchronized (this.lock) {
+
+            if (this.lbOutboundEndpoints.size() > 0 && this.index >= this.lbOutboundEndpoints.size()) {
+                this.index %= this.lbOutboundEndpoints.size();
+            } else if (this.lbOutboundEndpoints.size() == 0) {
+                this.index = 0;
+            }
+        }
+    }
+
+    @Override
+    public Object getLock() {
+
+        return this.lock;
+    }
+}
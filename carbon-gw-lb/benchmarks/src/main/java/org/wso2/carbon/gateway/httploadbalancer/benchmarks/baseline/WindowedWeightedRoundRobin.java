@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.benchmarks.baseline;
+
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.weighted.WeightedAlgorithm;
+import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
+import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
+import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
+import org.wso2.carbon.messaging.CarbonMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Weighted Round Robin as it was implemented before it became smooth.
+ * <p>
+ * Kept only as a baseline for WeightedRoundRobinBenchmark. An endpoint gets up to its weight of
+ * consecutive requests and all counts are reset once every (sum of weights) requests.
+ * <p>
+ * Originally requests were counted in receive(). Here they are counted on selection, as if every
+ * chosen endpoint is sent a request, so that benchmark need not go through callback pool.
+ */
+public class WindowedWeightedRoundRobin implements WeightedAlgorithm {
+
+    private final Object lock = new Object();
+
+    private final List<LBOutboundEndpoint> lbOutboundEndpoints = new ArrayList<>();
+    private final List<Integer> maxWeights = new ArrayList<>();
+    private int[] currentWeights = new int[0];
+
+    private int index = 0;
+    private int weightsWindow = 0;
+    private int weightsWindowTracker = 0;
+
+    public WindowedWeightedRoundRobin(List<LBOutboundEndpoint> lbOutboundEPs, List<Integer> weights) {
+
+        this.setLBOutboundEndpoints(lbOutboundEPs, weights);
+    }
+
+    @Override
+    public String getName() {
+
+        return LoadBalancerConstants.WEIGHTED_ROUND_ROBIN;
+    }
+
+    @Override
+    public void setLBOutboundEndpoints(List<LBOutboundEndpoint> lbOutboundEPs, List<Integer> weights) {
+
+        synchronized (this.lock) {
+            this.lbOutboundEndpoints.addAll(lbOutboundEPs);
+            this.maxWeights.addAll(weights);
+            this.currentWeights = new int[lbOutboundEPs.size()];
+            for (int weight : weights) {
+                this.weightsWindow += weight;
+            }
+        }
+    }
+
+    @Override
+    public void addLBOutboundEndpoint(LBOutboundEndpoint lbOutboundEndpoint) {
+
+    }
+
+    @Override
+    public void removeLBOutboundEndpoint(LBOutboundEndpoint lbOutboundEndpoint) {
+
+    }
+
+    @Override
+    public LBOutboundEndpoint getNextLBOutboundEndpoint(CarbonMessage cMsg, LoadBalancerConfigContext context) {
+
+        synchronized (this.lock) {
+
+            if (this.lbOutboundEndpoints.isEmpty()) {
+                return null;
+            }
+
+            if (this.lbOutboundEndpoints.size() > 1 && this.weightsWindowTracker >= this.weightsWindow) {
+                this.currentWeights = new int[this.lbOutboundEndpoints.size()];
+                this.weightsWindowTracker = 0;
+            }
+
+            int counter = 0;
+            while (this.currentWeights[this.index] >= this.maxWeights.get(this.index)
+                    && counter <= this.lbOutboundEndpoints.size()) {
+                this.index = (this.index + 1) % this.lbOutboundEndpoints.size();
+                counter++;
+            }
+
+            int chosen = this.index;
+            this.index = (this.index + 1) % this.lbOutboundEndpoints.size();
+
+            this.currentWeights[chosen]++;
+            this.weightsWindowTracker++;
+
+            return this.lbOutboundEndpoints.get(chosen);
+        }
+    }
+
+    @Override
+    public void reset() {
+
+    }
+
+    @Override
+    public Object getLock() {
+
+        return this.lock;
+    }
+}
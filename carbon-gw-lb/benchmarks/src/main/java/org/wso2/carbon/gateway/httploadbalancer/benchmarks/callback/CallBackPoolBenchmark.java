@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.benchmarks.callback;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.gateway.httploadbalancer.benchmarks.stub.StubOutboundEndpoint;
+import org.wso2.carbon.gateway.httploadbalancer.callback.LoadBalancerMediatorCallBack;
+import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
+import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
+import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
+import org.wso2.carbon.messaging.CarbonCallback;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a request's round trip through callBackPool: a callback is created, added to pool
+ * by LBOutboundEndpoint.receive and removed on response, as LoadBalancerMediatorCallBack.done does.
+ * <p>
+ * Pool is shared by all benchmark threads. As in LB, a housekeeping thread drains TimeoutWheel,
+ * so that cancelled timeouts do not pile up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallBackPoolBenchmark {
+
+    private final LoadBalancerConfigContext context = new LoadBalancerConfigContext();
+    private final LBOutboundEndpoint lbOutboundEndpoint = new LBOutboundEndpoint(StubOutboundEndpoint.create(1).get(0));
+    private final CarbonMessage carbonMessage = new DefaultCarbonMessage();
+    private final CarbonCallback clientCallback = response -> { };
+
+    private ScheduledExecutorService housekeeping;
+
+    @Setup
+    public void setUp() {
+
+        context.setReqTimeout(LoadBalancerConstants.DEFAULT_REQ_TIMEOUT);
+
+        housekeeping = Executors.newSingleThreadScheduledExecutor();
+        housekeeping.scheduleAtFixedRate(() -> context.getTimeoutWheel().expireTimeouts(
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime()), callBack -> { }),
+                0, LoadBalancerConstants.DEFAULT_TIMEOUT_TIMER_PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        housekeeping.shutdownNow();
+    }
+
+    @Benchmark
+    public boolean addAndRemove() throws Exception {
+
+        LoadBalancerMediatorCallBack callBack = new LoadBalancerMediatorCallBack(clientCallback, null,
+                context, lbOutboundEndpoint);
+        lbOutboundEndpoint.receive(carbonMessage, callBack, context);
+        return context.removeFromCallBackPool(callBack);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.benchmarks.harness;
+
+/**
+ * Behaviour of a fake backend.
+ * <p>
+ * Specified as LATENCY[/ERROR_RATE[/STALL_RATE]], eg: lognormal:2:20/0.01/0.001
+ * <p>
+ * A failed request is answered with errorStatus (500 by default) after usual latency. A stalled request is
+ * never answered, so it is completed only by TimeoutHandler.
+ */
+public final class BackendProfile {
+
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final double stallRate;
+
+    public BackendProfile(LatencyDistribution latency, double errorRate, double stallRate) {
+
+        if (errorRate < 0 || errorRate > 1 || stallRate < 0 || stallRate > 1) {
+            throw new IllegalArgumentException("Rates must be between 0 and 1 : " + errorRate + ", " + stallRate);
+        }
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.stallRate = stallRate;
+    }
+
+    /**
+     * @param spec eg: exp:5/0.01
+     * @return profile described by spec.
+     */
+    public static BackendProfile parse(String spec) {
+
+        String[] parts = spec.trim().split("/");
+        try {
+            return new BackendProfile(LatencyDistribution.parse(parts[0]),
+                    parts.length > 1 ? Double.parseDouble(parts[1]) : 0,
+                    parts.length > 2 ? Double.parseDouble(parts[2]) : 0);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid backend : " + spec, e);
+        }
+    }
+
+    public LatencyDistribution getLatency() {
+
+        return latency;
+    }
+
+    public double getErrorRate() {
+
+        return errorRate;
+    }
+
+    public double getStallRate() {
+
+        return stallRate;
+    }
+
+    @Override
+    public String toString() {
+
+        return latency + "/" + errorRate + "/" + stallRate;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.benchmarks.harness;
+
+import org.wso2.carbon.gateway.core.outbound.AbstractOutboundEndpoint;
+import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
+import org.wso2.carbon.messaging.CarbonCallback;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.Constants;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * OutboundEndpoint that answers from inside the JVM, as configured by its BackendProfile.
+ * <p>
+ * Responses are completed on timer threads, after sampled latency, the way transport completes
+ * callbacks on its IO threads. Response carries callback and status code as transport sets them.
+ */
+public class FakeOutboundEndpoint extends AbstractOutboundEndpoint {
+
+    private final String uri;
+    private final BackendProfile profile;
+    private final ScheduledExecutorService timer;
+    private final int errorStatus;
+
+    //Application cookie is set in every response, so that APPLICATION_COOKIE persistence can be exercised.
+    private final String applicationCookie;
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder failedCallbacks = new LongAdder();
+
+    /**
+     * @param name                  name of endpoint.
+     * @param uri                   uri of endpoint. Cookie persistence is keyed by its host and port.
+     * @param profile               latency, error and stall behaviour.
+     * @param timer                 completes responses.
+     * @param setsApplicationCookie true if responses carry their own Set-Cookie.
+     * @param errorStatus           status code of failed responses.
+     */
+    public FakeOutboundEndpoint(String name, String uri, BackendProfile profile, ScheduledExecutorService timer,
+                                boolean setsApplicationCookie, int errorStatus) {
+
+        super(name);
+        this.uri = uri;
+        this.profile = profile;
+        this.timer = timer;
+        this.errorStatus = errorStatus;
+        this.applicationCookie = setsApplicationCookie ? "JSESSIONID=" + name + "; Path=/" : null;
+    }
+
+    @Override
+    public String getUri() {
+
+        return uri;
+    }
+
+    @Override
+    public boolean receive(CarbonMessage carbonMessage, CarbonCallback carbonCallback) throws Exception {
+
+        received.increment();
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (profile.getStallRate() > 0 && random.nextDouble() < profile.getStallRate()) {
+            return true;
+        }
+
+        int statusCode = profile.getErrorRate() > 0 && random.nextDouble() < profile.getErrorRate() ? errorStatus : 200;
+        timer.schedule(() -> this.respond(carbonCallback, statusCode),
+                profile.getLatency().nextMicros(random), TimeUnit.MICROSECONDS);
+        return true;
+    }
+
+    private void respond(CarbonCallback carbonCallback, int statusCode) {
+
+        CarbonMessage response = new DefaultCarbonMessage();
+        response.setProperty(Constants.CALL_BACK, carbonCallback);
+        response.setProperty(org.wso2.carbon.transport.http.netty.common.Constants.HTTP_STATUS_CODE, statusCode);
+        if (applicationCookie != null) {
+            response.setHeader(LoadBalancerConstants.SET_COOKIE_HEADER, applicationCookie);
+        }
+
+        try {
+            carbonCallback.done(response);
+        } catch (RuntimeException e) {
+            //Timer thread must survive. Failures are reported with results.
+            failedCallbacks.increment();
+        }
+    }
+
+    /**
+     * @return no of requests received so far, including stalled ones.
+     */
+    public long getReceivedCount() {
+
+        return received.sum();
+    }
+
+    /**
+     * @return no of responses whose callback threw.
+     */
+    public long getFailedCallbackCount() {
+
+        return failedCallbacks.sum();
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.benchmarks.harness;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a fake backend.
+ * <p>
+ * Specified as constant:MILLIS, exp:MEAN_MILLIS or lognormal:MEDIAN_MILLIS:P99_MILLIS.
+ */
+public abstract class LatencyDistribution {
+
+    //z-score of 99th percentile of standard normal distribution.
+    private static final double Z_99 = 2.326;
+
+    /**
+     * @return latency of next response in micro seconds.
+     */
+    public abstract long nextMicros(ThreadLocalRandom random);
+
+    /**
+     * @return mean latency in micro seconds.
+     */
+    public abstract double getMeanMicros();
+
+    /**
+     * @param spec eg: lognormal:2:20
+     * @return distribution described by spec.
+     */
+    public static LatencyDistribution parse(String spec) {
+
+        String[] parts = spec.trim().split(":");
+        try {
+            switch (parts[0]) {
+                case "constant":
+                    return constant(Double.parseDouble(parts[1]));
+                case "exp":
+                    return exponential(Double.parseDouble(parts[1]));
+                case "lognormal":
+                    return logNormal(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                default:
+                    break;
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid latency : " + spec, e);
+        }
+        throw new IllegalArgumentException("Invalid latency : " + spec +
+                ". Use constant:MILLIS, exp:MEAN_MILLIS or lognormal:MEDIAN_MILLIS:P99_MILLIS");
+    }
+
+    public static LatencyDistribution constant(double millis) {
+
+        final long micros = toMicros(millis);
+        return new LatencyDistribution() {
+
+            @Override
+            public long nextMicros(ThreadLocalRandom random) {
+
+                return micros;
+            }
+
+            @Override
+            public double getMeanMicros() {
+
+                return micros;
+            }
+
+            @Override
+            public String toString() {
+
+                return "constant:" + millis;
+            }
+        };
+    }
+
+    public static LatencyDistribution exponential(double meanMillis) {
+
+        final double meanMicros = toMicros(meanMillis);
+        return new LatencyDistribution() {
+
+            @Override
+            public long nextMicros(ThreadLocalRandom random) {
+
+                return (long) (-meanMicros * Math.log(1.0 - random.nextDouble()));
+            }
+
+            @Override
+            public double getMeanMicros() {
+
+                return meanMicros;
+            }
+
+            @Override
+            public String toString() {
+
+                return "exp:" + meanMillis;
+            }
+        };
+    }
+
+    /**
+     * Long tailed latency, typical of real services.
+     */
+    public static LatencyDistribution logNormal(double medianMillis, double p99Millis) {
+
+        if (medianMillis <= 0 || p99Millis < medianMillis) {
+            throw new IllegalArgumentException("lognormal needs 0 < median <= p99 : " + medianMillis + ", "
+                    + p99Millis);
+        }
+        final double mu = Math.log(toMicros(medianMillis));
+        final double sigma = (Math.log(toMicros(p99Millis)) - mu) / Z_99;
+        return new LatencyDistribution() {
+
+            @Override
+            public long nextMicros(ThreadLocalRandom random) {
+
+                return (long) Math.exp(mu + sigma * random.nextGaussian());
+            }
+
+            @Override
+            public double getMeanMicros() {
+
+                return Math.exp(mu + sigma * sigma / 2);
+            }
+
+            @Override
+            public String toString() {
+
+                return "lognormal:" + medianMillis + ":" + p99Millis;
+            }
+        };
+    }
+
+    private static long toMicros(double millis) {
+
+        return (long) (millis * TimeUnit.MILLISECONDS.toMicros(1));
+    }
+}
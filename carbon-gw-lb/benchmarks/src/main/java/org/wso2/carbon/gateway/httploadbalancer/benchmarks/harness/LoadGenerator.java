@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.benchmarks.harness;
+
+import org.wso2.carbon.gateway.core.flow.Mediator;
+import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
+import org.wso2.carbon.gateway.httploadbalancer.utils.CommonUtil;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.Constants;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a mediator with requests of simulated users.
+ * <p>
+ * Each user has its own client IP (X-Forwarded-For) and keeps cookie returned to it, so every
+ * persistence policy sees realistic requests.
+ * <p>
+ * Open loop - Requests are sent at a fixed rate, irrespective of responses. Send times are planned
+ * up front, so a stalled generator or LB doesn't lower offered load silently.
+ * <p>
+ * Closed loop - Each user sends its next request after response to previous one and think time.
+ */
+final class LoadGenerator {
+
+    private final Mediator mediator;
+    private final LoadRecorder recorder;
+    private final ScheduledExecutorService timer;
+
+    private final String[] clientIPs;
+    private final AtomicReferenceArray<String> cookies;
+
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile long endNanos = Long.MAX_VALUE;
+
+    /**
+     * @param mediator LoadBalancerMediator under test.
+     * @param users    no of simulated users.
+     * @param recorder records outcome of requests.
+     * @param timer    used for think time of closed loop users.
+     */
+    LoadGenerator(Mediator mediator, int users, LoadRecorder recorder, ScheduledExecutorService timer) {
+
+        this.mediator = mediator;
+        this.recorder = recorder;
+        this.timer = timer;
+        this.clientIPs = new String[users];
+        this.cookies = new AtomicReferenceArray<>(users);
+        for (int i = 0; i < users; i++) {
+            clientIPs[i] = "10." + ((i >>> 16) & 0xff) + "." + ((i >>> 8) & 0xff) + "." + (i & 0xff);
+        }
+    }
+
+    /**
+     * Starts sending requests at given rate, till endNanos.
+     *
+     * @param ratePerSecond total rate.
+     * @param threadCount   no of sending threads. Rate is split evenly among them.
+     * @param startNanos    time of first request.
+     * @param endNanos      no request is sent at or after this time.
+     */
+    void startOpenLoop(double ratePerSecond, int threadCount, long startNanos, long endNanos) {
+
+        this.endNanos = endNanos;
+        final long interval = (long) (TimeUnit.SECONDS.toNanos(1) * threadCount / ratePerSecond);
+
+        for (int t = 0; t < threadCount; t++) {
+
+            final int offset = t;
+            Thread thread = new Thread(() -> {
+
+                long intended = startNanos + interval * offset / threadCount;
+                int user = offset;
+                while (intended < endNanos) {
+
+                    long wait = intended - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                        continue;
+                    }
+                    this.send(user, intended, false, 0);
+
+                    intended += interval;
+                    user = (user + threadCount) % clientIPs.length;
+                }
+            }, "LB-LoadGenerator-" + t);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Starts all users, each of which sends requests one after another till endNanos.
+     *
+     * @param thinkMicros time a user waits after a response before sending next request.
+     * @param endNanos    no request is sent at or after this time.
+     */
+    void startClosedLoop(long thinkMicros, long endNanos) {
+
+        this.endNanos = endNanos;
+        for (int user = 0; user < clientIPs.length; user++) {
+            final int current = user;
+            timer.execute(() -> this.send(current, System.nanoTime(), true, thinkMicros));
+        }
+    }
+
+    /**
+     * Waits for open loop threads to send their last request.
+     */
+    void awaitSenders() throws InterruptedException {
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private void send(int user, long intendedNanos, boolean closedLoop, long thinkMicros) {
+
+        if (intendedNanos >= endNanos) {
+            return;
+        }
+
+        CarbonMessage request = new DefaultCarbonMessage();
+        request.setProperty(Constants.HTTP_METHOD, "GET");
+        //As transport delivers a GET, i.e., whole request has been received.
+        request.setEndOfMsgAdded(true);
+        request.setHeader(LoadBalancerConstants.X_FORWARDED_FOR_HEADER, clientIPs[user]);
+        String cookie = cookies.get(user);
+        if (cookie != null) {
+            request.setHeader(LoadBalancerConstants.COOKIE_HEADER, cookie);
+        }
+
+        recorder.onSent(intendedNanos);
+        try {
+            mediator.receive(request, response -> {
+
+                recorder.onCompleted(intendedNanos, CommonUtil.getStatusCode(response));
+                this.keepCookie(user, response);
+
+                //Always through timer, as LB may respond on sending thread itself. eg: when rejecting.
+                if (closedLoop) {
+                    timer.schedule(() -> this.send(user, System.nanoTime(), true, thinkMicros),
+                            thinkMicros, TimeUnit.MICROSECONDS);
+                }
+            });
+        } catch (Exception e) {
+            recorder.onCompleted(intendedNanos, 0);
+        }
+    }
+
+    /**
+     * Browser keeps name and value of a cookie, ie., part before first ';'.
+     */
+    private void keepCookie(int user, CarbonMessage response) {
+
+        String setCookie = response.getHeader(LoadBalancerConstants.SET_COOKIE_HEADER);
+        if (setCookie != null) {
+            int separator = setCookie.indexOf(';');
+            cookies.set(user, separator < 0 ? setCookie : setCookie.substring(0, separator));
+        }
+    }
+}
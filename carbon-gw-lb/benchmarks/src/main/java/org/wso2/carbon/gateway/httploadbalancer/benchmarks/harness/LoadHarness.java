@@ -0,0 +1,364 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.benchmarks.harness;
+
+import org.wso2.carbon.gateway.httploadbalancer.config.LoadBalancerConfigHolder;
+import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
+import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
+import org.wso2.carbon.gateway.httploadbalancer.mediator.LoadBalancerMediator;
+import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
+import org.wso2.carbon.gateway.httploadbalancer.utils.CommonUtil;
+import org.wso2.carbon.gateway.httploadbalancer.utils.breaker.CircuitBreakerConfig;
+import org.wso2.carbon.gateway.httploadbalancer.utils.metrics.LatencyHistogram;
+import org.wso2.carbon.gateway.httploadbalancer.utils.retry.RetryPolicy;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process, end-to-end load test of LoadBalancerMediator.
+ * <p>
+ * Requests go through the real mediator, algorithm, persistence, callback pool and timeout handling,
+ * to FakeOutboundEndpoints that answer after simulated latency. There is no network, so results
+ * reflect cost of LB itself and quality of its endpoint selection under realistic backend latency.
+ * <p>
+ * For each algorithm and persistence policy, a line with throughput, latency percentiles, errors,
+ * allocation rate and distribution of requests among endpoints is printed.
+ * <p>
+ * Usage: java -cp target/benchmarks.jar org.wso2.carbon.gateway.httploadbalancer.benchmarks.harness.LoadHarness
+ * [--key=value ...]
+ * <p>
+ * Eg: --mode=open --rate=20000 --backends=lognormal:1:10,lognormal:1:10,exp:5/0.01 --algorithms=RANDOM
+ * <p>
+ * Eg: --backends=lognormal:1:10,constant:1/1 --errorStatus=503 --circuitBreaker=false --retryMaxAttempts=3,
+ * for failover of retries.
+ * <p>
+ * Backend of an endpoint is LATENCY[/ERROR_RATE[/STALL_RATE]], where LATENCY is constant:MILLIS,
+ * exp:MEAN_MILLIS or lognormal:MEDIAN_MILLIS:P99_MILLIS. Backends are assigned to endpoints in turn.
+ */
+public final class LoadHarness {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("mode", "open");               //open or closed.
+        DEFAULTS.put("rate", "10000");              //requests per second, open loop.
+        DEFAULTS.put("users", "1000");              //distinct clients. Concurrency of closed loop.
+        DEFAULTS.put("think", "0ms");               //think time of closed loop users.
+        DEFAULTS.put("duration", "10s");            //measurement window.
+        DEFAULTS.put("warmup", "5s");               //load before measurement window.
+        DEFAULTS.put("endpoints", "5");
+        DEFAULTS.put("backends", "lognormal:1:10");
+        DEFAULTS.put("weights", "1,2,3,4,5");       //used in turn by weighted algorithms.
+        DEFAULTS.put("requestTimeout", "1s");
+        DEFAULTS.put("errorStatus", "500");         //status of failed responses. 503 is a backend being restarted.
+        DEFAULTS.put("circuitBreaker", "true");     //false to see failures that circuit breakers would hide.
+        DEFAULTS.put("retryMaxAttempts", "1");      //1 disables retries.
+        DEFAULTS.put("retryPerTryTimeout", "1s");
+        DEFAULTS.put("retryBudget", "1s");
+        DEFAULTS.put("healthCheck", LoadBalancerConstants.NO_HEALTH_CHECK);
+        DEFAULTS.put("algorithms", "all");
+        DEFAULTS.put("persistence", "all");
+        DEFAULTS.put("generatorThreads", "2");      //sending threads of open loop.
+        DEFAULTS.put("timerThreads", "2");          //threads delivering backend responses.
+    }
+
+    private static final List<String> ALGORITHMS = Arrays.asList(
+            LoadBalancerConstants.ROUND_ROBIN,
+            LoadBalancerConstants.RANDOM,
+            LoadBalancerConstants.LEAST_CONNECTIONS,
+            LoadBalancerConstants.LEAST_RESPONSE_TIME,
+            LoadBalancerConstants.STRICT_IP_HASHING,
+            LoadBalancerConstants.WEIGHTED_ROUND_ROBIN,
+            LoadBalancerConstants.WEIGHTED_RANDOM);
+
+    private static final List<String> PERSISTENCE = Arrays.asList(
+            LoadBalancerConstants.NO_PERSISTENCE,
+            LoadBalancerConstants.LB_COOKIE,
+            LoadBalancerConstants.APPLICATION_COOKIE,
+            LoadBalancerConstants.CLIENT_IP_HASHING);
+
+    //Time allowed for in-flight requests to complete after requestTimeout.
+    private static final long DRAIN_GRACE_MILLIS = TimeUnit.SECONDS.toMillis(2);
+
+    private final Map<String, String> options;
+
+    private LoadHarness(Map<String, String> options) {
+
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            String key = arg.startsWith("--") && separator > 2 ? arg.substring(2, separator) : null;
+            if (key == null || !DEFAULTS.containsKey(key)) {
+                throw new IllegalArgumentException("Unknown option : " + arg + ". Options : " + DEFAULTS);
+            }
+            options.put(key, arg.substring(separator + 1));
+        }
+
+        System.out.println("# " + options);
+        LoadHarness harness = new LoadHarness(options);
+        for (String algorithm : select(options.get("algorithms"), ALGORITHMS)) {
+            for (String persistence : select(options.get("persistence"), PERSISTENCE)) {
+                if (isValid(algorithm, persistence)) {
+                    harness.run(algorithm, persistence);
+                }
+            }
+        }
+    }
+
+    private static List<String> select(String value, List<String> all) {
+
+        return value.equalsIgnoreCase("all") ? all : Arrays.asList(value.split(","));
+    }
+
+    /**
+     * Same restrictions as LoadBalancerConfigHolder.
+     */
+    private static boolean isValid(String algorithm, String persistence) {
+
+        if (algorithm.equals(LoadBalancerConstants.STRICT_IP_HASHING)) {
+            return persistence.equals(LoadBalancerConstants.NO_PERSISTENCE);
+        }
+        return !(algorithm.equals(LoadBalancerConstants.WEIGHTED_ROUND_ROBIN) &&
+                persistence.equals(LoadBalancerConstants.CLIENT_IP_HASHING));
+    }
+
+    private void run(String algorithm, String persistence) throws Exception {
+
+        ScheduledExecutorService timer = Executors.newScheduledThreadPool(getInt("timerThreads"), runnable -> {
+            Thread thread = new Thread(runnable, "LB-LoadHarness-Timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<FakeOutboundEndpoint> fakes = new ArrayList<>();
+        List<LBOutboundEndpoint> lbOutboundEndpoints = new ArrayList<>();
+        String[] backends = options.get("backends").split(",");
+        double meanBackendMicros = 0;
+        for (int i = 0; i < getInt("endpoints"); i++) {
+            BackendProfile profile = BackendProfile.parse(backends[i % backends.length]);
+            FakeOutboundEndpoint fake = new FakeOutboundEndpoint("endpoint" + i,
+                    "http://localhost:" + (8080 + 2 * i) + "/services/echo", profile, timer,
+                    persistence.equals(LoadBalancerConstants.APPLICATION_COOKIE), getInt("errorStatus"));
+            fakes.add(fake);
+            lbOutboundEndpoints.add(new LBOutboundEndpoint(fake));
+            meanBackendMicros += profile.getLatency().getMeanMicros();
+        }
+        meanBackendMicros /= fakes.size();
+
+        LoadBalancerConfigContext context = createContext(algorithm, persistence, lbOutboundEndpoints);
+        LoadBalancerMediator mediator = new LoadBalancerMediator(lbOutboundEndpoints, context,
+                "harness-" + algorithm + "-" + persistence);
+
+        boolean closedLoop = options.get("mode").equalsIgnoreCase("closed");
+        long thinkMicros = TimeUnit.MILLISECONDS.toMicros(getMillis("think"));
+        LoadRecorder recorder = new LoadRecorder(closedLoop ? thinkMicros + (long) meanBackendMicros : 0);
+        LoadGenerator generator = new LoadGenerator(mediator, getInt("users"), recorder, timer);
+
+        long start = System.nanoTime();
+        long windowStart = start + TimeUnit.MILLISECONDS.toNanos(getMillis("warmup"));
+        long windowEnd = windowStart + TimeUnit.MILLISECONDS.toNanos(getMillis("duration"));
+        recorder.setWindow(windowStart, windowEnd);
+
+        if (closedLoop) {
+            generator.startClosedLoop(thinkMicros, windowEnd);
+        } else {
+            generator.startOpenLoop(Double.parseDouble(options.get("rate")), getInt("generatorThreads"),
+                    start, windowEnd);
+        }
+
+        parkUntil(windowStart);
+        Map<Long, Long> allocatedAtStart = getAllocatedBytes();
+        long[] receivedAtStart = getReceivedCounts(fakes);
+
+        parkUntil(windowEnd);
+        long allocated = getAllocatedSince(allocatedAtStart);
+        long[] receivedAtEnd = getReceivedCounts(fakes);
+
+        generator.awaitSenders();
+        long drainDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(
+                Math.max(context.getReqTimeout(), context.getRetryPolicy().getBudget()) + DRAIN_GRACE_MILLIS);
+        while (recorder.getCompleted() < recorder.getSent() && System.nanoTime() < drainDeadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+
+        report(algorithm, persistence, recorder, (windowEnd - windowStart) / 1e9,
+                allocated, receivedAtStart, receivedAtEnd);
+
+        mediator.destroy();
+        timer.shutdownNow();
+    }
+
+    private LoadBalancerConfigContext createContext(String algorithm, String persistence,
+                                                    List<LBOutboundEndpoint> lbOutboundEndpoints) {
+
+        LoadBalancerConfigContext context = new LoadBalancerConfigContext();
+        context.setAlgorithmName(algorithm);
+        context.setPersistence(persistence);
+        context.setHealthCheck(options.get("healthCheck"));
+        context.setReqTimeout((int) getMillis("requestTimeout"));
+        //Circuit breaker is disabled by default in LB config, so it is enabled here with default thresholds.
+        if (Boolean.parseBoolean(options.get("circuitBreaker"))) {
+            context.setCircuitBreakerConfig(new CircuitBreakerConfig(
+                    LoadBalancerConstants.DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE,
+                    LoadBalancerConstants.DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_RATE, context.getReqTimeout() / 2,
+                    LoadBalancerConstants.DEFAULT_CIRCUIT_BREAKER_MINIMUM_CALLS,
+                    LoadBalancerConstants.DEFAULT_CIRCUIT_BREAKER_WINDOW,
+                    LoadBalancerConstants.DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION,
+                    LoadBalancerConstants.DEFAULT_CIRCUIT_BREAKER_HALF_OPEN_TRIALS));
+        }
+        context.setRetryPolicy(new RetryPolicy(getInt("retryMaxAttempts"), (int) getMillis("retryPerTryTimeout"),
+                (int) getMillis("retryBudget"), LoadBalancerConstants.DEFAULT_RETRY_MAX_BODY_SIZE));
+
+        Map<String, LBOutboundEndpoint> endpointMap = new HashMap<>();
+        for (LBOutboundEndpoint lbOutboundEndpoint : lbOutboundEndpoints) {
+            endpointMap.put(lbOutboundEndpoint.getName(), lbOutboundEndpoint);
+        }
+        context.setLbOutboundEndpoints(endpointMap);
+
+        if (algorithm.equals(LoadBalancerConstants.WEIGHTED_ROUND_ROBIN) ||
+                algorithm.equals(LoadBalancerConstants.WEIGHTED_RANDOM)) {
+
+            String[] weights = options.get("weights").split(",");
+            Map<String, String> weightsMap = new HashMap<>();
+            for (int i = 0; i < lbOutboundEndpoints.size(); i++) {
+                weightsMap.put(lbOutboundEndpoints.get(i).getName(), weights[i % weights.length].trim());
+            }
+            LoadBalancerConfigHolder.populateWeightsMap(context, weightsMap);
+        }
+
+        if (persistence.equals(LoadBalancerConstants.CLIENT_IP_HASHING)) {
+
+            context.initStrictClientIPHashing(lbOutboundEndpoints);
+
+        } else if (persistence.equals(LoadBalancerConstants.LB_COOKIE) ||
+                persistence.equals(LoadBalancerConstants.APPLICATION_COOKIE)) {
+
+            LoadBalancerConfigHolder.populateCookieMaps(context);
+        }
+        return context;
+    }
+
+    private static void report(String algorithm, String persistence, LoadRecorder recorder, double seconds,
+                               long allocatedBytes, long[] receivedAtStart, long[] receivedAtEnd) {
+
+        LatencyHistogram.Snapshot latency = recorder.getLatency();
+
+        long received = 0;
+        for (int i = 0; i < receivedAtEnd.length; i++) {
+            received += receivedAtEnd[i] - receivedAtStart[i];
+        }
+        StringBuilder distribution = new StringBuilder();
+        for (int i = 0; i < receivedAtEnd.length; i++) {
+            distribution.append(i == 0 ? "" : "/").append(String.format(Locale.ROOT, "%.1f",
+                    received == 0 ? 0 : 100.0 * (receivedAtEnd[i] - receivedAtStart[i]) / received));
+        }
+
+        System.out.println(String.format(Locale.ROOT,
+                "%-21s %-18s %9.0f req/s | ms p50 %7.2f p90 %7.2f p99 %7.2f p99.9 %7.2f max %7.2f" +
+                        " | 5xx %d 504 %d 503 %d failed %d lost %d | alloc %.1f MB/s %.0f B/req | endpoints %% %s",
+                algorithm, persistence, recorder.getCompleted() / seconds,
+                millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(90)),
+                millis(latency.getValueAtPercentile(99)), millis(latency.getValueAtPercentile(99.9)),
+                millis(latency.getMax()),
+                recorder.getServerErrors(), recorder.getTimeouts(), recorder.getRejected(), recorder.getFailed(),
+                recorder.getSent() - recorder.getCompleted(),
+                allocatedBytes / seconds / (1024 * 1024),
+                recorder.getSent() == 0 ? 0 : (double) allocatedBytes / recorder.getSent(),
+                distribution));
+    }
+
+    private static double millis(long micros) {
+
+        return micros / 1000.0;
+    }
+
+    private static void parkUntil(long nanoTime) {
+
+        long wait;
+        while ((wait = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    private static long[] getReceivedCounts(List<FakeOutboundEndpoint> fakes) {
+
+        long[] counts = new long[fakes.size()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = fakes.get(i).getReceivedCount();
+        }
+        return counts;
+    }
+
+    /**
+     * @return bytes allocated so far by each live thread of JVM, including generator and fakes.
+     */
+    private static Map<Long, Long> getAllocatedBytes() {
+
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] threadIds = threadMXBean.getAllThreadIds();
+        long[] allocated = threadMXBean.getThreadAllocatedBytes(threadIds);
+
+        Map<Long, Long> allocatedBytes = new HashMap<>();
+        for (int i = 0; i < threadIds.length; i++) {
+            if (allocated[i] >= 0) {
+                allocatedBytes.put(threadIds[i], allocated[i]);
+            }
+        }
+        return allocatedBytes;
+    }
+
+    /**
+     * Threads which exit in between are left out, so this is a lower bound.
+     */
+    private static long getAllocatedSince(Map<Long, Long> allocatedAtStart) {
+
+        long total = 0;
+        for (Map.Entry<Long, Long> entry : getAllocatedBytes().entrySet()) {
+            total += entry.getValue() - allocatedAtStart.getOrDefault(entry.getKey(), 0L);
+        }
+        return total;
+    }
+
+    private int getInt(String key) {
+
+        return Integer.parseInt(options.get(key).trim());
+    }
+
+    private long getMillis(String key) {
+
+        return CommonUtil.getTimeInMilliSeconds(options.get(key).trim());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.benchmarks.harness;
+
+import org.wso2.carbon.gateway.httploadbalancer.utils.metrics.LatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outcome of requests whose intended send time falls in measurement window.
+ * <p>
+ * Latency is measured from intended send time, not from actual send time. So when generator or LB
+ * falls behind, delay is charged to requests that were held back, ie., results are free of
+ * coordinated omission. In closed loop, a user doesn't send while waiting, so every response slower than
+ * expectedInterval also stands for requests that would have been sent meanwhile. These are back-filled,
+ * as HdrHistogram's recordValueWithExpectedInterval does.
+ */
+final class LoadRecorder {
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    //0 means no back-filling.
+    private final long expectedIntervalMicros;
+
+    private volatile long windowStart = Long.MAX_VALUE;
+    private volatile long windowEnd = Long.MAX_VALUE;
+
+    /**
+     * @param expectedIntervalMicros expected interval between requests of a closed loop user. 0 for open loop.
+     */
+    LoadRecorder(long expectedIntervalMicros) {
+
+        this.expectedIntervalMicros = expectedIntervalMicros;
+    }
+
+    /**
+     * @param startNanos start of measurement window, in System.nanoTime().
+     * @param endNanos   end of measurement window.
+     */
+    void setWindow(long startNanos, long endNanos) {
+
+        this.windowStart = startNanos;
+        this.windowEnd = endNanos;
+    }
+
+    boolean isInWindow(long intendedNanos) {
+
+        return intendedNanos >= windowStart && intendedNanos < windowEnd;
+    }
+
+    void onSent(long intendedNanos) {
+
+        if (isInWindow(intendedNanos)) {
+            sent.increment();
+        }
+    }
+
+    /**
+     * @param intendedNanos time at which request was supposed to be sent.
+     * @param statusCode    status code of response, 0 if request failed without a response.
+     */
+    void onCompleted(long intendedNanos, int statusCode) {
+
+        if (!isInWindow(intendedNanos)) {
+            return;
+        }
+
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedNanos);
+        latency.record(micros);
+        if (expectedIntervalMicros > 0) {
+            for (long missed = micros - expectedIntervalMicros; missed >= expectedIntervalMicros;
+                 missed -= expectedIntervalMicros) {
+                latency.record(missed);
+            }
+        }
+
+        completed.increment();
+        if (statusCode >= 200 && statusCode < 400) {
+            succeeded.increment();
+        } else if (statusCode == 503) {
+            rejected.increment();
+        } else if (statusCode == 504) {
+            timeouts.increment();
+        } else if (statusCode >= 500) {
+            serverErrors.increment();
+        } else {
+            failed.increment();
+        }
+    }
+
+    long getSent() {
+
+        return sent.sum();
+    }
+
+    long getCompleted() {
+
+        return completed.sum();
+    }
+
+    long getSucceeded() {
+
+        return succeeded.sum();
+    }
+
+    long getServerErrors() {
+
+        return serverErrors.sum();
+    }
+
+    long getTimeouts() {
+
+        return timeouts.sum();
+    }
+
+    long getRejected() {
+
+        return rejected.sum();
+    }
+
+    long getFailed() {
+
+        return failed.sum();
+    }
+
+    LatencyHistogram.Snapshot getLatency() {
+
+        return latency.snapshot();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.benchmarks.stub;
+
+import org.wso2.carbon.gateway.core.outbound.AbstractOutboundEndpoint;
+import org.wso2.carbon.messaging.CarbonCallback;
+import org.wso2.carbon.messaging.CarbonMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * OutboundEndpoint that never leaves the JVM.
+ * <p>
+ * Used by micro benchmarks which only need endpoint identity (name and uri).
+ */
+public class StubOutboundEndpoint extends AbstractOutboundEndpoint {
+
+    private final String uri;
+
+    public StubOutboundEndpoint(String name, String uri) {
+
+        super(name);
+        this.uri = uri;
+    }
+
+    @Override
+    public String getUri() {
+
+        return uri;
+    }
+
+    /**
+     * Requests are swallowed. Benchmarks that need responses complete the callback themselves.
+     */
+    @Override
+    public boolean receive(CarbonMessage carbonMessage, CarbonCallback carbonCallback) throws Exception {
+        return true;
+    }
+
+    /**
+     * @param count number of endpoints.
+     * @return endpoints named EP1..EPn pointing to localhost:8080, 8082, ..
+     */
+    public static List<StubOutboundEndpoint> create(int count) {
+
+        List<StubOutboundEndpoint> endpoints = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            endpoints.add(new StubOutboundEndpoint("EP" + (i + 1),
+                    "http://localhost:" + (8080 + (2 * i)) + "/stockquote/all"));
+        }
+        return endpoints;
+    }
+}
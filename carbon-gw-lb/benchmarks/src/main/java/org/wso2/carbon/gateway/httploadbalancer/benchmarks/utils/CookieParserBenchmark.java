@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.benchmarks.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.wso2.carbon.gateway.httploadbalancer.benchmarks.baseline.RegexCookieParser;
+import org.wso2.carbon.gateway.httploadbalancer.utils.LBCookieParser;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares LBCookieParser against the previous regex based extraction.
+ * <p>
+ * Each invocation extracts LB key and rewrites the Cookie header, as LoadBalancerMediator does per request.
+ * Run with -prof gc to compare allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CookieParserBenchmark {
+
+    @Param({
+            "JSESSIONID=ghsgsdgsg---LB_COOKIE:5f4dcc3b5aa765d61d8327deb882cf99---",
+            "LB_COOKIE=5f4dcc3b5aa765d61d8327deb882cf99",
+            "theme=dark; JSESSIONID=ghsgsdgsg---LB_COOKIE:5f4dcc3b5aa765d61d8327deb882cf99---; lang=en"
+    })
+    public String cookieHeader;
+
+    @Benchmark
+    public void regex(Blackhole blackhole) {
+
+        blackhole.consume(RegexCookieParser.getLBCookieValue(cookieHeader, true));
+        blackhole.consume(RegexCookieParser.removeLBCookie(cookieHeader));
+    }
+
+    @Benchmark
+    public void tokenizer(Blackhole blackhole) {
+
+        long location = LBCookieParser.locateLBCookie(cookieHeader, true);
+        blackhole.consume(LBCookieParser.getLBCookieValue(cookieHeader, location));
+        blackhole.consume(LBCookieParser.removeLBCookie(cookieHeader, location));
+    }
+}
@@ -28,6 +28,11 @@ import org.wso2.carbon.messaging.CarbonMessage;
 /**
  * All types of LB algorithms must implement this interface.
  * Algorithm implementation MUST ensure that all the operations are THREAD SAFE.
+ * <p>
+ * getNextLBOutboundEndpoint() is called for every request, so it should not block.
+ * Preferred way is to select from an immutable snapshot of healthy endpoints and to
+ * publish a new snapshot from addLBOutboundEndpoint() and removeLBOutboundEndpoint(),
+ * instead of mutating a shared list under a lock (See RoundRobin).
  */
 public interface LoadBalancingAlgorithm {
 
@@ -42,6 +47,9 @@ public interface LoadBalancingAlgorithm {
      *                           <p>
      *                           This method will be used to add an endpoint once it
      *                           is back to healthy state.
+     *                           <p>
+     *                           Requests being balanced concurrently must either see the old
+     *                           set of endpoints or the new one, never a partially updated one.
      */
     void addLBOutboundEndpoint(LBOutboundEndpoint lbOutboundEndpoint);
 
@@ -49,6 +57,8 @@ public interface LoadBalancingAlgorithm {
      * @param lbOutboundEndpoint outboundEndpoint to be removed from existing list.
      *                           <p>
      *                           This method will be used to remove an unHealthyEndpoint.
+     *                           <p>
+     *                           Same visibility rules as addLBOutboundEndpoint() apply.
      */
     void removeLBOutboundEndpoint(LBOutboundEndpoint lbOutboundEndpoint);
 
@@ -69,6 +79,10 @@ public interface LoadBalancingAlgorithm {
 
     /**
      * @return Object used for locking.
+     * <p>
+     * Health checkers hold this lock while they change the set of endpoints
+     * (remove / add followed by reset). Implementations should use it to serialize
+     * such writers only and not acquire it while choosing an endpoint.
      */
     Object getLock();
 
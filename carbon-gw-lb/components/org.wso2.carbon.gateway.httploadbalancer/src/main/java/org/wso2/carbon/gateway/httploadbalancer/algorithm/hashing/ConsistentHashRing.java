@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing;
+
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing.hashcodegenerators.HashFunction;
+import org.wso2.carbon.gateway.httploadbalancer.utils.ClientIP;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Implementation of Consistent Hash backed by a sorted array of 64 bit points.
+ * <p>
+ * Logic is same as ConsistentHash, but lookup is a binary search over a primitive long[]
+ * instead of a TreeMap of hex strings. So a lookup is one hash64() call and ~log2(points)
+ * comparisons, without any allocation.
+ * <p>
+ * Each endpoint is placed on the ring at (virtualNodes * weight) points. More virtual nodes
+ * give more even distribution. With 160 virtual nodes per endpoint, load on any endpoint stays
+ * within a few percent of fair share. Weight lets an endpoint own proportionally more of the ring.
+ * <p>
+ * Points are kept in an immutable snapshot which is replaced on every change.  So get() can be
+ * called concurrently with add / remove without any locking. Changes themselves are synchronized.
+ */
+public class ConsistentHashRing implements Hash {
+
+    private final HashFunction hashFunction;
+    private final int virtualNodes;
+
+    //Endpoint (hostname:port) and its weight. Guarded by this.
+    private final Map<String, Integer> weights = new LinkedHashMap<>();
+
+    private volatile Ring ring = new Ring(new long[0], new String[0], 0);
+
+    /**
+     * @param hashFunction Any custom implementation of hashFunction. Murmur3 is recommended.
+     * @param virtualNodes No of points on ring per unit weight of an endpoint.
+     * @param endpoints    List of OutboundEndpoints of form (hostname:port). All have weight 1.
+     */
+    public ConsistentHashRing(HashFunction hashFunction, int virtualNodes, List<String> endpoints) {
+
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("virtualNodes must be positive : " + virtualNodes);
+        }
+        this.hashFunction = hashFunction;
+        this.virtualNodes = virtualNodes;
+        this.addEndpoints(endpoints);
+    }
+
+    /**
+     * @param endpoint add an endpoint of form (hostname:port) with weight 1.
+     */
+    @Override
+    public void addEndpoint(String endpoint) {
+
+        this.addEndpoint(endpoint, 1);
+    }
+
+    /**
+     * @param endpoint add an endpoint of form (hostname:port).
+     * @param weight   endpoint will have (virtualNodes * weight) points on ring.
+     *                 If endpoint already exists, its weight is updated.
+     */
+    public synchronized void addEndpoint(String endpoint, int weight) {
+
+        if (weight <= 0) {
+            throw new IllegalArgumentException("weight must be positive : " + weight);
+        }
+        weights.put(endpoint, weight);
+        rebuild();
+    }
+
+    /**
+     * @param endpoints List of Endpoints of form (hostname:port) to be added.
+     */
+    @Override
+    public synchronized void addEndpoints(List<String> endpoints) {
+
+        endpoints.forEach(endpoint -> weights.put(endpoint, 1));
+        rebuild();
+    }
+
+    /**
+     * @param endpoint remove an endpoint of form (hostname:port).
+     */
+    @Override
+    public synchronized void removeEndpoint(String endpoint) {
+
+        if (weights.remove(endpoint) != null) {
+            rebuild();
+        }
+    }
+
+    /**
+     * @param endpoints List of Endpoints of form (hostname:port) to be removed.
+     */
+    @Override
+    public synchronized void removeAllEndpoints(List<String> endpoints) {
+
+        endpoints.forEach(weights::remove);
+        rebuild();
+    }
+
+    /**
+     * @param ipAddress Client IP Address.
+     * @return Chosen Endpoint of form (hostname:port) based on HashFunction implementation.
+     */
+    @Override
+    public String get(String ipAddress) {
+
+        return ring.get(hashFunction.hash64(ipAddress));
+    }
+
+    /**
+     * @param ipAddress    Client IP Address.
+     * @param isOverloaded tells whether an endpoint of form (hostname:port) has to be skipped.
+     * @return First endpoint clockwise from hash of ipAddress, which is not overloaded.
+     * If all endpoints are overloaded, get(ipAddress) is returned.
+     */
+    @Override
+    public String get(String ipAddress, Predicate<String> isOverloaded) {
+
+        return ring.get(hashFunction.hash64(ipAddress), isOverloaded);
+    }
+
+    /**
+     * @param clientIP     Client IP Address in numeric form.
+     * @param isOverloaded tells whether an endpoint of form (hostname:port) has to be skipped.
+     * @return same as get(ipAddress, isOverloaded), but address is hashed with HashFunction.hash64(high, low).
+     */
+    @Override
+    public String get(ClientIP clientIP, Predicate<String> isOverloaded) {
+
+        return ring.get(hashFunction.hash64(clientIP.getHigh(), clientIP.getLow()), isOverloaded);
+    }
+
+    /**
+     * @return No of points currently on ring.
+     */
+    public int size() {
+
+        return ring.points.length;
+    }
+
+    private void rebuild() {
+
+        int total = 0;
+        for (int weight : weights.values()) {
+            total += weight * virtualNodes;
+        }
+
+        //point -> owner.
+        Map<Long, String> owners = new HashMap<>(total * 2);
+
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            String endpoint = entry.getKey();
+            int nodes = entry.getValue() * virtualNodes;
+            for (int node = 0; node < nodes; node++) {
+                long point = hashFunction.hash64(endpoint + "-" + node);
+                //On collision, smaller endpoint wins. This keeps result independent of order of addition.
+                owners.merge(point, endpoint, (existing, added) -> existing.compareTo(added) <= 0 ? existing : added);
+            }
+        }
+
+        long[] points = new long[owners.size()];
+        int i = 0;
+        for (long point : owners.keySet()) {
+            points[i++] = point;
+        }
+        Arrays.sort(points);
+
+        String[] pointOwners = new String[points.length];
+        for (i = 0; i < points.length; i++) {
+            pointOwners[i] = owners.get(points[i]);
+        }
+
+        this.ring = new Ring(points, pointOwners, weights.size());
+    }
+
+    /**
+     * Immutable snapshot of ring. owners[i] owns all hashes in (points[i - 1], points[i]].
+     */
+    private static final class Ring {
+
+        private final long[] points;
+        private final String[] owners;
+        private final int endpointCount;
+
+        private Ring(long[] points, String[] owners, int endpointCount) {
+
+            this.points = points;
+            this.owners = owners;
+            this.endpointCount = endpointCount;
+        }
+
+        private int indexOf(long hash) {
+
+            int index = Arrays.binarySearch(points, hash);
+            if (index < 0) {
+                index = -index - 1;
+                if (index == points.length) {
+                    index = 0;
+                }
+            }
+            return index;
+        }
+
+        private String get(long hash) {
+
+            if (points.length == 0) {
+                return null;
+            }
+            return owners[indexOf(hash)];
+        }
+
+        private String get(long hash, Predicate<String> isOverloaded) {
+
+            if (points.length == 0) {
+                return null;
+            }
+
+            int index = indexOf(hash);
+            String first = owners[index];
+            if (!isOverloaded.test(first)) {
+                return first;
+            }
+
+            //Walk clockwise, checking each endpoint once.
+            Set<String> checked = new HashSet<>();
+            checked.add(first);
+            for (int i = 1; i < points.length && checked.size() < endpointCount; i++) {
+                String owner = owners[(index + i) % points.length];
+                if (checked.add(owner) && !isOverloaded.test(owner)) {
+                    return owner;
+                }
+            }
+            return first;
+        }
+    }
+}
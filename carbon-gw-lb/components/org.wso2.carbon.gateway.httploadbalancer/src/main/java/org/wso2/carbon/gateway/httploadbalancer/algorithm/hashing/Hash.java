@@ -19,7 +19,10 @@
 package org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing;
 
 
+import org.wso2.carbon.gateway.httploadbalancer.utils.ClientIP;
+
 import java.util.List;
+import java.util.function.Predicate;
 
 /**
  * Interface for IPHashing.
@@ -54,4 +57,30 @@ public interface Hash {
      * @return Chosen endpoint of form (hostname:port) based on hashing method.
      */
     String get(String ipAddress);
+
+    /**
+     * @param ipAddress    Client IP Address.
+     * @param isOverloaded tells whether an endpoint of form (hostname:port) has to be skipped.
+     * @return First endpoint that is not overloaded, in an order specific to hashing method
+     * starting from get(ipAddress). If all endpoints are overloaded, get(ipAddress) is returned.
+     * <p>
+     * By default, load is not considered at all.
+     */
+    default String get(String ipAddress, Predicate<String> isOverloaded) {
+
+        return get(ipAddress);
+    }
+
+    /**
+     * @param clientIP     Client IP Address in numeric form.
+     * @param isOverloaded tells whether an endpoint of form (hostname:port) has to be skipped.
+     * @return same as get(ipAddress, isOverloaded), but hashing methods can hash the address directly,
+     * instead of its string form. So result need not be same as that of get(ipAddress, isOverloaded).
+     * <p>
+     * By default, address is formatted and passed to get(ipAddress, isOverloaded).
+     */
+    default String get(ClientIP clientIP, Predicate<String> isOverloaded) {
+
+        return get(clientIP.toString(), isOverloaded);
+    }
 }
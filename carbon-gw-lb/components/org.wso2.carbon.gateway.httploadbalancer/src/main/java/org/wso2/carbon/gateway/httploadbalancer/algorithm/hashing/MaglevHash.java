@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing;
+
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing.hashcodegenerators.HashFunction;
+import org.wso2.carbon.gateway.httploadbalancer.utils.ClientIP;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * Implementation of Maglev Hash for ClientIPHashing based Load balancing.
+ * <p>
+ * This implementation is done in reference with the following paper:
+ * Maglev: A Fast and Reliable Software Network Load Balancer (NSDI 2016), section 3.4.
+ * <p>
+ * Every endpoint has its own permutation of slots of a lookup table of prime size.
+ * Endpoints take turns in claiming their next preferred free slot, until table is full.
+ * So each endpoint owns either floor or ceil of (tableSize / endpoints) slots, which is
+ * near-perfect balance. When an endpoint is removed, most slots of other endpoints stay
+ * with them, so only a little more than the removed endpoint's share of clients are re-shuffled.
+ * <p>
+ * Lookup is a single hash64() call and an array access.
+ * <p>
+ * Table is kept immutable and is replaced on every change. So get() can be called concurrently
+ * with add / remove without any locking. Changes themselves are synchronized.
+ * <p>
+ * Building table takes O(tableSize * log(tableSize)) time, so endpoints should not be changed on
+ * request path. eg: StrictClientIPHashing builds a new hash on housekeeping threads instead.
+ */
+public class MaglevHash implements Hash {
+
+    private final HashFunction hashFunction;
+    private final int tableSize;
+
+    //Sorted, so that table doesn't depend on order in which endpoints were added. Guarded by this.
+    private final SortedSet<String> endpoints = new TreeSet<>();
+
+    private volatile Table table;
+
+    /**
+     * @param hashFunction Any custom implementation of hashFunction. Murmur3 is recommended.
+     * @param tableSize    Size of lookup table. It MUST be prime and much larger than no of endpoints.
+     * @param endpoints    List of OutboundEndpoints of form (hostname:port).
+     */
+    public MaglevHash(HashFunction hashFunction, int tableSize, List<String> endpoints) {
+
+        if (tableSize < 2 || !BigInteger.valueOf(tableSize).isProbablePrime(32)) {
+            throw new IllegalArgumentException("tableSize must be prime : " + tableSize);
+        }
+        this.hashFunction = hashFunction;
+        this.tableSize = tableSize;
+
+        this.endpoints.addAll(endpoints);
+        this.table = Table.build(hashFunction, new ArrayList<>(this.endpoints), tableSize);
+    }
+
+    /**
+     * @param endpoint add an endpoint of form (hostname:port).
+     */
+    @Override
+    public synchronized void addEndpoint(String endpoint) {
+
+        if (endpoints.add(endpoint)) {
+            rebuild();
+        }
+    }
+
+    /**
+     * @param endpoints List of Endpoints of form (hostname:port) to be added.
+     */
+    @Override
+    public synchronized void addEndpoints(List<String> endpoints) {
+
+        if (this.endpoints.addAll(endpoints)) {
+            rebuild();
+        }
+    }
+
+    /**
+     * @param endpoint remove an endpoint of form (hostname:port).
+     */
+    @Override
+    public void removeEndpoint(String endpoint) {
+
+        this.removeAllEndpoints(Arrays.asList(endpoint));
+    }
+
+    /**
+     * @param endpoints List of Endpoints of form (hostname:port) to be removed.
+     */
+    @Override
+    public synchronized void removeAllEndpoints(List<String> endpoints) {
+
+        if (this.endpoints.removeAll(endpoints)) {
+            rebuild();
+        }
+    }
+
+    /**
+     * @param ipAddress Client IP Address.
+     * @return Chosen Endpoint of form (hostname:port) based on lookup table.
+     */
+    @Override
+    public String get(String ipAddress) {
+
+        return table.get(hashFunction.hash64(ipAddress));
+    }
+
+    /**
+     * @param ipAddress    Client IP Address.
+     * @param isOverloaded tells whether an endpoint of form (hostname:port) has to be skipped.
+     * @return First endpoint, in order of slots starting from that of ipAddress, which is not overloaded.
+     * If all endpoints are overloaded, get(ipAddress) is returned.
+     */
+    @Override
+    public String get(String ipAddress, Predicate<String> isOverloaded) {
+
+        return table.get(hashFunction.hash64(ipAddress), isOverloaded);
+    }
+
+    /**
+     * @param clientIP     Client IP Address in numeric form.
+     * @param isOverloaded tells whether an endpoint of form (hostname:port) has to be skipped.
+     * @return same as get(ipAddress, isOverloaded), but address is hashed with HashFunction.hash64(high, low).
+     */
+    @Override
+    public String get(ClientIP clientIP, Predicate<String> isOverloaded) {
+
+        return table.get(hashFunction.hash64(clientIP.getHigh(), clientIP.getLow()), isOverloaded);
+    }
+
+    private void rebuild() {
+
+        this.table = Table.build(hashFunction, new ArrayList<>(endpoints), tableSize);
+    }
+
+    /**
+     * Immutable lookup table. entries[slot] is index of owner of slot in endpoints.
+     */
+    private static final class Table {
+
+        private final int[] entries;
+        private final String[] endpoints;
+
+        private Table(int[] entries, String[] endpoints) {
+
+            this.entries = entries;
+            this.endpoints = endpoints;
+        }
+
+        private static Table build(HashFunction hashFunction, List<String> endpoints, int tableSize) {
+
+            int count = endpoints.size();
+            if (count == 0) {
+                return new Table(new int[0], new String[0]);
+            }
+
+            //Permutation of endpoint i is : (offset[i] + j * skip[i]) mod tableSize, j = 0, 1, 2 ...
+            //As tableSize is prime and skip is in [1, tableSize), every slot appears exactly once.
+            int[] position = new int[count];
+            int[] skip = new int[count];
+            for (int i = 0; i < count; i++) {
+                long hash = hashFunction.hash64(endpoints.get(i));
+                position[i] = (int) ((hash >>> 32) % tableSize);
+                skip[i] = (int) ((hash & 0xffffffffL) % (tableSize - 1)) + 1;
+            }
+
+            int[] entries = new int[tableSize];
+            Arrays.fill(entries, -1);
+
+            int filled = 0;
+            while (true) {
+                for (int i = 0; i < count; i++) {
+
+                    int slot = position[i];
+                    while (entries[slot] >= 0) {
+                        slot = advance(slot, skip[i], tableSize);
+                    }
+                    entries[slot] = i;
+                    position[i] = advance(slot, skip[i], tableSize);
+
+                    if (++filled == tableSize) {
+                        return new Table(entries, endpoints.toArray(new String[count]));
+                    }
+                }
+            }
+        }
+
+        private static int advance(int slot, int skip, int tableSize) {
+
+            int next = slot + skip;
+            return next >= tableSize ? next - tableSize : next;
+        }
+
+        private String get(long hash) {
+
+            if (endpoints.length == 0) {
+                return null;
+            }
+            return endpoints[entries[(int) Long.remainderUnsigned(hash, entries.length)]];
+        }
+
+        private String get(long hash, Predicate<String> isOverloaded) {
+
+            if (endpoints.length == 0) {
+                return null;
+            }
+
+            int slot = (int) Long.remainderUnsigned(hash, entries.length);
+            String first = endpoints[entries[slot]];
+            if (!isOverloaded.test(first)) {
+                return first;
+            }
+
+            //Walk slots, checking each endpoint once.
+            Set<String> checked = new HashSet<>();
+            checked.add(first);
+            for (int i = 1; i < entries.length && checked.size() < endpoints.length; i++) {
+                String owner = endpoints[entries[(slot + i) % entries.length]];
+                if (checked.add(owner) && !isOverloaded.test(owner)) {
+                    return owner;
+                }
+            }
+            return first;
+        }
+    }
+}
@@ -39,4 +39,25 @@ public class BasicHash implements HashFunction {
 
         return String.valueOf(value.hashCode());
     }
+
+    /**
+     * @param value Any string for which hashcode is to be generated.
+     * @return Object.hashcode value for a given string, spread over 64 bits.
+     */
+    @Override
+    public long hash64(CharSequence value) {
+
+        return Murmur3.fmix64(value.toString().hashCode());
+    }
+
+    /**
+     * @param high first 64 bits of a 128 bit value.
+     * @param low  last 64 bits of the value.
+     * @return hashcode of both halves combined similar to Object.hashcode, spread over 64 bits.
+     */
+    @Override
+    public long hash64(long high, long low) {
+
+        return Murmur3.fmix64(31 * Long.hashCode(high) + Long.hashCode(low));
+    }
 }
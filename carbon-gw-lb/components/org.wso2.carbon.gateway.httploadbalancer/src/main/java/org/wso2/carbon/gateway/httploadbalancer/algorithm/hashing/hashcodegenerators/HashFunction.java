@@ -24,6 +24,11 @@ package org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing.hashcodegener
  * <p>
  * BasicHash and MD5 are two sample implementation of this interface.
  * You can implement your own hash function similar to it.
+ * <p>
+ * hash64 is used on request path by ConsistentHashRing, so it has to be cheap.
+ * Murmur3 is recommended for that.
+ * <p>
+ * Implementations MUST be thread safe. A single instance is shared by all request threads.
  */
 public interface HashFunction {
 
@@ -32,4 +37,19 @@ public interface HashFunction {
      * @return hashcode of the string.
      */
     String hash(String value);
+
+    /**
+     * @param value Any character sequence for which hashcode is to be generated.
+     * @return 64 bit hashcode of the character sequence. It MUST be same for equal content,
+     * irrespective of type of CharSequence.
+     */
+    long hash64(CharSequence value);
+
+    /**
+     * @param high first 64 bits of a 128 bit value, eg: an IPv6 address.
+     * @param low  last 64 bits of the value.
+     * @return 64 bit hashcode of the value. Numeric form of client IP addresses are hashed with this,
+     * so that they need not be formatted as strings.
+     */
+    long hash64(long high, long low);
 }
@@ -18,10 +18,7 @@
 
 package org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing.hashcodegenerators;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -29,49 +26,120 @@ import java.security.NoSuchAlgorithmException;
  * Implementation of MD5.
  * <p>
  * HashCode generated using this provides good for effective load distribution.
+ * <p>
+ * Each thread has its own MessageDigest, so an instance of this class can be shared
+ * and used concurrently without any locking.
  */
 public class MD5 implements HashFunction {
 
-    private static final Logger log = LoggerFactory.getLogger(MD5.class);
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
-    MessageDigest md;
+    private static final ThreadLocal<Digester> DIGESTER = ThreadLocal.withInitial(Digester::new);
 
     /**
-     * Default Constructor.
+     * @param value Any string for which hashcode is to be generated.
+     * @return MD5 hashcode for given string.
      */
-    public MD5() {
+    @Override
+    public String hash(String value) {
+
+        byte[] byteData = DIGESTER.get().digest(value);
 
-        try {
-            md = MessageDigest.getInstance("MD5");
-        } catch (NoSuchAlgorithmException e) {
-            log.error(e.toString());
+        char[] result = new char[byteData.length * 2];
+        for (int i = 0; i < byteData.length; i++) {
+            result[2 * i] = HEX_DIGITS[(byteData[i] >>> 4) & 0xf];
+            result[2 * i + 1] = HEX_DIGITS[byteData[i] & 0xf];
         }
 
+        return new String(result);
     }
 
     /**
      * @param value Any string for which hashcode is to be generated.
-     * @return MD5 hashcode for given string.
+     * @return First 8 bytes of MD5 digest of given string.
      */
     @Override
-    public String hash(String value) {
+    public long hash64(CharSequence value) {
+
+        return first8Bytes(DIGESTER.get().digest(value));
+    }
+
+    /**
+     * @param high first 64 bits of a 128 bit value.
+     * @param low  last 64 bits of the value.
+     * @return First 8 bytes of MD5 digest of 16 bytes of the value in big endian order.
+     */
+    @Override
+    public long hash64(long high, long low) {
+
+        return first8Bytes(DIGESTER.get().digest(high, low));
+    }
+
+    private static long first8Bytes(byte[] byteData) {
 
-        try {
-            md.update(value.getBytes("UTF-8"));
-        } catch (UnsupportedEncodingException e) {
-            log.error(e.toString());
+        long result = 0;
+        for (int i = 0; i < 8; i++) {
+            result = (result << 8) | (byteData[i] & 0xff);
         }
-        byte byteData[] = md.digest();
 
-        StringBuffer result = new StringBuffer();
-        for (int i = 0; i < byteData.length; i++) {
-            String hex = Integer.toHexString(0xff & byteData[i]);
-            if (hex.length() == 1) {
-                result.append('0');
+        return result;
+    }
+
+    /**
+     * MessageDigest and scratch buffer of a thread.
+     */
+    private static final class Digester {
+
+        private final MessageDigest md;
+        private byte[] buffer = new byte[64];
+
+        private Digester() {
+
+            try {
+                md = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                //Every Java platform is required to support MD5.
+                throw new IllegalStateException(e);
             }
-            result.append(hex);
         }
 
-        return result.toString();
+        /**
+         * @return MD5 digest of UTF-8 bytes of value.
+         * ASCII values are copied into scratch buffer to avoid allocating a byte[] per call.
+         */
+        private byte[] digest(CharSequence value) {
+
+            int length = value.length();
+            if (length > buffer.length) {
+                buffer = new byte[Math.max(length, buffer.length * 2)];
+            }
+
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    return md.digest(value.toString().getBytes(StandardCharsets.UTF_8));
+                }
+                buffer[i] = (byte) c;
+            }
+
+            md.update(buffer, 0, length);
+            return md.digest();
+        }
+
+        /**
+         * @return MD5 digest of 16 bytes of (high, low) in big endian order.
+         */
+        private byte[] digest(long high, long low) {
+
+            for (int i = 7; i >= 0; i--) {
+                buffer[i] = (byte) high;
+                buffer[i + 8] = (byte) low;
+                high >>>= 8;
+                low >>>= 8;
+            }
+
+            md.update(buffer, 0, 16);
+            return md.digest();
+        }
     }
 }
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing.hashcodegenerators;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Implementation of MurmurHash3 (x64, 128 bit variant, seed 0).
+ * <p>
+ * This is a non-cryptographic hash with very good distribution and it is much cheaper than MD5.
+ * Only first 64 bits of 128 bit result are used, as that is what ConsistentHashRing needs.
+ * <p>
+ * Reference: https://github.com/aappleby/smhasher/blob/master/src/MurmurHash3.cpp
+ * <p>
+ * Strings containing only ASCII characters (eg: IP addresses, hostname:port) are hashed
+ * directly from their chars without any allocation. Others are hashed over their UTF-8 bytes.
+ * Either way, result is same as hashing UTF-8 bytes of the string.
+ * <p>
+ * This class is stateless and thread safe.
+ */
+public class Murmur3 implements HashFunction {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * @param value Any string for which hashcode is to be generated.
+     * @return First 64 bits of MurmurHash3 as 16 hex characters.
+     */
+    @Override
+    public String hash(String value) {
+
+        long hash = hash64(value);
+
+        char[] result = new char[16];
+        for (int i = 15; i >= 0; i--) {
+            result[i] = HEX_DIGITS[(int) (hash & 0xf)];
+            hash >>>= 4;
+        }
+
+        return new String(result);
+    }
+
+    /**
+     * @param value Any string for which hashcode is to be generated.
+     * @return First 64 bits of MurmurHash3 of UTF-8 bytes of given character sequence.
+     */
+    @Override
+    public long hash64(CharSequence value) {
+
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) >= 0x80) {
+                byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+                return hash64(null, bytes, bytes.length);
+            }
+        }
+
+        return hash64(value, null, length);
+    }
+
+    /**
+     * @param high first 64 bits of a 128 bit value, eg: an IPv6 address.
+     * @param low  last 64 bits of the value.
+     * @return First 64 bits of MurmurHash3 of 16 bytes of the value in big endian (network) order.
+     * <p>
+     * That is exactly one block, so there is no tail to be handled.
+     */
+    @Override
+    public long hash64(long high, long low) {
+
+        long h1 = mixK1(Long.reverseBytes(high));
+        h1 = Long.rotateLeft(h1, 27);
+        h1 = h1 * 5 + 0x52dce729;
+
+        long h2 = mixK2(Long.reverseBytes(low));
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        h2 = h2 * 5 + 0x38495ab5;
+
+        h1 ^= 16;
+        h2 ^= 16;
+
+        h1 += h2;
+        h2 += h1;
+
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+
+        return h1 + h2;
+    }
+
+    /**
+     * Exactly one of ascii and bytes is non null.
+     */
+    private static long hash64(CharSequence ascii, byte[] bytes, int length) {
+
+        long h1 = 0;
+        long h2 = 0;
+
+        int blocks = length >>> 4;
+        for (int i = 0; i < blocks; i++) {
+
+            int offset = i << 4;
+            long k1 = getLong(ascii, bytes, offset);
+            long k2 = getLong(ascii, bytes, offset + 8);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        int tail = blocks << 4;
+        long k1 = 0;
+        long k2 = 0;
+
+        for (int i = length - 1; i >= tail + 8; i--) {
+            k2 = (k2 << 8) | getByte(ascii, bytes, i);
+        }
+        for (int i = Math.min(length, tail + 8) - 1; i >= tail; i--) {
+            k1 = (k1 << 8) | getByte(ascii, bytes, i);
+        }
+
+        if (length - tail > 8) {
+            h2 ^= mixK2(k2);
+        }
+        if (length - tail > 0) {
+            h1 ^= mixK1(k1);
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+
+        h1 += h2;
+        h2 += h1;
+
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+
+        return h1 + h2;
+    }
+
+    private static long getByte(CharSequence ascii, byte[] bytes, int index) {
+
+        return ascii != null ? ascii.charAt(index) : bytes[index] & 0xffL;
+    }
+
+    //Little endian.
+    private static long getLong(CharSequence ascii, byte[] bytes, int offset) {
+
+        long result = 0;
+        for (int i = 7; i >= 0; i--) {
+            result = (result << 8) | getByte(ascii, bytes, offset + i);
+        }
+        return result;
+    }
+
+    private static long mixK1(long k1) {
+
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    /**
+     * Finalization mix of MurmurHash3. Every bit of input affects every bit of output.
+     *
+     * @param k value to be mixed.
+     * @return mixed value.
+     */
+    static long fmix64(long k) {
+
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.algorithm.simple;
+
+import java.util.Arrays;
+
+/**
+ * Copy-on-write membership changes of endpoint arrays published by simple algorithms.
+ * <p>
+ * Given array is never modified. A new array is returned only if membership changes, so callers can
+ * tell a duplicate add or remove by identity and publish the result while holding their lock.
+ */
+final class EndpointArrays {
+
+    private EndpointArrays() {
+
+    }
+
+    /**
+     * @return a copy of endpoints with endpoint appended, or endpoints itself if it is already there.
+     */
+    static <T> T[] with(T[] endpoints, T endpoint) {
+
+        if (indexOf(endpoints, endpoint) >= 0) {
+            return endpoints;
+        }
+
+        T[] updated = Arrays.copyOf(endpoints, endpoints.length + 1);
+        updated[endpoints.length] = endpoint;
+        return updated;
+    }
+
+    /**
+     * @return a copy of endpoints without endpoint, or endpoints itself if it is not there.
+     */
+    static <T> T[] without(T[] endpoints, T endpoint) {
+
+        int position = indexOf(endpoints, endpoint);
+        if (position < 0) {
+            return endpoints;
+        }
+
+        T[] updated = Arrays.copyOf(endpoints, endpoints.length - 1);
+        System.arraycopy(endpoints, position + 1, updated, position, endpoints.length - position - 1);
+        return updated;
+    }
+
+    private static <T> int indexOf(T[] endpoints, T endpoint) {
+
+        for (int i = 0; i < endpoints.length; i++) {
+            if (endpoints[i].equals(endpoint)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.algorithm.simple;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
+import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
+import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
+import org.wso2.carbon.messaging.CarbonMessage;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/**
+ * Implementation of Least Connections Algorithm using power of two choices.
+ * <p>
+ * Two distinct healthy endpoints are sampled at random and the one with fewer in-flight requests
+ * is chosen. Unlike scanning all endpoints for the minimum, this doesn't make all request threads
+ * herd onto the same endpoint between updates of in-flight counts, and it is O(1).
+ * <p>
+ * In-flight requests are counted by LBOutboundEndpoint itself, so it reflects live load of a backend
+ * as soon as request is sent and as soon as response or timeout occurs.
+ * <p>
+ * Healthy endpoints are held in an immutable array that is replaced (copy-on-write) whenever
+ * an endpoint is added or removed, so request threads never acquire a lock.
+ */
+public class LeastConnections implements SimpleAlgorithm {
+
+    private static final Logger log = LoggerFactory.getLogger(LeastConnections.class);
+
+    // Serializes writers (add / remove / set) only. Request path never acquires it.
+    private final Object lock = new Object();
+
+    // Snapshot of healthy endpoints. Never mutated once published.
+    private volatile LBOutboundEndpoint[] lbOutboundEndpoints = new LBOutboundEndpoint[0];
+
+
+    /**
+     * @param lbOutboundEndpoints list of LBOutboundEndpoints to be load balanced.
+     */
+    public LeastConnections(List<LBOutboundEndpoint> lbOutboundEndpoints) {
+
+        this.setLBOutboundEndpoints(lbOutboundEndpoints);
+    }
+
+
+    /**
+     * @return Algorithm name.
+     */
+    @Override
+    public String getName() {
+
+        return LoadBalancerConstants.LEAST_CONNECTIONS;
+    }
+
+    /**
+     * @param lbOutboundEndpoints list of LBOutboundEndpoints to be load balanced.
+     *                            <p>
+     *                            A private copy is taken, so later changes to the given list
+     *                            are not visible to this algorithm.
+     */
+    @Override
+    public void setLBOutboundEndpoints(List<LBOutboundEndpoint> lbOutboundEndpoints) {
+
+        synchronized (this.lock) {
+            this.lbOutboundEndpoints = lbOutboundEndpoints.toArray(
+                    new LBOutboundEndpoint[lbOutboundEndpoints.size()]);
+        }
+
+    }
+
+
+    /**
+     * @param lbOutboundEndpoint LBOutboundEndpoint to be added to the existing list.
+     *                           <p>
+     *                           This method will be used to add an endpoint once it
+     *                           is back to healthy state.
+     */
+    @Override
+    public void addLBOutboundEndpoint(LBOutboundEndpoint lbOutboundEndpoint) {
+
+        synchronized (this.lock) {
+            LBOutboundEndpoint[] current = this.lbOutboundEndpoints;
+            LBOutboundEndpoint[] updated = EndpointArrays.with(current, lbOutboundEndpoint);
+
+            if (updated != current) {
+                this.lbOutboundEndpoints = updated;
+
+            } else {
+                log.info("{} already exists in list..", lbOutboundEndpoint.getName());
+            }
+        }
+
+    }
+
+    /**
+     * @param lbOutboundEndpoint LBOutboundEndpoint to be removed from existing list.
+     *                           <p>
+     *                           This method will be used to remove an unHealthyEndpoint.
+     */
+    @Override
+    public void removeLBOutboundEndpoint(LBOutboundEndpoint lbOutboundEndpoint) {
+
+        synchronized (this.lock) {
+            LBOutboundEndpoint[] current = this.lbOutboundEndpoints;
+            LBOutboundEndpoint[] updated = EndpointArrays.without(current, lbOutboundEndpoint);
+
+            if (updated != current) {
+                this.lbOutboundEndpoints = updated;
+
+            } else {
+                log.info("{} has already been removed from list..", lbOutboundEndpoint.getName());
+            }
+        }
+    }
+
+    /**
+     * @param cMsg    Carbon Message has all headers required to make decision.
+     * @param context LoadBalancerConfigContext.
+     * @return chosen OutboundEndpoint
+     * <p>
+     * Lock free. The snapshot is read once, so a concurrent add or remove can never make
+     * us index outside of the array we are working on.
+     */
+    @Override
+    public LBOutboundEndpoint getNextLBOutboundEndpoint(CarbonMessage cMsg, LoadBalancerConfigContext context) {
+
+        LBOutboundEndpoint[] endpoints = this.lbOutboundEndpoints;
+
+        if (endpoints.length == 0) {
+            log.debug("No OutboundEndpoint is available..");
+            return null;
+        }
+
+        if (endpoints.length == 1) {
+            return endpoints[0];
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        // Choosing second one from remaining (length - 1) endpoints, so that both are distinct.
+        int first = random.nextInt(endpoints.length);
+        int second = random.nextInt(endpoints.length - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        return endpoints[second].getInFlightRequests() < endpoints[first].getInFlightRequests() ?
+                endpoints[second] : endpoints[first];
+    }
+
+    /**
+     * Nothing to reset. In-flight counts are maintained by endpoints themselves.
+     */
+    @Override
+    public void reset() {
+
+    }
+
+    @Override
+    public Object getLock() {
+
+        return this.lock;
+    }
+}
@@ -16,7 +16,6 @@
  * under the License.
  */
 
-
 package org.wso2.carbon.gateway.httploadbalancer.algorithm.simple;
 
 import org.slf4j.Logger;
@@ -24,79 +23,60 @@ import org.slf4j.LoggerFactory;
 import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
 import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
 import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
-import org.wso2.carbon.messaging.CarbonCallback;
 import org.wso2.carbon.messaging.CarbonMessage;
 
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /*
      * =====================================IMPLEMENTATION LOGIC==================================================== *
      *                                                                                                               *
-     * FACT : If there is more load on a server, response time will be more & also a newly started server will       *
-     *        have high response time initially because of its warm-up time. So till initial WINDOW no of requests,  *
-     *        it'll be ROUND-ROBIN.                                                                                  *
+     * FACT : If there is more load on a server, response time will be more. Recent response times say more about   *
+     *        current load of a server than old ones, so old samples have to fade away.                              *
      *                                                                                                               *
      * EXPLANATION: See the below example to understand how this algorithm works. Below are the factors that         *
      *              influence our decision.                                                                          *
      *                                                                                                               *
-     *              1) Average Response Time - This is calculated as "Running-Average" (i.e) at any point            *
-     *                                         average-response time attribute of an LBOutbound endpoint gives       *
-     *                                         the average of response time of all the requests served               *
-     *                                         by that endpoint.                                                     *
-     *                                                                                                               *
-     *              2) WINDOW - This attribute defined below determines the number of requests after which           *
-     *                          we should perform computation to find out load distribution.                         *
-     *                                                                                                               *
-     *              3) Max Request Per Window - This determines the maximum number of requests that can              *
-     *                                          be sent to this endpoint in current WINDOW period.                   *
+     *              1) Response Time - This is an Exponentially Weighted Moving Average (EWMA) per endpoint,         *
+     *                                 decayed by time elapsed between samples rather than by number of samples.     *
+     *                                 A sample that is DECAY milli seconds old carries 1/e of its original weight.  *
      *                                                                                                               *
+     *                                 On every response,   alpha = 1 - e^(-elapsed / DECAY)                         *
+     *                                                      ewma  = ewma + alpha * (responseTime - ewma)             *
      *                                                                                                               *
-     *    NOTE: You should also note that, when this algorithm mode is selected, averageResponseTime and             *
-     *          windowTracker will be computed for each and every requests whatever may be the persistence           *
-     *          policy.                                                                                              *
+     *                                 Timed out requests are recorded with request timeout as their response time.  *
      *                                                                                                               *
-     *    EXAMPLE: Assume that we are having 4 endpoints A,B,C,D with their averageResponseTime (running average)    *
-     *             2,2,8,8 (milli seconds) respectively.  This running average value is after processing             *
-     *             WINDOW number of requests.                                                                        *
+     *              2) WINDOW - Number of requests after which selection weights are recomputed from EWMAs.          *
      *                                                                                                               *
-     *             The below calculations will be performed once if (windowTracker > WINDOW).  windowTracker will be *
-     *             reset to 0 each and every time it satisfies this condition.                                       *
+     *    EXAMPLE: Assume that we are having 4 endpoints A,B,C,D with their response time (EWMA)                     *
+     *             2,2,8,8 (milli seconds) respectively.                                                             *
      *                                                                                                               *
      *    CALCULATION:                                                                                               *
-     *                 Now, (2+2+8+8)/4 = 5                                                                          *
-     *                 So, the ideal average response time has to be 5, if we want to distribute load evenly.        *
+     *                 Weight of an endpoint is inverse of its response time.                                        *
+     *                 So, weights are 1/2, 1/2, 1/8, 1/8 and their sum is 1.25.                                     *
      *                                                                                                               *
-     *                 Now, 2/5 = 0.4                                                                                *
-     *                      0.4*100 = 40% i.e., 100-40 = 60% which is ideal percentage of load to be handled         *
-     *                                                   by this endpoint. ( For A & B )                             *
-     *                                                                                                               *
-     *                 Again, 8/5 = 1.6                                                                              *
-     *                        1.6*100 = 160% i.e., 100-160 = -60% which is ideal percentage of load to be handled    *
-     *                                                       by this endpoint. ( For C & D )                         *
+     *                 So, A & B will get (0.5 / 1.25) = 40% of requests each.                                       *
+     *                 And C & D will get (0.125 / 1.25) = 10% of requests each.                                     *
      *                                                                                                               *
      *                 This is because, load is proportional to response time.                                       *
      *                 (i.e) more load will result in more response time.                                            *
      *                                                                                                               *
-     *                 NOTE: Incaseof negative % we mark maxRequestsPerWindow = 1.                                   *
-     *                       Also, endpoints chosen based on persistence policy will not care about this window max. *
-     *                       Endpoints will be chosen based on persistence.                                          *
-     *                                                                                                               *
-     *                       Otherwise,   maxRequestsPerWindow = (percentage * WINDOW)/100                           *
-     *                       Kindly note that this is maxReq.                                                        *
-     *                                                                                                               *
-     *                       So when any new requests without any persistence policy arrives,                        *
-     *                       this algorithm will choose endpoint that has not exceeded this                         *
-     *                       maxReqPerWindow in ROUND-ROBIN manner.  Thus load distribution                          *
-     *                       is done.                                                                                *
-     *                                                                                                               *
-     *   By doing this we will be balancing load and thus bring down its response time gradually.                    *
+     *                 An endpoint is chosen by picking a random point within sum of weights and                     *
+     *                 looking it up in cumulative weights using binary search.                                      *
      *                                                                                                               *
+     *                 NOTE: Endpoints whose response time is not known yet (newly started or back to healthy)       *
+     *                       get mean weight of other endpoints. If nothing is known, it is plain random.            *
+     *                       Also, endpoints chosen based on persistence policy will not care about these weights.   *
+     *                       Endpoints will be chosen based on persistence.                                          *
      *                                                                                                               *
+     *   Slow endpoints still get their share of requests, so they keep getting sampled and recovery of an endpoint  *
+     *   is noticed within a few DECAY periods.                                                                      *
      *                                                                                                               *
      *===============================================================================================================*
  */
@@ -105,28 +85,55 @@ import java.util.concurrent.atomic.AtomicInteger;
  * Implementation of LeastResponseTime.
  * <p>
  * All Endpoints are assumed to have equal weights.
+ * <p>
+ * Recording a response time is a CAS on that endpoint's EWMA, and choosing an endpoint only reads an
+ * immutable snapshot of weights. So neither of them acquires a lock.
  */
 public class LeastResponseTime implements SimpleAlgorithm {
 
     private static final Logger log = LoggerFactory.getLogger(LeastResponseTime.class);
+
+    // Response times are floored to this, so that an endpoint responding in 0 ms doesn't get infinite weight.
+    private static final double MIN_RESPONSE_TIME = 1.0;
+
+    // Serializes writers (add / remove / set) only. Request path never acquires it.
     private final Object lock = new Object();
 
-    private List<LBOutboundEPLeastRT> lbOutboundEPLeastRTs = new ArrayList<>();
+    // All endpoints, including unHealthy ones. Health check handlers record response times for them too.
+    private final Map<String, LBOutboundEPLeastRT> map = new ConcurrentHashMap<>();
+
+    // Healthy endpoints along with their cumulative weights. Never mutated once published.
+    private final AtomicReference<Snapshot> snapshot =
+            new AtomicReference<>(new Snapshot(new LBOutboundEPLeastRT[0], new double[0]));
 
-    private Map<String, LBOutboundEPLeastRT> map;
+    private final int window;
+    private final double decayNanos;
 
-    private static final int WINDOW = 10;
-    private AtomicInteger windowTracker = new AtomicInteger(0);
-    private AtomicInteger index = new AtomicInteger(0);
+    private final AtomicInteger windowTracker = new AtomicInteger(0);
 
 
     /**
      * Constructor.
      *
-     * @param lbOutboundEndpoints
+     * @param lbOutboundEndpoints list of LBOutboundEndpoints to be load balanced.
      */
     public LeastResponseTime(List<LBOutboundEndpoint> lbOutboundEndpoints) {
 
+        this(lbOutboundEndpoints, LoadBalancerConstants.DEFAULT_RESPONSE_TIME_WINDOW,
+                LoadBalancerConstants.DEFAULT_RESPONSE_TIME_DECAY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param lbOutboundEndpoints list of LBOutboundEndpoints to be load balanced.
+     * @param window              no of requests after which weights are recomputed.
+     * @param decay               time in milli seconds after which weight of a response time falls to 1/e.
+     */
+    public LeastResponseTime(List<LBOutboundEndpoint> lbOutboundEndpoints, int window, int decay) {
+
+        this.window = Math.max(1, window);
+        this.decayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, decay));
         this.setLBOutboundEndpoints(lbOutboundEndpoints);
     }
 
@@ -146,9 +153,21 @@ public class LeastResponseTime implements SimpleAlgorithm {
     @Override
     public void setLBOutboundEndpoints(List<LBOutboundEndpoint> lbOutboundEPs) {
 
-        map = new ConcurrentHashMap<>();
-        for (LBOutboundEndpoint endpoint : lbOutboundEPs) {
-            this.lbOutboundEPLeastRTs.add(new LBOutboundEPLeastRT(endpoint));
+        synchronized (this.lock) {
+
+            LBOutboundEPLeastRT[] endpoints = new LBOutboundEPLeastRT[lbOutboundEPs.size()];
+
+            for (int i = 0; i < endpoints.length; i++) {
+
+                LBOutboundEndpoint endpoint = lbOutboundEPs.get(i);
+                endpoints[i] = map.get(endpoint.getName());
+                if (endpoints[i] == null) {
+                    endpoints[i] = new LBOutboundEPLeastRT(endpoint);
+                    map.put(endpoint.getName(), endpoints[i]);
+                }
+            }
+
+            this.snapshot.set(computeSnapshot(endpoints));
         }
     }
 
@@ -165,19 +184,27 @@ public class LeastResponseTime implements SimpleAlgorithm {
     public void addLBOutboundEndpoint(LBOutboundEndpoint lbOutboundEndpoint) {
 
         synchronized (this.lock) {
-            if (map.containsKey(lbOutboundEndpoint.getName())) {
 
-                if (this.lbOutboundEPLeastRTs.contains(map.get(lbOutboundEndpoint.getName()))) {
-                    log.info(lbOutboundEndpoint.getName() + " already exists in list..");
-                } else {
-                    map.get(lbOutboundEndpoint.getName()).resetResponseTimeProperties(); //This is MUST.
-                    this.lbOutboundEPLeastRTs.add(map.get(lbOutboundEndpoint.getName()));
-                }
+            LBOutboundEPLeastRT endpoint = map.get(lbOutboundEndpoint.getName());
 
-            } else {
+            if (endpoint == null) {
                 log.error("Cannot add a new endpoint like this. Use setLBOutboundEndpoints method" +
                         " or Constructor..");
+                return;
+            }
+
+            LBOutboundEPLeastRT[] current = this.snapshot.get().endpoints;
+            LBOutboundEPLeastRT[] updated = EndpointArrays.with(current, endpoint);
+
+            if (updated != current) {
+
+                //Response time before it went down says nothing about it now. This is MUST.
+                endpoint.resetResponseTimeProperties();
+
+                this.snapshot.set(computeSnapshot(updated));
 
+            } else {
+                log.info("{} already exists in list..", lbOutboundEndpoint.getName());
             }
         }
     }
@@ -196,104 +223,65 @@ public class LeastResponseTime implements SimpleAlgorithm {
     public void removeLBOutboundEndpoint(LBOutboundEndpoint lbOutboundEndpoint) {
 
         synchronized (this.lock) {
-            if (map.containsKey(lbOutboundEndpoint.getName())) {
-
-                if (this.lbOutboundEPLeastRTs.contains(map.get(lbOutboundEndpoint.getName()))) {
 
-                    this.lbOutboundEPLeastRTs.remove(map.get(lbOutboundEndpoint.getName()));
-                } else {
-                    log.info(lbOutboundEndpoint.getName() + " has already been removed from list..");
-                }
+            LBOutboundEPLeastRT endpoint = map.get(lbOutboundEndpoint.getName());
 
-            } else {
-                log.error(lbOutboundEndpoint.getName() + " is not in map..");
+            if (endpoint == null) {
+                log.error("{} is not in map..", lbOutboundEndpoint.getName());
+                return;
             }
 
+            LBOutboundEPLeastRT[] current = this.snapshot.get().endpoints;
+            LBOutboundEPLeastRT[] updated = EndpointArrays.without(current, endpoint);
 
-        }
-    }
-
-
-    private void computeRatio() {
-
-        int meanResponseTime = 0;
-
-        for (LBOutboundEPLeastRT endPoint : this.lbOutboundEPLeastRTs) {
-
-            meanResponseTime += endPoint.getAvgResponseTime();
-
-        }
-        if (meanResponseTime % 2 == 0) {
-            meanResponseTime = (meanResponseTime / this.lbOutboundEPLeastRTs.size());
-
-        } else {
-            meanResponseTime = ((meanResponseTime / this.lbOutboundEPLeastRTs.size()) + 1);
-
-        }
-
-        for (LBOutboundEPLeastRT endPoint : this.lbOutboundEPLeastRTs) {
-
+            if (updated != current) {
+                this.snapshot.set(computeSnapshot(updated));
 
-            endPoint.setPercentage((100 - ((endPoint.getAvgResponseTime() / meanResponseTime) * 100)));
-
-            if (endPoint.getPercentage() > 0) {
-                endPoint.setMaxRequestsPerWindow(((endPoint.getPercentage() * WINDOW) / 100));
             } else {
-                endPoint.setMaxRequestsPerWindow(1);
-            }
-
-            endPoint.setCurrentRequests(0); //Resetting is MUST.
-
-            if (log.isDebugEnabled()) {
-                log.debug(endPoint.getName() + " RT : " + endPoint.getAvgResponseTime() +
-                        " Curr : " + endPoint.getCurrentRequests() + " Max : "
-                        + endPoint.getMaxRequestsPerWindow());
+                log.info("{} has already been removed from list..", lbOutboundEndpoint.getName());
             }
-
-        }
-
-    }
-
-    private void incrementIndex() {
-        this.index.incrementAndGet();
-        if (this.index.get() >= this.lbOutboundEPLeastRTs.size()) {
-            this.index.set(0);
         }
     }
 
-    public void incrementWindowTracker() {
-
-        this.windowTracker.incrementAndGet();
-    }
+    /**
+     * @param endpoints healthy endpoints.
+     * @return snapshot with cumulative weights computed from current response times.
+     */
+    private Snapshot computeSnapshot(LBOutboundEPLeastRT[] endpoints) {
 
-    private LBOutboundEPLeastRT getNextEndpoint() {
+        double[] weights = new double[endpoints.length];
+        double knownWeight = 0;
+        int known = 0;
 
-        LBOutboundEPLeastRT endPoint = null;
+        for (int i = 0; i < endpoints.length; i++) {
 
-        int counter = 0;
+            double responseTime = endpoints[i].getResponseTime();
+            if (responseTime >= 0) {
+                weights[i] = 1.0 / Math.max(responseTime, MIN_RESPONSE_TIME);
+                knownWeight += weights[i];
+                known++;
+            } else {
+                weights[i] = Double.NaN;
+            }
+        }
 
-        while (true) {
+        // Endpoints without any response time are treated as average ones.
+        double defaultWeight = known == 0 ? 1.0 : knownWeight / known;
+        double[] cumulativeWeights = new double[endpoints.length];
+        double sum = 0;
 
-            if (this.lbOutboundEPLeastRTs.get(this.index.get()).getCurrentRequests() <
-                    this.lbOutboundEPLeastRTs.get(this.index.get()).getMaxRequestsPerWindow()) {
+        for (int i = 0; i < endpoints.length; i++) {
 
-                endPoint = this.lbOutboundEPLeastRTs.get(this.index.get());
-                break;
-            } else {
-                incrementIndex();
-            }
+            sum += Double.isNaN(weights[i]) ? defaultWeight : weights[i];
+            cumulativeWeights[i] = sum;
 
-            if (counter > lbOutboundEPLeastRTs.size()) {
-                // This case will be useful if all endpoints have equal response time in a WINDOW.
-                endPoint = this.lbOutboundEPLeastRTs.get(this.index.get());
-                break;
+            if (log.isDebugEnabled()) {
+                log.debug("{} RT : {} Cumulative weight : {}", endpoints[i].getName(),
+                        endpoints[i].getResponseTime(), sum);
             }
-            counter++;
         }
 
-        incrementIndex();
-
-        return endPoint;
+        return new Snapshot(endpoints, cumulativeWeights);
     }
 
 
@@ -301,77 +289,69 @@ public class LeastResponseTime implements SimpleAlgorithm {
      * @param cMsg    Carbon Message has all headers required to make decision.
      * @param context LoadBalancerConfigContext.
      * @return the next LBOutboundEndpoint according to implemented LB algorithm.
+     * <p>
+     * Lock free. Once in every WINDOW requests, weights are recomputed by the request thread that
+     * completes the window. If endpoints are added or removed meanwhile, that result is discarded.
      */
     @Override
     public LBOutboundEndpoint getNextLBOutboundEndpoint(CarbonMessage cMsg, LoadBalancerConfigContext context) {
 
-        LBOutboundEndpoint endPoint = null;
-
-        synchronized (this.lock) {
-            if (this.lbOutboundEPLeastRTs != null && this.lbOutboundEPLeastRTs.size() > 0) {
-
-
-                if (this.lbOutboundEPLeastRTs.size() > 1 && this.windowTracker.get() >= WINDOW) {
-
-                    computeRatio();
-                    this.windowTracker.set(0);
-                }
-
-                // It is okay to do roundRobin for first few requests till it reaches WINDOW size.
-                // After that it'll be proper LeastResponseTime based load distribution.
+        Snapshot current = this.snapshot.get();
 
-                LBOutboundEPLeastRT outboundEPLeastRT = this.getNextEndpoint();
-
-                endPoint = outboundEPLeastRT.getLbOutboundEndpoint();
-
-                if (log.isDebugEnabled()) {
-                    log.debug(outboundEPLeastRT.getName() + " RT : " + outboundEPLeastRT.getAvgResponseTime() +
-                            " Curr : " + outboundEPLeastRT.getCurrentRequests() + " Max : "
-                            + outboundEPLeastRT.getMaxRequestsPerWindow());
-                }
+        if (current.endpoints.length == 0) {
+            log.debug("No OutboundEndpoint is available..");
+            return null;
+        }
 
-            } else {
+        if (current.endpoints.length == 1) {
+            return current.endpoints[0].getLbOutboundEndpoint();
+        }
 
-                log.error("No OutboundEndpoint is available..");
+        int requests = this.windowTracker.incrementAndGet();
+        if (requests >= this.window && this.windowTracker.compareAndSet(requests, 0)) {
 
+            Snapshot updated = computeSnapshot(current.endpoints);
+            if (this.snapshot.compareAndSet(current, updated)) {
+                current = updated;
             }
         }
 
-        return endPoint;
+        return current.endpoints[current.indexOf(ThreadLocalRandom.current().nextDouble(current.totalWeight()))]
+                .getLbOutboundEndpoint();
     }
 
     /**
-     * Each implementation of LB algorithm will have certain values pertained to it.
-     * (Eg: Round robin keeps track of index of OutboundEndpoint).
-     * Implementation of this method will resetHealthPropertiesToDefault them.
+     * Nothing to reset. Weights are always computed for the current list of endpoints.
      */
     @Override
     public void reset() {
 
-        synchronized (this.lock) {
-
-            if (this.lbOutboundEPLeastRTs.size() > 0 && this.index.get() >= this.lbOutboundEPLeastRTs.size()) {
-                this.index.set((this.index.get() % this.lbOutboundEPLeastRTs.size()));
-            } else if (this.lbOutboundEPLeastRTs.size() == 0) {
-                this.index.set(0);
-            }
-        }
-
     }
 
-    public void setAvgResponseTime(LBOutboundEndpoint lbOutboundEndpoint, int newTime) {
+    /**
+     * @param lbOutboundEndpoint endpoint to which response time belongs.
+     * @param responseTime       response time in milli seconds.
+     *                           <p>
+     *                           Lock free. This can be called concurrently for same endpoint.
+     */
+    public void recordResponseTime(LBOutboundEndpoint lbOutboundEndpoint, long responseTime) {
 
-        map.get(lbOutboundEndpoint.getName()).computeAndSetAvgResponseTime(newTime);
+        LBOutboundEPLeastRT endpoint = map.get(lbOutboundEndpoint.getName());
 
+        if (endpoint != null) {
+            endpoint.record(responseTime, System.nanoTime());
+        }
     }
 
-    public boolean receive(CarbonMessage carbonMessage, CarbonCallback carbonCallback,
-                           LoadBalancerConfigContext context,
-                           LBOutboundEndpoint lbOutboundEndpoint) throws Exception {
+    /**
+     * @param lbOutboundEndpoint LBOutboundEndpoint.
+     * @return current response time (EWMA) in milli seconds or -1 if it is not known yet.
+     */
+    public double getResponseTime(LBOutboundEndpoint lbOutboundEndpoint) {
 
+        LBOutboundEPLeastRT endpoint = map.get(lbOutboundEndpoint.getName());
 
-        map.get(lbOutboundEndpoint.getName()).receive(carbonMessage, carbonCallback, context);
-        return false;
+        return endpoint == null ? -1 : endpoint.getResponseTime();
     }
 
     /**
@@ -385,122 +365,121 @@ public class LeastResponseTime implements SimpleAlgorithm {
 
 
     /**
-     * We need few additional attributes for LeastResponseTime algorithm.
-     * <p>
-     * So, we are creating an inner class specially for this.
+     * Healthy endpoints and their cumulative weights.
      */
+    private static final class Snapshot {
 
-    private class LBOutboundEPLeastRT {
+        private final LBOutboundEPLeastRT[] endpoints;
+        private final double[] cumulativeWeights;
 
-        private LBOutboundEndpoint lbOutboundEndpoint;
+        Snapshot(LBOutboundEPLeastRT[] endpoints, double[] cumulativeWeights) {
 
-        /**
-         * These attributes are for LeastResponseTime Algorithm.
-         */
-        private AtomicInteger avgResponseTime = new AtomicInteger(0); // This stores running average.
-        private AtomicInteger percentage = new AtomicInteger(100);
-        private AtomicInteger maxRequestsPerWindow = new AtomicInteger(WINDOW);
-        private AtomicInteger currentRequests = new AtomicInteger(0); //This stores current no of requests in window.
-
-        LBOutboundEPLeastRT(LBOutboundEndpoint lbOutboundEndpoint) {
-            this.lbOutboundEndpoint = lbOutboundEndpoint;
-            map.put(this.lbOutboundEndpoint.getName(), this);
+            this.endpoints = endpoints;
+            this.cumulativeWeights = cumulativeWeights;
         }
 
-        public String getName() {
+        double totalWeight() {
 
-            return this.lbOutboundEndpoint.getName();
+            return cumulativeWeights[cumulativeWeights.length - 1];
         }
 
-        public LBOutboundEndpoint getLbOutboundEndpoint() {
-            return this.lbOutboundEndpoint;
-        }
+        /**
+         * @param point a value in [0, totalWeight).
+         * @return index of first endpoint whose cumulative weight is greater than point.
+         */
+        int indexOf(double point) {
 
-        void setPercentage(int percentage) {
-            this.percentage.set(percentage);
-        }
+            int low = 0;
+            int high = cumulativeWeights.length - 1;
 
-        int getPercentage() {
-            return this.percentage.get();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cumulativeWeights[mid] > point) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
         }
+    }
 
-        int getCurrentRequests() {
-            return this.currentRequests.get();
-        }
+    /**
+     * Response time of an endpoint along with the time at which it was last updated.
+     */
+    private static final class Ewma {
 
-        void setCurrentRequests(int currentRequests) {
-            this.currentRequests.set(currentRequests);
-        }
+        private final double value;
+        private final long updatedTime;
 
-        int getMaxRequestsPerWindow() {
-            return maxRequestsPerWindow.get();
-        }
+        Ewma(double value, long updatedTime) {
 
-        void setMaxRequestsPerWindow(int maxRequestsPerWindow) {
-            this.maxRequestsPerWindow.set(maxRequestsPerWindow);
+            this.value = value;
+            this.updatedTime = updatedTime;
         }
+    }
 
-        private void incrementCurrentRequests() {
-            this.currentRequests.incrementAndGet();
-        }
 
-        /**
-         * @param newTime Most resent response time of the endpoint.
-         *                Calculates Running average of response time of that endpoint.
-         */
-        void computeAndSetAvgResponseTime(int newTime) {
+    /**
+     * We need few additional attributes for LeastResponseTime algorithm.
+     * <p>
+     * So, we are creating an inner class specially for this.
+     */
+    private class LBOutboundEPLeastRT {
 
-            if (this.avgResponseTime.get() != 0) { //For first time we should not divide by 2.
+        private final LBOutboundEndpoint lbOutboundEndpoint;
 
-                if ((this.avgResponseTime.get() + newTime) % 2 == 0) {
-                    this.avgResponseTime.set((this.avgResponseTime.get() + newTime) / 2); // Dividing by 2.
+        // Null till first response time is recorded.
+        private final AtomicReference<Ewma> ewma = new AtomicReference<>();
 
-                } else {
-                    this.avgResponseTime.set(((this.avgResponseTime.get() + newTime) / 2) + 1);
+        LBOutboundEPLeastRT(LBOutboundEndpoint lbOutboundEndpoint) {
 
-                }
+            this.lbOutboundEndpoint = lbOutboundEndpoint;
+        }
 
-            } else {
+        public String getName() {
 
-                this.avgResponseTime.set(newTime);
-            }
+            return this.lbOutboundEndpoint.getName();
         }
 
-        int getAvgResponseTime() {
-
-            return this.avgResponseTime.get();
+        public LBOutboundEndpoint getLbOutboundEndpoint() {
 
+            return this.lbOutboundEndpoint;
         }
 
-
         /**
-         * @param carbonMessage
-         * @param carbonCallback
-         * @param context
-         * @return
-         * @throws Exception NOTE: When this algorithm mode is chosen, all requests are sent through this method only.
-         *                   So currentRequests will be incremented in both the cases.
-         *                   (i.e.) In Endpoint chosen by persistence and in endpoint chosen by algorithm.
+         * @param responseTime Most recent response time of the endpoint.
+         * @param now          time in nano seconds at which it is recorded.
          */
-        boolean receive(CarbonMessage carbonMessage, CarbonCallback carbonCallback,
-                        LoadBalancerConfigContext context) throws Exception {
+        void record(long responseTime, long now) {
 
+            Ewma previous;
+            Ewma updated;
 
-            this.incrementCurrentRequests(); // Increments currentRequests for this LBOutboundEPLeastRT
-            incrementWindowTracker(); // To keep track of no requests elapsed for this current window
+            do {
+                previous = this.ewma.get();
 
-            this.lbOutboundEndpoint.receive(carbonMessage, carbonCallback, context);
-            return false;
+                if (previous == null) {
+                    updated = new Ewma(responseTime, now);
+                } else {
+                    // Samples recorded out of order are given zero elapsed time.
+                    long elapsed = Math.max(0, now - previous.updatedTime);
+                    double alpha = 1.0 - Math.exp(-elapsed / decayNanos);
+                    updated = new Ewma(previous.value + alpha * (responseTime - previous.value),
+                            Math.max(now, previous.updatedTime));
+                }
+            } while (!this.ewma.compareAndSet(previous, updated));
         }
 
-        void resetResponseTimeProperties() {
-
-            avgResponseTime.set(0);
-            percentage.set(100);
-            maxRequestsPerWindow.set(WINDOW);
-            currentRequests.set(0);
+        double getResponseTime() {
 
+            Ewma current = this.ewma.get();
+            return current == null ? -1 : current.value;
         }
 
+        void resetResponseTimeProperties() {
+
+            this.ewma.set(null);
+        }
     }
 }
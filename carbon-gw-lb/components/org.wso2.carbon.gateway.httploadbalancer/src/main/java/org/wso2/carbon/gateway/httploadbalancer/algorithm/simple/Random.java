@@ -26,18 +26,26 @@ import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
 import org.wso2.carbon.messaging.CarbonMessage;
 
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Implementation of Random Algorithm.
  * <p>
  * All Endpoints are assumed to have equal weights.
+ * <p>
+ * Healthy endpoints are held in an immutable array that is replaced (copy-on-write) whenever
+ * an endpoint is added or removed. Choosing an endpoint reads that array and draws from
+ * ThreadLocalRandom, so request threads share neither a lock nor a random seed.
  */
 public class Random implements SimpleAlgorithm {
 
-    private static final Logger log = LoggerFactory.getLogger(RoundRobin.class);
+    private static final Logger log = LoggerFactory.getLogger(Random.class);
+
+    // Serializes writers (add / remove / set) only. Request path never acquires it.
     private final Object lock = new Object();
 
-    private List<LBOutboundEndpoint> lbOutboundEndpoints;
+    // Snapshot of healthy endpoints. Never mutated once published.
+    private volatile LBOutboundEndpoint[] lbOutboundEndpoints = new LBOutboundEndpoint[0];
 
     public Random(List<LBOutboundEndpoint> lbOutboundEndpoints) {
 
@@ -55,12 +63,15 @@ public class Random implements SimpleAlgorithm {
 
     /**
      * @param lbOutboundEPs list of all Outbound Endpoints to be load balanced.
+     *                      <p>
+     *                      A private copy is taken, so later changes to the given list
+     *                      are not visible to this algorithm.
      */
     @Override
     public void setLBOutboundEndpoints(List<LBOutboundEndpoint> lbOutboundEPs) {
 
         synchronized (this.lock) {
-            this.lbOutboundEndpoints = lbOutboundEPs;
+            this.lbOutboundEndpoints = lbOutboundEPs.toArray(new LBOutboundEndpoint[lbOutboundEPs.size()]);
         }
     }
 
@@ -74,10 +85,14 @@ public class Random implements SimpleAlgorithm {
     public void addLBOutboundEndpoint(LBOutboundEndpoint lbOutboundEndpoint) {
 
         synchronized (this.lock) {
-            if (!this.lbOutboundEndpoints.contains(lbOutboundEndpoint)) {
-                this.lbOutboundEndpoints.add(lbOutboundEndpoint);
+            LBOutboundEndpoint[] current = this.lbOutboundEndpoints;
+            LBOutboundEndpoint[] updated = EndpointArrays.with(current, lbOutboundEndpoint);
+
+            if (updated != current) {
+                this.lbOutboundEndpoints = updated;
+
             } else {
-                log.info(lbOutboundEndpoint.getName() + " already exists in list..");
+                log.info("{} already exists in list..", lbOutboundEndpoint.getName());
             }
         }
     }
@@ -91,10 +106,14 @@ public class Random implements SimpleAlgorithm {
     public void removeLBOutboundEndpoint(LBOutboundEndpoint lbOutboundEndpoint) {
 
         synchronized (this.lock) {
-            if (this.lbOutboundEndpoints.contains(lbOutboundEndpoint)) {
-                this.lbOutboundEndpoints.remove(lbOutboundEndpoint);
+            LBOutboundEndpoint[] current = this.lbOutboundEndpoints;
+            LBOutboundEndpoint[] updated = EndpointArrays.without(current, lbOutboundEndpoint);
+
+            if (updated != current) {
+                this.lbOutboundEndpoints = updated;
+
             } else {
-                log.info(lbOutboundEndpoint.getName() + " has already been removed from list..");
+                log.info("{} has already been removed from list..", lbOutboundEndpoint.getName());
             }
         }
 
@@ -104,23 +123,21 @@ public class Random implements SimpleAlgorithm {
      * @param cMsg    Carbon Message has all headers required to make decision.
      * @param context LoadBalancerConfigContext.
      * @return the next LBOutboundEndpoint according to implemented LB algorithm.
+     * <p>
+     * Lock free. The snapshot is read once, so a concurrent add or remove can never make
+     * us index outside of the array we are working on.
      */
     @Override
     public LBOutboundEndpoint getNextLBOutboundEndpoint(CarbonMessage cMsg, LoadBalancerConfigContext context) {
-        LBOutboundEndpoint endPoint = null;
 
-        synchronized (this.lock) {
-            if (this.lbOutboundEndpoints != null && this.lbOutboundEndpoints.size() > 0) {
-
-                endPoint = this.lbOutboundEndpoints.get((int) (Math.random() * (this.lbOutboundEndpoints.size())));
-            } else {
+        LBOutboundEndpoint[] endpoints = this.lbOutboundEndpoints;
 
-                log.error("No OutboundEndpoint is available..");
-
-            }
+        if (endpoints.length == 0) {
+            log.debug("No OutboundEndpoint is available..");
+            return null;
         }
 
-        return endPoint;
+        return endpoints[ThreadLocalRandom.current().nextInt(endpoints.length)];
     }
 
     /**
@@ -133,6 +150,8 @@ public class Random implements SimpleAlgorithm {
 
     /**
      * @return Object used for locking.
+     * <p>
+     * It serializes membership changes only. Holding it doesn't stop request threads.
      */
     @Override
     public Object getLock() {
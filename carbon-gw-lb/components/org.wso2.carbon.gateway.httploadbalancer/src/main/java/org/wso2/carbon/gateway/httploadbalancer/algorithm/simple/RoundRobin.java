@@ -26,31 +26,42 @@ import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
 import org.wso2.carbon.messaging.CarbonMessage;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
  * Implementation of Round Robin Algorithm.
  * <p>
  * All Endpoints are assumed to have equal weights.
+ * <p>
+ * Healthy endpoints are held in an immutable array that is replaced (copy-on-write) whenever
+ * an endpoint is added or removed.  Choosing an endpoint only reads that array and bumps an
+ * atomic counter, so request threads never block on each other or on health checkers.
  */
 public class RoundRobin implements SimpleAlgorithm {
 
     private static final Logger log = LoggerFactory.getLogger(RoundRobin.class);
-    private final Object lock = new Object();
 
-    private int index = 0;
+    // Serializes writers (add / remove / set) only. Request path never acquires it.
+    private final Object lock = new Object();
 
+    private final AtomicInteger index;
 
-    private List<LBOutboundEndpoint> lbOutboundEndpoints;
+    // Snapshot of healthy endpoints. Never mutated once published.
+    private volatile LBOutboundEndpoint[] lbOutboundEndpoints = new LBOutboundEndpoint[0];
 
 
     /**
      * @param lbOutboundEndpoints list of LBOutboundEndpoints to be load balanced.
-     *                            <p>
-     *                            EndpointsCount is also initialized here.
      */
     public RoundRobin(List<LBOutboundEndpoint> lbOutboundEndpoints) {
 
+        this(lbOutboundEndpoints, 0);
+    }
+
+    RoundRobin(List<LBOutboundEndpoint> lbOutboundEndpoints, int startIndex) {
+
+        this.index = new AtomicInteger(startIndex);
         this.setLBOutboundEndpoints(lbOutboundEndpoints);
     }
 
@@ -67,14 +78,15 @@ public class RoundRobin implements SimpleAlgorithm {
     /**
      * @param lbOutboundEndpoints list of LBOutboundEndpoints to be load balanced.
      *                            <p>
-     *                            EndpointsCount is also initialized here.
+     *                            A private copy is taken, so later changes to the given list
+     *                            are not visible to this algorithm.
      */
     @Override
     public void setLBOutboundEndpoints(List<LBOutboundEndpoint> lbOutboundEndpoints) {
 
         synchronized (this.lock) {
-            this.lbOutboundEndpoints = lbOutboundEndpoints;
-
+            this.lbOutboundEndpoints = lbOutboundEndpoints.toArray(
+                    new LBOutboundEndpoint[lbOutboundEndpoints.size()]);
         }
 
     }
@@ -90,11 +102,14 @@ public class RoundRobin implements SimpleAlgorithm {
     public void addLBOutboundEndpoint(LBOutboundEndpoint lbOutboundEndpoint) {
 
         synchronized (this.lock) {
-            if (!this.lbOutboundEndpoints.contains(lbOutboundEndpoint)) {
-                this.lbOutboundEndpoints.add(lbOutboundEndpoint);
+            LBOutboundEndpoint[] current = this.lbOutboundEndpoints;
+            LBOutboundEndpoint[] updated = EndpointArrays.with(current, lbOutboundEndpoint);
+
+            if (updated != current) {
+                this.lbOutboundEndpoints = updated;
 
             } else {
-                log.info(lbOutboundEndpoint.getName() + " already exists in list..");
+                log.info("{} already exists in list..", lbOutboundEndpoint.getName());
             }
         }
 
@@ -109,66 +124,47 @@ public class RoundRobin implements SimpleAlgorithm {
     public void removeLBOutboundEndpoint(LBOutboundEndpoint lbOutboundEndpoint) {
 
         synchronized (this.lock) {
-            if (this.lbOutboundEndpoints.contains(lbOutboundEndpoint)) {
-                this.lbOutboundEndpoints.remove(lbOutboundEndpoint);
+            LBOutboundEndpoint[] current = this.lbOutboundEndpoints;
+            LBOutboundEndpoint[] updated = EndpointArrays.without(current, lbOutboundEndpoint);
+
+            if (updated != current) {
+                this.lbOutboundEndpoints = updated;
 
             } else {
-                log.info(lbOutboundEndpoint.getName() + " has already been removed from list..");
+                log.info("{} has already been removed from list..", lbOutboundEndpoint.getName());
             }
         }
     }
 
-    /**
-     * For getting next LBOutboundEndpoinnt.
-     * This method is called after locking, so don't worry.
-     */
-    private void incrementIndex() {
-
-        this.index++;
-        this.index %= this.lbOutboundEndpoints.size();
-    }
-
     /**
      * @param cMsg    Carbon Message has all headers required to make decision.
      * @param context LoadBalancerConfigContext.
      * @return chosen OutboundEndpoint
+     * <p>
+     * Lock free. The snapshot is read once, so a concurrent add or remove can never make
+     * us index outside of the array we are working on.
      */
 
     @Override
     public LBOutboundEndpoint getNextLBOutboundEndpoint(CarbonMessage cMsg, LoadBalancerConfigContext context) {
 
-        LBOutboundEndpoint endPoint = null;
-
-        synchronized (this.lock) {
-            if (this.lbOutboundEndpoints != null && this.lbOutboundEndpoints.size() > 0) {
-
-                endPoint = this.lbOutboundEndpoints.get(this.index);
-                incrementIndex();
-
-            } else {
+        LBOutboundEndpoint[] endpoints = this.lbOutboundEndpoints;
 
-                log.error("No OutboundEndpoint is available..");
-
-            }
+        if (endpoints.length == 0) {
+            log.debug("No OutboundEndpoint is available..");
+            return null;
         }
 
-        return endPoint;
+        // Masking the sign bit keeps the position valid once the counter overflows.
+        return endpoints[(this.index.getAndIncrement() & Integer.MAX_VALUE) % endpoints.length];
     }
 
     /**
-     * Resets the index.
+     * Nothing to reset. The counter is always reduced modulo the current snapshot size.
      */
     @Override
     public void reset() {
 
-        synchronized (this.lock) {
-
-            if (this.lbOutboundEndpoints.size() > 0 && this.index >= this.lbOutboundEndpoints.size()) {
-                this.index %= this.lbOutboundEndpoints.size();
-            } else if (this.lbOutboundEndpoints.size() == 0) {
-                this.index = 0;
-            }
-        }
     }
 
     @Override
@@ -20,19 +20,27 @@ package org.wso2.carbon.gateway.httploadbalancer.algorithm.simple;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing.ConsistentHash;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing.ConsistentHashRing;
 import org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing.Hash;
-import org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing.hashcodegenerators.MD5;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing.MaglevHash;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing.hashcodegenerators.HashFunction;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing.hashcodegenerators.Murmur3;
 import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
 import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
 import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
+import org.wso2.carbon.gateway.httploadbalancer.utils.ClientIP;
+import org.wso2.carbon.gateway.httploadbalancer.utils.ClientIPCache;
 import org.wso2.carbon.gateway.httploadbalancer.utils.CommonUtil;
+import org.wso2.carbon.gateway.httploadbalancer.utils.handlers.scheduled.LBHousekeepingScheduler;
 import org.wso2.carbon.messaging.CarbonMessage;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 
 
 /**
@@ -51,15 +59,49 @@ import java.util.concurrent.ConcurrentHashMap;
  * <p>
  * This algorithm by-itself maintains persistence. So, while choosing this algorithm,
  * persistence should be specified as NO_PERSISTENCE.
+ * <p>
+ * For CLIENT_IP_HASHING persistence (getOutboundEndpointName), consistent hashing with bounded loads
+ * is used to overcome above problem. An endpoint is skipped if it already has more than
+ * (1 + boundedLoadFactor) times average no of in-flight requests, and next endpoint in hash order
+ * is chosen. So most clients stick to their endpoint, but a single heavy client can't overload it.
+ * <p>
+ * Healthy endpoints, their (hostname:port) map and hash built over them are published together as
+ * one immutable snapshot. Lookups only read that snapshot, so they never block.
+ * <p>
+ * Endpoints are added and removed by health checks, under lock of this algorithm. Building a hash
+ * (65537 slots for Maglev, 160 points per endpoint for ring) is too costly to be done while holding
+ * it, so it is handed over to an executor (LBHousekeepingScheduler by default).
+ * Till new hash is ready, an interim snapshot with new endpoints and map, but previous hash, is used.
+ * <p>
+ * 1) A removed endpoint is never returned. It is not in map, so hash skips it like an overloaded one.
+ * <p>
+ * 2) An added endpoint gets no clients till new hash is published.
+ * <p>
+ * Client IP address is parsed into numeric form (ClientIP) and hashed as such. Each snapshot also
+ * has a bounded cache of endpoint chosen by hash for recent clients. Cache is replaced along with
+ * hash and whenever an endpoint is removed, so cached decisions never outlive endpoints they were
+ * made for. Cache holds the endpoint chosen by hash alone, so bounded loads are still checked on
+ * every request.
  */
 public class StrictClientIPHashing implements SimpleAlgorithm {
 
     private static final Logger log = LoggerFactory.getLogger(StrictClientIPHashing.class);
+
+    //Stateless and thread safe, so shared by all snapshots.
+    private static final HashFunction HASH_FUNCTION = new Murmur3();
+
+    // Serializes writers (add / remove / set) only. Request path never acquires it.
     private final Object lock = new Object();
 
-    private List<LBOutboundEndpoint> lbOutboundEndpoints;
-    private Map<String, String> map = new ConcurrentHashMap<>(); //map of <hostname:port>,OutboundEndpoint's name.
-    private Hash hash;
+    private final String hashingMethod;
+    private final int virtualNodes;
+    private final double boundedLoadFactor;
+    private final Executor executor;
+
+    private final AtomicBoolean rebuildPending = new AtomicBoolean(false);
+
+    // Never mutated once published.
+    private volatile Snapshot snapshot;
 
 
     /**
@@ -69,6 +111,43 @@ public class StrictClientIPHashing implements SimpleAlgorithm {
      */
     public StrictClientIPHashing(List<LBOutboundEndpoint> lbOutboundEndpoints) {
 
+        this(lbOutboundEndpoints, LoadBalancerConstants.CONSISTENT_HASHING,
+                LoadBalancerConstants.DEFAULT_VIRTUAL_NODES, LoadBalancerConstants.DEFAULT_BOUNDED_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param lbOutboundEndpoints List of OutboundEndpoints.
+     * @param hashingMethod       CONSISTENT_HASH or MAGLEV.
+     * @param virtualNodes        No of points per endpoint on consistent hash ring. Not used by MAGLEV.
+     * @param boundedLoadFactor   An endpoint can have at most (1 + boundedLoadFactor) times average
+     *                            in-flight requests, while choosing endpoint for CLIENT_IP_HASHING.
+     */
+    public StrictClientIPHashing(List<LBOutboundEndpoint> lbOutboundEndpoints, String hashingMethod,
+                                 int virtualNodes, double boundedLoadFactor) {
+
+        this(lbOutboundEndpoints, hashingMethod, virtualNodes, boundedLoadFactor,
+                LBHousekeepingScheduler.getInstance());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param lbOutboundEndpoints List of OutboundEndpoints.
+     * @param hashingMethod       CONSISTENT_HASH or MAGLEV.
+     * @param virtualNodes        No of points per endpoint on consistent hash ring. Not used by MAGLEV.
+     * @param boundedLoadFactor   An endpoint can have at most (1 + boundedLoadFactor) times average
+     *                            in-flight requests, while choosing endpoint for CLIENT_IP_HASHING.
+     * @param executor            Executor on which hash is rebuilt, when endpoints are added or removed.
+     */
+    public StrictClientIPHashing(List<LBOutboundEndpoint> lbOutboundEndpoints, String hashingMethod,
+                                 int virtualNodes, double boundedLoadFactor, Executor executor) {
+
+        this.hashingMethod = hashingMethod;
+        this.virtualNodes = virtualNodes;
+        this.boundedLoadFactor = boundedLoadFactor;
+        this.executor = executor;
         this.setLBOutboundEndpoints(lbOutboundEndpoints);
     }
 
@@ -81,40 +160,61 @@ public class StrictClientIPHashing implements SimpleAlgorithm {
         return LoadBalancerConstants.STRICT_IP_HASHING;
     }
 
-
+    /**
+     * @param ipAddress Client IP Address.
+     * @return name of endpoint to be used for this client, as per CLIENT_IP_HASHING persistence.
+     * Null if ipAddress is not valid.
+     */
     public String getOutboundEndpointName(String ipAddress) {
-        synchronized (this.lock) {
-            return this.map.get(this.hash.get(ipAddress));
+
+        ClientIP clientIP = ClientIP.parse(ipAddress);
+        return clientIP != null ? this.getOutboundEndpointName(clientIP) : null;
+    }
+
+    /**
+     * @param clientIP Client IP Address.
+     * @return name of endpoint to be used for this client, as per CLIENT_IP_HASHING persistence.
+     * <p>
+     * Endpoints having more in-flight requests than Snapshot.getMaxInFlightRequests() are skipped.
+     */
+    public String getOutboundEndpointName(ClientIP clientIP) {
+
+        Snapshot current = this.snapshot;
+
+        LBOutboundEndpoint endpoint = current.get(clientIP);
+        if (endpoint == null) {
+            return null;
         }
+
+        int maxInFlightRequests = current.getMaxInFlightRequests(this.boundedLoadFactor);
+        if (endpoint.getInFlightRequests() >= maxInFlightRequests) {
+            LBOutboundEndpoint lessLoaded = current.map.get(current.hash.get(clientIP, hostAndPort -> {
+                LBOutboundEndpoint candidate = current.map.get(hostAndPort);
+                return candidate == null || candidate.getInFlightRequests() >= maxInFlightRequests;
+            }));
+            if (lessLoaded != null) {
+                endpoint = lessLoaded;
+            }
+        }
+
+        return endpoint.getName();
     }
 
     /**
      * @param lbOutboundEPs list of all LBOutboundEndpoints to be load balanced.
+     *                      <p>
+     *                      A private copy is taken, so later changes to the given list
+     *                      are not visible to this algorithm.
+     *                      <p>
+     *                      Hash is built on calling thread, as this is used while deploying config.
      */
     @Override
     public void setLBOutboundEndpoints(List<LBOutboundEndpoint> lbOutboundEPs) {
 
+        LBOutboundEndpoint[] endpoints = lbOutboundEPs.toArray(new LBOutboundEndpoint[lbOutboundEPs.size()]);
+        Snapshot built = this.createSnapshot(endpoints);
         synchronized (this.lock) {
-            this.lbOutboundEndpoints = lbOutboundEPs;
-            /**
-             * Two points are to be noted here.
-             *
-             * 1) You can also implement your own hashing mechanism. Eg: ModuloHash.
-             *
-             * 2) ConsistentHash needs a HashFunction.  We are using MD5 here. Another example is BasicHash.
-             *    You can also implement your own HashFunction.
-             */
-            List<String> hostAndPortList = new ArrayList<>();
-            for (LBOutboundEndpoint endpoint : this.lbOutboundEndpoints) {
-                String hostAndPort = CommonUtil.getHostAndPort(endpoint.getOutboundEndpoint().getUri());
-                map.putIfAbsent(hostAndPort, endpoint.getName());
-                if (log.isDebugEnabled()) {
-                    log.info("host : " + hostAndPort + " name :" + endpoint.getName());
-                }
-                hostAndPortList.add(hostAndPort);
-            }
-            this.hash = new ConsistentHash(new MD5(),
-                    hostAndPortList);
+            this.snapshot = built;
         }
     }
 
@@ -128,13 +228,16 @@ public class StrictClientIPHashing implements SimpleAlgorithm {
     public void addLBOutboundEndpoint(LBOutboundEndpoint lbOutboundEndpoint) {
 
         synchronized (this.lock) {
-            if (!this.lbOutboundEndpoints.contains(lbOutboundEndpoint)) {
-                this.lbOutboundEndpoints.add(lbOutboundEndpoint);
-                String hostAndPort = CommonUtil.getHostAndPort(lbOutboundEndpoint.getOutboundEndpoint().getUri());
-                map.putIfAbsent(hostAndPort, lbOutboundEndpoint.getName());
-                this.hash.addEndpoint(hostAndPort);
+            LBOutboundEndpoint[] current = this.snapshot.lbOutboundEndpoints;
+            LBOutboundEndpoint[] updated = EndpointArrays.with(current, lbOutboundEndpoint);
+
+            if (updated != current) {
+                //Hash is unchanged, so are its cached decisions.
+                this.snapshot = this.snapshot.withEndpoints(updated, this.snapshot.cache);
+                this.scheduleRebuild();
+
             } else {
-                log.info(lbOutboundEndpoint.getName() + " already exists in list..");
+                log.info("{} already exists in list..", lbOutboundEndpoint.getName());
             }
         }
 
@@ -149,16 +252,93 @@ public class StrictClientIPHashing implements SimpleAlgorithm {
     public void removeLBOutboundEndpoint(LBOutboundEndpoint lbOutboundEndpoint) {
 
         synchronized (this.lock) {
-            if (this.lbOutboundEndpoints.contains(lbOutboundEndpoint)) {
-                this.lbOutboundEndpoints.remove(lbOutboundEndpoint);
-                String hostAndPort = CommonUtil.getHostAndPort(lbOutboundEndpoint.getOutboundEndpoint().getUri());
-                map.remove(hostAndPort);
-                this.hash.removeEndpoint(hostAndPort);
+            LBOutboundEndpoint[] current = this.snapshot.lbOutboundEndpoints;
+            LBOutboundEndpoint[] updated = EndpointArrays.without(current, lbOutboundEndpoint);
+
+            if (updated != current) {
+                this.snapshot = this.snapshot.withEndpoints(updated, newCache());
+                this.scheduleRebuild();
+
             } else {
-                log.info(lbOutboundEndpoint.getName() + " has already been removed from list..");
+                log.info("{} has already been removed from list..", lbOutboundEndpoint.getName());
+            }
+        }
+
+    }
+
+    /**
+     * Changes made till rebuild starts are coalesced into a single rebuild. Called under lock.
+     */
+    private void scheduleRebuild() {
+
+        if (this.rebuildPending.compareAndSet(false, true)) {
+            this.executor.execute(this::rebuild);
+        }
+    }
+
+    private void rebuild() {
+
+        //Cleared before reading endpoints, so that any change from here on schedules another rebuild.
+        this.rebuildPending.set(false);
+
+        LBOutboundEndpoint[] endpoints;
+        synchronized (this.lock) {
+            endpoints = this.snapshot.lbOutboundEndpoints;
+        }
+
+        Snapshot built = this.createSnapshot(endpoints);
+
+        synchronized (this.lock) {
+            //Every change replaces the array. If it has changed while building, rebuild scheduled by it will publish.
+            if (this.snapshot.lbOutboundEndpoints == endpoints) {
+                this.snapshot = built;
             }
         }
+    }
+
+    private static ClientIPCache<LBOutboundEndpoint> newCache() {
 
+        return new ClientIPCache<>(LoadBalancerConstants.DEFAULT_CLIENT_IP_CACHE_SIZE);
+    }
+
+    private static Map<String, LBOutboundEndpoint> createMap(LBOutboundEndpoint[] lbOutboundEndpoints) {
+
+        Map<String, LBOutboundEndpoint> map = new HashMap<>();
+        for (LBOutboundEndpoint endpoint : lbOutboundEndpoints) {
+            map.putIfAbsent(CommonUtil.getHostAndPort(endpoint.getOutboundEndpoint().getUri()), endpoint);
+        }
+        return map;
+    }
+
+    /**
+     * Hash is built from scratch. It is run either while deploying config or on executor.
+     */
+    private Snapshot createSnapshot(LBOutboundEndpoint[] lbOutboundEndpoints) {
+
+        /**
+         * Two points are to be noted here.
+         *
+         * 1) You can also implement your own hashing mechanism. Eg: ModuloHash.
+         *
+         * 2) ConsistentHashRing and MaglevHash need a HashFunction.  We are using Murmur3 here.
+         *    Other examples are MD5 and BasicHash. You can also implement your own HashFunction.
+         */
+        Map<String, LBOutboundEndpoint> map = createMap(lbOutboundEndpoints);
+        List<String> hostAndPortList = new ArrayList<>();
+        for (LBOutboundEndpoint endpoint : lbOutboundEndpoints) {
+            String hostAndPort = CommonUtil.getHostAndPort(endpoint.getOutboundEndpoint().getUri());
+            log.debug("host : {} name : {}", hostAndPort, endpoint.getName());
+            hostAndPortList.add(hostAndPort);
+        }
+
+        Hash hash;
+        if (LoadBalancerConstants.MAGLEV_HASHING.equals(this.hashingMethod)) {
+            hash = new MaglevHash(HASH_FUNCTION, LoadBalancerConstants.DEFAULT_MAGLEV_TABLE_SIZE, hostAndPortList);
+        } else {
+            hash = new ConsistentHashRing(HASH_FUNCTION, this.virtualNodes, hostAndPortList);
+        }
+
+        return new Snapshot(lbOutboundEndpoints, map, hash, newCache());
     }
 
     /**
@@ -171,43 +351,40 @@ public class StrictClientIPHashing implements SimpleAlgorithm {
 
         LBOutboundEndpoint endPoint = null;
 
-        synchronized (this.lock) {
-            if (this.lbOutboundEndpoints != null && this.lbOutboundEndpoints.size() > 0) {
-
-                String ipAddress = CommonUtil.getClientIP(cMsg);
-                log.info("IP address retrieved is : " + ipAddress);
-                if (CommonUtil.isValidIP(ipAddress)) {
-
-                    //getting endpoint name for this ipAddress.
-                    String hostAndPort = this.hash.get(ipAddress);
-                    if (log.isDebugEnabled()) {
-                        log.debug("Host and port : " + hostAndPort);
-                    }
-                    if (hostAndPort != null) {
-                        endPoint = context.getLBOutboundEndpoint(map.get(hostAndPort));
-                    }
-
-                } else {
+        Snapshot current = this.snapshot;
+        if (current.lbOutboundEndpoints.length > 0) {
 
-                    log.error("The IP Address retrieved is : " + ipAddress +
-                            " which is invalid according to our validation. No Endpoint will be chosen" +
-                            " as your configuration is Strict IP Hashing..");
+            ClientIP clientIP = ClientIP.from(cMsg);
+            log.debug("IP address retrieved is : {}", clientIP);
+            if (clientIP != null) {
 
+                //getting endpoint for this ipAddress.
+                endPoint = current.get(clientIP);
+                if (log.isDebugEnabled()) {
+                    log.debug("Endpoint : {}", endPoint != null ? endPoint.getName() : null);
                 }
 
             } else {
 
-                log.error("No outbound end point is available..");
+                if (log.isDebugEnabled()) {
+                    log.debug("The IP Address retrieved is : {} which is invalid according to our validation." +
+                            " No Endpoint will be chosen as your configuration is Strict IP Hashing..",
+                            CommonUtil.getClientIP(cMsg));
+                }
 
             }
-        }
 
+        } else {
+
+            log.debug("No outbound end point is available..");
+
+        }
 
         return endPoint;
     }
 
     /**
-     * Nothing to do in case of ConsistentHash.
+     * Nothing to do in case of ConsistentHashRing and MaglevHash.
      */
     @Override
     public void reset() {
@@ -220,4 +397,79 @@ public class StrictClientIPHashing implements SimpleAlgorithm {
 
         return this.lock;
     }
+
+    /**
+     * Healthy endpoints, map of (hostname:port) to endpoint, hash and cache of decisions made by that hash.
+     * <p>
+     * Hash is built over same endpoints, except in interim snapshots, where it may still have
+     * removed endpoints (not in map) or lack added ones.
+     */
+    private static final class Snapshot {
+
+        private final LBOutboundEndpoint[] lbOutboundEndpoints;
+        private final Map<String, LBOutboundEndpoint> map;
+        private final Hash hash;
+        private final ClientIPCache<LBOutboundEndpoint> cache;
+
+        private final Predicate<String> isRemoved;
+
+        private Snapshot(LBOutboundEndpoint[] lbOutboundEndpoints, Map<String, LBOutboundEndpoint> map, Hash hash,
+                         ClientIPCache<LBOutboundEndpoint> cache) {
+
+            this.lbOutboundEndpoints = lbOutboundEndpoints;
+            this.map = map;
+            this.hash = hash;
+            this.cache = cache;
+            this.isRemoved = hostAndPort -> !map.containsKey(hostAndPort);
+        }
+
+        /**
+         * @return interim snapshot with given endpoints and same hash.
+         */
+        private Snapshot withEndpoints(LBOutboundEndpoint[] lbOutboundEndpoints,
+                                       ClientIPCache<LBOutboundEndpoint> cache) {
+
+            return new Snapshot(lbOutboundEndpoints, createMap(lbOutboundEndpoints), hash, cache);
+        }
+
+        /**
+         * @return endpoint chosen by hash for this client, irrespective of load. Null if there are no endpoints.
+         */
+        private LBOutboundEndpoint get(ClientIP clientIP) {
+
+            LBOutboundEndpoint endpoint = cache.get(clientIP);
+            if (endpoint == null) {
+
+                String hostAndPort = hash.get(clientIP, isRemoved);
+                endpoint = hostAndPort != null ? map.get(hostAndPort) : null;
+                if (endpoint != null) {
+                    cache.put(clientIP, endpoint);
+
+                } else if (lbOutboundEndpoints.length > 0) {
+                    //Only in interim snapshot, when all endpoints of hash have been removed. Not cached.
+                    endpoint = lbOutboundEndpoints[Math.floorMod(clientIP.hashCode(), lbOutboundEndpoints.length)];
+                }
+            }
+            return endpoint;
+        }
+
+        /**
+         * @return ceil((1 + boundedLoadFactor) * average in-flight requests), where average includes
+         * the request for which endpoint is being chosen. This is always at least 1.
+         * <p>
+         * It is computed from lock-free per endpoint counters, so it is only approximate under concurrency.
+         */
+        private int getMaxInFlightRequests(double boundedLoadFactor) {
+
+            if (lbOutboundEndpoints.length == 0) {
+                return Integer.MAX_VALUE;
+            }
+
+            long total = 1;
+            for (LBOutboundEndpoint endpoint : lbOutboundEndpoints) {
+                total += endpoint.getInFlightRequests();
+            }
+            return (int) Math.ceil((1 + boundedLoadFactor) * total / lbOutboundEndpoints.length);
+        }
+    }
 }
@@ -19,10 +19,7 @@
 package org.wso2.carbon.gateway.httploadbalancer.algorithm.weighted;
 
 import org.wso2.carbon.gateway.httploadbalancer.algorithm.LoadBalancingAlgorithm;
-import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
 import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
-import org.wso2.carbon.messaging.CarbonCallback;
-import org.wso2.carbon.messaging.CarbonMessage;
 
 import java.util.List;
 
@@ -40,21 +37,4 @@ public interface WeightedAlgorithm extends LoadBalancingAlgorithm {
      *                      endpoints and their corresponding weights.
      */
     void setLBOutboundEndpoints(List<LBOutboundEndpoint> lbOutboundEPs, List<Integer> weights);
-
-    /**
-     * @param carbonMessage      CarbonMessage
-     * @param carbonCallback     CarbonCallback
-     * @param context            LoadBalancerConfigContext
-     * @param lbOutboundEndpoint LBOutboundEndpoint
-     * @return
-     * @throws Exception NOTE: Unlike Simple algorithms, in case if decision is made based on persistence,
-     *                   algorithm should know that request is being sent to an endpoint.  So that it
-     *                   can increment window tracker and weighted load distribution can be done in
-     *                   a much efficient way.
-     */
-    boolean receive(CarbonMessage carbonMessage, CarbonCallback carbonCallback,
-                    LoadBalancerConfigContext context,
-                    LBOutboundEndpoint lbOutboundEndpoint) throws Exception;
-
-
 }
@@ -24,7 +24,6 @@ import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
 import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
 import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
 import org.wso2.carbon.gateway.httploadbalancer.outbound.WeightedLBOutboundEndpoint;
-import org.wso2.carbon.messaging.CarbonCallback;
 import org.wso2.carbon.messaging.CarbonMessage;
 
 
@@ -32,12 +31,20 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 
 
 /**
  * Implementation of weighted Random Algorithm.
  * <p>
  * User has to define weights for each endpoint. By default weight is 1.
+ * <p>
+ * Selection uses an alias table (Vose's method), so each request costs two random numbers and
+ * two array reads irrespective of number of endpoints, and endpoints are chosen exactly in
+ * proportion to their weights.
+ * <p>
+ * Table is immutable. It is rebuilt under lock only when endpoints are added or removed or weights
+ * change, so selection never acquires a lock.
  */
 public class WeightedRandom implements WeightedAlgorithm {
 
@@ -45,18 +52,20 @@ public class WeightedRandom implements WeightedAlgorithm {
     private static final Logger log = LoggerFactory.getLogger(WeightedRandom.class);
     private final Object lock = new Object();
 
-    private List<WeightedLBOutboundEndpoint> weightedLBOutboundEndpoints = new ArrayList<>();
-    private Map<String, WeightedLBOutboundEndpoint> map = new ConcurrentHashMap<>();
+    // Healthy endpoints. Guarded by lock.
+    private final List<WeightedLBOutboundEndpoint> weightedLBOutboundEndpoints = new ArrayList<>();
 
+    // All endpoints including unHealthy ones.
+    private final Map<String, WeightedLBOutboundEndpoint> map = new ConcurrentHashMap<>();
 
-    private int weightsWindow = 0; // Sum of weights of all endpoints.
-    private int weightsWindowTracker = 0; // To keep track whether weightsWindow number has elapsed or not.
+    // Never mutated once published.
+    private volatile AliasTable aliasTable = AliasTable.build(new ArrayList<>());
 
     /**
      * Constructor.
      *
-     * @param lbOutboundEPs
-     * @param weights
+     * @param lbOutboundEPs List of LBOutboundEndpoints
+     * @param weights       Their corresponding weights.
      */
     public WeightedRandom(List<LBOutboundEndpoint> lbOutboundEPs, List<Integer> weights) {
 
@@ -78,49 +87,60 @@ public class WeightedRandom implements WeightedAlgorithm {
      *                      <p>
      *                      NOTE: All validations must be done before.
      *                      This method expects ordered list of
+     *                      endpoints and their corresponding weights.
      */
     @Override
     public void setLBOutboundEndpoints(List<LBOutboundEndpoint> lbOutboundEPs, List<Integer> weights) {
 
         synchronized (this.lock) {
+
+            this.weightedLBOutboundEndpoints.clear();
+            this.map.clear();
+
             for (int i = 0; i < lbOutboundEPs.size(); i++) {
                 this.weightedLBOutboundEndpoints.
-                        add(new WeightedLBOutboundEndpoint(lbOutboundEPs.get(i), weights.get(i)));
+                        add(new WeightedLBOutboundEndpoint(lbOutboundEPs.get(i), Math.max(0, weights.get(i))));
                 map.put(lbOutboundEPs.get(i).getName(), this.weightedLBOutboundEndpoints.get(i));
             }
 
-            calculateWeightsWindow();
+            rebuildAliasTable();
         }
     }
 
     /**
-     *
-     * @param carbonMessage      CarbonMessage
-     * @param carbonCallback     CarbonCallback
-     * @param context            LoadBalancerConfigContext
-     * @param lbOutboundEndpoint LBOutboundEndpoint
-     * @return
-     * @throws Exception
+     * MUST be called holding lock, whenever healthy endpoints or weights change.
      */
-    @Override
-    public boolean receive(CarbonMessage carbonMessage, CarbonCallback carbonCallback,
-                           LoadBalancerConfigContext context,
-                           LBOutboundEndpoint lbOutboundEndpoint) throws Exception {
+    private void rebuildAliasTable() {
 
+        this.aliasTable = AliasTable.build(this.weightedLBOutboundEndpoints);
 
-        incrementWeightsWindowTracker(); // To keep track of no requests elapsed for this current window
-        map.get(lbOutboundEndpoint.getName()).receive(carbonMessage, carbonCallback, context);
-        return false;
+        if (log.isDebugEnabled()) {
+            log.debug("Alias table rebuilt with {} endpoints..", this.weightedLBOutboundEndpoints.size());
+        }
     }
 
-    private void calculateWeightsWindow() {
+    /**
+     * @param lbOutboundEndpoint endpoint whose weight has to be changed.
+     * @param weight             new weight. Zero means no requests will be sent to it by this algorithm.
+     */
+    public void setWeight(LBOutboundEndpoint lbOutboundEndpoint, int weight) {
 
-        this.weightsWindow = 0;
-        for (WeightedLBOutboundEndpoint endpoint : this.weightedLBOutboundEndpoints) {
-            this.weightsWindow += endpoint.getMaxWeight();
+        if (weight < 0) {
+            log.error("Invalid weight : {} for {}..", weight, lbOutboundEndpoint.getName());
+            return;
         }
-        if (log.isDebugEnabled()) {
-            log.debug("Weights Window = " + this.weightsWindow);
+
+        synchronized (this.lock) {
+
+            WeightedLBOutboundEndpoint endpoint = map.get(lbOutboundEndpoint.getName());
+
+            if (endpoint != null) {
+                endpoint.setMaxWeight(weight);
+                rebuildAliasTable();
+                log.info("Weight of {} changed to {}..", endpoint.getName(), weight);
+            } else {
+                log.error("{} is not in map..", lbOutboundEndpoint.getName());
+            }
         }
     }
 
@@ -137,10 +157,10 @@ public class WeightedRandom implements WeightedAlgorithm {
             if (map.containsKey(lbOutboundEndpoint.getName())) {
 
                 if (this.weightedLBOutboundEndpoints.contains(map.get(lbOutboundEndpoint.getName()))) {
-                    log.info(lbOutboundEndpoint.getName() + " already exists in list..");
+                    log.info("{} already exists in list..", lbOutboundEndpoint.getName());
                 } else {
-                    map.get(lbOutboundEndpoint.getName()).resetCurrentWeight(); //This is MUST.
                     this.weightedLBOutboundEndpoints.add(map.get(lbOutboundEndpoint.getName()));
+                    rebuildAliasTable();
                 }
 
             } else {
@@ -165,56 +185,15 @@ public class WeightedRandom implements WeightedAlgorithm {
                 if (this.weightedLBOutboundEndpoints.contains(map.get(lbOutboundEndpoint.getName()))) {
 
                     this.weightedLBOutboundEndpoints.remove(map.get(lbOutboundEndpoint.getName()));
+                    rebuildAliasTable();
                 } else {
-                    log.info(lbOutboundEndpoint.getName() + " has already been removed from list..");
+                    log.info("{} has already been removed from list..", lbOutboundEndpoint.getName());
                 }
 
             } else {
-                log.error(lbOutboundEndpoint.getName() + " is not in map..");
-            }
-        }
-    }
-
-    private void resetAllCurrentWeights() {
-
-        this.weightedLBOutboundEndpoints.forEach(WeightedLBOutboundEndpoint::resetCurrentWeight);
-
-    }
-
-    private void incrementWeightsWindowTracker() {
-        this.weightsWindowTracker++;
-    }
-
-
-    private WeightedLBOutboundEndpoint getNextEndpoint() {
-
-        WeightedLBOutboundEndpoint endPoint = null;
-        int counter = 0;
-
-        int index = (int) (Math.random() * (this.weightedLBOutboundEndpoints.size()));
-
-        while (true) {
-
-            if (this.weightedLBOutboundEndpoints.get(index).getCurrentWeight() <
-                    this.weightedLBOutboundEndpoints.get(index).getMaxWeight()) {
-
-                endPoint = this.weightedLBOutboundEndpoints.get(index);
-                break;
-            } else {
-                index = (int) (Math.random() * (this.weightedLBOutboundEndpoints.size()));
-            }
-
-            if (counter > weightedLBOutboundEndpoints.size()) {
-                // This case is just for safety.
-                index = (int) (Math.random() * (this.weightedLBOutboundEndpoints.size()));
-                endPoint = this.weightedLBOutboundEndpoints.get(index);
-                break;
+                log.error("{} is not in map..", lbOutboundEndpoint.getName());
             }
-            counter++;
         }
-
-        return endPoint;
-
     }
 
 
@@ -222,71 +201,142 @@ public class WeightedRandom implements WeightedAlgorithm {
      * @param cMsg    Carbon Message has all headers required to make decision.
      * @param context LoadBalancerConfigContext.
      * @return the next LBOutboundEndpoint according to implemented LB algorithm.
+     * <p>
+     * O(1) and lock free.
      */
     @Override
     public LBOutboundEndpoint getNextLBOutboundEndpoint(CarbonMessage cMsg, LoadBalancerConfigContext context) {
-        LBOutboundEndpoint endPoint = null;
 
-        synchronized (this.lock) {
-            if (this.weightedLBOutboundEndpoints != null && this.weightedLBOutboundEndpoints.size() > 0) {
+        WeightedLBOutboundEndpoint endPoint = this.aliasTable.sample(ThreadLocalRandom.current());
 
+        if (endPoint == null) {
+            log.debug("No OutboundEndpoint is available..");
+            return null;
+        }
 
-                if (this.weightedLBOutboundEndpoints.size() > 1 && this.weightsWindowTracker >= this.weightsWindow) {
+        return endPoint.getLbOutboundEndpoint();
+    }
 
-                    resetAllCurrentWeights();
-                    this.weightsWindowTracker = 0;
-                }
+    /**
+     * Nothing to reset. Alias table is rebuilt whenever endpoints change.
+     */
+    @Override
+    public void reset() {
 
+    }
 
-                WeightedLBOutboundEndpoint weightedLBOutboundEP = this.getNextEndpoint();
+    /**
+     * @return Object used for locking.
+     */
+    @Override
+    public Object getLock() {
+        return this.lock;
+    }
 
-                endPoint = weightedLBOutboundEP.getLbOutboundEndpoint();
 
-            } else {
+    /**
+     * Alias table for sampling endpoints in proportion to their weights.
+     * <p>
+     * Every column i is chosen with probability 1/n, and within it endpoint i is chosen with
+     * probability threshold[i] / total, otherwise endpoint alias[i]. Integer arithmetic is used,
+     * so proportions are exact.
+     */
+    private static final class AliasTable {
 
-                log.error("No OutboundEndpoint is available..");
+        private final WeightedLBOutboundEndpoint[] endpoints;
+        private final long[] threshold;
+        private final int[] alias;
+        private final long total;
 
-            }
+        private AliasTable(WeightedLBOutboundEndpoint[] endpoints, long[] threshold, int[] alias, long total) {
+
+            this.endpoints = endpoints;
+            this.threshold = threshold;
+            this.alias = alias;
+            this.total = total;
         }
 
-        return endPoint;
-    }
+        /**
+         * @param weightedEndpoints endpoints to be sampled. Endpoints with zero weight are left out.
+         * @return alias table built using Vose's method in O(n).
+         */
+        static AliasTable build(List<WeightedLBOutboundEndpoint> weightedEndpoints) {
 
-    /**
-     * Each implementation of LB algorithm will have certain values pertained to it.
-     * (Eg: Round robin keeps track of index of OutboundEndpoint).
-     * Implementation of this method will resetHealthPropertiesToDefault.
-     * <p>
-     * NOTE: In this case weightsWindow is dependant on no of endpoints.
-     * So, we have to take care of that too.
-     */
-    @Override
-    public void reset() {
+            List<WeightedLBOutboundEndpoint> candidates = new ArrayList<>(weightedEndpoints.size());
+            long total = 0;
 
-        synchronized (this.lock) {
+            for (WeightedLBOutboundEndpoint endpoint : weightedEndpoints) {
+                if (endpoint.getMaxWeight() > 0) {
+                    candidates.add(endpoint);
+                    total += endpoint.getMaxWeight();
+                }
+            }
+
+            int n = candidates.size();
+            WeightedLBOutboundEndpoint[] endpoints = candidates.toArray(new WeightedLBOutboundEndpoint[n]);
+            long[] threshold = new long[n];
+            int[] alias = new int[n];
+
+            // Each weight is scaled by n, so that average column is exactly total.
+            long[] scaled = new long[n];
+            int[] small = new int[n];
+            int[] large = new int[n];
+            int smallCount = 0;
+            int largeCount = 0;
+
+            for (int i = 0; i < n; i++) {
+                scaled[i] = (long) endpoints[i].getMaxWeight() * n;
+                if (scaled[i] < total) {
+                    small[smallCount++] = i;
+                } else {
+                    large[largeCount++] = i;
+                }
+            }
 
-            if (this.weightedLBOutboundEndpoints.size() > 0) {
+            while (smallCount > 0 && largeCount > 0) {
 
+                int less = small[--smallCount];
+                int more = large[--largeCount];
 
-                this.calculateWeightsWindow(); //Here in this case weights must be atleast one.
-                this.weightsWindowTracker %= this.weightsWindow;
+                threshold[less] = scaled[less];
+                alias[less] = more;
 
-            } else {
+                // Remaining part of column 'less' is filled by 'more'.
+                scaled[more] -= total - scaled[less];
+                if (scaled[more] < total) {
+                    small[smallCount++] = more;
+                } else {
+                    large[largeCount++] = more;
+                }
+            }
 
-                this.weightsWindow = 0;
-                this.weightsWindowTracker = 0;
+            // Whatever is left fills its own column completely.
+            while (largeCount > 0) {
+                int more = large[--largeCount];
+                threshold[more] = total;
+                alias[more] = more;
+            }
+            while (smallCount > 0) {
+                int less = small[--smallCount];
+                threshold[less] = total;
+                alias[less] = less;
             }
 
+            return new AliasTable(endpoints, threshold, alias, total);
         }
-    }
 
-    /**
-     * @return Object used for locking.
-     */
-    @Override
-    public Object getLock() {
-        return this.lock;
-    }
+        /**
+         * @param random random number generator of calling thread.
+         * @return chosen endpoint or null if there is no endpoint with non zero weight.
+         */
+        WeightedLBOutboundEndpoint sample(ThreadLocalRandom random) {
 
+            if (endpoints.length == 0) {
+                return null;
+            }
 
+            int column = random.nextInt(endpoints.length);
+            return random.nextLong(total) < threshold[column] ? endpoints[column] : endpoints[alias[column]];
+        }
+    }
 }
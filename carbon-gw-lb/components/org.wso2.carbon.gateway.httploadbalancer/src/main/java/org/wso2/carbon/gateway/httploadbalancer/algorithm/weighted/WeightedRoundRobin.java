@@ -23,8 +23,6 @@ import org.slf4j.LoggerFactory;
 import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
 import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
 import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
-import org.wso2.carbon.gateway.httploadbalancer.outbound.WeightedLBOutboundEndpoint;
-import org.wso2.carbon.messaging.CarbonCallback;
 import org.wso2.carbon.messaging.CarbonMessage;
 
 import java.util.ArrayList;
@@ -36,18 +34,27 @@ import java.util.concurrent.ConcurrentHashMap;
  * Implementation of weighted Round Robin Algorithm.
  * <p>
  * User has to define weights for each endpoint. By default weight is 1.
+ * <p>
+ * This is smooth weighted round robin (as in nginx). On every pick, each endpoint's current weight is
+ * increased by its effective weight, endpoint having highest current weight is chosen and its current
+ * weight is decreased by sum of effective weights.
+ * <p>
+ * So with weights 5:1:1 the sequence is A A B A C A A, instead of a burst of 5 requests to A.
+ * Over any sequence of (sum of weights) picks, each endpoint is chosen exactly weight times.
+ * <p>
+ * Weights can be changed at runtime using setWeight(). If a weight is increased, effective weight
+ * grows by 1 per pick till it reaches new weight, so that endpoint is not flooded all of a sudden.
  */
 public class WeightedRoundRobin implements WeightedAlgorithm {
 
     private static final Logger log = LoggerFactory.getLogger(WeightedRoundRobin.class);
     private final Object lock = new Object();
 
-    private List<WeightedLBOutboundEndpoint> weightedLBOutboundEndpoints = new ArrayList<>();
-    private Map<String, WeightedLBOutboundEndpoint> map = new ConcurrentHashMap<>();
+    // Healthy endpoints. Guarded by lock.
+    private final List<SmoothWeightedEndpoint> smoothWeightedEndpoints = new ArrayList<>();
 
-    private int index = 0;
-    private int weightsWindow = 0; // Sum of weights of all endpoints.
-    private int weightsWindowTracker = 0; // To keep track whether weightsWindow number has elapsed or not.
+    // All endpoints including unHealthy ones.
+    private final Map<String, SmoothWeightedEndpoint> map = new ConcurrentHashMap<>();
 
 
     public WeightedRoundRobin(List<LBOutboundEndpoint> lbOutboundEPs, List<Integer> weights) {
@@ -76,45 +83,63 @@ public class WeightedRoundRobin implements WeightedAlgorithm {
     public void setLBOutboundEndpoints(List<LBOutboundEndpoint> lbOutboundEPs, List<Integer> weights) {
 
         synchronized (this.lock) {
+
+            this.smoothWeightedEndpoints.clear();
+            this.map.clear();
+
             for (int i = 0; i < lbOutboundEPs.size(); i++) {
-                this.weightedLBOutboundEndpoints.
-                        add(new WeightedLBOutboundEndpoint(lbOutboundEPs.get(i), weights.get(i)));
-                map.put(lbOutboundEPs.get(i).getName(), this.weightedLBOutboundEndpoints.get(i));
-            }
 
-            calculateWeightsWindow();
+                SmoothWeightedEndpoint endpoint = new SmoothWeightedEndpoint(lbOutboundEPs.get(i),
+                        Math.max(0, weights.get(i)));
+                this.smoothWeightedEndpoints.add(endpoint);
+                this.map.put(endpoint.getName(), endpoint);
+
+                if (log.isDebugEnabled()) {
+                    log.debug("OutboundEndpoint : {} Weight : {}", endpoint.getName(), endpoint.weight);
+                }
+            }
         }
 
     }
 
     /**
-     *
-     * @param carbonMessage CarbonMessage
-     * @param carbonCallback CarbonCallback
-     * @param context LoadBalancerConfigContext
-     * @param lbOutboundEndpoint LBOutboundEndpoint
-     * @return
-     * @throws Exception
+     * @param lbOutboundEndpoint endpoint whose weight has to be changed.
+     * @param weight             new weight. Zero means no requests will be sent to it by this algorithm.
+     *                           <p>
+     *                           A decrease takes effect right away and an increase is ramped up.
      */
-    @Override
-    public boolean receive(CarbonMessage carbonMessage, CarbonCallback carbonCallback,
-                           LoadBalancerConfigContext context,
-                           LBOutboundEndpoint lbOutboundEndpoint) throws Exception {
+    public void setWeight(LBOutboundEndpoint lbOutboundEndpoint, int weight) {
 
+        if (weight < 0) {
+            log.error("Invalid weight : {} for {}..", weight, lbOutboundEndpoint.getName());
+            return;
+        }
 
-        incrementWeightsWindowTracker(); // To keep track of no requests elapsed for this current window
-        map.get(lbOutboundEndpoint.getName()).receive(carbonMessage, carbonCallback, context);
-        return false;
-    }
+        synchronized (this.lock) {
 
-    private void calculateWeightsWindow() {
+            SmoothWeightedEndpoint endpoint = map.get(lbOutboundEndpoint.getName());
 
-        this.weightsWindow = 0;
-        for (WeightedLBOutboundEndpoint endpoint : this.weightedLBOutboundEndpoints) {
-            this.weightsWindow += endpoint.getMaxWeight();
+            if (endpoint != null) {
+                endpoint.weight = weight;
+                if (endpoint.effectiveWeight > weight) {
+                    endpoint.effectiveWeight = weight;
+                }
+                log.info("Weight of {} changed to {}..", endpoint.getName(), weight);
+            } else {
+                log.error("{} is not in map..", lbOutboundEndpoint.getName());
+            }
         }
-        if (log.isDebugEnabled()) {
-            log.debug("Weights Window = " + this.weightsWindow);
+    }
+
+    /**
+     * @param lbOutboundEndpoint LBOutboundEndpoint.
+     * @return configured weight of the endpoint, or -1 if it is not known to this algorithm.
+     */
+    public int getWeight(LBOutboundEndpoint lbOutboundEndpoint) {
+
+        synchronized (this.lock) {
+            SmoothWeightedEndpoint endpoint = map.get(lbOutboundEndpoint.getName());
+            return endpoint == null ? -1 : endpoint.weight;
         }
     }
 
@@ -131,11 +156,11 @@ public class WeightedRoundRobin implements WeightedAlgorithm {
         synchronized (this.lock) {
             if (map.containsKey(lbOutboundEndpoint.getName())) {
 
-                if (this.weightedLBOutboundEndpoints.contains(map.get(lbOutboundEndpoint.getName()))) {
-                    log.info(lbOutboundEndpoint.getName() + " already exists in list..");
+                if (this.smoothWeightedEndpoints.contains(map.get(lbOutboundEndpoint.getName()))) {
+                    log.info("{} already exists in list..", lbOutboundEndpoint.getName());
                 } else {
                     map.get(lbOutboundEndpoint.getName()).resetCurrentWeight(); //This is MUST.
-                    this.weightedLBOutboundEndpoints.add(map.get(lbOutboundEndpoint.getName()));
+                    this.smoothWeightedEndpoints.add(map.get(lbOutboundEndpoint.getName()));
                 }
 
             } else {
@@ -163,129 +188,67 @@ public class WeightedRoundRobin implements WeightedAlgorithm {
         synchronized (this.lock) {
             if (map.containsKey(lbOutboundEndpoint.getName())) {
 
-                if (this.weightedLBOutboundEndpoints.contains(map.get(lbOutboundEndpoint.getName()))) {
+                if (this.smoothWeightedEndpoints.contains(map.get(lbOutboundEndpoint.getName()))) {
 
-                    this.weightedLBOutboundEndpoints.remove(map.get(lbOutboundEndpoint.getName()));
+                    this.smoothWeightedEndpoints.remove(map.get(lbOutboundEndpoint.getName()));
                 } else {
-                    log.info(lbOutboundEndpoint.getName() + " has already been removed from list..");
+                    log.info("{} has already been removed from list..", lbOutboundEndpoint.getName());
                 }
 
             } else {
-                log.error(lbOutboundEndpoint.getName() + " is not in map..");
-            }
-        }
-    }
-
-    private void resetAllCurrentWeights() {
-
-        this.weightedLBOutboundEndpoints.forEach(WeightedLBOutboundEndpoint::resetCurrentWeight);
-
-    }
-
-    private void incrementWeightsWindowTracker() {
-        this.weightsWindowTracker++;
-    }
-
-    private void incrementIndex() {
-        this.index++;
-        this.index %= this.weightedLBOutboundEndpoints.size();
-    }
-
-    private WeightedLBOutboundEndpoint getNextEndpoint() {
-
-        WeightedLBOutboundEndpoint endPoint = null;
-        int counter = 0;
-
-        while (true) {
-
-            if (this.weightedLBOutboundEndpoints.get(this.index).getCurrentWeight() <
-                    this.weightedLBOutboundEndpoints.get(this.index).getMaxWeight()) {
-
-                endPoint = this.weightedLBOutboundEndpoints.get(this.index);
-                break;
-            } else {
-                incrementIndex();
+                log.error("{} is not in map..", lbOutboundEndpoint.getName());
             }
-
-            if (counter > weightedLBOutboundEndpoints.size()) {
-                // This case is just for safety.
-                endPoint = this.weightedLBOutboundEndpoints.get(this.index);
-                break;
-            }
-            counter++;
         }
-
-        incrementIndex();
-
-        return endPoint;
-
     }
 
     /**
      * @param cMsg    Carbon Message has all headers required to make decision.
      * @param context LoadBalancerConfigContext.
      * @return the next LBOutboundEndpoint according to implemented LB algorithm.
+     * <p>
+     * O(n) in number of healthy endpoints.
      */
     @Override
     public LBOutboundEndpoint getNextLBOutboundEndpoint(CarbonMessage cMsg, LoadBalancerConfigContext context) {
 
-        LBOutboundEndpoint endPoint = null;
-
         synchronized (this.lock) {
-            if (this.weightedLBOutboundEndpoints != null && this.weightedLBOutboundEndpoints.size() > 0) {
 
+            SmoothWeightedEndpoint best = null;
+            int total = 0;
 
-                if (this.weightedLBOutboundEndpoints.size() > 1 && this.weightsWindowTracker >= this.weightsWindow) {
+            for (int i = 0; i < this.smoothWeightedEndpoints.size(); i++) {
 
-                    resetAllCurrentWeights();
-                    this.weightsWindowTracker = 0;
-                }
+                SmoothWeightedEndpoint endpoint = this.smoothWeightedEndpoints.get(i);
 
-                // It is okay to do roundRobin for first few requests till it reaches WINDOW size.
-                // After that it'll be proper LeastResponseTime based load distribution.
+                endpoint.currentWeight += endpoint.effectiveWeight;
+                total += endpoint.effectiveWeight;
 
-                WeightedLBOutboundEndpoint weightedLBOutboundEP = this.getNextEndpoint();
+                if (endpoint.effectiveWeight < endpoint.weight) {
+                    endpoint.effectiveWeight++;
+                }
 
-                endPoint = weightedLBOutboundEP.getLbOutboundEndpoint();
+                if (best == null || endpoint.currentWeight > best.currentWeight) {
+                    best = endpoint;
+                }
+            }
 
-            } else {
+            if (best == null || total == 0) {
+                log.debug("No OutboundEndpoint is available..");
+                return null;
+            }
 
-                log.error("No OutboundEndpoint is available..");
+            best.currentWeight -= total;
 
-            }
+            return best.lbOutboundEndpoint;
         }
-
-        return endPoint;
     }
 
     /**
-     * Each implementation of LB algorithm will have certain values pertained to it.
-     * (Eg: Round robin keeps track of index of OutboundEndpoint).
-     * Implementation of this method will resetHealthPropertiesToDefault them.
-     * <p>
-     * NOTE: In this case weightsWindow is dependant on no of endpoints.
-     * So, we have to take care of that too.
+     * Nothing to reset. There is no window in smooth weighted round robin.
      */
     @Override
     public void reset() {
 
-        synchronized (this.lock) {
-
-            if (this.weightedLBOutboundEndpoints.size() > 0 &&
-                    this.index >= this.weightedLBOutboundEndpoints.size()) {
-
-                this.index %= this.weightedLBOutboundEndpoints.size();
-                this.calculateWeightsWindow(); //Here in this case weights must be atleast one.
-                this.weightsWindowTracker %= this.weightsWindow;
-
-            } else if (this.weightedLBOutboundEndpoints.size() == 0) {
-
-                this.index = 0;
-                this.weightsWindow = 0;
-                this.weightsWindowTracker = 0;
-            }
-
-        }
     }
 
     /**
@@ -296,4 +259,38 @@ public class WeightedRoundRobin implements WeightedAlgorithm {
         return this.lock;
     }
 
+
+    /**
+     * Weights of an endpoint for smooth weighted round robin.
+     * <p>
+     * All fields are guarded by lock.
+     */
+    private static class SmoothWeightedEndpoint {
+
+        private final LBOutboundEndpoint lbOutboundEndpoint;
+
+        // Set by user in configuration or by setWeight().
+        private int weight;
+        // Weight used for picking. It is ramped up to weight.
+        private int effectiveWeight;
+        // Signed running value. Endpoint with highest value is picked next.
+        private int currentWeight = 0;
+
+        SmoothWeightedEndpoint(LBOutboundEndpoint lbOutboundEndpoint, int weight) {
+
+            this.lbOutboundEndpoint = lbOutboundEndpoint;
+            this.weight = weight;
+            this.effectiveWeight = weight;
+        }
+
+        String getName() {
+
+            return this.lbOutboundEndpoint.getName();
+        }
+
+        void resetCurrentWeight() {
+
+            this.currentWeight = 0;
+        }
+    }
 }
@@ -25,8 +25,13 @@ import org.wso2.carbon.gateway.core.flow.Mediator;
 import org.wso2.carbon.gateway.httploadbalancer.algorithm.simple.LeastResponseTime;
 import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
 import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
+import org.wso2.carbon.gateway.httploadbalancer.mediator.LoadBalancerMediator;
 import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
 import org.wso2.carbon.gateway.httploadbalancer.utils.CommonUtil;
+import org.wso2.carbon.gateway.httploadbalancer.utils.accesslog.AccessLog;
+import org.wso2.carbon.gateway.httploadbalancer.utils.retry.RetryState;
+import org.wso2.carbon.gateway.httploadbalancer.utils.slab.InFlightSlab;
+import org.wso2.carbon.gateway.httploadbalancer.utils.timer.TimeoutWheel;
 import org.wso2.carbon.messaging.CarbonCallback;
 import org.wso2.carbon.messaging.CarbonMessage;
 import org.wso2.carbon.messaging.Constants;
@@ -58,11 +63,62 @@ public class LoadBalancerMediatorCallBack implements CarbonCallback {
     //Time in milli seconds at which request has been made.
     private final long createdTime;
 
+    //Same as createdTime, from System.nanoTime(). Used for latency metrics.
+    private final long createdNanos;
+
+    //Time in milli seconds within which response has to arrive.
+    private final int timeoutMillis;
+
+    //Retry state of client's request. Null if request can't be retried.
+    private final RetryState retryState;
+
+    //Deadline of this callback in TimeoutWheel.
+    private volatile TimeoutWheel.Timeout<LoadBalancerMediatorCallBack> timeout;
+
+    //Index of slot given to this callback in callBackPool.
+    private volatile int slot = InFlightSlab.FULL;
+
     public long getCreatedTime() {
 
         return this.createdTime;
     }
 
+    public long getCreatedNanos() {
+
+        return this.createdNanos;
+    }
+
+    public int getTimeoutMillis() {
+
+        return this.timeoutMillis;
+    }
+
+    public int getSlot() {
+
+        return this.slot;
+    }
+
+    public void setSlot(int slot) {
+
+        this.slot = slot;
+    }
+
+    public void setTimeout(TimeoutWheel.Timeout<LoadBalancerMediatorCallBack> timeout) {
+
+        this.timeout = timeout;
+    }
+
+    /**
+     * Cancels deadline of this callback, if it has been scheduled.
+     */
+    public void cancelTimeout() {
+
+        TimeoutWheel.Timeout<LoadBalancerMediatorCallBack> scheduled = this.timeout;
+        if (scheduled != null) {
+            scheduled.cancel();
+        }
+    }
+
     public LBOutboundEndpoint getLbOutboundEndpoint() {
 
         return this.lbOutboundEndpoint;
@@ -74,6 +130,18 @@ public class LoadBalancerMediatorCallBack implements CarbonCallback {
         return this.parentCallback;
     }
 
+    /**
+     * @return callback of client's request, ie., first parent which is not a LoadBalancerMediatorCallBack.
+     */
+    public CarbonCallback getClientCallback() {
+
+        CarbonCallback callback = this.parentCallback;
+        while (callback instanceof LoadBalancerMediatorCallBack) {
+            callback = ((LoadBalancerMediatorCallBack) callback).getParentCallback();
+        }
+        return callback;
+    }
+
     private long getCurrentTime() {
 
         return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
@@ -88,6 +156,20 @@ public class LoadBalancerMediatorCallBack implements CarbonCallback {
     public LoadBalancerMediatorCallBack(CarbonCallback parentCallback, Mediator mediator,
                                         LoadBalancerConfigContext context, LBOutboundEndpoint lbOutboundEndpoint) {
 
+        this(parentCallback, mediator, context, lbOutboundEndpoint, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param parentCallback CarbonCallback.
+     * @param mediator       LoadBalancerMediator.
+     * @param retryState     retry state of client's request, null if it can't be retried.
+     */
+    public LoadBalancerMediatorCallBack(CarbonCallback parentCallback, Mediator mediator,
+                                        LoadBalancerConfigContext context, LBOutboundEndpoint lbOutboundEndpoint,
+                                        RetryState retryState) {
+
 
         this.parentCallback = parentCallback;
         this.mediator = mediator;
@@ -96,38 +178,63 @@ public class LoadBalancerMediatorCallBack implements CarbonCallback {
         // Note that we are assigning scheduled value way ahead before invoking outboundEndpoint.
         // this will be atleast 2 to 5 milli second difference, which might cause removal of
         // object from pool before response arrives. So we are adding a grace period of 5 ms time to it.
-        this.createdTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+        this.createdNanos = System.nanoTime();
+        this.createdTime = TimeUnit.NANOSECONDS.toMillis(this.createdNanos);
+        this.retryState = retryState;
+
+        //Callback of endpoint has same timeout as that of LoadBalancerMediator's callback.
+        if (parentCallback instanceof LoadBalancerMediatorCallBack) {
+            this.timeoutMillis = ((LoadBalancerMediatorCallBack) parentCallback).getTimeoutMillis();
+        } else if (retryState != null) {
+            this.timeoutMillis = retryState.getTryTimeout();
+        } else {
+            this.timeoutMillis = context.getReqTimeout();
+        }
 
 
     }
 
 
-    @Override
-    public void done(CarbonMessage carbonMessage) {
-
+    /**
+     * Cookies of endpoints are built when config is loaded, so this is a field read.
+     * An endpoint has no cookie only if its hash collided with another endpoint's.
+     */
+    private void setSessionCookie(CarbonMessage carbonMessage, LBOutboundEndpoint endpoint) {
 
-        /**
-         log.info("Inside LB call back mediator...");
+        String sessionCookie = endpoint.getSessionCookie();
+        if (sessionCookie != null) {
+            carbonMessage.setHeader(LoadBalancerConstants.SET_COOKIE_HEADER, sessionCookie);
+        } else {
+            log.debug("No LB cookie for endpoint : {}. Persistence will not be maintained..", endpoint.getName());
+        }
+    }
 
-         log.info("Transport Headers...");
-         log.info(carbonMessage.getHeaders().toString());
+    @Override
+    public void done(CarbonMessage carbonMessage) {
 
-         log.info("Properties...");
-         log.info(carbonMessage.getProperties().toString());
-         **/
+        if (log.isDebugEnabled()) {
+            log.debug("Transport Headers : {} Properties : {}", carbonMessage.getHeaders(),
+                    carbonMessage.getProperties());
+        }
 
         if (parentCallback instanceof LoadBalancerMediatorCallBack) {
 
-            //Locking is not required as we are operating on ConcurrentHashMap.
-            if (this.context.isInCallBackPool((LoadBalancerMediatorCallBack)
-                    carbonMessage.getProperty(Constants.CALL_BACK))) {
-
-                LoadBalancerMediatorCallBack callBack = (LoadBalancerMediatorCallBack)
-                        carbonMessage.getProperty(Constants.CALL_BACK);
+            LoadBalancerMediatorCallBack callBack = (LoadBalancerMediatorCallBack)
+                    carbonMessage.getProperty(Constants.CALL_BACK);
 
-                this.context.removeFromCallBackPool(callBack);
+            //Locking is not required as pool releases a callback with CAS.
+            //If removal fails, TimeoutHandler has already taken this callback.
+            if (this.context.removeFromCallBackPool(callBack)) {
                 //From this point, this callback will not be available in pool.
 
+                long currentNanos = System.nanoTime();
+                long latencyMicros = TimeUnit.NANOSECONDS.toMicros(currentNanos - callBack.getCreatedNanos());
+                int statusCode = CommonUtil.getStatusCode(carbonMessage);
+                callBack.getLbOutboundEndpoint().getCircuitBreaker().onResponse(callBack.getCreatedNanos(),
+                        currentNanos, statusCode);
+                callBack.getLbOutboundEndpoint().getMetrics().onResponse(latencyMicros, statusCode);
+                context.getMetrics().onResponse(latencyMicros, statusCode);
+
                 /**
                  * Resetting unHealthyRetries count, to avoid any false detection.
                  */
@@ -138,19 +245,27 @@ public class LoadBalancerMediatorCallBack implements CarbonCallback {
                 }
 
 
-                //We are using running average technique for Least Response Time algorithm.
+                //We are using moving average of response time for Least Response Time algorithm.
                 //So, we are doing this.
                 if (context.getAlgorithmName().equals(LoadBalancerConstants.LEAST_RESPONSE_TIME)) {
 
                     ((LeastResponseTime) context.getLoadBalancingAlgorithm()).
-                            setAvgResponseTime(callBack.getLbOutboundEndpoint(), (int)
-                                    (this.getCurrentTime() - callBack.getCreatedTime()));
+                            recordResponseTime(callBack.getLbOutboundEndpoint(),
+                                    this.getCurrentTime() - callBack.getCreatedTime());
+
+                }
 
+                AccessLog accessLog = context.getAccessLog();
+                if (accessLog.isSampled(statusCode)) {
+                    accessLog.response(statusCode, callBack.getLbOutboundEndpoint().getName(),
+                            this.getCurrentTime() - callBack.getCreatedTime());
                 }
 
             } else {
-                log.error("Response received after removing callback from pool.." +
+                log.debug("Response received after removing callback from pool.." +
                         "This response will be discarded. ");
+                context.getAccessLog().error(AccessLog.LATE_RESPONSE, 0, callBack.getLbOutboundEndpoint().getName(),
+                        this.getCurrentTime() - callBack.getCreatedTime());
                 return;
             }
 
@@ -160,32 +275,34 @@ public class LoadBalancerMediatorCallBack implements CarbonCallback {
 
                 /**Checking if there is any cookie already available in response from BE. **/
 
-                if (carbonMessage.getHeader(LoadBalancerConstants.SET_COOKIE_HEADER) != null ||
-                        carbonMessage.getHeader(LoadBalancerConstants.SET_COOKIE2_HEADER) != null) {
+                //Appending to appropriate header that is present in response from BE.
+                String cookieHeader = LoadBalancerConstants.SET_COOKIE_HEADER;
+                String existingCookie = carbonMessage.getHeader(cookieHeader);
+                if (existingCookie == null) {
+                    cookieHeader = LoadBalancerConstants.SET_COOKIE2_HEADER;
+                    existingCookie = carbonMessage.getHeader(cookieHeader);
+                }
+
+                if (existingCookie != null) {
                     //Cookie exists.
 
                     //Appending LB_COOKIE along with existing cookie.
-                    carbonMessage.setHeader(
-                            (//Appending to appropriate header that is present in response from BE.
-                                    carbonMessage.getHeader(LoadBalancerConstants.SET_COOKIE_HEADER) != null ?
-                                            LoadBalancerConstants.SET_COOKIE_HEADER :
-                                            LoadBalancerConstants.SET_COOKIE2_HEADER),
-                            //NOTE: Here we are appending our cooke to existing cookie's value from BE.
-                            CommonUtil.addLBCookieToExistingCookie(
-                                    carbonMessage.getHeader(LoadBalancerConstants.SET_COOKIE_HEADER),
-                                    CommonUtil.getCookieValue(carbonMessage, this.context)));
+                    //NOTE: Here we are appending our cooke to existing cookie's value from BE.
+                    String lbCookieFragment = callBack.getLbOutboundEndpoint().getLBCookieFragment();
+                    if (lbCookieFragment != null) {
+                        carbonMessage.setHeader(cookieHeader,
+                                CommonUtil.addLBCookieFragmentToExistingCookie(existingCookie, lbCookieFragment));
+                    }
 
                 } else { //There is no cookie in response from BE.
 
                     //Adding LB specific cookie.
-                    log.error("BE endpoint doesn't has it's own cookie. LB will insert it's own cookie for " +
+                    log.debug("BE endpoint doesn't has it's own cookie. LB will insert it's own cookie for " +
                             "the sake of maintaining persistence. ");
 
                     //Here we are not looking for Set-Cookie2 header coz, it is only for LB purpose.
                     //i.e., we are only inserting cookie. So using Set-Cookie itself.
-                    carbonMessage.setHeader(LoadBalancerConstants.SET_COOKIE_HEADER,
-                            CommonUtil.getSessionCookie(//here we are finding endpoint to insert appropriate cookie.
-                                    CommonUtil.getCookieValue(carbonMessage, this.context)));
+                    this.setSessionCookie(carbonMessage, callBack.getLbOutboundEndpoint());
 
                 }
 
@@ -196,16 +313,13 @@ public class LoadBalancerMediatorCallBack implements CarbonCallback {
                         carbonMessage.getHeader(LoadBalancerConstants.SET_COOKIE2_HEADER) != null) {
                     //Cookie exists.
 
-                    log.error("BE endpoint has it's own cookie, LB will DISCARD this. If" +
-                            "you want your application cookie to be used, please choose " +
-                            LoadBalancerConstants.APPLICATION_COOKIE +
-                            " mode of persistence");
+                    log.debug("BE endpoint has it's own cookie, LB will DISCARD this. If " +
+                            "you want your application cookie to be used, please choose {} mode of persistence",
+                            LoadBalancerConstants.APPLICATION_COOKIE);
                 }
 
                 //Adding LB specific cookie.
-                carbonMessage.setHeader(LoadBalancerConstants.SET_COOKIE_HEADER,
-                        CommonUtil.getSessionCookie(//here we are finding endpoint to insert appropriate cookie.
-                                CommonUtil.getCookieValue(carbonMessage, this.context)));
+                this.setSessionCookie(carbonMessage, callBack.getLbOutboundEndpoint());
 
             }
 
@@ -215,20 +329,51 @@ public class LoadBalancerMediatorCallBack implements CarbonCallback {
             parentCallback.done(carbonMessage);
 
 
+        } else if (this.isRetried(carbonMessage)) {
+
+            //Request has been sent to another endpoint. Response of that attempt will be sent back instead.
+            log.debug("Request has been retried on another endpoint..");
+
         } else if (mediator.hasNext()) { // If Mediator has a sibling after this
 
             try {
                 mediator.next(carbonMessage, parentCallback);
             } catch (Exception e) {
-                log.error("Error while mediating from Callback", e);
+                log.error("Error while mediating from Callback..", e);
+                context.getAccessLog().error(AccessLog.ERROR, 500, null, -1);
                 try {
                     CommonUtil.sendErrorResponse(parentCallback, true);
                 } catch (Exception e1) {
-                    log.error(e1.toString());
+                    log.error("Unable to send error response..", e1);
                 }
             }
+        } else { //LoadBalancerMediator is the last mediator, so response goes back to client.
+
+            parentCallback.done(carbonMessage);
         }
 
 
     }
+
+    /**
+     * @return true if request has been sent to another endpoint, as this attempt has failed.
+     */
+    private boolean isRetried(CarbonMessage carbonMessage) {
+
+        if (this.retryState == null) {
+            return false;
+        }
+
+        int statusCode = CommonUtil.getStatusCode(carbonMessage);
+        if (!this.retryState.canRetry(statusCode)) {
+            return false;
+        }
+
+        if (((LoadBalancerMediator) this.mediator).retry(this.retryState, this.parentCallback)) {
+            context.getAccessLog().error(AccessLog.RETRY, statusCode, this.lbOutboundEndpoint.getName(),
+                    this.getCurrentTime() - this.createdTime);
+            return true;
+        }
+        return false;
+    }
 }
@@ -19,6 +19,7 @@
 package org.wso2.carbon.gateway.httploadbalancer.config;
 
 import org.wso2.carbon.gateway.core.config.dsl.external.WUMLConfigurationBuilder;
+import org.wso2.carbon.gateway.httploadbalancer.mediator.LoadBalancerMediatorBuilder;
 
 
 /**
@@ -39,4 +40,18 @@ public class LBConfigManager {
         lbConfigHolder.configureGroupLoadbalancerMediator(integrationFlow, groupPath);
 
     }
+
+    /**
+     * @param integrationFlow integrationFlow being undeployed.
+     *                        <p>
+     *                        Housekeeping tasks and metrics of all its LBMediators are released.
+     *                        <p>
+     *                        NOTE: Gateway framework doesn't call this yet, as it has no undeploy hook.
+     *                        As of now, tasks of a config are released only when it is redeployed.
+     */
+    public static void removeLoadBalancers(WUMLConfigurationBuilder.IntegrationFlow integrationFlow) {
+
+        LoadBalancerMediatorBuilder.destroy(integrationFlow.getGWConfigHolder());
+
+    }
 }
@@ -18,6 +18,7 @@
 
 package org.wso2.carbon.gateway.httploadbalancer.config;
 
+import org.apache.commons.validator.routines.InetAddressValidator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.gateway.core.config.Parameter;
@@ -31,8 +32,12 @@ import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContex
 import org.wso2.carbon.gateway.httploadbalancer.mediator.LoadBalancerMediatorBuilder;
 import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
 import org.wso2.carbon.gateway.httploadbalancer.utils.CommonUtil;
+import org.wso2.carbon.gateway.httploadbalancer.utils.breaker.CircuitBreakerConfig;
+import org.wso2.carbon.gateway.httploadbalancer.utils.handlers.probe.HttpProbeConfig;
+import org.wso2.carbon.gateway.httploadbalancer.utils.retry.RetryPolicy;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -228,10 +233,11 @@ public class LoadBalancerConfigHolder {
     }
 
     /**
-     * @param lbOutboundEndpoints <p>
-     *                            Populates cookie handling maps.
+     * @param context LoadBalancerConfigContext whose LBOutboundEndpoints are already set.
+     *                <p>
+     *                Populates cookie handling maps and LB cookie of each endpoint.
      */
-    private void populateCookieMaps(Map<String, LBOutboundEndpoint> lbOutboundEndpoints) {
+    public static void populateCookieMaps(LoadBalancerConfigContext context) {
 
         //MUST: Initializing cookie maps.
         context.initCookieMaps();
@@ -239,22 +245,19 @@ public class LoadBalancerConfigHolder {
         // For the purpose of changing hashCode generating algorithm easily in future, we are doing this.
         HashFunction hashFunction = new MD5();
 
-        Set<Map.Entry<String, LBOutboundEndpoint>> entrySet = lbOutboundEndpoints.entrySet();
-        for (Map.Entry entry : entrySet) {
-
-            String hostAndPort = CommonUtil.getHostAndPort(
-                    ((LBOutboundEndpoint) entry.getValue()).getOutboundEndpoint().getUri());
+        for (Map.Entry<String, LBOutboundEndpoint> entry : context.getLbOutboundEndpoints().entrySet()) {
 
+            String hostAndPort = CommonUtil.getHostAndPort(entry.getValue().getOutboundEndpoint().getUri());
 
             String hashCode = hashFunction.hash(hostAndPort);
             if (!context.getCookieToOutboundEPKeyMap().containsKey(hashCode)) {
 
-                context.addToCookieToOutboundEPKeyMap(hashCode, entry.getKey().toString());
-                context.addToOutboundEPTOCookieMap(hostAndPort, hashCode);
+                context.addToCookieToOutboundEPKeyMap(hashCode, entry.getKey());
+                entry.getValue().setLBCookieValue(hashCode);
 
             } else {
                 log.error("Same hash code exists in map. Kindly contact administrator to resolve this issue.." +
-                        " Persistence will not be maintained for the endpoint : " + entry.getKey().toString());
+                        " Persistence will not be maintained for the endpoint : {}", entry.getKey());
             }
 
         }
@@ -262,34 +265,33 @@ public class LoadBalancerConfigHolder {
     }
 
     /**
-     * @param lbOutboundEndpoints Populates weight handling maps.
-     *                            <p>
-     *                            This method also does validation.
-     *                            <p>
-     *                            If weight is not defined for and endpoint, default value of 1 will be used.
+     * @param context LoadBalancerConfigContext whose LBOutboundEndpoints are already set.
+     * @param weights configured weight of each endpoint by its name.
+     *                <p>
+     *                Populates weight handling maps.
+     *                <p>
+     *                This method also does validation.
+     *                <p>
+     *                If weight is not defined for and endpoint, default value of 1 will be used.
      */
-    private void populateWeightsMap(Map<String, LBOutboundEndpoint> lbOutboundEndpoints) {
+    public static void populateWeightsMap(LoadBalancerConfigContext context, Map<String, String> weights) {
 
         // MUST: Initializing WeightMaps.
         context.initWeightsMap();
 
-        Set<Map.Entry<String, LBOutboundEndpoint>> entrySet = lbOutboundEndpoints.entrySet();
+        for (String key : context.getLbOutboundEndpoints().keySet()) {
 
-        for (Map.Entry entry : entrySet) {
-            String key = entry.getKey().toString();
-
-            if (this.contains(key)) {
+            if (weights.containsKey(key)) {
                 try {
-                    context.addToWeightsMap(key, Integer.parseInt(this.getFromConfig(key).getValue()));
+                    context.addToWeightsMap(key, Integer.parseInt(weights.get(key)));
                 } catch (Exception ex) {
                     log.error(ex.toString());
-                    log.error("Exception occurred while adding weight to OutboundEndpoint : "
-                            + key + " Default weight of 1 will be used..");
+                    log.error("Exception occurred while adding weight to OutboundEndpoint : {}" +
+                            " Default weight of 1 will be used..", key);
                 }
 
             } else {
-                log.warn("No weight specified for OutboundEndpoint : " + key
-                        + " Default weight of 1 will be used..");
+                log.warn("No weight specified for OutboundEndpoint : {} Default weight of 1 will be used..", key);
                 context.addToWeightsMap(key, 1);
             }
         }
@@ -310,11 +312,19 @@ public class LoadBalancerConfigHolder {
 
                         algorithmName.equals(LoadBalancerConstants.LEAST_RESPONSE_TIME) ||
 
-                        algorithmName.equals(LoadBalancerConstants.RANDOM)
+                        algorithmName.equals(LoadBalancerConstants.RANDOM) ||
+
+                        algorithmName.equals(LoadBalancerConstants.LEAST_CONNECTIONS)
                 ) {
 
             context.setAlgorithmName(algorithmName);
 
+            if (algorithmName.equals(LoadBalancerConstants.LEAST_RESPONSE_TIME)) {
+                validateLeastResponseTime();
+            } else if (algorithmName.equals(LoadBalancerConstants.STRICT_IP_HASHING)) {
+                validateHashing();
+            }
+
             // For weighted algorithms.
         } else if (
                 algorithmName.equals(LoadBalancerConstants.WEIGHTED_ROUND_ROBIN) ||
@@ -323,17 +333,134 @@ public class LoadBalancerConfigHolder {
                 ) {
 
             context.setAlgorithmName(algorithmName);
-            populateWeightsMap(context.getLbOutboundEndpoints());
+
+            Map<String, String> weights = new HashMap<>();
+            for (String key : context.getLbOutboundEndpoints().keySet()) {
+                if (this.contains(key)) {
+                    weights.put(key, this.getFromConfig(key).getValue());
+                }
+            }
+            populateWeightsMap(context, weights);
 
         } else {
             log.error("Currently this algorithm type is not supported...");
 
         }
 
-        log.info("Algorithm : " + context.getAlgorithmName());
+        log.info("Algorithm : {}", context.getAlgorithmName());
 
     }
 
+    /**
+     * LEAST_RESPONSE_TIME related validations.
+     * <p>
+     * Both keys are optional.
+     */
+    private void validateLeastResponseTime() {
+
+        if (this.getFromConfig(LoadBalancerConstants.RESPONSE_TIME_WINDOW) != null) {
+
+            String window = this.getFromConfig(LoadBalancerConstants.RESPONSE_TIME_WINDOW).getValue();
+
+            try {
+                int val = Integer.parseInt(window.trim());
+                if (val > 0) {
+                    context.setResponseTimeWindow(val);
+                } else {
+                    log.error("Invalid {} : {}. Loading DEFAULT value..",
+                            LoadBalancerConstants.RESPONSE_TIME_WINDOW, window);
+                }
+            } catch (NumberFormatException e) {
+                log.error("Invalid {} : {}. Loading DEFAULT value..",
+                        LoadBalancerConstants.RESPONSE_TIME_WINDOW, window);
+            }
+        }
+
+        if (this.getFromConfig(LoadBalancerConstants.RESPONSE_TIME_DECAY) != null) {
+
+            String decay = this.getFromConfig(LoadBalancerConstants.RESPONSE_TIME_DECAY).getValue();
+
+            try {
+                int val = CommonUtil.getTimeInMilliSeconds(decay.trim());
+                if (val > 0 && isWithInLimit(val)) {
+                    context.setResponseTimeDecay(val);
+                } else {
+                    log.error("Invalid {} : {}. Loading DEFAULT value..",
+                            LoadBalancerConstants.RESPONSE_TIME_DECAY, decay);
+                }
+            } catch (NumberFormatException e) {
+                log.error("Invalid {} : {}. Loading DEFAULT value..",
+                        LoadBalancerConstants.RESPONSE_TIME_DECAY, decay);
+            }
+        }
+
+        log.info("{} : {}, {} : {}",
+                LoadBalancerConstants.RESPONSE_TIME_WINDOW, context.getResponseTimeWindow(),
+                LoadBalancerConstants.RESPONSE_TIME_DECAY, context.getResponseTimeDecay());
+    }
+
+    /**
+     * Client IP hashing related validations.
+     * <p>
+     * All keys are optional.
+     */
+    private void validateHashing() {
+
+        if (this.getFromConfig(LoadBalancerConstants.HASHING_METHOD) != null) {
+
+            String hashingMethod = this.getFromConfig(LoadBalancerConstants.HASHING_METHOD).getValue().trim();
+
+            if (hashingMethod.equals(LoadBalancerConstants.CONSISTENT_HASHING) ||
+                    hashingMethod.equals(LoadBalancerConstants.MAGLEV_HASHING)) {
+                context.setHashingMethod(hashingMethod);
+            } else {
+                log.error("Invalid {} : {}. Loading DEFAULT value..",
+                        LoadBalancerConstants.HASHING_METHOD, hashingMethod);
+            }
+        }
+
+        if (this.getFromConfig(LoadBalancerConstants.VIRTUAL_NODES) != null) {
+
+            String virtualNodes = this.getFromConfig(LoadBalancerConstants.VIRTUAL_NODES).getValue();
+
+            try {
+                int val = Integer.parseInt(virtualNodes.trim());
+                if (val > 0) {
+                    context.setVirtualNodes(val);
+                } else {
+                    log.error("Invalid {} : {}. Loading DEFAULT value..",
+                            LoadBalancerConstants.VIRTUAL_NODES, virtualNodes);
+                }
+            } catch (NumberFormatException e) {
+                log.error("Invalid {} : {}. Loading DEFAULT value..",
+                        LoadBalancerConstants.VIRTUAL_NODES, virtualNodes);
+            }
+        }
+
+        if (this.getFromConfig(LoadBalancerConstants.BOUNDED_LOAD_FACTOR) != null) {
+
+            String factor = this.getFromConfig(LoadBalancerConstants.BOUNDED_LOAD_FACTOR).getValue();
+
+            try {
+                double val = Double.parseDouble(factor.trim());
+                if (val >= 0) {
+                    context.setBoundedLoadFactor(val);
+                } else {
+                    log.error("Invalid {} : {}. Loading DEFAULT value..",
+                            LoadBalancerConstants.BOUNDED_LOAD_FACTOR, factor);
+                }
+            } catch (NumberFormatException e) {
+                log.error("Invalid {} : {}. Loading DEFAULT value..",
+                        LoadBalancerConstants.BOUNDED_LOAD_FACTOR, factor);
+            }
+        }
+
+        log.info("{} : {}, {} : {}, {} : {}",
+                LoadBalancerConstants.HASHING_METHOD, context.getHashingMethod(),
+                LoadBalancerConstants.VIRTUAL_NODES, context.getVirtualNodes(),
+                LoadBalancerConstants.BOUNDED_LOAD_FACTOR, context.getBoundedLoadFactor());
+    }
+
     /**
      * Session persistence related validations.
      */
@@ -349,9 +476,9 @@ public class LoadBalancerConfigHolder {
                 context.setPersistence(persistenceType);
             } else {
                 context.setPersistence(LoadBalancerConstants.NO_PERSISTENCE);
-                log.error(context.getAlgorithmName() + " cannot only have " +
-                        LoadBalancerConstants.CLIENT_IP_HASHING +
-                        " as persistence policy. It has been changed to " + LoadBalancerConstants.NO_PERSISTENCE);
+                log.error("{} cannot only have {} as persistence policy. It has been changed to {}",
+                        context.getAlgorithmName(), LoadBalancerConstants.CLIENT_IP_HASHING,
+                        LoadBalancerConstants.NO_PERSISTENCE);
             }
             // For Algorithm STRICT_IP_HASHING, persistence policy MUST be NO_PERSISTENCE.
         } else if (context.getAlgorithmName().equals(LoadBalancerConstants.STRICT_IP_HASHING)) {
@@ -360,9 +487,8 @@ public class LoadBalancerConfigHolder {
                 context.setPersistence(persistenceType);
             } else {
                 context.setPersistence(LoadBalancerConstants.NO_PERSISTENCE);
-                log.error(LoadBalancerConstants.STRICT_IP_HASHING + " can only have " +
-                        LoadBalancerConstants.NO_PERSISTENCE + " as persistence policy.." +
-                        " It has been changed..");
+                log.error("{} can only have {} as persistence policy.. It has been changed..",
+                        LoadBalancerConstants.STRICT_IP_HASHING, LoadBalancerConstants.NO_PERSISTENCE);
             }
 
         } else {
@@ -375,6 +501,7 @@ public class LoadBalancerConfigHolder {
             } else if (persistenceType.equals(LoadBalancerConstants.CLIENT_IP_HASHING)) {
 
                 context.setPersistence(persistenceType);
+                validateHashing();
                 context.initStrictClientIPHashing
                         (CommonUtil.getLBOutboundEndpointsList(context.getLbOutboundEndpoints()));
 
@@ -382,11 +509,11 @@ public class LoadBalancerConfigHolder {
                     persistenceType.equals(LoadBalancerConstants.LB_COOKIE)) {
 
                 context.setPersistence(persistenceType);
-                populateCookieMaps(context.getLbOutboundEndpoints());
+                populateCookieMaps(context);
             }
 
         }
-        log.info("Persistence : " + context.getPersistence());
+        log.info("Persistence : {}", context.getPersistence());
     }
 
 
@@ -398,12 +525,17 @@ public class LoadBalancerConfigHolder {
 
         String healthCheckType = this.getFromConfig(LoadBalancerConstants.HEALTH_CHECK_TYPE).getValue();
 
-        //For ACTIVE or PASSIVE.
+        //For ACTIVE, HTTP or PASSIVE.
         if (healthCheckType.equals(LoadBalancerConstants.PASSIVE_HEALTH_CHECK) ||
-                healthCheckType.equals(LoadBalancerConstants.ACTIVE_HEALTH_CHECK)) {
+                healthCheckType.equals(LoadBalancerConstants.ACTIVE_HEALTH_CHECK) ||
+                healthCheckType.equals(LoadBalancerConstants.HTTP_HEALTH_CHECK)) {
 
             context.setHealthCheck(healthCheckType);
 
+            if (healthCheckType.equals(LoadBalancerConstants.HTTP_HEALTH_CHECK)) {
+                validateHttpHealthCheck();
+            }
+
             if (this.getFromConfig(LoadBalancerConstants.HEALTH_CHECK_REQUEST_TIMEOUT) != null) {
 
                 String hcReqTimeOut = this.getFromConfig
@@ -413,20 +545,20 @@ public class LoadBalancerConfigHolder {
 
                 if (isWithInLimit(timeout)) {
                     context.setReqTimeout(timeout);
-                    log.info("Request TIME_OUT : " + context.getReqTimeout());
+                    log.info("Request TIME_OUT : {}", context.getReqTimeout());
                 } else {
                     //TODO: Is this okay..?
                     context.setReqTimeout(LoadBalancerConstants.DEFAULT_REQ_TIMEOUT);
-                    log.error("Exceeded TIMEOUT LIMIT. Loading DEFAULT value for " +
-                            "Request TIME_OUT : " + context.getReqTimeout());
+                    log.error("Exceeded TIMEOUT LIMIT. Loading DEFAULT value for Request TIME_OUT : {}",
+                            context.getReqTimeout());
                 }
 
 
             } else {
                 //TODO: Is this okay..?
                 context.setReqTimeout(LoadBalancerConstants.DEFAULT_REQ_TIMEOUT);
-                log.error("LB_REQUEST_TIMEOUT NOT SPECIFIED. Loading DEFAULT value for " +
-                        "Request TIME_OUT : " + context.getReqTimeout());
+                log.error("LB_REQUEST_TIMEOUT NOT SPECIFIED. Loading DEFAULT value for Request TIME_OUT : {}",
+                        context.getReqTimeout());
             }
 
             if (this.getFromConfig(LoadBalancerConstants.HEALTH_CHECK_UNHEALTHY_RETRIES) != null) {
@@ -437,14 +569,14 @@ public class LoadBalancerConfigHolder {
 
                 int uhRetries = CommonUtil.getRetriesCount(hcUHRetries);
                 context.setUnHealthyRetries(uhRetries);
-                log.info(LoadBalancerConstants.HEALTH_CHECK_UNHEALTHY_RETRIES + " : " + context.getUnHealthyRetries());
+                log.info("{} : {}", LoadBalancerConstants.HEALTH_CHECK_UNHEALTHY_RETRIES,
+                        context.getUnHealthyRetries());
 
             } else {
                 //TODO: Is this okay..?
                 context.setUnHealthyRetries(LoadBalancerConstants.DEFAULT_RETRIES);
-                log.error("UNHEALTHY_RETRIES_VALUE NOT SPECIFIED.. Loading default value." +
-                        LoadBalancerConstants.HEALTH_CHECK_UNHEALTHY_RETRIES + " : " +
-                        context.getUnHealthyRetries());
+                log.error("UNHEALTHY_RETRIES_VALUE NOT SPECIFIED.. Loading default value. {} : {}",
+                        LoadBalancerConstants.HEALTH_CHECK_UNHEALTHY_RETRIES, context.getUnHealthyRetries());
 
             }
 
@@ -455,13 +587,13 @@ public class LoadBalancerConfigHolder {
 
                 int hRetries = CommonUtil.getRetriesCount(hcHRetries);
                 context.setHealthyRetries(hRetries);
-                log.info(LoadBalancerConstants.HEALTH_CHECK_HEALTHY_RETRIES + " : " + context.getHealthyRetries());
+                log.info("{} : {}", LoadBalancerConstants.HEALTH_CHECK_HEALTHY_RETRIES, context.getHealthyRetries());
 
             } else {
                 //TODO: Is this okay..?
                 context.setHealthyRetries(LoadBalancerConstants.DEFAULT_RETRIES);
-                log.error("HEALTHY_RETRIES_VALUE NOT SPECIFIED.. Loading default value." +
-                        LoadBalancerConstants.HEALTH_CHECK_HEALTHY_RETRIES + " : " + context.getHealthyRetries());
+                log.error("HEALTHY_RETRIES_VALUE NOT SPECIFIED.. Loading default value. {} : {}",
+                        LoadBalancerConstants.HEALTH_CHECK_HEALTHY_RETRIES, context.getHealthyRetries());
             }
 
             if (this.getFromConfig(LoadBalancerConstants.HEALTH_CHECK_HEALTHY_CHECK_INTERVAL) != null) {
@@ -474,7 +606,7 @@ public class LoadBalancerConfigHolder {
                 if (isWithInLimit(interval)) {
 
                     context.setHealthycheckInterval(interval);
-                    log.info(LoadBalancerConstants.HEALTH_CHECK_HEALTHY_CHECK_INTERVAL + " : " +
+                    log.info("{} : {}", LoadBalancerConstants.HEALTH_CHECK_HEALTHY_CHECK_INTERVAL,
                             context.getHealthycheckInterval());
 
                 } else {
@@ -482,8 +614,8 @@ public class LoadBalancerConfigHolder {
 
                     context.setHealthycheckInterval(LoadBalancerConstants.DEFAULT_REQ_TIMEOUT);
 
-                    log.error("Exceeded HEALTHY_CHECK_TIMEOUT LIMIT. Loading DEFAULT value for " +
-                            LoadBalancerConstants.HEALTH_CHECK_HEALTHY_CHECK_INTERVAL + " : " +
+                    log.error("Exceeded HEALTHY_CHECK_TIMEOUT LIMIT. Loading DEFAULT value for {} : {}",
+                            LoadBalancerConstants.HEALTH_CHECK_HEALTHY_CHECK_INTERVAL,
                             context.getHealthycheckInterval());
                 }
 
@@ -493,9 +625,8 @@ public class LoadBalancerConfigHolder {
 
                 context.setHealthycheckInterval(LoadBalancerConstants.DEFAULT_REQ_TIMEOUT);
 
-                log.error("HEALTHY_CHECK_TIMEOUT LIMIT NOT SPECIFIED. Loading DEFAULT value for " +
-                        LoadBalancerConstants.HEALTH_CHECK_HEALTHY_CHECK_INTERVAL + " : " +
-                        context.getHealthycheckInterval());
+                log.error("HEALTHY_CHECK_TIMEOUT LIMIT NOT SPECIFIED. Loading DEFAULT value for {} : {}",
+                        LoadBalancerConstants.HEALTH_CHECK_HEALTHY_CHECK_INTERVAL, context.getHealthycheckInterval());
 
             }
 
@@ -526,24 +657,262 @@ public class LoadBalancerConfigHolder {
 
                 if (isWithInLimit(timeout)) {
                     context.setReqTimeout(timeout);
-                    log.info("Request TIME_OUT : " + context.getReqTimeout());
+                    log.info("Request TIME_OUT : {}", context.getReqTimeout());
                 } else {
                     //TODO: Is this okay..?
                     context.setReqTimeout(LoadBalancerConstants.DEFAULT_REQ_TIMEOUT);
-                    log.error("Exceeded TIMEOUT LIMIT. Loading DEFAULT value for " +
-                            "Request TIME_OUT : " + context.getReqTimeout());
+                    log.error("Exceeded TIMEOUT LIMIT. Loading DEFAULT value for Request TIME_OUT : {}",
+                            context.getReqTimeout());
                 }
             } else {
                 //TODO: Is this okay..?
                 context.setReqTimeout(LoadBalancerConstants.DEFAULT_REQ_TIMEOUT);
-                log.error("LB_REQUEST_TIMEOUT NOT SPECIFIED. Loading DEFAULT value for " +
-                        "Request TIME_OUT : " + context.getReqTimeout());
+                log.error("LB_REQUEST_TIMEOUT NOT SPECIFIED. Loading DEFAULT value for Request TIME_OUT : {}",
+                        context.getReqTimeout());
+            }
+
+        }
+
+        log.info("HEALTH CHECK TYPE : {}", context.getHealthCheck());
+
+    }
+
+
+    /**
+     * HTTP HealthCheck related validations.
+     * <p>
+     * All HTTP specific keys are optional. eg: GET / expecting any of 2xx or 3xx.
+     */
+    private void validateHttpHealthCheck() {
+
+        String path = LoadBalancerConstants.DEFAULT_HEALTH_CHECK_PATH;
+        int minStatus = LoadBalancerConstants.DEFAULT_HEALTH_CHECK_MIN_STATUS;
+        int maxStatus = LoadBalancerConstants.DEFAULT_HEALTH_CHECK_MAX_STATUS;
+        String expectedBody = null;
+
+        if (this.getFromConfig(LoadBalancerConstants.HEALTH_CHECK_PATH) != null) {
+
+            path = this.getFromConfig(LoadBalancerConstants.HEALTH_CHECK_PATH).getValue().trim();
+            if (!path.startsWith("/")) {
+                path = "/" + path;
+            }
+        }
+
+        if (this.getFromConfig(LoadBalancerConstants.HEALTH_CHECK_EXPECTED_STATUS) != null) {
+
+            String expectedStatus = this.getFromConfig(LoadBalancerConstants.HEALTH_CHECK_EXPECTED_STATUS).getValue();
+
+            try {
+                // eg: 200-399 or 200
+                String[] range = expectedStatus.split("-");
+                int min = Integer.parseInt(range[0].trim());
+                int max = range.length > 1 ? Integer.parseInt(range[1].trim()) : min;
+
+                if (min >= 100 && max <= 599 && min <= max) {
+                    minStatus = min;
+                    maxStatus = max;
+                } else {
+                    log.error("Invalid {} : {}. Loading DEFAULT value..",
+                            LoadBalancerConstants.HEALTH_CHECK_EXPECTED_STATUS, expectedStatus);
+                }
+            } catch (NumberFormatException e) {
+                log.error("Invalid {} : {}. Loading DEFAULT value..",
+                        LoadBalancerConstants.HEALTH_CHECK_EXPECTED_STATUS, expectedStatus);
             }
+        }
+
+        if (this.getFromConfig(LoadBalancerConstants.HEALTH_CHECK_EXPECTED_BODY) != null) {
+
+            expectedBody = this.getFromConfig(LoadBalancerConstants.HEALTH_CHECK_EXPECTED_BODY).getValue();
+        }
+
+        context.setHttpProbeConfig(new HttpProbeConfig(path, minStatus, maxStatus, expectedBody));
+        log.info("HTTP health check : {}", context.getHttpProbeConfig());
+    }
+
+
+    /**
+     * Validates limit on no of in-flight requests. It is optional.
+     */
+    private void validateMaxInFlightRequests() {
 
+        if (this.getFromConfig(LoadBalancerConstants.MAX_IN_FLIGHT_REQUESTS) != null) {
+
+            String maxInFlightRequests = this.getFromConfig(LoadBalancerConstants.MAX_IN_FLIGHT_REQUESTS).getValue();
+
+            try {
+                int val = Integer.parseInt(maxInFlightRequests.trim());
+                if (val > 0) {
+                    context.setMaxInFlightRequests(val);
+                } else {
+                    log.error("Invalid {} : {}. Loading DEFAULT value..",
+                            LoadBalancerConstants.MAX_IN_FLIGHT_REQUESTS, maxInFlightRequests);
+                }
+            } catch (NumberFormatException e) {
+                log.error("Invalid {} : {}. Loading DEFAULT value..",
+                        LoadBalancerConstants.MAX_IN_FLIGHT_REQUESTS, maxInFlightRequests);
+            }
         }
 
-        log.info("HEALTH CHECK TYPE : " + context.getHealthCheck());
+        log.info("{} : {}", LoadBalancerConstants.MAX_IN_FLIGHT_REQUESTS, context.getMaxInFlightRequests());
+    }
+
+
+    /**
+     * Validates access log sampling. It is optional.
+     */
+    private void validateAccessLog() {
+
+        if (this.getFromConfig(LoadBalancerConstants.ACCESS_LOG_SAMPLE_RATE) != null) {
+
+            String sampleRate = this.getFromConfig(LoadBalancerConstants.ACCESS_LOG_SAMPLE_RATE).getValue();
+
+            try {
+                int val = Integer.parseInt(sampleRate.trim());
+                if (val >= 0) {
+                    context.setAccessLogSampleRate(val);
+                } else {
+                    log.error("Invalid {} : {}. Loading DEFAULT value..",
+                            LoadBalancerConstants.ACCESS_LOG_SAMPLE_RATE, sampleRate);
+                }
+            } catch (NumberFormatException e) {
+                log.error("Invalid {} : {}. Loading DEFAULT value..",
+                        LoadBalancerConstants.ACCESS_LOG_SAMPLE_RATE, sampleRate);
+            }
+        }
+
+        log.info("{} : {}", LoadBalancerConstants.ACCESS_LOG_SAMPLE_RATE, context.getAccessLogSampleRate());
+    }
+
+
+    /**
+     * Validates port and bind address on which metrics are served. Both are optional.
+     */
+    private void validateMetricsPort() {
+
+        if (this.getFromConfig(LoadBalancerConstants.METRICS_PORT) != null) {
+
+            String metricsPort = this.getFromConfig(LoadBalancerConstants.METRICS_PORT).getValue();
+
+            try {
+                int val = Integer.parseInt(metricsPort.trim());
+                if (val > 0 && val <= 65535) {
+                    context.setMetricsPort(val);
+                } else {
+                    log.error("Invalid {} : {}. Metrics will be available only through JMX..",
+                            LoadBalancerConstants.METRICS_PORT, metricsPort);
+                }
+            } catch (NumberFormatException e) {
+                log.error("Invalid {} : {}. Metrics will be available only through JMX..",
+                        LoadBalancerConstants.METRICS_PORT, metricsPort);
+            }
+
+            log.info("{} : {}", LoadBalancerConstants.METRICS_PORT, context.getMetricsPort());
+        }
+
+        if (this.getFromConfig(LoadBalancerConstants.METRICS_BIND_ADDRESS) != null) {
+
+            String bindAddress = this.getFromConfig(LoadBalancerConstants.METRICS_BIND_ADDRESS).getValue().trim();
+
+            if (InetAddressValidator.getInstance().isValid(bindAddress)) {
+                context.setMetricsBindAddress(bindAddress);
+            } else {
+                log.error("Invalid {} : {}. Default value of {} will be used..",
+                        LoadBalancerConstants.METRICS_BIND_ADDRESS, bindAddress,
+                        LoadBalancerConstants.DEFAULT_METRICS_BIND_ADDRESS);
+            }
+
+            log.info("{} : {}", LoadBalancerConstants.METRICS_BIND_ADDRESS, context.getMetricsBindAddress());
+        }
+    }
+
+
+    /**
+     * Validates circuit breaker of endpoints. All keys are optional.
+     * <p>
+     * Circuit breaker is disabled unless at least one of its keys is configured.
+     * Keys that are not configured take their defaults.
+     * <p>
+     * MUST be called after health check validation, as slow call duration defaults to half of request timeout.
+     */
+    private void validateCircuitBreaker() {
+
+        if (this.getFromConfig(LoadBalancerConstants.CIRCUIT_BREAKER_FAILURE_RATE) == null &&
+                this.getFromConfig(LoadBalancerConstants.CIRCUIT_BREAKER_SLOW_CALL_RATE) == null &&
+                this.getFromConfig(LoadBalancerConstants.CIRCUIT_BREAKER_SLOW_CALL_DURATION) == null &&
+                this.getFromConfig(LoadBalancerConstants.CIRCUIT_BREAKER_MINIMUM_CALLS) == null &&
+                this.getFromConfig(LoadBalancerConstants.CIRCUIT_BREAKER_WINDOW) == null &&
+                this.getFromConfig(LoadBalancerConstants.CIRCUIT_BREAKER_OPEN_DURATION) == null &&
+                this.getFromConfig(LoadBalancerConstants.CIRCUIT_BREAKER_HALF_OPEN_TRIALS) == null) {
+
+            context.setCircuitBreakerConfig(CircuitBreakerConfig.DISABLED);
+            log.info("Circuit breaker is disabled..");
+            return;
+        }
+
+        int failureRate = getBoundedValue(LoadBalancerConstants.CIRCUIT_BREAKER_FAILURE_RATE,
+                LoadBalancerConstants.DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE, 0, 100, false);
+        int slowCallRate = getBoundedValue(LoadBalancerConstants.CIRCUIT_BREAKER_SLOW_CALL_RATE,
+                LoadBalancerConstants.DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_RATE, 0, 100, false);
+        int slowCallDuration = getBoundedValue(LoadBalancerConstants.CIRCUIT_BREAKER_SLOW_CALL_DURATION,
+                context.getReqTimeout() / 2, 1, LoadBalancerConstants.MAX_TIMEOUT_VAL, true);
+        int minimumCalls = getBoundedValue(LoadBalancerConstants.CIRCUIT_BREAKER_MINIMUM_CALLS,
+                LoadBalancerConstants.DEFAULT_CIRCUIT_BREAKER_MINIMUM_CALLS, 1, Integer.MAX_VALUE, false);
+        int window = getBoundedValue(LoadBalancerConstants.CIRCUIT_BREAKER_WINDOW,
+                LoadBalancerConstants.DEFAULT_CIRCUIT_BREAKER_WINDOW, 10, LoadBalancerConstants.MAX_TIMEOUT_VAL, true);
+        int openDuration = getBoundedValue(LoadBalancerConstants.CIRCUIT_BREAKER_OPEN_DURATION,
+                LoadBalancerConstants.DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION, 1, LoadBalancerConstants.MAX_TIMEOUT_VAL,
+                true);
+        int halfOpenTrials = getBoundedValue(LoadBalancerConstants.CIRCUIT_BREAKER_HALF_OPEN_TRIALS,
+                LoadBalancerConstants.DEFAULT_CIRCUIT_BREAKER_HALF_OPEN_TRIALS, 1, Integer.MAX_VALUE, false);
+
+        context.setCircuitBreakerConfig(new CircuitBreakerConfig(failureRate, slowCallRate, slowCallDuration,
+                minimumCalls, window, openDuration, halfOpenTrials));
+        log.info("Circuit breaker : {}", context.getCircuitBreakerConfig());
+    }
+
+    /**
+     * Validates retries of failed requests. All keys are optional.
+     * <p>
+     * MUST be called after health check validation, as timeouts default to request timeout.
+     */
+    private void validateRetry() {
+
+        int maxAttempts = getBoundedValue(LoadBalancerConstants.RETRY_MAX_ATTEMPTS,
+                LoadBalancerConstants.DEFAULT_RETRY_MAX_ATTEMPTS, 1, Integer.MAX_VALUE, false);
+        int perTryTimeout = getBoundedValue(LoadBalancerConstants.RETRY_PER_TRY_TIMEOUT,
+                context.getReqTimeout(), 1, LoadBalancerConstants.MAX_TIMEOUT_VAL, true);
+        int budget = getBoundedValue(LoadBalancerConstants.RETRY_BUDGET,
+                context.getReqTimeout(), 1, LoadBalancerConstants.MAX_TIMEOUT_VAL, true);
+        int maxBodySize = getBoundedValue(LoadBalancerConstants.RETRY_MAX_BODY_SIZE,
+                LoadBalancerConstants.DEFAULT_RETRY_MAX_BODY_SIZE, 0, Integer.MAX_VALUE, false);
+
+        context.setRetryPolicy(new RetryPolicy(maxAttempts, perTryTimeout, budget, maxBodySize));
+        log.info("Retry : {}", context.getRetryPolicy());
+    }
+
+    /**
+     * @return value of given key if it is within [minValue, maxValue], otherwise defaultValue.
+     */
+    private int getBoundedValue(String key, int defaultValue, int minValue, int maxValue, boolean isTime) {
+
+        if (this.getFromConfig(key) == null) {
+            return defaultValue;
+        }
+
+        String value = this.getFromConfig(key).getValue();
+
+        try {
+            int val = isTime ? CommonUtil.getTimeInMilliSeconds(value.trim()) : Integer.parseInt(value.trim());
+            if (val >= minValue && val <= maxValue) {
+                return val;
+            }
+        } catch (NumberFormatException e) {
+            //Logged below.
+        }
 
+        log.error("Invalid {} : {}. Loading DEFAULT value..", key, value);
+        return defaultValue;
     }
 
 
@@ -557,6 +926,11 @@ public class LoadBalancerConfigHolder {
         validateAlgorithm();
         validatePersistence();
         validateHealthCheck();
+        validateCircuitBreaker();
+        validateRetry();
+        validateMaxInFlightRequests();
+        validateAccessLog();
+        validateMetricsPort();
 
     }
 
@@ -49,6 +49,75 @@ public class LoadBalancerConstants {
     // Scheduled time interval after which LB has to check if an OutboundEndpoint is healthy again.
     public static final String HEALTH_CHECK_HEALTHY_CHECK_INTERVAL = "healthyCheckInterval";
 
+    // Path to which HTTP health check requests are sent. eg: /health
+    public static final String HEALTH_CHECK_PATH = "healthCheckPath";
+
+    // Acceptable status codes for HTTP health check. eg: 200-399 or 200
+    public static final String HEALTH_CHECK_EXPECTED_STATUS = "healthCheckExpectedStatus";
+
+    // Optional substring that has to be present in HTTP health check response body.
+    public static final String HEALTH_CHECK_EXPECTED_BODY = "healthCheckExpectedBody";
+
+    // No of requests after which LEAST_RESPONSE_TIME recomputes weights of endpoints.
+    public static final String RESPONSE_TIME_WINDOW = "responseTimeWindow";
+
+    // Time after which a response time sample carries 1/e of its weight in LEAST_RESPONSE_TIME. eg: 2s
+    public static final String RESPONSE_TIME_DECAY = "responseTimeDecay";
+
+    // No of points per endpoint on consistent hash ring used by STRICT_IP_HASHING and CLIENT_IP_HASHING.
+    public static final String VIRTUAL_NODES = "virtualNodes";
+
+    // Hash used by STRICT_IP_HASHING and CLIENT_IP_HASHING. eg: CONSISTENT_HASH or MAGLEV
+    public static final String HASHING_METHOD = "hashingMethod";
+
+    // With CLIENT_IP_HASHING, an endpoint having more than (1 + this) times average in-flight requests is skipped.
+    public static final String BOUNDED_LOAD_FACTOR = "boundedLoadFactor";
+
+    // Maximum no of requests awaiting response. Beyond this, requests are rejected with 503.
+    public static final String MAX_IN_FLIGHT_REQUESTS = "maxInFlightRequests";
+
+    // One in these many responses is written to access log. Errors are always written. 0 disables sampling.
+    public static final String ACCESS_LOG_SAMPLE_RATE = "accessLogSampleRate";
+
+    // Port on which metrics of all LB configs are served as plain text at /metrics. Not served by default.
+    public static final String METRICS_PORT = "metricsPort";
+
+    // IP address of interface on which metrics are served, eg: 0.0.0.0 for all interfaces.
+    public static final String METRICS_BIND_ADDRESS = "metricsBindAddress";
+
+    // Percentage of failed calls (5xx or timeouts) in window that opens circuit of an endpoint. 0 disables it.
+    public static final String CIRCUIT_BREAKER_FAILURE_RATE = "circuitBreakerFailureRate";
+
+    // Percentage of slow calls in window that opens circuit of an endpoint. 0 disables it.
+    public static final String CIRCUIT_BREAKER_SLOW_CALL_RATE = "circuitBreakerSlowCallRate";
+
+    // Calls taking at least this long are slow. eg: 2s. Defaults to half of requestTimeout.
+    public static final String CIRCUIT_BREAKER_SLOW_CALL_DURATION = "circuitBreakerSlowCallDuration";
+
+    // Minimum no of calls in window before rates are considered.
+    public static final String CIRCUIT_BREAKER_MINIMUM_CALLS = "circuitBreakerMinimumCalls";
+
+    // Rolling window over which rates are computed. eg: 10s
+    public static final String CIRCUIT_BREAKER_WINDOW = "circuitBreakerWindow";
+
+    // Time for which an open circuit rejects all requests before allowing trial calls. eg: 5s
+    public static final String CIRCUIT_BREAKER_OPEN_DURATION = "circuitBreakerOpenDuration";
+
+    // No of trial calls that have to succeed to close circuit again.
+    public static final String CIRCUIT_BREAKER_HALF_OPEN_TRIALS = "circuitBreakerHalfOpenTrials";
+
+    // Maximum no of times an idempotent request is sent, including first attempt. 1 disables retries.
+    public static final String RETRY_MAX_ATTEMPTS = "retryMaxAttempts";
+
+    // Time within which each attempt has to be answered. eg: 2s. Defaults to requestTimeout.
+    public static final String RETRY_PER_TRY_TIMEOUT = "retryPerTryTimeout";
+
+    // Overall time, from first attempt, after which no more attempts are made. eg: 10s. Defaults to requestTimeout.
+    public static final String RETRY_BUDGET = "retryBudget";
+
+    // Requests with a bigger body (in bytes) are never retried, as body has to be kept in memory to be replayed.
+    public static final String RETRY_MAX_BODY_SIZE = "retryMaxBodySize";
+
 
 
     /**
@@ -77,11 +146,35 @@ public class LoadBalancerConstants {
     //This value will be used in ConsistentHash algorithm.
     public static final int REPLICATION_FACTOR = 1;
 
+    /**
+     * Hashing methods for Client IP based hashing.
+     */
+    //Consistent hash ring with virtual nodes. This is the default.
+    public static final String CONSISTENT_HASHING = "CONSISTENT_HASH";
+
+    //Maglev lookup table. Better balance and O(1) lookup, table is rebuilt on housekeeping threads.
+    public static final String MAGLEV_HASHING = "MAGLEV";
+
+    //Default no of points per endpoint on ConsistentHashRing.
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    //Size of Maglev lookup table. It has to be prime.
+    public static final int DEFAULT_MAGLEV_TABLE_SIZE = 65537;
+
+    //An endpoint can have at most 25% more than average in-flight requests with CLIENT_IP_HASHING.
+    public static final double DEFAULT_BOUNDED_LOAD_FACTOR = 0.25;
+
+    //No of recent clients whose endpoint is remembered by StrictClientIPHashing, so that they are not hashed again.
+    public static final int DEFAULT_CLIENT_IP_CACHE_SIZE = 4096;
+
 
     public static final String LEAST_RESPONSE_TIME = "LEAST_RESPONSE_TIME";
 
     public static final String RANDOM = "RANDOM";
 
+    //Power of two choices. Less loaded of two randomly chosen endpoints, in terms of in-flight requests.
+    public static final String LEAST_CONNECTIONS = "LEAST_CONNECTIONS";
+
     public static final String WEIGHTED_ROUND_ROBIN = "WEIGHTED_ROUND_ROBIN";
 
     public static final String WEIGHTED_RANDOM = "WEIGHTED_RANDOM";
@@ -141,6 +234,8 @@ public class LoadBalancerConstants {
      */
     public static final String ACTIVE_HEALTH_CHECK = "ACTIVE";
     public static final String PASSIVE_HEALTH_CHECK = "PASSIVE";
+    //Same as ACTIVE, but endpoints are probed with HTTP requests instead of TCP connects.
+    public static final String HTTP_HEALTH_CHECK = "HTTP";
     public static final String NO_HEALTH_CHECK = "NO_HEALTH_CHECK";
     public static final String DEFAULT_HEALTH_CHECK = "DEFAULT_HEALTH_CHECK";
 
@@ -156,8 +251,38 @@ public class LoadBalancerConstants {
     //Time interval to be elapsed after which, LB has to check whether an endpoint is back to healthy.
     public static final int DEFAULT_HEALTHY_CHECK_INTERVAL = (int) TimeUnit.MINUTES.toMillis(1); //1 mins.
 
-    //Scheduled time Interval to execute TimeoutHandler.
-    public static final int DEFAULT_TIMEOUT_TIMER_PERIOD = (int) TimeUnit.SECONDS.toMillis(10); //10 sec
+    //Tick duration of TimeoutWheel. LBHousekeepingScheduler runs one tick for all LB configs every this period.
+    public static final int DEFAULT_TIMEOUT_TIMER_PERIOD = 10; //10 ms
+
+    //Number of buckets in TimeoutWheel. One round of the wheel is 512 * 10 ms.
+    public static final int DEFAULT_TIMEOUT_WHEEL_SIZE = 512;
+
+    //Default maximum no of requests awaiting response, per LB config.
+    public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 10000;
+
+    //Default access log sampling. i.e., 1 in 100 responses.
+    public static final int DEFAULT_ACCESS_LOG_SAMPLE_RATE = 100;
+
+    //Metrics endpoint has no authentication, so by default it is reachable only from same host.
+    public static final String DEFAULT_METRICS_BIND_ADDRESS = "127.0.0.1";
+
+    //No of access log entries that can wait to be written, shared by all LB configs. Entries beyond this are dropped.
+    public static final int ACCESS_LOG_BUFFER_SIZE = 8192;
+
+    //Defaults for circuit breaker of endpoints. It is disabled unless one of circuitBreaker* keys is configured.
+    public static final int DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE = 50; //50 %
+    public static final int DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_RATE = 80; //80 %
+    public static final int DEFAULT_CIRCUIT_BREAKER_MINIMUM_CALLS = 20;
+    public static final int DEFAULT_CIRCUIT_BREAKER_WINDOW = (int) TimeUnit.SECONDS.toMillis(10); //10 sec
+    public static final int DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION = (int) TimeUnit.SECONDS.toMillis(5); //5 sec
+    public static final int DEFAULT_CIRCUIT_BREAKER_HALF_OPEN_TRIALS = 5;
+
+    //Defaults for retries. Retries are disabled unless retryMaxAttempts is configured.
+    public static final int DEFAULT_RETRY_MAX_ATTEMPTS = 1;
+    public static final int DEFAULT_RETRY_MAX_BODY_SIZE = 64 * 1024; //64 KB
+
+    //Upper bound on number of threads running housekeeping tasks of all LB configs.
+    public static final int MAX_HOUSEKEEPING_THREADS = 4;
 
     //Default grace period to be added to timeOut value (in milliseconds) while creating LBMediatorCallBack.
     public static final int DEFAULT_GRACE_PERIOD = 5; //5 ms
@@ -165,6 +290,15 @@ public class LoadBalancerConstants {
     //This value will be used in ACTIVE and PASSIVE health check handlers
     public static final int DEFAULT_CONN_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(5); //5 sec
 
+    //Defaults for HTTP health check.
+    public static final String DEFAULT_HEALTH_CHECK_PATH = "/";
+    public static final int DEFAULT_HEALTH_CHECK_MIN_STATUS = 200;
+    public static final int DEFAULT_HEALTH_CHECK_MAX_STATUS = 399;
+
+    //Defaults for LEAST_RESPONSE_TIME.
+    public static final int DEFAULT_RESPONSE_TIME_WINDOW = 10;
+    public static final int DEFAULT_RESPONSE_TIME_DECAY = (int) TimeUnit.SECONDS.toMillis(2); //2 sec
+
     //TODO: Get IP address from carbon server. Check with mentor.
    // public static final String LB_IP_ADDR = "127.0.0.1";
 
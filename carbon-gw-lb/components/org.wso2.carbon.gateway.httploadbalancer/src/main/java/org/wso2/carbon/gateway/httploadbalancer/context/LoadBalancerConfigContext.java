@@ -24,7 +24,15 @@ import org.slf4j.LoggerFactory;
 import org.wso2.carbon.gateway.httploadbalancer.algorithm.LoadBalancingAlgorithm;
 import org.wso2.carbon.gateway.httploadbalancer.algorithm.simple.StrictClientIPHashing;
 import org.wso2.carbon.gateway.httploadbalancer.callback.LoadBalancerMediatorCallBack;
+import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
 import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
+import org.wso2.carbon.gateway.httploadbalancer.utils.accesslog.AccessLog;
+import org.wso2.carbon.gateway.httploadbalancer.utils.breaker.CircuitBreakerConfig;
+import org.wso2.carbon.gateway.httploadbalancer.utils.handlers.probe.HttpProbeConfig;
+import org.wso2.carbon.gateway.httploadbalancer.utils.metrics.LBMetrics;
+import org.wso2.carbon.gateway.httploadbalancer.utils.retry.RetryPolicy;
+import org.wso2.carbon.gateway.httploadbalancer.utils.slab.InFlightSlab;
+import org.wso2.carbon.gateway.httploadbalancer.utils.timer.TimeoutWheel;
 
 
 import java.util.List;
@@ -32,6 +40,7 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Holds runtime LB Configuration context.
@@ -54,6 +63,18 @@ public class LoadBalancerConfigContext {
     private int healthyRetries;
     private int healthycheckInterval;
 
+    //Used only if health check type is HTTP.
+    private HttpProbeConfig httpProbeConfig;
+
+    //Used only if algorithm is LEAST_RESPONSE_TIME.
+    private int responseTimeWindow = LoadBalancerConstants.DEFAULT_RESPONSE_TIME_WINDOW;
+    private int responseTimeDecay = LoadBalancerConstants.DEFAULT_RESPONSE_TIME_DECAY;
+
+    //Used only by STRICT_IP_HASHING and CLIENT_IP_HASHING.
+    private String hashingMethod = LoadBalancerConstants.CONSISTENT_HASHING;
+    private int virtualNodes = LoadBalancerConstants.DEFAULT_VIRTUAL_NODES;
+    private double boundedLoadFactor = LoadBalancerConstants.DEFAULT_BOUNDED_LOAD_FACTOR;
+
 
     private Map<String, LBOutboundEndpoint> lbOutboundEndpoints;
 
@@ -66,16 +87,6 @@ public class LoadBalancerConfigContext {
      */
     private Map<String, String> cookieToEPKeyMap;
 
-    /**
-     * Used to identify corresponding Cookie for a given BackEnd Endpoint.
-     * <p>
-     * This map will be used once response arrives from BE and
-     * to use appropriate cookie for the endpoint.
-     * <p>
-     * NOTE: EndpointName will be of the form (hostName:port)
-     */
-    private Map<String, String> endpointToCookieMap;
-
     /**
      * A list that holds all unHealthyLBOutboundEndpoints.
      */
@@ -84,11 +95,59 @@ public class LoadBalancerConfigContext {
     /**
      * A LoadBalancerMediatorCallBack Pool for storing active callbacks.
      * <p>
-     * NOTE: This pool stores only LoadBalancerMediatorCallBack objects.
+     * NOTE: This pool stores only LoadBalancerMediatorCallBack objects. Each callback holds
+     * index of its slot in the pool.
+     * <p>
+     * Removal from this pool decides whether response or timeout owns a callback.
      * <p>
-     * TimeoutHandler will use this pool to check for Timeout of requests.
+     * Its capacity is maxInFlightRequests. Requests beyond that are rejected.
+     */
+    private InFlightSlab<LoadBalancerMediatorCallBack> callBackPool =
+            new InFlightSlab<>(LoadBalancerConstants.DEFAULT_MAX_IN_FLIGHT_REQUESTS);
+
+    /**
+     * Deadlines of callbacks in callBackPool.
+     * <p>
+     * TimeoutHandler will use this wheel to expire only those requests that have timedOut.
+     */
+    private final TimeoutWheel<LoadBalancerMediatorCallBack> timeoutWheel = new TimeoutWheel<>(
+            LoadBalancerConstants.DEFAULT_TIMEOUT_TIMER_PERIOD, LoadBalancerConstants.DEFAULT_TIMEOUT_WHEEL_SIZE,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+
+    /**
+     * Counters and upstream latency of this config. In-flight requests are read from callBackPool.
+     */
+    private final LBMetrics metrics = new LBMetrics(() -> this.callBackPool.size());
+
+    /**
+     * Port on which metrics are served. 0 means they are available only through JMX.
+     */
+    private int metricsPort = 0;
+
+    /**
+     * IP address of interface on which metrics are served.
+     */
+    private String metricsBindAddress = LoadBalancerConstants.DEFAULT_METRICS_BIND_ADDRESS;
+
+    /**
+     * One in these many responses is written to accessLog.
+     */
+    private int accessLogSampleRate = LoadBalancerConstants.DEFAULT_ACCESS_LOG_SAMPLE_RATE;
+
+    /**
+     * Sampled access log. It is replaced by LoadBalancerMediator, once config name is known.
+     */
+    private volatile AccessLog accessLog = new AccessLog("-", LoadBalancerConstants.DEFAULT_ACCESS_LOG_SAMPLE_RATE);
+
+    /**
+     * Thresholds of circuit breakers of endpoints. Disabled unless LoadBalancerConfigHolder replaces it as per config.
+     */
+    private CircuitBreakerConfig circuitBreakerConfig = CircuitBreakerConfig.DISABLED;
+
+    /**
+     * Retries of failed idempotent requests on other endpoints. LoadBalancerConfigHolder replaces it as per config.
      */
-    private final Map<LoadBalancerMediatorCallBack, String> callBackPool = new ConcurrentHashMap<>(10000);
+    private RetryPolicy retryPolicy = RetryPolicy.DISABLED;
 
     /**
      * This map will be used in case of Weighted Algorithms.
@@ -133,6 +192,54 @@ public class LoadBalancerConfigContext {
         this.healthCheck = healthCheck;
     }
 
+    public HttpProbeConfig getHttpProbeConfig() {
+        return httpProbeConfig;
+    }
+
+    public void setHttpProbeConfig(HttpProbeConfig httpProbeConfig) {
+        this.httpProbeConfig = httpProbeConfig;
+    }
+
+    public int getResponseTimeWindow() {
+        return responseTimeWindow;
+    }
+
+    public void setResponseTimeWindow(int responseTimeWindow) {
+        this.responseTimeWindow = responseTimeWindow;
+    }
+
+    public int getResponseTimeDecay() {
+        return responseTimeDecay;
+    }
+
+    public void setResponseTimeDecay(int responseTimeDecay) {
+        this.responseTimeDecay = responseTimeDecay;
+    }
+
+    public String getHashingMethod() {
+        return hashingMethod;
+    }
+
+    public void setHashingMethod(String hashingMethod) {
+        this.hashingMethod = hashingMethod;
+    }
+
+    public double getBoundedLoadFactor() {
+        return boundedLoadFactor;
+    }
+
+    public void setBoundedLoadFactor(double boundedLoadFactor) {
+        this.boundedLoadFactor = boundedLoadFactor;
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    public void setVirtualNodes(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+    }
+
     public int getReqTimeout() {
         return reqTimeout;
     }
@@ -172,7 +279,6 @@ public class LoadBalancerConfigContext {
     public void initCookieMaps() {
 
         cookieToEPKeyMap = new ConcurrentHashMap<>();
-        endpointToCookieMap = new ConcurrentHashMap<>();
     }
 
     /**
@@ -195,7 +301,8 @@ public class LoadBalancerConfigContext {
     }
 
     public void initStrictClientIPHashing(List<LBOutboundEndpoint> lbOutboundEndpoints) {
-        strictClientIPHashing = new StrictClientIPHashing(lbOutboundEndpoints);
+        strictClientIPHashing = new StrictClientIPHashing(lbOutboundEndpoints, hashingMethod, virtualNodes,
+                boundedLoadFactor);
     }
 
     /**
@@ -218,27 +325,6 @@ public class LoadBalancerConfigContext {
         return cookieToEPKeyMap.get(cookieName);
     }
 
-
-    /**
-     * @param endpoint   of form (host:port)
-     * @param cookieName Maps OutboundEP to a cookieName.
-     */
-    public void addToOutboundEPTOCookieMap(String endpoint, String cookieName) {
-
-        endpointToCookieMap.putIfAbsent(endpoint, cookieName);
-
-    }
-
-    /**
-     * @param endpoint
-     * @return CookieName.
-     * Returns a cookie for a given OutboundEP.
-     */
-    public String getCookieFromOutboundEP(String endpoint) {
-
-        return endpointToCookieMap.get(endpoint);
-    }
-
     public Map<String, String> getCookieToOutboundEPKeyMap() {
         return cookieToEPKeyMap;
     }
@@ -271,56 +357,154 @@ public class LoadBalancerConfigContext {
     }
 
 
-    public Map<LoadBalancerMediatorCallBack, String> getCallBackPool() {
+    public InFlightSlab<LoadBalancerMediatorCallBack> getCallBackPool() {
 
         return callBackPool;
     }
 
+    public int getMaxInFlightRequests() {
+
+        return callBackPool.capacity();
+    }
 
     /**
-     * @param callback LoadBalancerMediatorCallBack.
-     *                 <p>
-     *                 NOTE: This operation is always thread safe.
+     * @param maxInFlightRequests capacity of callBackPool.
+     *                            <p>
+     *                            NOTE: This MUST be called only while loading config, as
+     *                            callbacks in existing pool are not carried over.
      */
-    public void addToCallBackPool(LoadBalancerMediatorCallBack callback) {
+    public void setMaxInFlightRequests(int maxInFlightRequests) {
+
+        this.callBackPool = new InFlightSlab<>(maxInFlightRequests);
+    }
+
+    public LBMetrics getMetrics() {
+
+        return metrics;
+    }
+
+    public int getMetricsPort() {
+
+        return metricsPort;
+    }
+
+    public void setMetricsPort(int metricsPort) {
+
+        this.metricsPort = metricsPort;
+    }
 
+    public String getMetricsBindAddress() {
 
-        this.callBackPool.putIfAbsent(callback, "");
+        return metricsBindAddress;
+    }
 
+    public void setMetricsBindAddress(String metricsBindAddress) {
 
+        this.metricsBindAddress = metricsBindAddress;
+    }
+
+    public int getAccessLogSampleRate() {
+
+        return accessLogSampleRate;
+    }
+
+    public void setAccessLogSampleRate(int accessLogSampleRate) {
+
+        this.accessLogSampleRate = accessLogSampleRate;
+    }
+
+    public AccessLog getAccessLog() {
+
+        return accessLog;
+    }
+
+    public void setAccessLog(AccessLog accessLog) {
+
+        this.accessLog = accessLog;
+    }
+
+    public CircuitBreakerConfig getCircuitBreakerConfig() {
+
+        return circuitBreakerConfig;
+    }
+
+    public void setCircuitBreakerConfig(CircuitBreakerConfig circuitBreakerConfig) {
+
+        this.circuitBreakerConfig = circuitBreakerConfig;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+
+        return retryPolicy;
+    }
+
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+
+        this.retryPolicy = retryPolicy;
+    }
+
+    public TimeoutWheel<LoadBalancerMediatorCallBack> getTimeoutWheel() {
+
+        return timeoutWheel;
     }
 
 
     /**
      * @param callback LoadBalancerMediatorCallBack.
-     * @return present or not.
+     * @return false if pool is full, ie., there are already maxInFlightRequests callbacks.
+     * <p>
+     * Callback's deadline (createdTime + its timeout) is also scheduled in timeoutWheel.
      * <p>
      * NOTE: This operation is always thread safe.
      */
-    public boolean isInCallBackPool(LoadBalancerMediatorCallBack callback) {
+    public boolean addToCallBackPool(LoadBalancerMediatorCallBack callback) {
 
+        int slot = this.callBackPool.claim(callback);
+        if (slot == InFlightSlab.FULL) {
+            return false;
+        }
 
-        if (this.callBackPool.containsKey(callback)) {
+        callback.setSlot(slot);
+        callback.setTimeout(this.timeoutWheel.schedule(callback, callback.getCreatedTime()
+                + callback.getTimeoutMillis() + LoadBalancerConstants.DEFAULT_GRACE_PERIOD));
+        return true;
+    }
 
-            return true;
-        } else {
 
-            return false;
-        }
+    /**
+     * @param callback LoadBalancerMediatorCallBack.
+     * @return present or not.
+     * <p>
+     * NOTE: This operation is always thread safe.
+     */
+    public boolean isInCallBackPool(LoadBalancerMediatorCallBack callback) {
+
+        return this.callBackPool.contains(callback.getSlot(), callback);
     }
 
 
     /**
      * @param callback LoadBalancerMediatorCallBack.
-     *                 <p>
-     *                 NOTE: This operation is always thread safe.
+     * @return true if callback was removed by this call.
+     * <p>
+     * Response and timeout race to remove a callback. Only the one which gets true
+     * must proceed, the other one has to discard it.
+     * <p>
+     * NOTE: This operation is always thread safe.
      */
-    public void removeFromCallBackPool(LoadBalancerMediatorCallBack callback) {
+    public boolean removeFromCallBackPool(LoadBalancerMediatorCallBack callback) {
 
 
-        this.callBackPool.remove(callback);
+        if (this.callBackPool.release(callback.getSlot(), callback)) {
 
+            //O(1), no need to wait for TimeoutHandler to clean it.
+            callback.cancelTimeout();
+            //Only one of response and timeout gets here, so request is counted out exactly once.
+            callback.getLbOutboundEndpoint().decrementInFlightRequests();
+            return true;
+        }
 
+        return false;
     }
 
     public StrictClientIPHashing getStrictClientIPHashing() {
@@ -21,11 +21,7 @@ package org.wso2.carbon.gateway.httploadbalancer.invokers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.gateway.core.flow.AbstractMediator;
-import org.wso2.carbon.gateway.httploadbalancer.algorithm.simple.LeastResponseTime;
-import org.wso2.carbon.gateway.httploadbalancer.algorithm.weighted.WeightedRandom;
-import org.wso2.carbon.gateway.httploadbalancer.algorithm.weighted.WeightedRoundRobin;
 import org.wso2.carbon.gateway.httploadbalancer.callback.LoadBalancerMediatorCallBack;
-import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
 import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
 import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
 import org.wso2.carbon.messaging.CarbonCallback;
@@ -67,40 +63,16 @@ public class LBEndpointCallMediator extends AbstractMediator {
     public boolean receive(CarbonMessage carbonMessage, CarbonCallback carbonCallback)
             throws Exception {
 
-        /**
-         log.info("Inside LB call mediator...");
-
-         log.info("Transport Headers...");
-         log.info(carbonMessage.getHeaders().toString());
-
-         log.info("Properties...");
-         log.info(carbonMessage.getProperties().toString());
-         **/
+        if (log.isDebugEnabled()) {
+            log.debug("Transport Headers : {} Properties : {}", carbonMessage.getHeaders(),
+                    carbonMessage.getProperties());
+        }
 
             //Using separate LBMediatorCallBack because, we are handling headers in CallBack for session persistence.
         CarbonCallback  callback = new LoadBalancerMediatorCallBack(carbonCallback, this,
                     this.context, this.lbOutboundEndpoint);
 
-
-
-        // We are doing this because, in the following algorithms we are using WINDOW.
-        if (context.getAlgorithmName().equals(LoadBalancerConstants.LEAST_RESPONSE_TIME)) {
-
-            ((LeastResponseTime) context.getLoadBalancingAlgorithm()).
-                    receive(carbonMessage, callback, this.context, this.lbOutboundEndpoint);
-
-        } else if (context.getAlgorithmName().equals(LoadBalancerConstants.WEIGHTED_ROUND_ROBIN)) {
-
-            ((WeightedRoundRobin) context.getLoadBalancingAlgorithm()).
-                    receive(carbonMessage, callback, this.context, this.lbOutboundEndpoint);
-
-        } else if (context.getAlgorithmName().equals(LoadBalancerConstants.WEIGHTED_RANDOM)) {
-
-            ((WeightedRandom) context.getLoadBalancingAlgorithm()).
-                    receive(carbonMessage, callback, this.context, this.lbOutboundEndpoint);
-        } else {
-            lbOutboundEndpoint.receive(carbonMessage, callback, this.context);
-        }
+        lbOutboundEndpoint.receive(carbonMessage, callback, this.context);
 
         return false;
     }
@@ -23,6 +23,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.gateway.core.flow.AbstractMediator;
 import org.wso2.carbon.gateway.httploadbalancer.algorithm.LoadBalancingAlgorithm;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.simple.LeastConnections;
 import org.wso2.carbon.gateway.httploadbalancer.algorithm.simple.LeastResponseTime;
 import org.wso2.carbon.gateway.httploadbalancer.algorithm.simple.Random;
 import org.wso2.carbon.gateway.httploadbalancer.algorithm.simple.RoundRobin;
@@ -34,21 +35,27 @@ import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
 import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
 import org.wso2.carbon.gateway.httploadbalancer.invokers.LBEndpointCallMediator;
 import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
+import org.wso2.carbon.gateway.httploadbalancer.utils.ClientIP;
 import org.wso2.carbon.gateway.httploadbalancer.utils.CommonUtil;
+import org.wso2.carbon.gateway.httploadbalancer.utils.LBCookieParser;
+import org.wso2.carbon.gateway.httploadbalancer.utils.accesslog.AccessLog;
+import org.wso2.carbon.gateway.httploadbalancer.utils.breaker.CircuitBreaker;
+import org.wso2.carbon.gateway.httploadbalancer.utils.metrics.LBMetrics;
+import org.wso2.carbon.gateway.httploadbalancer.utils.metrics.MetricsRegistry;
 import org.wso2.carbon.gateway.httploadbalancer.utils.handlers.scheduled.ActiveHealthCheckHandler;
 import org.wso2.carbon.gateway.httploadbalancer.utils.handlers.scheduled.BackToHealthyHandler;
+import org.wso2.carbon.gateway.httploadbalancer.utils.handlers.scheduled.CircuitBreakerHandler;
+import org.wso2.carbon.gateway.httploadbalancer.utils.handlers.scheduled.LBHousekeepingScheduler;
 import org.wso2.carbon.gateway.httploadbalancer.utils.handlers.scheduled.TimeoutHandler;
+import org.wso2.carbon.gateway.httploadbalancer.utils.retry.RetryState;
 import org.wso2.carbon.messaging.CarbonCallback;
 import org.wso2.carbon.messaging.CarbonMessage;
 
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * LoadBalancerMediator.
@@ -60,6 +67,12 @@ import java.util.regex.Pattern;
  * This mediator will also look for headers in client request to maintain persistence.
  * <p>
  * This mediator is responsible for choosing healthy OutboundEndpoint.
+ * <p>
+ * If retries are configured, a failed idempotent request is sent to an endpoint which has
+ * not been tried for it yet, chosen by the same algorithm.
+ * <p>
+ * NOTE: Nothing is logged above DEBUG per request. Outcome of requests is recorded in
+ * config's sampled AccessLog instead.
  */
 public class LoadBalancerMediator extends AbstractMediator {
 
@@ -72,6 +85,8 @@ public class LoadBalancerMediator extends AbstractMediator {
 
     private String configName;
 
+    private LBHousekeepingScheduler.Registration registration;
+
 
     @Override
     public String getName() {
@@ -99,22 +114,30 @@ public class LoadBalancerMediator extends AbstractMediator {
         this.configName = configName;
         lbCallMediatorMap = new HashMap<>();
 
+        context.setAccessLog(new AccessLog(configName, context.getAccessLogSampleRate()));
+
         if (context.getAlgorithmName().equals(LoadBalancerConstants.ROUND_ROBIN)) {
 
             lbAlgorithm = new RoundRobin(lbOutboundEndpoints);
 
         } else if (context.getAlgorithmName().equals(LoadBalancerConstants.STRICT_IP_HASHING)) {
 
-            lbAlgorithm = new StrictClientIPHashing(lbOutboundEndpoints);
+            lbAlgorithm = new StrictClientIPHashing(lbOutboundEndpoints, context.getHashingMethod(),
+                    context.getVirtualNodes(), context.getBoundedLoadFactor());
 
         } else if (context.getAlgorithmName().equals(LoadBalancerConstants.LEAST_RESPONSE_TIME)) {
 
-            lbAlgorithm = new LeastResponseTime(lbOutboundEndpoints);
+            lbAlgorithm = new LeastResponseTime(lbOutboundEndpoints, context.getResponseTimeWindow(),
+                    context.getResponseTimeDecay());
 
         } else if (context.getAlgorithmName().equals(LoadBalancerConstants.RANDOM)) {
 
             lbAlgorithm = new Random(lbOutboundEndpoints);
 
+        } else if (context.getAlgorithmName().equals(LoadBalancerConstants.LEAST_CONNECTIONS)) {
+
+            lbAlgorithm = new LeastConnections(lbOutboundEndpoints);
+
         } else if (context.getAlgorithmName().equals(LoadBalancerConstants.WEIGHTED_ROUND_ROBIN)) {
 
             lbAlgorithm = new WeightedRoundRobin(lbOutboundEndpoints,
@@ -131,94 +154,90 @@ public class LoadBalancerMediator extends AbstractMediator {
 
         context.setLoadBalancingAlgorithm(lbAlgorithm);
 
+        CircuitBreakerHandler circuitBreakerHandler = null;
+        if (context.getCircuitBreakerConfig().isEnabled()) {
+            circuitBreakerHandler = new CircuitBreakerHandler(this.context, this.lbAlgorithm, this.configName);
+        }
+
         // Creating LoadBalancerCallMediators for OutboundEndpoints...
         for (LBOutboundEndpoint lbOutboundEP : lbOutboundEndpoints) {
             lbCallMediatorMap.put(lbOutboundEP.getName(), new LBEndpointCallMediator(lbOutboundEP, context));
+            if (circuitBreakerHandler != null) {
+                lbOutboundEP.initCircuitBreaker(context.getCircuitBreakerConfig(), circuitBreakerHandler::onOpen);
+            } else {
+                lbOutboundEP.initCircuitBreaker(context.getCircuitBreakerConfig());
+            }
         }
         //At this point everything is initialized.
 
-        ScheduledThreadPoolExecutor threadPoolExecutor;
-
-        //In case of NO_HEALTH_CHECK only TimeoutHandler has to be started.
-        if (this.context.getHealthCheck().equals(LoadBalancerConstants.NO_HEALTH_CHECK)) {
-
-            threadPoolExecutor = new ScheduledThreadPoolExecutor(1);
+        Map<String, LBMetrics> endpointMetrics = new LinkedHashMap<>();
+        for (LBOutboundEndpoint lbOutboundEP : lbOutboundEndpoints) {
+            endpointMetrics.put(lbOutboundEP.getName(), lbOutboundEP.getMetrics());
+        }
+        MetricsRegistry.getInstance().register(this.configName, context.getMetrics(), endpointMetrics);
+        if (context.getMetricsPort() > 0) {
+            MetricsRegistry.getInstance().startHttpEndpoint(context.getMetricsBindAddress(), context.getMetricsPort());
+        }
 
-            TimeoutHandler timeOutHandler = new TimeoutHandler(this.context, this.lbAlgorithm, this.configName);
+        //Housekeeping tasks run on scheduler shared by all LB configs.
+        //If this config is being redeployed, tasks of previous deployment are cancelled here.
+        registration = LBHousekeepingScheduler.getInstance().register(this.configName);
 
-            //We will be shutting down executor, but this ensures scheduled tasks will be running even after shutdown.
-            threadPoolExecutor.setContinueExistingPeriodicTasksAfterShutdownPolicy(true);
-            threadPoolExecutor.scheduleAtFixedRate(
-                    timeOutHandler, 0, LoadBalancerConstants.DEFAULT_TIMEOUT_TIMER_PERIOD, TimeUnit.MILLISECONDS);
-            //This is a good practise.
-            threadPoolExecutor.shutdown();
+        TimeoutHandler timeOutHandler = new TimeoutHandler(this.context, this.lbAlgorithm, this.configName);
+        registration.scheduleOnTick(timeOutHandler.getName(), timeOutHandler);
 
-            //In case of ACTIVE_HEALTH_CHECK TimeoutHandler, ActiveHealthCheckHandler and
-            // BackToHealthyHandler are to be started.
-        } else if (this.context.getHealthCheck().equals(LoadBalancerConstants.ACTIVE_HEALTH_CHECK)) {
+        if (circuitBreakerHandler != null) {
+            registration.scheduleOnTick(circuitBreakerHandler.getName(), circuitBreakerHandler);
+        }
 
-            threadPoolExecutor = new ScheduledThreadPoolExecutor(3);
+        //In case of NO_HEALTH_CHECK only TimeoutHandler (and CircuitBreakerHandler) has to be started.
+        if (this.context.getHealthCheck().equals(LoadBalancerConstants.NO_HEALTH_CHECK)) {
+            return;
+        }
 
-            TimeoutHandler timeOutHandler = new TimeoutHandler(this.context, this.lbAlgorithm, this.configName);
+        //In case of ACTIVE_HEALTH_CHECK or HTTP_HEALTH_CHECK ActiveHealthCheckHandler is also to be started.
+        if (this.context.getHealthCheck().equals(LoadBalancerConstants.ACTIVE_HEALTH_CHECK) ||
+                this.context.getHealthCheck().equals(LoadBalancerConstants.HTTP_HEALTH_CHECK)) {
 
             ActiveHealthCheckHandler activeHealthCheckHandler = new ActiveHealthCheckHandler(this.context,
                     this.lbAlgorithm, this.configName);
+            registration.scheduleAtFixedRate(activeHealthCheckHandler.getName(), activeHealthCheckHandler,
+                    context.getHealthycheckInterval());
+        }
 
-            BackToHealthyHandler backToHealthyHandler = new BackToHealthyHandler(this.context,
-                    this.lbAlgorithm, this.configName);
-
-            //We will be shutting down executor, but this ensures scheduled tasks will be running even after shutdown.
-            threadPoolExecutor.setContinueExistingPeriodicTasksAfterShutdownPolicy(true);
-            threadPoolExecutor.scheduleAtFixedRate(
-                    timeOutHandler, 0, LoadBalancerConstants.DEFAULT_TIMEOUT_TIMER_PERIOD, TimeUnit.MILLISECONDS);
-            threadPoolExecutor.scheduleAtFixedRate(
-                    activeHealthCheckHandler, 0, context.getHealthycheckInterval(), TimeUnit.MILLISECONDS);
-            threadPoolExecutor.scheduleAtFixedRate(
-                    backToHealthyHandler, 0, context.getHealthycheckInterval(), TimeUnit.MILLISECONDS);
-            //This is a good practise.
-            threadPoolExecutor.shutdown();
-
-        } else {
-            // DEFAULT or PASSIVE
-            //In this case, both TimeoutHandler and BackToHealthyHandler are to be started.
-            threadPoolExecutor = new ScheduledThreadPoolExecutor(2);
-
-            TimeoutHandler timeOutHandler = new TimeoutHandler(this.context, this.lbAlgorithm, this.configName);
+        //BackToHealthyHandler is required in all cases other than NO_HEALTH_CHECK.
+        BackToHealthyHandler backToHealthyHandler = new BackToHealthyHandler(this.context,
+                this.lbAlgorithm, this.configName);
+        registration.scheduleAtFixedRate(backToHealthyHandler.getName(), backToHealthyHandler,
+                context.getHealthycheckInterval());
 
-            BackToHealthyHandler backToHealthyHandler = new BackToHealthyHandler(this.context,
-                    this.lbAlgorithm, this.configName);
+    }
 
-            //We will be shutting down executor, but this ensures scheduled tasks will be running even after shutdown.
-            threadPoolExecutor.setContinueExistingPeriodicTasksAfterShutdownPolicy(true);
-            threadPoolExecutor.scheduleAtFixedRate(
-                    timeOutHandler, 0, LoadBalancerConstants.DEFAULT_TIMEOUT_TIMER_PERIOD, TimeUnit.MILLISECONDS);
-            threadPoolExecutor.scheduleAtFixedRate(
-                    backToHealthyHandler, 0, context.getHealthycheckInterval(), TimeUnit.MILLISECONDS);
-            //This is a good practise.
-            threadPoolExecutor.shutdown();
+    /**
+     * Cancels housekeeping tasks of this mediator and unregisters its metrics.
+     * <p>
+     * LoadBalancerMediatorBuilder calls this when a mediator with same config name replaces this one on redeploy.
+     * <p>
+     * NOTE: Undeploy is not handled yet. LBConfigManager.removeLoadBalancers would call this, but gateway
+     * framework doesn't call it, so tasks and metrics of an undeployed config live till next redeploy.
+     */
+    public void destroy() {
 
+        if (registration != null) {
+            registration.cancel();
+            log.info("Housekeeping tasks of {} cancelled..", configName);
         }
-
-
+        MetricsRegistry.getInstance().unregister(configName, context.getMetrics());
     }
 
     @Override
     public boolean receive(CarbonMessage carbonMessage, CarbonCallback carbonCallback) throws Exception {
 
-
-/**
- log.info("Inside LB mediator...");
-
- log.info("Transport Headers...");
- log.info(carbonMessage.getHeaders() + "\n\n");
-
- log.info("Properties...");
- log.info(carbonMessage.getProperties() + "\n\n");
-
- **/
-
-
-        //log.info(" LB Mediator Cookie Header : " + carbonMessage.getHeader(LoadBalancerConstants.COOKIE_HEADER));
+        //Only DEBUG logs on request path. Errors are recorded in access log.
+        if (log.isDebugEnabled()) {
+            log.debug("Transport Headers : {} Properties : {}", carbonMessage.getHeaders(),
+                    carbonMessage.getProperties());
+        }
 
         LBOutboundEndpoint nextLBOutboundEndpoint = null;
         final String persistenceType = context.getPersistence();
@@ -227,190 +246,83 @@ public class LoadBalancerMediator extends AbstractMediator {
         if (persistenceType.equals(LoadBalancerConstants.APPLICATION_COOKIE)
                 || persistenceType.equals(LoadBalancerConstants.LB_COOKIE)) {
 
-            String existingCookie = null;
-
             //Getting cookie from request header.
-            existingCookie = carbonMessage.getHeader(LoadBalancerConstants.COOKIE_HEADER);
+            String existingCookie = carbonMessage.getHeader(LoadBalancerConstants.COOKIE_HEADER);
 
             /**NOTE: You can maintain persistence only if you have LB specific cookie.**/
 
-            if (existingCookie == null || !(existingCookie.contains(LoadBalancerConstants.LB_COOKIE_NAME))) {
+            //There are two possible cookie patterns for APPLICATION_COOKIE.
+            //1) eg cookie: JSESSIONID=ghsgsdgsg---LB_COOKIE:SOME_HASHCODE---
+            //2) eg cookie: LB_COOKIE=SOME_HASHCODE
+            //For LB_COOKIE, only the second pattern is possible.
+            long lbCookieLocation = LBCookieParser.locateLBCookie(existingCookie,
+                    persistenceType.equals(LoadBalancerConstants.APPLICATION_COOKIE));
+
+            if (lbCookieLocation == LBCookieParser.NOT_FOUND) {
                 //There is no cookie or no LB specific cookie.
 
                 //Fetching endpoint according to algorithm (no persistence is maintained).
-                log.warn("There is no LB specific cookie.." +
+                log.debug("There is no LB specific cookie.." +
                         "Persistence cannot be maintained.." +
                         "Choosing Endpoint based on algorithm");
                 nextLBOutboundEndpoint = lbAlgorithm.getNextLBOutboundEndpoint(carbonMessage, context);
 
             } else { //There is a LB specific cookie.
 
-                String cookieName = null;
-
-
-                if (persistenceType.equals(LoadBalancerConstants.APPLICATION_COOKIE)) {
-
-                    boolean isError1 = false, isError2 = false;
-
-                    //There are two possible cookie patterns in this case.
-                    /**
-                     * TYPE 1 FORMAT
-                     */
-                    //1) eg cookie: JSESSIONID=ghsgsdgsg---LB_COOKIE:SOME_HASHCODE---
-                    // We need to retrieve SOME_HASHCODE in this case.
-                    String regEx =
-                            "(" +
-                                    LoadBalancerConstants.LB_COOKIE_DELIMITER +
-                                    LoadBalancerConstants.LB_COOKIE_NAME +
-                                    LoadBalancerConstants.COOKIE_NAME_VALUE_SEPARATOR +
-                                    ")" +
-                                    "(.*)" +
-                                    "(" +
-                                    LoadBalancerConstants.LB_COOKIE_DELIMITER +
-                                    ")";
-
-                    Pattern p = Pattern.compile(regEx);
-                    Matcher m = p.matcher(existingCookie);
-                    if (m.find()) {
-                        cookieName = m.group(2);
-                    } else {
-                        isError1 = true;
-                        log.warn("Couldn't retrieve LB Key from cookie of type 1 for " +
-                                "Persistence type : " + LoadBalancerConstants.APPLICATION_COOKIE);
-                    }
-
-                    if (isError1) {
-                        /**
-                         * TYPE 2 FORMAT
-                         */
-                        // 2) cookie: LB_COOKIE=SOME_HASHCODE
-                        // We need to retrieve SOME_HASHCODEin this case.
-                        regEx = "(" +
-                                LoadBalancerConstants.LB_COOKIE_NAME +
-                                "=)(.*)";
-                        p = Pattern.compile(regEx);
-                        m = p.matcher(existingCookie);
-
-                        if (m.find()) {
-                            cookieName = m.group(2);
-
-                        } else {
-                            isError2 = true;
-                            log.warn("Couldn't retrieve LB Key from cookie of type 2 for " +
-                                    "Persistence type :" + LoadBalancerConstants.APPLICATION_COOKIE);
-
-                        }
-                    }
-
-                    if (isError1 && isError2) {
-
-                        log.error("Cookie matching didn't match any of the two types for " +
-                                "Persistence type :" + LoadBalancerConstants.APPLICATION_COOKIE);
-
-                        //TODO: is this okay or should we send error..?
-                        log.error("Persistence cannot be maintained.. Endpoint will be chosen based on algorithm.");
-
-
-                    } else if (isError1) {
-
-                        log.info("LB key of type 2 has been retrieved from cookie for" +
-                                "Persistence type :" + LoadBalancerConstants.APPLICATION_COOKIE);
-                    }
-
-
-                } else { // persistenceType is LoadBalancerConstants.LB_COOKIE.
-
-                    //eg cookie: LB_COOKIE=SOME_HASHCODE
-                    //We need to retrieve SOME_HASHCODE in this case.
-                    String regEx = "(" +
-                            LoadBalancerConstants.LB_COOKIE_NAME +
-                            "=)(.*)";
-
-                    Pattern p = Pattern.compile(regEx);
-                    Matcher m = p.matcher(existingCookie);
-                    if (m.find()) {
-                        cookieName = m.group(2);
-                    } else {
-
-                        log.error("Couldn't retrieve LB Key from cookie for " +
-                                "Persistence type :" + LoadBalancerConstants.LB_COOKIE);
-
-                        //TODO: is this okay or should we send error..?
-                        log.error("Persistence cannot be maintained.. Endpoint will be chosen based on algorithm.");
-
-                    }
-
-                }
-
-
-                if (context.getOutboundEPKeyFromCookie(cookieName) != null) {
-
-                    String outboundEPKey = context.getOutboundEPKeyFromCookie(cookieName);
+                String cookieName = LBCookieParser.getLBCookieValue(existingCookie, lbCookieLocation);
+                String outboundEPKey = context.getOutboundEPKeyFromCookie(cookieName);
 
+                if (outboundEPKey != null) {
 
                     /** Removing LB specific cookie before forwarding req to server. */
+                    existingCookie = LBCookieParser.removeLBCookie(existingCookie, lbCookieLocation);
 
-                    //If there is delimiter, there exists a BE server's cookie.
-                    if (existingCookie.contains(LoadBalancerConstants.LB_COOKIE_DELIMITER)) {
-
-                        //Removing our LB specific cookie from BE cookie. We don't want it be sent to BE.
-                        existingCookie = existingCookie.substring(0,
-                                existingCookie.indexOf(LoadBalancerConstants.LB_COOKIE_DELIMITER));
-
+                    if (existingCookie != null) {
+                        //There exists BE server's cookie.
                         carbonMessage.setHeader(LoadBalancerConstants.COOKIE_HEADER, existingCookie);
-
                     } else {
-
                         //There is only LB specific cookie. We don't want it to be sent to BE.
                         carbonMessage.removeHeader(LoadBalancerConstants.COOKIE_HEADER);
                     }
 
-
                     //Choosing endpoint based on persistence.
-                    if (outboundEPKey != null) {
-                        nextLBOutboundEndpoint = context.getLBOutboundEndpoint(outboundEPKey);
-                    }
-
+                    nextLBOutboundEndpoint = context.getLBOutboundEndpoint(outboundEPKey);
 
                 } else {
 
-                    log.error("LB Key extraction using RegEx has gone for a toss." +
-                            "Check the logic. ");
-
                     //TODO: is this okay or should we send error..?
-                    log.error("Persistence cannot be maintained.. Choosing endpoint based on algorithm.");
+                    log.debug("LB Key : {} retrieved from cookie doesn't match any endpoint.. " +
+                            "Persistence cannot be maintained.. Choosing endpoint based on algorithm.", cookieName);
 
                     //Fetching endpoint according to algorithm.
                     nextLBOutboundEndpoint = lbAlgorithm.getNextLBOutboundEndpoint(carbonMessage, context);
                 }
 
-
             }
 
         } else if (persistenceType.equals(LoadBalancerConstants.CLIENT_IP_HASHING)) {
 
-            String ipAddress = CommonUtil.getClientIP(carbonMessage);
-            log.info("IP address retrieved is : " + ipAddress);
-            if (CommonUtil.isValidIP(ipAddress)) {
+            ClientIP clientIP = ClientIP.from(carbonMessage);
+            log.debug("IP address retrieved is : {}", clientIP);
+            if (clientIP != null) {
 
                 //getting endpoint name for this ipAddress.
-                String endpointName = context.getStrictClientIPHashing().getOutboundEndpointName(ipAddress);
+                String endpointName = context.getStrictClientIPHashing().getOutboundEndpointName(clientIP);
 
                 //Chosing endpoint based on IP Hashing.
                 // If no endpoints are available, hash will return null.
                 if (endpointName != null) {
                     nextLBOutboundEndpoint = context.getLBOutboundEndpoint(endpointName);
 
-                    if (log.isDebugEnabled()) {
-                        log.debug("Endpoint name : " + nextLBOutboundEndpoint.getName());
-                    }
+                    log.debug("Endpoint name : {}", endpointName);
                 }
 
             } else {
 
-                log.error("The IP Address retrieved is : " + ipAddress +
-                        " which is invalid according to our validation. " +
-                        "Endpoint will be chosen based on algorithm");
+                if (log.isDebugEnabled()) {
+                    log.debug("The IP Address retrieved is : {} which is invalid according to our validation. " +
+                            "Endpoint will be chosen based on algorithm", CommonUtil.getClientIP(carbonMessage));
+                }
 
                 //Fetching endpoint according to algorithm.
                 nextLBOutboundEndpoint = lbAlgorithm.getNextLBOutboundEndpoint(carbonMessage, context);
@@ -425,6 +337,17 @@ public class LoadBalancerMediator extends AbstractMediator {
 
         }
 
+        //Circuit of chosen endpoint may have opened before it is taken out of rotation or endpoint may have been
+        //chosen by cookie. Persistence can't be maintained for this request, so choosing based on algorithm.
+        boolean isCircuitOpen = false;
+        if (nextLBOutboundEndpoint != null && !nextLBOutboundEndpoint.getCircuitBreaker().tryAcquire()) {
+
+            isCircuitOpen = true;
+            log.debug("Circuit of {} is not closed. Choosing endpoint based on algorithm..",
+                    nextLBOutboundEndpoint.getName());
+            nextLBOutboundEndpoint = this.getEndpointWithCircuitAvailable(carbonMessage);
+        }
+
         if (nextLBOutboundEndpoint != null) {
 
             // Chosen Endpoint is healthy.
@@ -434,9 +357,15 @@ public class LoadBalancerMediator extends AbstractMediator {
 
             //log.info("Chosen endpoint by LB is.." + nextLBOutboundEndpoint.getName());
 
+            //Null if retries are disabled or request can't be retried.
+            RetryState retryState = RetryState.of(context.getRetryPolicy(), carbonMessage);
+            if (retryState != null) {
+                retryState.onAttempt(nextLBOutboundEndpoint);
+            }
+
             lbCallMediatorMap.get(nextLBOutboundEndpoint.getName()).
                     receive(carbonMessage, new LoadBalancerMediatorCallBack(carbonCallback, this,
-                            this.context, nextLBOutboundEndpoint));
+                            this.context, nextLBOutboundEndpoint, retryState));
             return true;
 
 
@@ -446,13 +375,14 @@ public class LoadBalancerMediator extends AbstractMediator {
              * Algorithm returns null if no endpoints are available.
              * In that case, we have to check if all endpoints are unHealthy
              */
-            if (areAllEndpointsUnhealthy()) {
+            if (isCircuitOpen || areAllEndpointsUnavailable()) {
 
+                context.getAccessLog().error(AccessLog.NO_ENDPOINT, 503, null, -1);
                 CommonUtil.sendErrorResponse(carbonCallback, false);
             } else { //Something has gone wrong.
 
-                log.error("Unable to choose endpoint for forwarding the request." +
-                        " Check logs to see what went wrong.");
+                log.debug("Unable to choose endpoint for forwarding the request.");
+                context.getAccessLog().error(AccessLog.NO_ENDPOINT, 500, null, -1);
                 CommonUtil.sendErrorResponse(carbonCallback, true);
             }
             return false;
@@ -461,16 +391,105 @@ public class LoadBalancerMediator extends AbstractMediator {
 
     }
 
-    private boolean areAllEndpointsUnhealthy() {
+    /**
+     * Sends a copy of client's request to an endpoint which has not been tried for it yet.
+     *
+     * @param retryState     retry state of client's request.
+     * @param carbonCallback callback through which response has to be sent to client.
+     * @return false if there is no such endpoint. Then, caller has to send last response to client.
+     */
+    public boolean retry(RetryState retryState, CarbonCallback carbonCallback) {
 
-        int unHealthyListSize;
-        unHealthyListSize = context.getUnHealthyEPQueueSize();
+        //Previous copy has been consumed by transport.
+        CarbonMessage carbonMessage = retryState.newRequest();
 
-        if (context.getLbOutboundEndpoints().size() == unHealthyListSize) {
-            return true;
-        } else {
+        LBOutboundEndpoint nextLBOutboundEndpoint = this.getEndpointNotTried(carbonMessage, retryState);
+        if (nextLBOutboundEndpoint == null) {
+            log.debug("No endpoint is left to retry the request..");
+            return false;
+        }
+
+        retryState.onAttempt(nextLBOutboundEndpoint);
+        log.debug("Retrying request on {}. Attempt : {}", nextLBOutboundEndpoint.getName(),
+                retryState.getAttempts());
+
+        try {
+            lbCallMediatorMap.get(nextLBOutboundEndpoint.getName()).
+                    receive(carbonMessage, new LoadBalancerMediatorCallBack(carbonCallback, this,
+                            this.context, nextLBOutboundEndpoint, retryState));
+        } catch (Exception e) {
+            //Request is not sent, so trial permit taken by getEndpointNotTried (if HALF_OPEN) is given back.
+            nextLBOutboundEndpoint.getCircuitBreaker().release();
+            log.debug("Unable to retry the request..", e);
             return false;
         }
+        return true;
+    }
+
+    /**
+     * @return endpoint chosen by algorithm which has not been tried and whose circuit allows a request, or null.
+     * <p>
+     * Algorithms like LeastConnections and StrictClientIPHashing may keep choosing a tried endpoint.
+     * So, if algorithm doesn't come up with one, any other healthy endpoint is chosen.
+     */
+    private LBOutboundEndpoint getEndpointNotTried(CarbonMessage carbonMessage, RetryState retryState) {
+
+        for (int i = 0; i < context.getLbOutboundEndpoints().size(); i++) {
+
+            LBOutboundEndpoint lbOutboundEndpoint = lbAlgorithm.getNextLBOutboundEndpoint(carbonMessage, context);
+            if (lbOutboundEndpoint == null) {
+                return null;
+            }
+            if (!retryState.hasTried(lbOutboundEndpoint) && lbOutboundEndpoint.getCircuitBreaker().tryAcquire()) {
+                return lbOutboundEndpoint;
+            }
+        }
+
+        for (LBOutboundEndpoint lbOutboundEndpoint : context.getLbOutboundEndpoints().values()) {
+            if (lbOutboundEndpoint.isHealthy() && !retryState.hasTried(lbOutboundEndpoint)
+                    && lbOutboundEndpoint.getCircuitBreaker().tryAcquire()) {
+                return lbOutboundEndpoint;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return endpoint chosen by algorithm whose circuit allows a request, or null.
+     * <p>
+     * Each endpoint in rotation gets at most one chance, on average.
+     */
+    private LBOutboundEndpoint getEndpointWithCircuitAvailable(CarbonMessage carbonMessage) {
+
+        for (int i = 0; i < context.getLbOutboundEndpoints().size(); i++) {
+
+            LBOutboundEndpoint lbOutboundEndpoint = lbAlgorithm.getNextLBOutboundEndpoint(carbonMessage, context);
+            if (lbOutboundEndpoint == null) {
+                return null;
+            }
+            if (lbOutboundEndpoint.getCircuitBreaker().tryAcquire()) {
+                return lbOutboundEndpoint;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if every endpoint is either unHealthy or its circuit is not closed.
+     */
+    private boolean areAllEndpointsUnavailable() {
+
+        if (context.getLbOutboundEndpoints().size() == context.getUnHealthyEPQueueSize()) {
+            return true;
+        }
+
+        for (LBOutboundEndpoint lbOutboundEndpoint : context.getLbOutboundEndpoints().values()) {
+            if (lbOutboundEndpoint.isHealthy() &&
+                    lbOutboundEndpoint.getCircuitBreaker().getState() == CircuitBreaker.CLOSED) {
+                return false;
+            }
+        }
+        return true;
     }
 
 }
@@ -25,14 +25,22 @@ import org.wso2.carbon.gateway.core.config.GWConfigHolder;
 import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
 import org.wso2.carbon.gateway.httploadbalancer.utils.CommonUtil;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * LoadBalancerMediatorBuilder.
+ * <p>
+ * Mediators built are tracked by config name, so that they are destroyed when their config is redeployed.
+ * destroy() is for undeploy, but gateway framework doesn't call it yet (see LBConfigManager.removeLoadBalancers).
  */
 public class LoadBalancerMediatorBuilder {
 
     private static final Logger log = LoggerFactory.getLogger(LoadBalancerMediatorBuilder.class);
 
+    //Config name -> (mediator name -> mediator). A config has one mediator per group, if groups are used.
+    private static final Map<String, Map<String, LoadBalancerMediator>> mediators = new ConcurrentHashMap<>();
+
 
     /**
      * @param gwConfigHolder GWConfigHolder.
@@ -47,11 +55,8 @@ public class LoadBalancerMediatorBuilder {
 
         LoadBalancerMediator lbMediator = new LoadBalancerMediator(
                 CommonUtil.getLBOutboundEndpointsList(context.getLbOutboundEndpoints()), context,
-                // We will be using this name for our timer. If configHolder has a name we will use that.
-                // Otherwise we will use InboundEndpoint's name.
-                // Anyways, it will be unique and will be easy to debug.
-                (gwConfigHolder.getName() == null || gwConfigHolder.getName().equals("default")) ?
-                        gwConfigHolder.getInboundEndpoint().getName() : gwConfigHolder.getName());
+                getConfigName(gwConfigHolder));
+        track(getConfigName(gwConfigHolder), lbMediator);
 
         gwConfigHolder.
                 getPipeline(gwConfigHolder.getInboundEndpoint().getPipeline()).addMediator(lbMediator);
@@ -63,15 +68,49 @@ public class LoadBalancerMediatorBuilder {
 
         LoadBalancerMediator lbMediator = new LoadBalancerMediator(
                 CommonUtil.getLBOutboundEndpointsList(context.getLbOutboundEndpoints()), context,
-                // We will be using this name for our timer. If configHolder has a name we will use that.
-                // Otherwise we will use InboundEndpoint's name.
-                // Anyways, it will be unique and will be easy to debug.
                 // Here we are appending groupPath also.
-                ((gwConfigHolder.getName() == null || gwConfigHolder.getName().equals("default")) ?
-                        gwConfigHolder.getInboundEndpoint().getName() : gwConfigHolder.getName()) + groupPath);
+                getConfigName(gwConfigHolder) + groupPath);
+        track(getConfigName(gwConfigHolder), lbMediator);
+
         gwConfigHolder.
                 getPipeline(gwConfigHolder.getGroup(groupPath).getPipeline()).addMediator(lbMediator);
 
     }
 
+    /**
+     * @param gwConfigHolder GWConfigHolder of config being undeployed.
+     *                       <p>
+     *                       Destroys all LoadBalancerMediators built for this config, including those of groups.
+     */
+    public static void destroy(GWConfigHolder gwConfigHolder) {
+
+        Map<String, LoadBalancerMediator> removed = mediators.remove(getConfigName(gwConfigHolder));
+        if (removed != null) {
+            removed.values().forEach(LoadBalancerMediator::destroy);
+        }
+    }
+
+    /**
+     * We will be using this name for our timer. If configHolder has a name we will use that.
+     * Otherwise we will use InboundEndpoint's name.
+     * Anyways, it will be unique and will be easy to debug.
+     */
+    private static String getConfigName(GWConfigHolder gwConfigHolder) {
+
+        return (gwConfigHolder.getName() == null || gwConfigHolder.getName().equals("default")) ?
+                gwConfigHolder.getInboundEndpoint().getName() : gwConfigHolder.getName();
+    }
+
+    /**
+     * On redeploy, mediator previously built with same name is destroyed.
+     */
+    private static void track(String configName, LoadBalancerMediator lbMediator) {
+
+        LoadBalancerMediator previous = mediators.computeIfAbsent(configName, name -> new ConcurrentHashMap<>())
+                .put(lbMediator.getConfigName(), lbMediator);
+        if (previous != null) {
+            previous.destroy();
+        }
+    }
+
 }
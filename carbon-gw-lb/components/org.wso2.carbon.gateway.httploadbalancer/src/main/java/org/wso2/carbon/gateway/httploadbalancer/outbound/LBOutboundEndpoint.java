@@ -23,11 +23,21 @@ import org.slf4j.LoggerFactory;
 import org.wso2.carbon.gateway.core.outbound.OutboundEndpoint;
 import org.wso2.carbon.gateway.httploadbalancer.callback.LoadBalancerMediatorCallBack;
 import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
+import org.wso2.carbon.gateway.httploadbalancer.utils.CommonUtil;
+import org.wso2.carbon.gateway.httploadbalancer.utils.accesslog.AccessLog;
+import org.wso2.carbon.gateway.httploadbalancer.utils.breaker.CircuitBreaker;
+import org.wso2.carbon.gateway.httploadbalancer.utils.breaker.CircuitBreakerConfig;
+import org.wso2.carbon.gateway.httploadbalancer.utils.metrics.LBMetrics;
+import org.wso2.carbon.gateway.httploadbalancer.utils.handlers.error.LBErrorHandler;
 import org.wso2.carbon.messaging.CarbonCallback;
 import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
 
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 
 /**
@@ -52,9 +62,29 @@ public class LBOutboundEndpoint {
     // No of retries to be done to mark an endpoint as unHealthy.
     private AtomicInteger unHealthyRetriesCount = new AtomicInteger(0);
 
+    // No of requests sent to this endpoint, for which neither response has arrived nor timeout has occurred.
+    private final AtomicInteger inFlightRequests = new AtomicInteger(0);
+
+    // Counters and upstream latency of this endpoint.
+    private final LBMetrics metrics = new LBMetrics(this::getInFlightRequests);
+
+    // Takes this endpoint out of rotation on failure or latency spikes, well before passive health check.
+    // Replaced by LoadBalancerMediator as per config.
+    private volatile CircuitBreaker circuitBreaker;
+
+    // LB cookie of this endpoint never changes, so Set-Cookie value and fragment to be embedded in
+    // BE cookie are built once. Null if cookie persistence is not used for this endpoint.
+    private volatile String sessionCookie;
+    private volatile String lbCookieFragment;
+
+    // Resolved address used by health checks. Resolving is a blocking DNS lookup, so it is done once
+    // and repeated only after a probe fails to connect, in case endpoint has moved to another address.
+    private volatile InetSocketAddress socketAddress;
+
 
     public LBOutboundEndpoint(OutboundEndpoint outboundEndpoint) {
         this.outboundEndpoint = outboundEndpoint;
+        this.circuitBreaker = new CircuitBreaker(outboundEndpoint.getName(), CircuitBreakerConfig.DISABLED);
     }
 
     public OutboundEndpoint getOutboundEndpoint() {
@@ -94,35 +124,161 @@ public class LBOutboundEndpoint {
 
 
         // carbonMessage = CommonUtil.appendLBIP(carbonMessage, true);
-        //No need to synchronize as we are operating on concurrent HashMap.
-        context.addToCallBackPool((LoadBalancerMediatorCallBack) carbonCallback);
+        //Decremented when callback is removed from pool, either on response or on timeout.
+        this.inFlightRequests.incrementAndGet();
+
+        //No need to synchronize as pool claims a slot with CAS.
+        LoadBalancerMediatorCallBack callBack = (LoadBalancerMediatorCallBack) carbonCallback;
+        if (!context.addToCallBackPool(callBack)) {
+
+            this.inFlightRequests.decrementAndGet();
+            //Request is not sent, so trial permit taken by mediator (if HALF_OPEN) is given back.
+            this.circuitBreaker.release();
+            this.metrics.onRejected();
+            context.getMetrics().onRejected();
+
+            //Pool is full. Shedding load instead of queueing more requests on endpoints.
+            log.debug("No of in-flight requests reached {}. Request to {} is rejected..",
+                    context.getMaxInFlightRequests(), this.getName());
+            context.getAccessLog().error(AccessLog.REJECTED, 503, this.getName(), -1);
+            new LBErrorHandler().handleFault("503", new Throwable("Service Unavailable.. " +
+                            "Too many requests in flight.. Kindly try after some time.."),
+                    new DefaultCarbonMessage(true), callBack.getClientCallback());
+            return false;
+        }
 
-        this.outboundEndpoint.receive(carbonMessage, carbonCallback);
+        this.metrics.onRequest();
+        context.getMetrics().onRequest();
+
+        try {
+            this.outboundEndpoint.receive(carbonMessage, carbonCallback);
+        } catch (Exception e) {
+            //eg: connection refused while opening a new connection. Reported as 502 right away,
+            //instead of waiting for timeout, so that it can be retried on another endpoint.
+            if (context.removeFromCallBackPool(callBack)) {
+
+                long currentNanos = System.nanoTime();
+                long latencyMicros = TimeUnit.NANOSECONDS.toMicros(currentNanos - callBack.getCreatedNanos());
+                log.debug("Unable to send request to {}..", this.getName(), e);
+
+                this.circuitBreaker.onFailure(callBack.getCreatedNanos(), currentNanos);
+                this.metrics.onResponse(latencyMicros, 502);
+                context.getMetrics().onResponse(latencyMicros, 502);
+                context.getAccessLog().error(AccessLog.ERROR, 502, this.getName(),
+                        TimeUnit.MICROSECONDS.toMillis(latencyMicros));
+                new LBErrorHandler().handleFault("502", new Throwable("Bad Gateway.. " +
+                        "Unable to reach endpoint.."), new DefaultCarbonMessage(true), callBack);
+            }
+        }
 
         return false;
     }
 
+    /**
+     * @param lbCookieValue value of LB cookie identifying this endpoint. eg: hash of (hostname:port).
+     */
+    public void setLBCookieValue(String lbCookieValue) {
+
+        this.sessionCookie = CommonUtil.getSessionCookie(lbCookieValue);
+        this.lbCookieFragment = CommonUtil.getLBCookieFragment(lbCookieValue);
+    }
+
+    /**
+     * @return complete value of Set-Cookie header to be inserted by LB, or null.
+     */
+    public String getSessionCookie() {
+
+        return sessionCookie;
+    }
+
+    /**
+     * @return fragment to be embedded in BE cookie, eg: ---LB_COOKIE:SOME_HASHCODE---, or null.
+     */
+    public String getLBCookieFragment() {
+
+        return lbCookieFragment;
+    }
+
+    /**
+     * @return cached address of this endpoint. It is resolved on first call and after resetSocketAddress().
+     * Unresolved address is not cached, so resolution is tried again on next call.
+     */
+    public InetSocketAddress getSocketAddress() {
+
+        InetSocketAddress address = this.socketAddress;
+        if (address == null) {
+            address = CommonUtil.getSocketAddress(this.outboundEndpoint.getUri());
+            if (address != null && !address.isUnresolved()) {
+                this.socketAddress = address;
+            }
+        }
+        return address;
+    }
+
+    /**
+     * Address is resolved again on next call to getSocketAddress().
+     */
+    public void resetSocketAddress() {
+
+        this.socketAddress = null;
+    }
+
+    public int getInFlightRequests() {
+
+        return this.inFlightRequests.get();
+    }
+
+    public LBMetrics getMetrics() {
+
+        return this.metrics;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+
+        return this.circuitBreaker;
+    }
+
+    /**
+     * @param config thresholds of circuit breaker. Circuit starts CLOSED.
+     */
+    public void initCircuitBreaker(CircuitBreakerConfig config) {
+
+        this.circuitBreaker = new CircuitBreaker(this.getName(), config);
+    }
+
+    /**
+     * @param config thresholds of circuit breaker. Circuit starts CLOSED.
+     * @param onOpen told about this endpoint each time its circuit opens.
+     */
+    public void initCircuitBreaker(CircuitBreakerConfig config, Consumer<LBOutboundEndpoint> onOpen) {
+
+        this.circuitBreaker = new CircuitBreaker(this.getName(), config, () -> onOpen.accept(this));
+    }
+
+    public void decrementInFlightRequests() {
+
+        this.inFlightRequests.decrementAndGet();
+    }
+
     public void incrementUnHealthyRetries() {
 
         this.unHealthyRetriesCount.incrementAndGet();
 
-        log.warn("Incremented UnHealthyRetries count for endPoint : " + this.getName());
+        log.debug("Incremented UnHealthyRetries count for endPoint : {}", this.getName());
     }
 
     public void incrementHealthyRetries() {
 
         this.healthyRetriesCount.incrementAndGet();
 
-        if (log.isDebugEnabled()) {
-            log.info("Incremented HealthyRetries count for endPoint : " + this.getName());
-        }
+        log.debug("Incremented HealthyRetries count for endPoint : {}", this.getName());
     }
 
     public void markAsUnHealthy() {
 
         isHealthy.set(false);
 
-        log.warn(this.getName() + " is unHealthy");
+        log.warn("{} is unHealthy", this.getName());
     }
 
     /**
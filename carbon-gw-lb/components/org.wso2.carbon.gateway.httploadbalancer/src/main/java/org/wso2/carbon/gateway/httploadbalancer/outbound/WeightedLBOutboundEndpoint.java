@@ -20,10 +20,6 @@ package org.wso2.carbon.gateway.httploadbalancer.outbound;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
-
-import org.wso2.carbon.messaging.CarbonCallback;
-import org.wso2.carbon.messaging.CarbonMessage;
 
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -31,9 +27,9 @@ import java.util.concurrent.atomic.AtomicInteger;
 /**
  * An instance of this class has a reference to an LBOutboundEndpoint.
  * <p>
- * We need few weight related attributes for Weighted algorithms.
+ * We need weight of an endpoint for Weighted algorithms.
  * <p>
- * NOTE: Inside LB all Weighted Algorithms must use this Only.
+ * NOTE: Only weight is held here. Selection state, if any, belongs to the algorithm.
  */
 public class WeightedLBOutboundEndpoint {
 
@@ -43,8 +39,6 @@ public class WeightedLBOutboundEndpoint {
 
     // Set by user in configuration. By default it is 1.
     private AtomicInteger maxWeight = new AtomicInteger(1);
-    // To keep track of requests forwarded in currentWeightsWindow.
-    private AtomicInteger currentWeight = new AtomicInteger(0);
 
 
     public WeightedLBOutboundEndpoint(LBOutboundEndpoint lbOutboundEndpoint, int weight) {
@@ -52,8 +46,7 @@ public class WeightedLBOutboundEndpoint {
         this.maxWeight.set(weight);
 
         if (log.isDebugEnabled()) {
-            log.debug("OutboundEndpoint : " + this.lbOutboundEndpoint.getName()
-                    + " Weight : " + this.maxWeight);
+            log.debug("OutboundEndpoint : {} Weight : {}", this.lbOutboundEndpoint.getName(), this.maxWeight);
         }
     }
 
@@ -66,43 +59,12 @@ public class WeightedLBOutboundEndpoint {
         return this.lbOutboundEndpoint;
     }
 
-    private void incrementCurrentWeight() {
-        this.currentWeight.incrementAndGet();
-    }
-
     public int getMaxWeight() {
         return maxWeight.get();
     }
 
-    public int getCurrentWeight() {
-        return currentWeight.get();
-    }
-
-    public void setCurrentWeight(int currentWeight) {
-        this.currentWeight.set(currentWeight);
-    }
-
-    /**
-     * @param carbonMessage
-     * @param carbonCallback
-     * @param context
-     * @return
-     * @throws Exception NOTE: When this algorithm mode is chosen, all requests are sent through this method only.
-     *                   So currentWeight will be incremented in both the cases.
-     *                   (i.e.) In Endpoint chosen by persistence and in endpoint chosen by algorithm.
-     */
-    public boolean receive(CarbonMessage carbonMessage, CarbonCallback carbonCallback,
-                           LoadBalancerConfigContext context) throws Exception {
-
-
-        this.incrementCurrentWeight(); //  Increments currentRequests for this WeightedLBOutboundEndpoint
-
-        this.lbOutboundEndpoint.receive(carbonMessage, carbonCallback, context);
-        return false;
-    }
-
-    public void resetCurrentWeight() {
-        this.currentWeight.set(0);
+    public void setMaxWeight(int maxWeight) {
+        this.maxWeight.set(maxWeight);
     }
 
 }
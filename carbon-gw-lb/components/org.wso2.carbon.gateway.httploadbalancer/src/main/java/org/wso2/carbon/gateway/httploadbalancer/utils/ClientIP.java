@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils;
+
+import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
+import org.wso2.carbon.messaging.CarbonMessage;
+
+/**
+ * Client IP address in numeric form, as two longs of a 128 bit IPv6 address.
+ * <p>
+ * IPv4 addresses are kept as IPv4-mapped IPv6 addresses (::ffff:a.b.c.d), so 192.168.1.1 and
+ * ::ffff:192.168.1.1 are the same client.
+ * <p>
+ * parse() validates and converts an address in a single pass without regex and without creating
+ * any intermediate string. It accepts same addresses as CommonUtil.isValidIP(), ie.,
+ * <p>
+ * 1) IPv4 in dotted decimal form with four octets. Octets must not have leading zeros.
+ * <p>
+ * 2) IPv6 in any of the forms in RFC 4291, ie., full, compressed (::) and with embedded IPv4.
+ * Zone IDs are not accepted.
+ * <p>
+ * Instances are immutable.
+ */
+public final class ClientIP {
+
+    // Prefix of IPv4-mapped IPv6 addresses in last 64 bits (::ffff:0:0/96).
+    private static final long IPV4_MAPPED_PREFIX = 0x0000ffff00000000L;
+
+    private static final long INVALID = -1L;
+
+    private final long high;
+    private final long low;
+
+    public ClientIP(long high, long low) {
+
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * @param cMsg Carbon Message having client IP related headers.
+     * @return Client IP address from headers in the order used by CommonUtil.getClientIP(), or null
+     * if the chosen header doesn't have a valid IP address.
+     * <p>
+     * Only first entry of X-Forwarded-For is considered, and it is trimmed. eg: 192.168.72.3, 10.2.53.8, ..
+     */
+    public static ClientIP from(CarbonMessage cMsg) {
+
+        String header = cMsg.getHeader(LoadBalancerConstants.X_FORWARDED_FOR_HEADER);
+        if (header != null) {
+
+            int end = header.indexOf(',');
+            if (end < 0) {
+                end = header.length();
+            }
+
+            int start = 0;
+            while (start < end && Character.isWhitespace(header.charAt(start))) {
+                start++;
+            }
+            while (end > start && Character.isWhitespace(header.charAt(end - 1))) {
+                end--;
+            }
+            return parse(header, start, end);
+        }
+
+        header = cMsg.getHeader(LoadBalancerConstants.CLIENT_IP_HEADER);
+        if (header == null) {
+            header = cMsg.getHeader(LoadBalancerConstants.REMOTE_ADDR_HEADER);
+        }
+
+        return header != null ? parse(header, 0, header.length()) : null;
+    }
+
+    /**
+     * @param value IPv4 or IPv6 address. Can be null.
+     * @return Client IP address or null if value is not a valid IP address.
+     */
+    public static ClientIP parse(CharSequence value) {
+
+        return value != null ? parse(value, 0, value.length()) : null;
+    }
+
+    /**
+     * @param value IPv4 or IPv6 address is in value[start, end).
+     * @param start start index (inclusive).
+     * @param end   end index (exclusive).
+     * @return Client IP address or null if given range is not a valid IP address.
+     */
+    public static ClientIP parse(CharSequence value, int start, int end) {
+
+        // Whichever of the separators comes first decides the format. It is within first 5 chars.
+        for (int i = start; i < end; i++) {
+
+            char c = value.charAt(i);
+            if (c == ':') {
+                return parseIPv6(value, start, end);
+
+            } else if (c == '.') {
+                long ipv4 = parseIPv4(value, start, end);
+                return ipv4 != INVALID ? new ClientIP(0, IPV4_MAPPED_PREFIX | ipv4) : null;
+
+            } else if (hexDigit(c) < 0) {
+                return null;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return IPv4 address as unsigned 32 bit value or INVALID.
+     */
+    private static long parseIPv4(CharSequence value, int start, int end) {
+
+        long address = 0;
+        int octets = 0;
+        int i = start;
+
+        while (true) {
+
+            int octet = 0;
+            int digits = 0;
+            char c;
+            while (i < end && (c = value.charAt(i)) >= '0' && c <= '9') {
+
+                if (digits > 0 && octet == 0) {
+                    return INVALID; // Leading zero.
+                }
+                octet = octet * 10 + (c - '0');
+                if (octet > 255) {
+                    return INVALID;
+                }
+                digits++;
+                i++;
+            }
+
+            if (digits == 0) {
+                return INVALID;
+            }
+
+            address = (address << 8) | octet;
+            octets++;
+
+            if (i == end) {
+                return octets == 4 ? address : INVALID;
+            }
+            if (octets == 4 || value.charAt(i) != '.') {
+                return INVALID;
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Groups before :: are accumulated into head and groups after it into tail.
+     * Zero groups represented by :: are inserted in between at the end.
+     */
+    private static ClientIP parseIPv6(CharSequence value, int start, int end) {
+
+        long headHigh = 0;
+        long headLow = 0;
+        long tailHigh = 0;
+        long tailLow = 0;
+
+        int groups = 0;
+        int headGroups = -1; // No of groups before ::, -1 if there is no ::.
+        int i = start;
+
+        if (end - start >= 2 && value.charAt(start) == ':' && value.charAt(start + 1) == ':') {
+            headGroups = 0;
+            i += 2;
+        }
+
+        while (i < end) {
+
+            int groupStart = i;
+            int group = 0;
+            int digit;
+            while (i < end && (digit = hexDigit(value.charAt(i))) >= 0) {
+
+                if (i - groupStart == 4) {
+                    return null;
+                }
+                group = (group << 4) | digit;
+                i++;
+            }
+
+            int bits = 16;
+            long bitsValue = group;
+
+            if (i < end && value.charAt(i) == '.') {
+
+                // Embedded IPv4 takes two groups and it has to be at the end.
+                long ipv4 = parseIPv4(value, groupStart, end);
+                if (ipv4 == INVALID) {
+                    return null;
+                }
+                bits = 32;
+                bitsValue = ipv4;
+                i = end;
+
+            } else if (i == groupStart) {
+                return null;
+            }
+
+            groups += bits / 16;
+            if (groups > 8) {
+                return null;
+            }
+
+            if (headGroups < 0) {
+                headHigh = (headHigh << bits) | (headLow >>> (64 - bits));
+                headLow = (headLow << bits) | bitsValue;
+            } else {
+                tailHigh = (tailHigh << bits) | (tailLow >>> (64 - bits));
+                tailLow = (tailLow << bits) | bitsValue;
+            }
+
+            if (i == end) {
+                break;
+            }
+
+            // Separator is either : or ::. Address can't end with a single :.
+            if (value.charAt(i) != ':' || ++i == end) {
+                return null;
+            }
+            if (value.charAt(i) == ':') {
+                if (headGroups >= 0) {
+                    return null;
+                }
+                headGroups = groups;
+                i++;
+            }
+        }
+
+        if (headGroups < 0) {
+            return groups == 8 ? new ClientIP(headHigh, headLow) : null;
+        }
+
+        // :: stands for at least one group of zeros.
+        if (groups > 7) {
+            return null;
+        }
+
+        // Head occupies lowest (16 * headGroups) bits, and has to be moved to top.
+        int shift = 16 * (8 - headGroups);
+        if (shift >= 128) {
+            headHigh = 0;
+            headLow = 0;
+        } else if (shift >= 64) {
+            headHigh = headLow << (shift - 64);
+            headLow = 0;
+        } else {
+            headHigh = (headHigh << shift) | (headLow >>> (64 - shift));
+            headLow = headLow << shift;
+        }
+
+        return new ClientIP(headHigh | tailHigh, headLow | tailLow);
+    }
+
+    private static int hexDigit(char c) {
+
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * @return first 64 bits of IPv6 address.
+     */
+    public long getHigh() {
+
+        return high;
+    }
+
+    /**
+     * @return last 64 bits of IPv6 address.
+     */
+    public long getLow() {
+
+        return low;
+    }
+
+    /**
+     * @return true if this is an IPv4 (IPv4-mapped IPv6) address.
+     */
+    public boolean isIPv4() {
+
+        return high == 0 && (low & 0xffffffff00000000L) == IPV4_MAPPED_PREFIX;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ClientIP)) {
+            return false;
+        }
+        ClientIP other = (ClientIP) obj;
+        return high == other.high && low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+
+        return 31 * Long.hashCode(high) + Long.hashCode(low);
+    }
+
+    /**
+     * @return IPv4 address in dotted decimal form, otherwise IPv6 address with all eight groups.
+     */
+    @Override
+    public String toString() {
+
+        StringBuilder builder = new StringBuilder(39);
+
+        if (isIPv4()) {
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                builder.append((low >>> shift) & 0xff);
+                if (shift > 0) {
+                    builder.append('.');
+                }
+            }
+            return builder.toString();
+        }
+
+        for (int i = 0; i < 8; i++) {
+            long half = i < 4 ? high : low;
+            builder.append(Long.toHexString((half >>> (48 - 16 * (i % 4))) & 0xffff));
+            if (i < 7) {
+                builder.append(':');
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils;
+
+/**
+ * Bounded cache of recent decisions per client IP address, eg: endpoint chosen for a client.
+ * <p>
+ * Most of the traffic comes from repeat clients, so most lookups can skip hashing altogether.
+ * <p>
+ * This is a set associative cache. A client can be only in one of WAYS slots of its set and
+ * entries of a set are evicted in CLOCK (second chance) order. So get() and put() look at no more
+ * than WAYS entries.
+ * <p>
+ * There is no locking. Entries are immutable except for their reference bit and they are replaced
+ * as a whole, so a racing reader sees either old or new entry of a slot. Reference bits and clock
+ * hands are plain fields, as a lost update only makes eviction order slightly less accurate.
+ * <p>
+ * Entries are never invalidated one by one. When decisions change, owner has to replace the
+ * whole cache. eg: StrictClientIPHashing creates a new cache for every snapshot of endpoints.
+ *
+ * @param <V> type of cached decision.
+ */
+public final class ClientIPCache<V> {
+
+    private static final int WAYS = 4;
+
+    private final Entry<V>[] entries;
+    private final int[] hands;
+    private final int setMask;
+
+    /**
+     * @param capacity maximum no of clients to be cached. It is rounded up to a power of two.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ClientIPCache(int capacity) {
+
+        int sets = 1;
+        while (sets * WAYS < capacity) {
+            sets <<= 1;
+        }
+
+        this.entries = (Entry<V>[]) new Entry[sets * WAYS];
+        this.hands = new int[sets];
+        this.setMask = sets - 1;
+    }
+
+    /**
+     * @param clientIP Client IP address.
+     * @return cached decision or null if it is not cached.
+     */
+    public V get(ClientIP clientIP) {
+
+        int base = setOf(clientIP) * WAYS;
+        for (int i = base; i < base + WAYS; i++) {
+
+            Entry<V> entry = entries[i];
+            if (entry != null && entry.matches(clientIP)) {
+                if (!entry.referenced) {
+                    entry.referenced = true;
+                }
+                return entry.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param clientIP Client IP address.
+     * @param value    decision to be cached. Must not be null.
+     */
+    public void put(ClientIP clientIP, V value) {
+
+        int set = setOf(clientIP);
+        int base = set * WAYS;
+        Entry<V> newEntry = new Entry<>(clientIP.getHigh(), clientIP.getLow(), value);
+
+        for (int i = base; i < base + WAYS; i++) {
+
+            Entry<V> entry = entries[i];
+            if (entry == null || entry.matches(clientIP)) {
+                entries[i] = newEntry;
+                return;
+            }
+        }
+
+        // All slots are in use. First entry without reference bit, starting from hand, is evicted.
+        // After one round all bits are cleared, so this terminates even if readers keep setting them.
+        int hand = hands[set];
+        for (int round = 0; ; round++) {
+
+            Entry<V> entry = entries[base + hand];
+            if (!entry.referenced || round >= WAYS) {
+                entries[base + hand] = newEntry;
+                hands[set] = (hand + 1) & (WAYS - 1);
+                return;
+            }
+            entry.referenced = false;
+            hand = (hand + 1) & (WAYS - 1);
+        }
+    }
+
+    /**
+     * @return maximum no of clients that can be cached.
+     */
+    public int capacity() {
+
+        return entries.length;
+    }
+
+    private int setOf(ClientIP clientIP) {
+
+        long hash = clientIP.getHigh() * 0x9e3779b97f4a7c15L ^ clientIP.getLow();
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return (int) hash & setMask;
+    }
+
+    /**
+     * Decision for a client.
+     */
+    private static final class Entry<V> {
+
+        private final long high;
+        private final long low;
+        private final V value;
+
+        // Set when entry is used, cleared when CLOCK hand passes over it.
+        private boolean referenced;
+
+        private Entry(long high, long low, V value) {
+
+            this.high = high;
+            this.low = low;
+            this.value = value;
+        }
+
+        private boolean matches(ClientIP clientIP) {
+
+            return high == clientIP.getHigh() && low == clientIP.getLow();
+        }
+    }
+}
@@ -33,6 +33,7 @@ import org.wso2.carbon.messaging.CarbonMessage;
 import org.wso2.carbon.messaging.Constants;
 import org.wso2.carbon.messaging.DefaultCarbonMessage;
 
+import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 
@@ -204,18 +205,23 @@ public final class CommonUtil {
      } **/
 
     /**
-     * @param carbonMessage Response from which host and port are to be identified.
-     * @param context       LoadBalancerConfigContext
-     * @return String of form 'hostname:port'
+     * @param inputUri LBOutboundEndpoint's Uri.
+     * @return resolved socket address of endpoint, or null if uri is not valid.
+     * <p>
+     * NOTE: If host cannot be resolved, an unresolved address is returned.
      */
-    public static String getCookieValue(CarbonMessage carbonMessage, LoadBalancerConfigContext context) {
-        //Extracting host and port from response to identify appropriate cookie.
+    public static InetSocketAddress getSocketAddress(String inputUri) {
 
-        return context.getCookieFromOutboundEP(
-                carbonMessage.getProperty(Constants.HOST).toString() +
-                        ":" + carbonMessage.getProperty(Constants.PORT).toString());
-    }
+        String hostAndPort = getHostAndPort(inputUri);
+
+        if (hostAndPort == null) {
+            return null;
+        }
 
+        int separator = hostAndPort.lastIndexOf(':');
+        return new InetSocketAddress(hostAndPort.substring(0, separator).trim(),
+                Integer.parseInt(hostAndPort.substring(separator + 1).trim()));
+    }
 
     /**
      * @param cookieValue Inserted cookie value
@@ -247,43 +253,44 @@ public final class CommonUtil {
 
     public static String addLBCookieToExistingCookie(String existingCookie, String lbCookieValue) {
 
-        // Multiple fields of cookies are separated by ";"
-        // So index of first ";" will give the index after 'value' attribute.
-        // 'name' & 'value' attributes of cookie alone will be sent back by browser.
-        // So, we have to append it in value field to maintain persistence.
-
-        if (existingCookie.contains(";")) { //there are multiple fields in cookie.
-
-            StringBuilder cookie = new StringBuilder();
-
-            cookie.append(existingCookie.
-                    substring(0, existingCookie.indexOf(";"))); // eg: JSESSIONID="sadfsad" is extracted.
-
-            cookie.append(LoadBalancerConstants.LB_COOKIE_DELIMITER);
-            cookie.append(LoadBalancerConstants.LB_COOKIE_NAME);
-            cookie.append(LoadBalancerConstants.COOKIE_NAME_VALUE_SEPARATOR);
-            cookie.append(lbCookieValue);
-            cookie.append(LoadBalancerConstants.LB_COOKIE_DELIMITER);
+        return addLBCookieFragmentToExistingCookie(existingCookie, getLBCookieFragment(lbCookieValue));
+    }
 
-            cookie.append(existingCookie.
-                    substring(existingCookie.indexOf(";"), existingCookie.length())); // remaining cookie fields.
+    /**
+     * @param lbCookieValue generated cookie
+     * @return LB specific fragment to be embedded in BE cookie. eg: ---LB_COOKIE:SOME_HASHCODE---
+     */
+    public static String getLBCookieFragment(String lbCookieValue) {
 
-            return cookie.toString();
+        return LoadBalancerConstants.LB_COOKIE_DELIMITER + LoadBalancerConstants.LB_COOKIE_NAME +
+                LoadBalancerConstants.COOKIE_NAME_VALUE_SEPARATOR + lbCookieValue +
+                LoadBalancerConstants.LB_COOKIE_DELIMITER;
+    }
 
-        } else { //there is no multiple fields in cookie.
+    /**
+     * @param existingCookie   existing cookie from BE.
+     * @param lbCookieFragment fragment returned by getLBCookieFragment().
+     * @return BE cookie value appended with LB specific cookie. It is built in a single copy.
+     */
+    public static String addLBCookieFragmentToExistingCookie(String existingCookie, String lbCookieFragment) {
 
-            StringBuilder cookie = new StringBuilder();
-            cookie.append(existingCookie);
-            cookie.append(LoadBalancerConstants.LB_COOKIE_DELIMITER);
-            cookie.append(LoadBalancerConstants.LB_COOKIE_NAME);
-            cookie.append(LoadBalancerConstants.COOKIE_NAME_VALUE_SEPARATOR);
-            cookie.append(lbCookieValue);
-            cookie.append(LoadBalancerConstants.LB_COOKIE_DELIMITER);
+        // Multiple fields of cookies are separated by ";"
+        // So index of first ";" will give the index after 'value' attribute.
+        // 'name' & 'value' attributes of cookie alone will be sent back by browser.
+        // So, we have to append it in value field to maintain persistence.
 
+        int separator = existingCookie.indexOf(';');
+        if (separator < 0) { //there is no multiple fields in cookie.
 
-            return cookie.toString();
+            return existingCookie.concat(lbCookieFragment);
         }
 
+        // eg: JSESSIONID="sadfsad" + fragment + remaining cookie fields.
+        return new StringBuilder(existingCookie.length() + lbCookieFragment.length())
+                .append(existingCookie, 0, separator)
+                .append(lbCookieFragment)
+                .append(existingCookie, separator, existingCookie.length())
+                .toString();
     }
 
     /**
@@ -408,14 +415,34 @@ public final class CommonUtil {
          * adding it to unHealthyEndpoint list.
          */
 
+        removeFromRotation(context, algorithm, lbOutboundEndpoint);
+
+        /**
+         * Adding to unHealthy List if it is not already in list.
+         * Synchronization is not necessary because, it is ConcurrentLinkedQueue.
+         **/
+
+        if (!context.getUnHealthyLBEPQueue().
+                contains(lbOutboundEndpoint)) {
+            context.getUnHealthyLBEPQueue().add(lbOutboundEndpoint);
+        }
+
+
+    }
+
+    /**
+     * Endpoint will not be chosen by persistence (CLIENT_IP_HASHING) or algorithm anymore.
+     * It is used when an endpoint is unHealthy or its circuit is open.
+     */
+    public static void removeFromRotation(LoadBalancerConfigContext context,
+                                          LoadBalancingAlgorithm algorithm,
+                                          LBOutboundEndpoint lbOutboundEndpoint) {
+
         //This case will only be true in case of CLIENT_IP_HASHING
-        //as persistence policy.
+        //as persistence policy. It publishes a new snapshot by itself, so no locking is needed here.
         if (context.getStrictClientIPHashing() != null) {
 
-            synchronized (context.getStrictClientIPHashing().getLock()) {
-                context.getStrictClientIPHashing().removeLBOutboundEndpoint(lbOutboundEndpoint);
-            }
-
+            context.getStrictClientIPHashing().removeLBOutboundEndpoint(lbOutboundEndpoint);
         }
 
         //We are acquiring lock on Object that is available in algorithm.
@@ -429,18 +456,33 @@ public final class CommonUtil {
             algorithm.reset();
 
         }
+    }
 
-        /**
-         * Adding to unHealthy List if it is not already in list.
-         * Synchronization is not necessary because, it is ConcurrentLinkedQueue.
-         **/
+    /**
+     * Reverse of removeFromRotation().
+     */
+    public static void addToRotation(LoadBalancerConfigContext context,
+                                     LoadBalancingAlgorithm algorithm,
+                                     LBOutboundEndpoint lbOutboundEndpoint) {
 
-        if (!context.getUnHealthyLBEPQueue().
-                contains(lbOutboundEndpoint)) {
-            context.getUnHealthyLBEPQueue().add(lbOutboundEndpoint);
+        //This case will only be true in case of CLIENT_IP_HASHING
+        //as persistence policy.
+        if (context.getStrictClientIPHashing() != null) {
+
+            context.getStrictClientIPHashing().addLBOutboundEndpoint(lbOutboundEndpoint);
         }
 
+        //We are acquiring lock on Object that is available in algorithm.
+        //We are adding the HealthyEndpoint back in Algorithm List so that it
+        //will be chosen by algorithm in future.
+        //Locking here is MUST because we want the below
+        //operations to happen without any interference.
+        synchronized (algorithm.getLock()) {
+
+            algorithm.addLBOutboundEndpoint(lbOutboundEndpoint);
+            algorithm.reset();
 
+        }
     }
 
     public static void sendErrorResponse(CarbonCallback carbonCallback, boolean isInternalError) throws Exception {
@@ -452,7 +494,7 @@ public final class CommonUtil {
                             new DefaultCarbonMessage(true), carbonCallback);
         } else {
 
-            log.error("All OutboundEndpoints are unHealthy..");
+            log.debug("All OutboundEndpoints are unHealthy..");
             new LBErrorHandler().handleFault
                     ("503", new Throwable("Service Unavailable.. " +
                             "Kindly try after some time.."), new DefaultCarbonMessage(true), carbonCallback);
@@ -462,4 +504,32 @@ public final class CommonUtil {
 
     }
 
+    /**
+     * @param carbonMessage response.
+     * @return HTTP status code of response. 0 if it is not available.
+     * <p>
+     * Transport sets it as a property, whereas LBErrorHandler sets it as a header.
+     */
+    public static int getStatusCode(CarbonMessage carbonMessage) {
+
+        Object statusCode = carbonMessage.getProperty(
+                org.wso2.carbon.transport.http.netty.common.Constants.HTTP_STATUS_CODE);
+        if (statusCode == null) {
+            statusCode = carbonMessage.getHeader(
+                    org.wso2.carbon.transport.http.netty.common.Constants.HTTP_STATUS_CODE);
+        }
+
+        if (statusCode instanceof Integer) {
+            return (Integer) statusCode;
+        }
+        if (statusCode != null) {
+            try {
+                return Integer.parseInt(statusCode.toString().trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
 }
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils;
+
+import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
+
+/**
+ * Single pass tokenizer for LB specific cookies in a request's Cookie header.
+ * <p>
+ * Two formats are recognized.
+ * <p>
+ * 1) Embedded in BE cookie (APPLICATION_COOKIE), eg: JSESSIONID=ghsgsdgsg---LB_COOKIE:SOME_HASHCODE---
+ * <p>
+ * 2) Separate cookie (LB_COOKIE and APPLICATION_COOKIE), eg: LB_COOKIE=SOME_HASHCODE
+ * <p>
+ * locateLBCookie() scans the header once without regex and returns the location of LB fragment packed
+ * in a long. Value extraction and header rewriting then work on that location, so the only strings
+ * created are the LB key and the rewritten header.
+ */
+public final class LBCookieParser {
+
+    /**
+     * Returned by locateLBCookie() when there is no LB specific cookie.
+     */
+    public static final long NOT_FOUND = -1L;
+
+    // eg: ---LB_COOKIE:
+    private static final String EMBEDDED_PREFIX = LoadBalancerConstants.LB_COOKIE_DELIMITER +
+            LoadBalancerConstants.LB_COOKIE_NAME + LoadBalancerConstants.COOKIE_NAME_VALUE_SEPARATOR;
+
+    // eg: LB_COOKIE=
+    private static final String PAIR_PREFIX = LoadBalancerConstants.LB_COOKIE_NAME + "=";
+
+    private static final String DELIMITER = LoadBalancerConstants.LB_COOKIE_DELIMITER;
+
+    private LBCookieParser() {
+
+    }
+
+    /**
+     * @param cookieHeader    value of Cookie header. Can be null.
+     * @param embeddedAllowed true if format 1 (embedded in BE cookie) has to be considered.
+     *                        Format 1 takes precedence over format 2 when both are present.
+     * @return location of LB fragment (start index in upper 32 bits, end index in lower 32 bits)
+     * or NOT_FOUND.
+     */
+    public static long locateLBCookie(String cookieHeader, boolean embeddedAllowed) {
+
+        if (cookieHeader == null) {
+            return NOT_FOUND;
+        }
+
+        final int length = cookieHeader.length();
+        long pairLocation = NOT_FOUND;
+        int pairStart = 0;
+
+        while (pairStart < length) {
+
+            pairStart = skipWhitespace(cookieHeader, pairStart, length);
+
+            int pairEnd = pairStart;
+            while (pairEnd < length && cookieHeader.charAt(pairEnd) != ';') {
+                pairEnd++;
+            }
+
+            if (pairLocation == NOT_FOUND && cookieHeader.startsWith(PAIR_PREFIX, pairStart)) {
+
+                pairLocation = pack(pairStart, trimEnd(cookieHeader, pairStart + PAIR_PREFIX.length(), pairEnd));
+
+                if (!embeddedAllowed) {
+                    return pairLocation;
+                }
+            }
+
+            if (embeddedAllowed) {
+
+                int fragmentStart = indexOf(cookieHeader, EMBEDDED_PREFIX, pairStart, pairEnd);
+                if (fragmentStart >= 0) {
+
+                    int closing = indexOf(cookieHeader, DELIMITER, fragmentStart + EMBEDDED_PREFIX.length(), pairEnd);
+                    if (closing >= 0) {
+                        return pack(fragmentStart, closing + DELIMITER.length());
+                    }
+                }
+            }
+
+            pairStart = pairEnd + 1;
+        }
+
+        return pairLocation;
+    }
+
+    /**
+     * @param cookieHeader value of Cookie header.
+     * @param location     location returned by locateLBCookie(), must not be NOT_FOUND.
+     * @return LB key (hash of endpoint) present in cookie.
+     */
+    public static String getLBCookieValue(String cookieHeader, long location) {
+
+        int start = start(location);
+        int end = end(location);
+
+        if (cookieHeader.startsWith(EMBEDDED_PREFIX, start)) {
+            return cookieHeader.substring(start + EMBEDDED_PREFIX.length(), end - DELIMITER.length());
+        }
+
+        return cookieHeader.substring(start + PAIR_PREFIX.length(), end);
+    }
+
+    /**
+     * @param cookieHeader value of Cookie header.
+     * @param location     location returned by locateLBCookie(), must not be NOT_FOUND.
+     * @return Cookie header without LB specific cookie, or null if nothing else remains.
+     * <p>
+     * Cookies following LB specific cookie are retained. We don't want LB cookie to be sent to BE.
+     */
+    public static String removeLBCookie(String cookieHeader, long location) {
+
+        final int length = cookieHeader.length();
+        int start = start(location);
+        int end = end(location);
+
+        if (!cookieHeader.startsWith(EMBEDDED_PREFIX, start)) {
+
+            //Whole cookie pair has to be removed along with its separator.
+            int next = skipWhitespace(cookieHeader, end, length);
+
+            if (next < length && cookieHeader.charAt(next) == ';') {
+
+                end = skipWhitespace(cookieHeader, next + 1, length);
+
+            } else {
+
+                //It is the last pair, so separator before it is removed.
+                end = next;
+                start = trimEnd(cookieHeader, 0, start);
+                if (start > 0 && cookieHeader.charAt(start - 1) == ';') {
+                    start = trimEnd(cookieHeader, 0, start - 1);
+                }
+            }
+        }
+
+        if (start == 0 && end == length) {
+            return null;
+        }
+
+        return new StringBuilder(length - (end - start))
+                .append(cookieHeader, 0, start)
+                .append(cookieHeader, end, length)
+                .toString();
+    }
+
+    private static long pack(int start, int end) {
+
+        return ((long) start << 32) | (end & 0xFFFFFFFFL);
+    }
+
+    private static int start(long location) {
+
+        return (int) (location >>> 32);
+    }
+
+    private static int end(long location) {
+
+        return (int) location;
+    }
+
+    private static boolean isWhitespace(char c) {
+
+        return c == ' ' || c == '\t';
+    }
+
+    private static int skipWhitespace(String s, int from, int to) {
+
+        while (from < to && isWhitespace(s.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimEnd(String s, int from, int to) {
+
+        while (to > from && isWhitespace(s.charAt(to - 1))) {
+            to--;
+        }
+        return to;
+    }
+
+    /**
+     * Same as String.indexOf(), but search doesn't go beyond 'to'.
+     */
+    private static int indexOf(String s, String target, int from, int to) {
+
+        for (int i = from; i + target.length() <= to; i++) {
+            if (s.startsWith(target, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.accesslog;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sampled access log of a LB config.
+ * <p>
+ * One in every sampleRate responses is logged, chosen at random. Errors (5xx responses, timeouts,
+ * rejected requests etc.,) are always logged. Entries are written asynchronously by AccessLogWriter, so
+ * request path only pays for a random number and, if sampled, a few field writes.
+ */
+public final class AccessLog {
+
+    /**
+     * Types of events.
+     */
+    public static final String RESPONSE = "RESPONSE";
+    public static final String TIMEOUT = "TIMEOUT";
+    public static final String REJECTED = "REJECTED";
+    public static final String NO_ENDPOINT = "NO_ENDPOINT";
+    public static final String LATE_RESPONSE = "LATE_RESPONSE";
+    public static final String ERROR = "ERROR";
+    public static final String RETRY = "RETRY";
+
+    private final String configName;
+    private final int sampleRate;
+
+    /**
+     * @param configName name of LB config.
+     * @param sampleRate one in these many responses is logged. 0 means responses are not logged at all.
+     */
+    public AccessLog(String configName, int sampleRate) {
+
+        this.configName = configName;
+        this.sampleRate = sampleRate;
+    }
+
+    public int getSampleRate() {
+
+        return sampleRate;
+    }
+
+    /**
+     * @return true if current response has to be logged.
+     */
+    public boolean isSampled() {
+
+        return sampleRate == 1 || (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) == 0);
+    }
+
+    /**
+     * @param statusCode HTTP status code of response from endpoint.
+     * @return true if this response has to be logged. 5xx responses are always logged, others only if sampled.
+     */
+    public boolean isSampled(int statusCode) {
+
+        return statusCode >= 500 || isSampled();
+    }
+
+    /**
+     * Logs a response from endpoint. Caller has to check isSampled(statusCode) first.
+     *
+     * @param statusCode    HTTP status code of response.
+     * @param endpoint      name of endpoint.
+     * @param latencyMillis time taken by endpoint.
+     */
+    public void response(int statusCode, String endpoint, long latencyMillis) {
+
+        AccessLogWriter.getInstance().append(System.currentTimeMillis(), configName, RESPONSE, statusCode,
+                endpoint, latencyMillis);
+    }
+
+    /**
+     * Logs an error. Errors are not sampled.
+     *
+     * @param event         type of error. eg: TIMEOUT.
+     * @param statusCode    HTTP status code sent to client.
+     * @param endpoint      name of endpoint, null if no endpoint was chosen.
+     * @param latencyMillis time elapsed since request was sent to endpoint, -1 if not applicable.
+     */
+    public void error(String event, int statusCode, String endpoint, long latencyMillis) {
+
+        AccessLogWriter.getInstance().append(System.currentTimeMillis(), configName, event, statusCode,
+                endpoint, latencyMillis);
+    }
+}
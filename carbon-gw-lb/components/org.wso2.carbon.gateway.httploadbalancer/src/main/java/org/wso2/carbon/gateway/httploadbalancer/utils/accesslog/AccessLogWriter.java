@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.accesslog;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous writer of access log entries, shared by access logs of all LB configs.
+ * <p>
+ * Request threads only copy a few fields into a preallocated slot of a ring buffer. Formatting and
+ * writing to the "org.wso2.carbon.gateway.httploadbalancer.AccessLog" logger is done by a single daemon
+ * thread, so slow appenders never stall request threads. Route that logger to its own appender to
+ * get a separate access log file.
+ * <p>
+ * Producers claim a sequence with CAS and publish the slot by writing its sequence, so the writer
+ * reads an entry only after all of its fields are written. If the writer falls behind by a whole
+ * buffer, new entries are dropped and counted instead of blocking producers. Drops are reported
+ * by the writer.
+ */
+public final class AccessLogWriter implements Runnable {
+
+    /**
+     * Name of logger to which access log entries are written.
+     */
+    public static final String LOGGER_NAME = "org.wso2.carbon.gateway.httploadbalancer.AccessLog";
+
+    private static final Logger log = LoggerFactory.getLogger(AccessLogWriter.class);
+
+    private static final Logger accessLog = LoggerFactory.getLogger(LOGGER_NAME);
+
+    private static final String THREAD_NAME = "LB-AccessLogWriter";
+
+    //Writer sleeps this long when there is nothing to write.
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static volatile AccessLogWriter instance;
+
+    private final Entry[] ring;
+    private final int mask;
+
+    //Next sequence to be claimed by a producer.
+    private final AtomicLong claimed = new AtomicLong(0);
+
+    //Next sequence to be written. Written only by writer thread.
+    private volatile long consumed = 0;
+
+    private final AtomicLong dropped = new AtomicLong(0);
+
+    private final Consumer<String> sink;
+
+    //Following fields are accessed only by writer thread.
+    private final StringBuilder line = new StringBuilder(128);
+    private long reportedDropped = 0;
+
+    /**
+     * @param bufferSize no of entries that can be pending. It will be rounded up to a power of two.
+     * @param sink       receives formatted entries on writer thread.
+     */
+    AccessLogWriter(int bufferSize, Consumer<String> sink) {
+
+        int size = Integer.highestOneBit(Math.max(1, bufferSize));
+        if (size < bufferSize) {
+            size <<= 1;
+        }
+
+        this.ring = new Entry[size];
+        for (int i = 0; i < size; i++) {
+            this.ring[i] = new Entry();
+        }
+        this.mask = size - 1;
+        this.sink = sink;
+    }
+
+    /**
+     * @return writer shared across all LB configs. It is started on first use.
+     */
+    public static AccessLogWriter getInstance() {
+
+        if (instance == null) {
+            synchronized (AccessLogWriter.class) {
+                if (instance == null) {
+                    AccessLogWriter writer = new AccessLogWriter(LoadBalancerConstants.ACCESS_LOG_BUFFER_SIZE,
+                            accessLog::info);
+                    Thread thread = new Thread(writer, THREAD_NAME);
+                    thread.setDaemon(true);
+                    thread.start();
+                    instance = writer;
+                    log.info("{} started.", THREAD_NAME);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @param timestamp     time of event in milli seconds since epoch.
+     * @param configName    name of LB config.
+     * @param event         type of event. eg: RESPONSE, TIMEOUT.
+     * @param statusCode    HTTP status code sent to client, 0 if not known.
+     * @param endpoint      name of endpoint, null if no endpoint was chosen.
+     * @param latencyMillis time taken by endpoint, -1 if not applicable.
+     *                      <p>
+     *                      NOTE: This operation is thread safe and never blocks.
+     */
+    public void append(long timestamp, String configName, String event, int statusCode, String endpoint,
+                       long latencyMillis) {
+
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= ring.length) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        Entry entry = ring[(int) (sequence & mask)];
+        entry.timestamp = timestamp;
+        entry.configName = configName;
+        entry.event = event;
+        entry.statusCode = statusCode;
+        entry.endpoint = endpoint;
+        entry.latencyMillis = latencyMillis;
+        entry.sequence = sequence;
+    }
+
+    /**
+     * @return no of entries dropped as buffer was full.
+     */
+    public long getDroppedCount() {
+
+        return dropped.get();
+    }
+
+    @Override
+    public void run() {
+
+        while (true) {
+            try {
+                if (drain() == 0) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            } catch (Throwable e) {
+                //Writer thread must survive, otherwise access log stops for all configs.
+                log.error("Error in {}..", THREAD_NAME, e);
+            }
+        }
+    }
+
+    /**
+     * Writes all published entries. Must be called only by writer thread.
+     *
+     * @return no of entries written.
+     */
+    int drain() {
+
+        int written = 0;
+        long next = consumed;
+
+        Entry entry;
+        while ((entry = ring[(int) (next & mask)]).sequence == next) {
+
+            String formatted = format(entry);
+            next++;
+            //Slot can be reused by producers from here.
+            consumed = next;
+
+            sink.accept(formatted);
+            written++;
+        }
+
+        long droppedNow = dropped.get();
+        if (droppedNow != reportedDropped) {
+            log.warn("{} access log entries dropped as writer is behind..", droppedNow - reportedDropped);
+            reportedDropped = droppedNow;
+        }
+
+        return written;
+    }
+
+    // eg: 1489473210123 lbConfig TIMEOUT 504 EP1 5005ms
+    private String format(Entry entry) {
+
+        line.setLength(0);
+        line.append(entry.timestamp).append(' ')
+                .append(entry.configName).append(' ')
+                .append(entry.event).append(' ')
+                .append(entry.statusCode).append(' ')
+                .append(entry.endpoint != null ? entry.endpoint : "-").append(' ');
+        if (entry.latencyMillis >= 0) {
+            line.append(entry.latencyMillis).append("ms");
+        } else {
+            line.append('-');
+        }
+        return line.toString();
+    }
+
+    /**
+     * A slot of ring buffer. Fields are reused, so no allocation is done per entry.
+     */
+    private static final class Entry {
+
+        //Sequence of entry in this slot. Written last, so it publishes other fields.
+        private volatile long sequence = -1;
+
+        private long timestamp;
+        private String configName;
+        private String event;
+        private int statusCode;
+        private String endpoint;
+        private long latencyMillis;
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.breaker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Circuit breaker of an LBOutboundEndpoint.
+ * <p>
+ * CLOSED - All requests are allowed. Outcome of each call is counted in a rolling window.
+ * Once failure rate or slow call rate crosses its threshold, circuit opens.
+ * <p>
+ * OPEN - No request is allowed. After openDuration, CircuitBreakerHandler moves it to HALF_OPEN.
+ * onOpen listener is told each time circuit opens, so that CircuitBreakerHandler has to look only
+ * at circuits that are not CLOSED.
+ * <p>
+ * HALF_OPEN - Only halfOpenTrials requests are allowed. If all of them succeed circuit closes,
+ * otherwise it opens again on first failed or slow trial.
+ * <p>
+ * Everything is lock free. Rolling window is a ring of buckets of AtomicLongArray, each tagged with
+ * the time slot it counts. A bucket whose slot has passed is reset by the first thread that writes to it.
+ * A few counts may be lost while a bucket is being reset, which doesn't matter for rates.
+ * Phase is an immutable object swapped with CAS, so only one thread wins a transition.
+ * <p>
+ * Outcomes of requests sent before current phase began are ignored. eg: late successes of requests
+ * sent before circuit opened can't close it.
+ */
+public final class CircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public static final int CLOSED = 0;
+    public static final int OPEN = 1;
+    public static final int HALF_OPEN = 2;
+
+    private static final int BUCKETS = 10;
+
+    // Each bucket is [slot, calls, failures, slowCalls].
+    private static final int FIELDS = 4;
+    private static final int CALLS = 1;
+    private static final int FAILURES = 2;
+    private static final int SLOW_CALLS = 3;
+
+    private final String name;
+    private final CircuitBreakerConfig config;
+    private final long bucketNanos;
+    private final long slowCallNanos;
+    private final Runnable onOpen;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS * FIELDS);
+
+    private final AtomicReference<Phase> phase;
+
+    /**
+     * @param name   name of endpoint, used in logs.
+     * @param config thresholds.
+     */
+    public CircuitBreaker(String name, CircuitBreakerConfig config) {
+
+        this(name, config, () -> { });
+    }
+
+    /**
+     * @param name   name of endpoint, used in logs.
+     * @param config thresholds.
+     * @param onOpen run on the thread that opens circuit, each time it opens. MUST NOT block.
+     */
+    public CircuitBreaker(String name, CircuitBreakerConfig config, Runnable onOpen) {
+
+        this(name, config, onOpen, System.nanoTime());
+    }
+
+    CircuitBreaker(String name, CircuitBreakerConfig config, long currentNanos) {
+
+        this(name, config, () -> { }, currentNanos);
+    }
+
+    CircuitBreaker(String name, CircuitBreakerConfig config, Runnable onOpen, long currentNanos) {
+
+        this.name = name;
+        this.config = config;
+        this.onOpen = onOpen;
+        this.bucketNanos = Math.max(1, TimeUnit.MILLISECONDS.toNanos(config.getWindow()) / BUCKETS);
+        this.slowCallNanos = config.isSlowCallDetectionEnabled() ?
+                TimeUnit.MILLISECONDS.toNanos(config.getSlowCallDuration()) : Long.MAX_VALUE;
+        this.phase = new AtomicReference<>(new Phase(CLOSED, currentNanos, 0));
+        this.clearWindow();
+    }
+
+    public int getState() {
+
+        return phase.get().state;
+    }
+
+    public boolean isOpen() {
+
+        return phase.get().state == OPEN;
+    }
+
+    public CircuitBreakerConfig getConfig() {
+
+        return config;
+    }
+
+    /**
+     * @return true if a request can be sent to endpoint. In HALF_OPEN, it also takes one trial permit.
+     * <p>
+     * MUST be called only once per request, just before it is sent.
+     */
+    public boolean tryAcquire() {
+
+        Phase current = phase.get();
+        if (current.state == CLOSED) {
+            return true;
+        }
+        if (current.state == OPEN) {
+            return false;
+        }
+
+        int permits;
+        do {
+            permits = current.permits.get();
+            if (permits <= 0) {
+                return false;
+            }
+        } while (!current.permits.compareAndSet(permits, permits - 1));
+        return true;
+    }
+
+    /**
+     * Returns trial permit taken by tryAcquire() for a request that was never sent to endpoint,
+     * eg: rejected by LB itself. Otherwise HALF_OPEN would wait for a trial that can't be answered.
+     * <p>
+     * Nothing is done if circuit is not HALF_OPEN. Permits never exceed no of trials of current phase.
+     */
+    public void release() {
+
+        Phase current = phase.get();
+        if (current.state != HALF_OPEN) {
+            return;
+        }
+
+        int permits;
+        do {
+            permits = current.permits.get();
+            if (permits >= config.getHalfOpenTrials()) {
+                return;
+            }
+        } while (!current.permits.compareAndSet(permits, permits + 1));
+    }
+
+    /**
+     * @param startNanos System.nanoTime() at which request was sent.
+     * @param endNanos   System.nanoTime() at which response arrived.
+     * @param statusCode status code of response. 5xx is a failure.
+     */
+    public void onResponse(long startNanos, long endNanos, int statusCode) {
+
+        if (statusCode >= 500) {
+            this.onFailure(startNanos, endNanos);
+        } else {
+            this.onSuccess(startNanos, endNanos);
+        }
+    }
+
+    /**
+     * @param startNanos System.nanoTime() at which request was sent.
+     * @param endNanos   System.nanoTime() at which successful response arrived.
+     */
+    public void onSuccess(long startNanos, long endNanos) {
+
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        Phase current = phase.get();
+        if (startNanos - current.sinceNanos < 0 || current.state == OPEN) {
+            return;
+        }
+
+        boolean slow = endNanos - startNanos >= slowCallNanos;
+
+        if (current.state == HALF_OPEN) {
+            if (slow) {
+                this.open(current, endNanos, "slow trial call");
+            } else if (current.successes.incrementAndGet() >= config.getHalfOpenTrials()) {
+                this.close(current, endNanos);
+            }
+            return;
+        }
+
+        this.record(endNanos, false, slow);
+        if (slow) {
+            this.evaluate(current, endNanos);
+        }
+    }
+
+    /**
+     * @param startNanos System.nanoTime() at which request was sent.
+     * @param endNanos   System.nanoTime() at which failure (5xx or timeout) occurred.
+     */
+    public void onFailure(long startNanos, long endNanos) {
+
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        Phase current = phase.get();
+        if (startNanos - current.sinceNanos < 0 || current.state == OPEN) {
+            return;
+        }
+
+        if (current.state == HALF_OPEN) {
+            this.open(current, endNanos, "failed trial call");
+            return;
+        }
+
+        this.record(endNanos, true, endNanos - startNanos >= slowCallNanos);
+        this.evaluate(current, endNanos);
+    }
+
+    /**
+     * Time based transitions. Called by CircuitBreakerHandler on every tick while circuit is not CLOSED.
+     * <p>
+     * OPEN for openDuration moves to HALF_OPEN. HALF_OPEN whose trials are not answered within
+     * maxTrialMillis (ie., lost before reaching endpoint) moves back to OPEN.
+     *
+     * @param currentNanos   System.nanoTime().
+     * @param maxTrialMillis time within which trial calls are either answered or timedOut.
+     */
+    public void onTick(long currentNanos, long maxTrialMillis) {
+
+        Phase current = phase.get();
+        long elapsed = currentNanos - current.sinceNanos;
+
+        if (current.state == OPEN && elapsed >= TimeUnit.MILLISECONDS.toNanos(config.getOpenDuration())) {
+
+            if (phase.compareAndSet(current, new Phase(HALF_OPEN, currentNanos, config.getHalfOpenTrials()))) {
+                log.info("Circuit of {} is HALF_OPEN. Allowing {} trial calls..", name, config.getHalfOpenTrials());
+            }
+
+        } else if (current.state == HALF_OPEN && elapsed >= TimeUnit.MILLISECONDS.toNanos(maxTrialMillis)) {
+
+            this.open(current, currentNanos, "trial calls were not answered");
+        }
+    }
+
+    private void open(Phase expected, long currentNanos, String reason) {
+
+        if (phase.compareAndSet(expected, new Phase(OPEN, currentNanos, 0))) {
+            log.warn("Circuit of {} is OPEN due to {}..", name, reason);
+            onOpen.run();
+        }
+    }
+
+    private void close(Phase expected, long currentNanos) {
+
+        if (phase.compareAndSet(expected, new Phase(CLOSED, currentNanos, 0))) {
+            //Counts of previous CLOSED phase must not open it again.
+            this.clearWindow();
+            log.info("Circuit of {} is CLOSED..", name);
+        }
+    }
+
+    private void clearWindow() {
+
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i * FIELDS, Long.MIN_VALUE);
+        }
+    }
+
+    private void record(long currentNanos, boolean failure, boolean slow) {
+
+        long slot = currentNanos / bucketNanos;
+        int base = (int) Math.floorMod(slot, (long) BUCKETS) * FIELDS;
+
+        long bucketSlot = buckets.get(base);
+        if (bucketSlot < slot && buckets.compareAndSet(base, bucketSlot, slot)) {
+            buckets.set(base + CALLS, 0);
+            buckets.set(base + FAILURES, 0);
+            buckets.set(base + SLOW_CALLS, 0);
+        }
+
+        buckets.incrementAndGet(base + CALLS);
+        if (failure) {
+            buckets.incrementAndGet(base + FAILURES);
+        }
+        if (slow) {
+            buckets.incrementAndGet(base + SLOW_CALLS);
+        }
+    }
+
+    /**
+     * Opens circuit if rates in window have crossed thresholds. Called only on failed or slow calls,
+     * as rates can't increase otherwise.
+     */
+    private void evaluate(Phase current, long currentNanos) {
+
+        long slot = currentNanos / bucketNanos;
+        long calls = 0;
+        long failures = 0;
+        long slowCalls = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            int base = i * FIELDS;
+            long bucketSlot = buckets.get(base);
+            if (bucketSlot > slot - BUCKETS && bucketSlot <= slot) {
+                calls += buckets.get(base + CALLS);
+                failures += buckets.get(base + FAILURES);
+                slowCalls += buckets.get(base + SLOW_CALLS);
+            }
+        }
+
+        if (calls < config.getMinimumCalls()) {
+            return;
+        }
+
+        if (config.getFailureRateThreshold() > 0 && failures * 100 >= config.getFailureRateThreshold() * calls) {
+
+            this.open(current, currentNanos, "failure rate " + (failures * 100 / calls) + "%");
+
+        } else if (config.isSlowCallDetectionEnabled() &&
+                slowCalls * 100 >= config.getSlowCallRateThreshold() * calls) {
+
+            this.open(current, currentNanos, "slow call rate " + (slowCalls * 100 / calls) + "%");
+        }
+    }
+
+    /**
+     * State of circuit along with time from which it is in that state.
+     */
+    private static final class Phase {
+
+        private final int state;
+        private final long sinceNanos;
+
+        //Used only in HALF_OPEN.
+        private final AtomicInteger permits;
+        private final AtomicInteger successes = new AtomicInteger(0);
+
+        private Phase(int state, long sinceNanos, int permits) {
+
+            this.state = state;
+            this.sinceNanos = sinceNanos;
+            this.permits = new AtomicInteger(permits);
+        }
+    }
+}
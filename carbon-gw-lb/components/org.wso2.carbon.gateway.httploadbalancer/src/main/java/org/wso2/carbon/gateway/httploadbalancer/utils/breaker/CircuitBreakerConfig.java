@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.breaker;
+
+import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
+
+/**
+ * When a CircuitBreaker opens and how it recovers.
+ * <p>
+ * Circuit opens when, within last window, at least minimumCalls calls have completed and either
+ * failures (5xx and timeouts) or slow calls reach their rate threshold.
+ */
+public class CircuitBreakerConfig {
+
+    /**
+     * Circuit never opens.
+     */
+    public static final CircuitBreakerConfig DISABLED = new CircuitBreakerConfig(0, 0, 0,
+            LoadBalancerConstants.DEFAULT_CIRCUIT_BREAKER_MINIMUM_CALLS,
+            LoadBalancerConstants.DEFAULT_CIRCUIT_BREAKER_WINDOW,
+            LoadBalancerConstants.DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION,
+            LoadBalancerConstants.DEFAULT_CIRCUIT_BREAKER_HALF_OPEN_TRIALS);
+
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final int slowCallDuration;
+    private final int minimumCalls;
+    private final int window;
+    private final int openDuration;
+    private final int halfOpenTrials;
+
+    /**
+     * @param failureRateThreshold  percentage of failed calls that opens circuit. 0 disables it.
+     * @param slowCallRateThreshold percentage of slow calls that opens circuit. 0 disables it.
+     * @param slowCallDuration      calls taking at least this long (in milli seconds) are slow. 0 disables it.
+     * @param minimumCalls          no of calls in window below which circuit doesn't open.
+     * @param window                rolling window in milli seconds.
+     * @param openDuration          time in milli seconds for which circuit stays open before trial calls.
+     * @param halfOpenTrials        no of trial calls that must succeed to close circuit again.
+     */
+    public CircuitBreakerConfig(int failureRateThreshold, int slowCallRateThreshold, int slowCallDuration,
+                                int minimumCalls, int window, int openDuration, int halfOpenTrials) {
+
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDuration = slowCallDuration;
+        this.minimumCalls = minimumCalls;
+        this.window = window;
+        this.openDuration = openDuration;
+        this.halfOpenTrials = halfOpenTrials;
+    }
+
+    /**
+     * @return false if neither failures nor slow calls can open circuit.
+     */
+    public boolean isEnabled() {
+
+        return failureRateThreshold > 0 || isSlowCallDetectionEnabled();
+    }
+
+    public boolean isSlowCallDetectionEnabled() {
+
+        return slowCallRateThreshold > 0 && slowCallDuration > 0;
+    }
+
+    public int getFailureRateThreshold() {
+
+        return failureRateThreshold;
+    }
+
+    public int getSlowCallRateThreshold() {
+
+        return slowCallRateThreshold;
+    }
+
+    public int getSlowCallDuration() {
+
+        return slowCallDuration;
+    }
+
+    public int getMinimumCalls() {
+
+        return minimumCalls;
+    }
+
+    public int getWindow() {
+
+        return window;
+    }
+
+    public int getOpenDuration() {
+
+        return openDuration;
+    }
+
+    public int getHalfOpenTrials() {
+
+        return halfOpenTrials;
+    }
+
+    @Override
+    public String toString() {
+
+        if (!isEnabled()) {
+            return "DISABLED";
+        }
+        return "failureRate " + failureRateThreshold + "%, slowCallRate " + slowCallRateThreshold + "% of calls >= " +
+                slowCallDuration + " ms, minimumCalls " + minimumCalls + ", window " + window + " ms, open " +
+                openDuration + " ms, halfOpenTrials " + halfOpenTrials;
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.handlers.probe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
+import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
+import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
+import org.wso2.carbon.gateway.httploadbalancer.utils.CommonUtil;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking prober shared by health check handlers of all LB configs.
+ * <p>
+ * A single daemon thread drives a Selector. Any number of probes can be in progress
+ * at the same time and each of them has its own deadline. So a sweep over all endpoints takes
+ * roughly one connect timeout, irrespective of number of endpoints.
+ * <p>
+ * Two kinds of probes are supported.
+ * <p>
+ * 1) Connect probe - Endpoint is healthy if a TCP connection can be established.
+ * <p>
+ * 2) HTTP probe - A configured request is sent over a keep-alive connection per endpoint and
+ * response is validated against HttpProbeConfig.
+ * <p>
+ * NOTE: Results are completed on prober thread, so callbacks attached to them MUST NOT block.
+ */
+public final class HealthCheckProber implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(HealthCheckProber.class);
+
+    private static final String THREAD_NAME = "LB-HealthCheckProber";
+
+    //Keep-alive connections unused for this long are closed.
+    private static final long IDLE_CONNECTION_TIMEOUT = TimeUnit.SECONDS.toMillis(90);
+
+    private static final long IDLE_CHECK_PERIOD = TimeUnit.SECONDS.toMillis(1);
+
+    private static volatile HealthCheckProber instance;
+
+    private final Selector selector;
+
+    //Probes submitted by handler threads, yet to be registered with selector.
+    private final Queue<Probe> newProbes = new ConcurrentLinkedQueue<>();
+
+    //Following fields are accessed only by prober thread.
+
+    //Completed probes are skipped lazily.
+    private final PriorityQueue<Probe> deadlines =
+            new PriorityQueue<>(Comparator.comparingLong(Probe::getDeadline));
+
+    private final Map<Object, HttpProbeConnection> connections = new HashMap<>();
+
+    private long lastIdleCheck = Probe.currentTime();
+
+    private HealthCheckProber() throws IOException {
+
+        this.selector = Selector.open();
+    }
+
+    /**
+     * @return prober shared across all LB configs. It is started on first use.
+     */
+    public static HealthCheckProber getInstance() {
+
+        if (instance == null) {
+            synchronized (HealthCheckProber.class) {
+                if (instance == null) {
+                    try {
+                        HealthCheckProber prober = new HealthCheckProber();
+                        Thread thread = new Thread(prober, THREAD_NAME);
+                        thread.setDaemon(true);
+                        thread.start();
+                        instance = prober;
+                        log.info("{} started.", THREAD_NAME);
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Unable to open selector for health checks..", e);
+                    }
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @param lbOutboundEndpoint endpoint to be probed.
+     * @param context            LoadBalancerConfigContext.
+     * @return HTTP probe result if health check type is HTTP, otherwise connect probe result.
+     * <p>
+     * Address of endpoint is resolved once and cached in it. If probe can't connect, it is resolved
+     * again for next probe.
+     */
+    public CompletableFuture<ProbeResult> probe(LBOutboundEndpoint lbOutboundEndpoint,
+                                                LoadBalancerConfigContext context) {
+
+        InetSocketAddress address = lbOutboundEndpoint.getSocketAddress();
+        CompletableFuture<ProbeResult> result;
+
+        if (context.getHealthCheck().equals(LoadBalancerConstants.HTTP_HEALTH_CHECK)) {
+
+            result = probeHttp(lbOutboundEndpoint, address,
+                    CommonUtil.getHostAndPort(lbOutboundEndpoint.getOutboundEndpoint().getUri()),
+                    context.getHttpProbeConfig(), LoadBalancerConstants.DEFAULT_CONN_TIMEOUT);
+        } else {
+            result = probeConnect(address, LoadBalancerConstants.DEFAULT_CONN_TIMEOUT);
+        }
+
+        return result.thenApply(probeResult -> {
+
+            if (probeResult.isConnectionFailure()) {
+                lbOutboundEndpoint.resetSocketAddress();
+            }
+            return probeResult;
+        });
+    }
+
+    /**
+     * @param address       address of endpoint. Unresolved address results in failure.
+     * @param timeoutMillis time within which connection has to be established.
+     * @return future that completes with success if connection is established before deadline.
+     * <p>
+     * Connection is closed as soon as it is established.
+     */
+    public CompletableFuture<ProbeResult> probeConnect(InetSocketAddress address, int timeoutMillis) {
+
+        return submit(new Probe(address, timeoutMillis, null, null, null));
+    }
+
+    /**
+     * @param connectionKey identifies keep-alive connection to be used. Usually the endpoint itself.
+     * @param address       address of endpoint. Unresolved address results in failure.
+     * @param hostAndPort   value of Host header.
+     * @param config        request to be sent and expected response.
+     * @param timeoutMillis time within which response has to be received.
+     * @return future that completes with success if expected response is received before deadline.
+     */
+    public CompletableFuture<ProbeResult> probeHttp(Object connectionKey, InetSocketAddress address,
+                                                    String hostAndPort, HttpProbeConfig config, int timeoutMillis) {
+
+        return submit(new Probe(address, timeoutMillis, connectionKey, config, config.getRequest(hostAndPort)));
+    }
+
+    private CompletableFuture<ProbeResult> submit(Probe probe) {
+
+        if (probe.address == null || probe.address.isUnresolved()) {
+            probe.complete("Invalid or unresolved address : " + probe.address);
+            return probe.result;
+        }
+
+        newProbes.add(probe);
+        selector.wakeup();
+        return probe.result;
+    }
+
+    @Override
+    public void run() {
+
+        while (true) {
+            try {
+
+                registerNewProbes();
+
+                selector.select(this.getSelectTimeout());
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    if (key.attachment() instanceof HttpProbeConnection) {
+                        ((HttpProbeConnection) key.attachment()).onSelected(key);
+                    } else {
+                        onConnectable(key);
+                    }
+                }
+
+                expireProbes();
+                closeIdleConnections();
+
+            } catch (ClosedSelectorException e) {
+                log.error("{} selector closed..", THREAD_NAME, e);
+                return;
+            } catch (Throwable e) {
+                //Prober thread must survive, otherwise health checks will stop for all configs.
+                log.error("Error in {}..", THREAD_NAME, e);
+            }
+        }
+    }
+
+    private void registerNewProbes() {
+
+        Probe probe;
+        while ((probe = newProbes.poll()) != null) {
+
+            deadlines.add(probe);
+
+            if (probe.httpConfig != null) {
+
+                HttpProbeConnection connection = connections.get(probe.connectionKey);
+                if (connection != null && !connection.getAddress().equals(probe.address)) {
+                    //Endpoint has been resolved to another address.
+                    connection.close("Address of endpoint changed to " + probe.address + "..");
+                    connection = null;
+                }
+                if (connection == null) {
+                    connection = new HttpProbeConnection(probe.address, selector);
+                    connections.put(probe.connectionKey, connection);
+                }
+                connection.send(probe);
+                continue;
+            }
+
+            try {
+                probe.channel = SocketChannel.open();
+                probe.channel.configureBlocking(false);
+
+                if (probe.channel.connect(probe.address)) {
+                    completeConnectProbe(probe, null);
+                } else {
+                    probe.channel.register(selector, SelectionKey.OP_CONNECT, probe);
+                }
+            } catch (IOException e) {
+                completeConnectProbe(probe, "Connect probe to " + probe.address + " failed : " + e.toString());
+            }
+        }
+    }
+
+    private void onConnectable(SelectionKey key) {
+
+        Probe probe = (Probe) key.attachment();
+
+        if (key.isValid() && key.isConnectable()) {
+            try {
+                if (probe.channel.finishConnect()) {
+                    completeConnectProbe(probe, null);
+                }
+            } catch (IOException e) {
+                completeConnectProbe(probe, "Connect probe to " + probe.address + " failed : " + e.toString());
+            }
+        }
+    }
+
+    private void expireProbes() {
+
+        long currentTime = Probe.currentTime();
+
+        Probe probe;
+        while ((probe = deadlines.peek()) != null && (probe.isDone() || probe.deadline <= currentTime)) {
+
+            deadlines.poll();
+            if (probe.isDone()) {
+                continue;
+            }
+
+            String reason = "Probe to " + probe.address + " timedOut..";
+            if (probe.connection != null) {
+                //Responses are in order, so pipelined probes can't be answered either.
+                probe.connection.close(reason);
+            } else {
+                completeConnectProbe(probe, reason);
+            }
+        }
+    }
+
+    private void closeIdleConnections() {
+
+        long currentTime = Probe.currentTime();
+
+        if (currentTime - lastIdleCheck < IDLE_CHECK_PERIOD) {
+            return;
+        }
+        lastIdleCheck = currentTime;
+
+        Iterator<HttpProbeConnection> iterator = connections.values().iterator();
+        while (iterator.hasNext()) {
+
+            HttpProbeConnection connection = iterator.next();
+            if (connection.isIdle(IDLE_CONNECTION_TIMEOUT)) {
+                connection.close(null);
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return milli seconds till nearest deadline. 0 means wait until woken up.
+     */
+    private long getSelectTimeout() {
+
+        Probe probe;
+        while ((probe = deadlines.peek()) != null && probe.isDone()) {
+            deadlines.poll();
+        }
+
+        long timeout = connections.isEmpty() ? 0 : IDLE_CHECK_PERIOD;
+
+        if (probe != null) {
+            long untilDeadline = Math.max(1, probe.deadline - Probe.currentTime());
+            timeout = timeout == 0 ? untilDeadline : Math.min(timeout, untilDeadline);
+        }
+
+        return timeout;
+    }
+
+    private void completeConnectProbe(Probe probe, String failureReason) {
+
+        if (probe.channel != null) {
+            try {
+                probe.channel.close();
+            } catch (IOException e) {
+                log.error(e.toString());
+            }
+        }
+
+        if (failureReason != null && log.isDebugEnabled()) {
+            log.debug(failureReason);
+        }
+        probe.complete(failureReason);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.handlers.probe;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * What an HTTP health check sends and what it expects in return.
+ * <p>
+ * Endpoint is healthy if status code is within [minStatus, maxStatus] and, if specified,
+ * response body contains expectedBody.
+ */
+public class HttpProbeConfig {
+
+    private final String path;
+    private final int minStatus;
+    private final int maxStatus;
+    private final String expectedBody;
+    private final byte[] expectedBodyBytes;
+
+    /**
+     * @param path         request path. eg: /health
+     * @param minStatus    minimum acceptable status code (inclusive).
+     * @param maxStatus    maximum acceptable status code (inclusive).
+     * @param expectedBody substring to be present in response body. Can be null.
+     */
+    public HttpProbeConfig(String path, int minStatus, int maxStatus, String expectedBody) {
+
+        this.path = path;
+        this.minStatus = minStatus;
+        this.maxStatus = maxStatus;
+        this.expectedBody = expectedBody;
+        this.expectedBodyBytes = expectedBody == null ? null : expectedBody.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public String getPath() {
+
+        return path;
+    }
+
+    public int getMinStatus() {
+
+        return minStatus;
+    }
+
+    public int getMaxStatus() {
+
+        return maxStatus;
+    }
+
+    public String getExpectedBody() {
+
+        return expectedBody;
+    }
+
+    /**
+     * @param hostAndPort value of Host header.
+     * @return request bytes to be written on a keep-alive connection.
+     */
+    public byte[] getRequest(String hostAndPort) {
+
+        return ("GET " + path + " HTTP/1.1\r\n" +
+                "Host: " + hostAndPort + "\r\n" +
+                "User-Agent: carbon-gw-lb-health-check\r\n" +
+                "Accept: */*\r\n" +
+                "Connection: keep-alive\r\n" +
+                "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @param parser parser holding a complete response.
+     * @return null if response is acceptable, otherwise reason.
+     */
+    String validate(HttpResponseParser parser) {
+
+        int status = parser.getStatusCode();
+
+        if (status < minStatus || status > maxStatus) {
+            return "Unexpected status code : " + status;
+        }
+
+        if (expectedBodyBytes != null && !parser.bodyContains(expectedBodyBytes)) {
+            return "Response body doesn't contain : " + expectedBody;
+        }
+
+        return null;
+    }
+
+    @Override
+    public String toString() {
+
+        return "GET " + path + " expecting " + minStatus + "-" + maxStatus +
+                (expectedBody == null ? "" : " with body containing '" + expectedBody + "'");
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.handlers.probe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keep-alive connection used for HTTP health checks of one endpoint.
+ * <p>
+ * Probe requests are pipelined on this connection and responses are matched to them in order.
+ * Connection is opened lazily and reopened when peer closes it, so a TCP handshake is not
+ * required for each probe.
+ * <p>
+ * NOTE: An instance is used only by prober thread.
+ */
+final class HttpProbeConnection {
+
+    private static final Logger log = LoggerFactory.getLogger(HttpProbeConnection.class);
+
+    private final InetSocketAddress address;
+    private final Selector selector;
+
+    private final ArrayDeque<Probe> inFlight = new ArrayDeque<>();
+    private final ArrayDeque<ByteBuffer> output = new ArrayDeque<>();
+    private final HttpResponseParser parser = new HttpResponseParser();
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(8 * 1024);
+
+    private SocketChannel channel;
+    private SelectionKey key;
+    private boolean connected;
+
+    //No of responses received on current channel.
+    private int responses;
+
+    private long lastUsed = Probe.currentTime();
+
+    HttpProbeConnection(InetSocketAddress address, Selector selector) {
+
+        this.address = address;
+        this.selector = selector;
+    }
+
+    /**
+     * @param probe HTTP probe to be sent on this connection.
+     */
+    void send(Probe probe) {
+
+        lastUsed = Probe.currentTime();
+        probe.connection = this;
+        inFlight.add(probe);
+        output.add(ByteBuffer.wrap(probe.request));
+
+        try {
+            if (channel == null) {
+                open();
+            } else if (connected) {
+                flush();
+            }
+        } catch (IOException e) {
+            close("Unable to send probe to " + address + " : " + e.toString());
+        }
+    }
+
+    /**
+     * @param selectionKey key of this connection selected by prober.
+     */
+    void onSelected(SelectionKey selectionKey) {
+
+        try {
+            if (selectionKey.isConnectable() && channel.finishConnect()) {
+                connected = true;
+                flush();
+            }
+            if (channel != null && selectionKey.isValid() && selectionKey.isWritable()) {
+                flush();
+            }
+            if (channel != null && selectionKey.isValid() && selectionKey.isReadable()) {
+                read();
+            }
+        } catch (IOException | HttpResponseParser.HttpParseException e) {
+            close("Probe to " + address + " failed : " + e.toString());
+        }
+    }
+
+    InetSocketAddress getAddress() {
+
+        return address;
+    }
+
+    /**
+     * @param idleTimeout time in milli seconds.
+     * @return true if there is no probe in progress and connection has not been used for idleTimeout.
+     */
+    boolean isIdle(long idleTimeout) {
+
+        return inFlight.isEmpty() && Probe.currentTime() - lastUsed > idleTimeout;
+    }
+
+    /**
+     * Closes connection and fails all probes in progress.
+     *
+     * @param reason reason for failure.
+     */
+    void close(String reason) {
+
+        closeChannel();
+        output.clear();
+
+        Probe probe;
+        while ((probe = inFlight.poll()) != null) {
+            probe.complete(reason);
+        }
+    }
+
+    private void open() throws IOException {
+
+        channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        responses = 0;
+
+        if (channel.connect(address)) {
+            connected = true;
+            key = channel.register(selector, SelectionKey.OP_READ, this);
+            flush();
+        } else {
+            key = channel.register(selector, SelectionKey.OP_CONNECT, this);
+        }
+    }
+
+    private void flush() throws IOException {
+
+        while (!output.isEmpty()) {
+
+            ByteBuffer buffer = output.peek();
+            channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                break;
+            }
+            output.poll();
+        }
+
+        key.interestOps(output.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    private void read() throws IOException, HttpResponseParser.HttpParseException {
+
+        int count = channel.read(readBuffer);
+
+        if (count < 0) {
+            onEndOfStream();
+            return;
+        }
+
+        readBuffer.flip();
+
+        // Parser consumes all bytes unless a response completes, so buffer is empty after this loop.
+        // Remaining bytes are discarded if connection is closed or replaced while handling a response.
+        SocketChannel current = channel;
+        while (channel == current && readBuffer.hasRemaining() && parser.parse(readBuffer)) {
+            onResponse();
+        }
+
+        readBuffer.clear();
+    }
+
+    private void onResponse() {
+
+        Probe probe = inFlight.poll();
+        boolean keepAlive = parser.isKeepAlive();
+
+        if (probe == null) {
+            close("Unsolicited response from " + address);
+            return;
+        }
+
+        probe.completeWithResponse(probe.httpConfig.validate(parser));
+
+        responses++;
+        lastUsed = Probe.currentTime();
+        parser.reset();
+
+        if (!keepAlive) {
+            //Pipelined requests, if any, will not be answered on this connection.
+            reconnect("Connection closed by " + address);
+        }
+    }
+
+    private void onEndOfStream() {
+
+        if (!parser.isIdle() && parser.onEndOfStream()) {
+            // Body was delimited by connection close.
+            onResponse();
+            return;
+        }
+
+        if (parser.isIdle() && responses > 0) {
+            // Peer closed an idle keep-alive connection, requests sent meanwhile are not lost.
+            reconnect("Connection closed by " + address);
+        } else {
+            close("Connection closed by " + address + " before response..");
+        }
+    }
+
+    /**
+     * Sends unanswered probes once more on a new connection.
+     */
+    private void reconnect(String reason) {
+
+        closeChannel();
+        output.clear();
+
+        if (inFlight.isEmpty()) {
+            return;
+        }
+
+        List<Probe> unanswered = new ArrayList<>(inFlight);
+        inFlight.clear();
+
+        for (Probe probe : unanswered) {
+            if (probe.isDone()) {
+                continue;
+            }
+            if (probe.retried) {
+                probe.complete(reason);
+            } else {
+                probe.retried = true;
+                if (log.isDebugEnabled()) {
+                    log.debug("Retrying health check probe to {} on a new connection..", address);
+                }
+                send(probe);
+            }
+        }
+    }
+
+    private void closeChannel() {
+
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.error(e.toString());
+            }
+        }
+
+        channel = null;
+        key = null;
+        connected = false;
+        parser.reset();
+        readBuffer.clear();
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.handlers.probe;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Incremental parser for HTTP/1.x responses of health check probes.
+ * <p>
+ * Bytes can be fed as and when they arrive on a keep-alive connection. Status line, Content-Length,
+ * chunked Transfer-Encoding and Connection headers are understood. Only first MAX_BODY_CAPTURE
+ * bytes of body are retained for matching, rest of the body is skipped.
+ * <p>
+ * NOTE: An instance is NOT thread safe. It is used only by prober thread.
+ */
+public class HttpResponseParser {
+
+    //Health check bodies are expected to be small.
+    public static final int MAX_BODY_CAPTURE = 8 * 1024;
+
+    private static final int MAX_LINE_LENGTH = 8 * 1024;
+
+    private enum State {
+        STATUS_LINE, HEADERS, BODY, CHUNK_SIZE, CHUNK_DATA, CHUNK_DATA_END, TRAILERS, BODY_UNTIL_CLOSE, DONE
+    }
+
+    private State state = State.STATUS_LINE;
+
+    private final StringBuilder line = new StringBuilder(128);
+    private boolean lineComplete;
+
+    private int statusCode;
+    private boolean http10;
+    private boolean keepAlive;
+    private boolean chunked;
+    private long contentLength;
+    private long remaining;
+
+    private byte[] body = new byte[256];
+    private int bodyLength;
+
+    // Whether any byte of current response has been consumed.
+    private boolean started;
+
+    /**
+     * @param in bytes read from connection. Bytes after end of current response are left in buffer.
+     * @return true if a complete response has been parsed.
+     * @throws HttpParseException if response is malformed.
+     */
+    public boolean parse(ByteBuffer in) throws HttpParseException {
+
+        while (state != State.DONE && in.hasRemaining()) {
+
+            started = true;
+
+            switch (state) {
+
+                case STATUS_LINE:
+                    if (readLine(in)) {
+                        parseStatusLine();
+                    }
+                    break;
+
+                case HEADERS:
+                    if (readLine(in)) {
+                        if (line.length() == 0) {
+                            onHeadersEnd();
+                        } else {
+                            parseHeader();
+                        }
+                    }
+                    break;
+
+                case BODY:
+                    remaining -= readBody(in, remaining);
+                    if (remaining == 0) {
+                        state = State.DONE;
+                    }
+                    break;
+
+                case CHUNK_SIZE:
+                    if (readLine(in)) {
+                        parseChunkSize();
+                    }
+                    break;
+
+                case CHUNK_DATA:
+                    remaining -= readBody(in, remaining);
+                    if (remaining == 0) {
+                        state = State.CHUNK_DATA_END;
+                    }
+                    break;
+
+                case CHUNK_DATA_END:
+                    if (readLine(in)) {
+                        if (line.length() != 0) {
+                            throw new HttpParseException("Invalid chunk delimiter..");
+                        }
+                        state = State.CHUNK_SIZE;
+                    }
+                    break;
+
+                case TRAILERS:
+                    if (readLine(in) && line.length() == 0) {
+                        state = State.DONE;
+                    }
+                    break;
+
+                case BODY_UNTIL_CLOSE:
+                    readBody(in, in.remaining());
+                    break;
+
+                default:
+                    break;
+            }
+        }
+
+        return state == State.DONE;
+    }
+
+    /**
+     * Called when peer has closed connection.
+     *
+     * @return true if this completes current response (body delimited by connection close).
+     */
+    public boolean onEndOfStream() {
+
+        if (state == State.BODY_UNTIL_CLOSE) {
+            state = State.DONE;
+            keepAlive = false;
+            return true;
+        }
+        return state == State.DONE;
+    }
+
+    /**
+     * Prepares parser for next response on the same connection.
+     */
+    public void reset() {
+
+        state = State.STATUS_LINE;
+        line.setLength(0);
+        lineComplete = false;
+        statusCode = 0;
+        http10 = false;
+        keepAlive = false;
+        chunked = false;
+        contentLength = -1;
+        remaining = 0;
+        bodyLength = 0;
+        started = false;
+    }
+
+    /**
+     * @return true if no byte of a response has been consumed since last reset.
+     */
+    public boolean isIdle() {
+
+        return !started;
+    }
+
+    public int getStatusCode() {
+
+        return statusCode;
+    }
+
+    /**
+     * @return whether connection can be reused after this response.
+     */
+    public boolean isKeepAlive() {
+
+        return keepAlive;
+    }
+
+    /**
+     * @param expected bytes to be searched for.
+     * @return true if captured body contains expected bytes.
+     */
+    public boolean bodyContains(byte[] expected) {
+
+        outer:
+        for (int i = 0; i + expected.length <= bodyLength; i++) {
+            for (int j = 0; j < expected.length; j++) {
+                if (body[i + j] != expected[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void parseStatusLine() throws HttpParseException {
+
+        // eg: HTTP/1.1 200 OK
+        if (line.length() < 12 || !startsWith(line, "HTTP/1.") || line.charAt(8) != ' ') {
+            throw new HttpParseException("Invalid status line : " + line);
+        }
+
+        http10 = line.charAt(7) == '0';
+        keepAlive = !http10;
+        contentLength = -1;
+
+        try {
+            statusCode = Integer.parseInt(line.substring(9, 12));
+        } catch (NumberFormatException e) {
+            throw new HttpParseException("Invalid status code : " + line);
+        }
+
+        state = State.HEADERS;
+    }
+
+    private void parseHeader() throws HttpParseException {
+
+        int colon = line.indexOf(":");
+        if (colon <= 0) {
+            throw new HttpParseException("Invalid header : " + line);
+        }
+
+        String name = line.substring(0, colon).trim();
+        String value = line.substring(colon + 1).trim();
+
+        if (name.equalsIgnoreCase("Content-Length")) {
+            try {
+                contentLength = Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                throw new HttpParseException("Invalid Content-Length : " + value);
+            }
+        } else if (name.equalsIgnoreCase("Transfer-Encoding")) {
+            chunked = value.toLowerCase(Locale.ENGLISH).contains("chunked");
+        } else if (name.equalsIgnoreCase("Connection")) {
+            String connection = value.toLowerCase(Locale.ENGLISH);
+            if (connection.contains("close")) {
+                keepAlive = false;
+            } else if (connection.contains("keep-alive")) {
+                keepAlive = true;
+            }
+        }
+    }
+
+    private void onHeadersEnd() {
+
+        if (statusCode >= 100 && statusCode < 200) {
+            // Interim response, actual response follows.
+            state = State.STATUS_LINE;
+            started = false;
+            return;
+        }
+
+        if (statusCode == 204 || statusCode == 304) {
+            state = State.DONE;
+        } else if (chunked) {
+            state = State.CHUNK_SIZE;
+        } else if (contentLength >= 0) {
+            remaining = contentLength;
+            state = contentLength == 0 ? State.DONE : State.BODY;
+        } else {
+            keepAlive = false;
+            state = State.BODY_UNTIL_CLOSE;
+        }
+    }
+
+    private void parseChunkSize() throws HttpParseException {
+
+        int end = line.indexOf(";");
+        String size = (end < 0 ? line.toString() : line.substring(0, end)).trim();
+
+        try {
+            remaining = Long.parseLong(size, 16);
+        } catch (NumberFormatException e) {
+            throw new HttpParseException("Invalid chunk size : " + line);
+        }
+
+        if (remaining < 0) {
+            throw new HttpParseException("Invalid chunk size : " + line);
+        }
+
+        state = remaining == 0 ? State.TRAILERS : State.CHUNK_DATA;
+    }
+
+    /**
+     * @return true if a complete line (without CRLF) is available in 'line'.
+     * It is retained till next call.
+     */
+    private boolean readLine(ByteBuffer in) throws HttpParseException {
+
+        if (lineComplete) {
+            line.setLength(0);
+            lineComplete = false;
+        }
+
+        while (in.hasRemaining()) {
+
+            char c = (char) (in.get() & 0xFF);
+
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                lineComplete = true;
+                return true;
+            }
+
+            if (line.length() >= MAX_LINE_LENGTH) {
+                throw new HttpParseException("Line too long..");
+            }
+            line.append(c);
+        }
+        return false;
+    }
+
+    private long readBody(ByteBuffer in, long max) {
+
+        int count = (int) Math.min(max, in.remaining());
+
+        int capture = Math.min(count, MAX_BODY_CAPTURE - bodyLength);
+        if (capture > 0) {
+            if (bodyLength + capture > body.length) {
+                body = Arrays.copyOf(body,
+                        Math.min(MAX_BODY_CAPTURE, Math.max(body.length * 2, bodyLength + capture)));
+            }
+            in.get(body, bodyLength, capture);
+            bodyLength += capture;
+        }
+
+        in.position(in.position() + (count - capture));
+        return count;
+    }
+
+    private static boolean startsWith(CharSequence s, String prefix) {
+
+        if (s.length() < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (s.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Thrown when a probe response doesn't conform to HTTP/1.x.
+     */
+    public static class HttpParseException extends Exception {
+
+        public HttpParseException(String message) {
+
+            super(message);
+        }
+    }
+}
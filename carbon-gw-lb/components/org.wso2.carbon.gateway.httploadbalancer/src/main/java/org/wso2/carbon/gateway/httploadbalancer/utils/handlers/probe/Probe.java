@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.handlers.probe;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single in progress health check.
+ * <p>
+ * Apart from result, fields are accessed only by prober thread.
+ */
+final class Probe {
+
+    final InetSocketAddress address;
+    final long startTime;
+    final long deadline;
+    final CompletableFuture<ProbeResult> result = new CompletableFuture<>();
+
+    // For HTTP probes.
+    final Object connectionKey;
+    final HttpProbeConfig httpConfig;
+    final byte[] request;
+    HttpProbeConnection connection;
+    boolean retried;
+
+    // For connect probes.
+    SocketChannel channel;
+
+    Probe(InetSocketAddress address, int timeoutMillis, Object connectionKey, HttpProbeConfig httpConfig,
+          byte[] request) {
+
+        this.address = address;
+        this.startTime = currentTime();
+        this.deadline = this.startTime + timeoutMillis;
+        this.connectionKey = connectionKey;
+        this.httpConfig = httpConfig;
+        this.request = request;
+    }
+
+    long getDeadline() {
+
+        return deadline;
+    }
+
+    boolean isDone() {
+
+        return result.isDone();
+    }
+
+    /**
+     * @param failureReason reason for which no response could be received, or null if healthy.
+     */
+    void complete(String failureReason) {
+
+        result.complete(new ProbeResult(failureReason == null, currentTime() - startTime, failureReason,
+                failureReason != null));
+    }
+
+    /**
+     * @param failureReason reason for which received response is not as expected, or null if healthy.
+     */
+    void completeWithResponse(String failureReason) {
+
+        result.complete(new ProbeResult(failureReason == null, currentTime() - startTime, failureReason, false));
+    }
+
+    static long currentTime() {
+
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+}
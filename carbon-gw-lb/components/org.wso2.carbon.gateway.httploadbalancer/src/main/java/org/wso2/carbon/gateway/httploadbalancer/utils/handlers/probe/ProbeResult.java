@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.handlers.probe;
+
+/**
+ * Outcome of a single health check probe.
+ */
+public class ProbeResult {
+
+    private final boolean healthy;
+    private final long latency;
+    private final String reason;
+    private final boolean connectionFailure;
+
+    ProbeResult(boolean healthy, long latency, String reason, boolean connectionFailure) {
+
+        this.healthy = healthy;
+        this.latency = latency;
+        this.reason = reason;
+        this.connectionFailure = connectionFailure;
+    }
+
+    public boolean isHealthy() {
+
+        return healthy;
+    }
+
+    /**
+     * @return time in milli seconds from probe submission till its completion.
+     */
+    public long getLatency() {
+
+        return latency;
+    }
+
+    /**
+     * @return reason of failure, null if healthy.
+     */
+    public String getReason() {
+
+        return reason;
+    }
+
+    /**
+     * @return true if probe failed without getting a response from endpoint,
+     * eg: connection refused or timed out. False if healthy or if response was not as expected.
+     */
+    public boolean isConnectionFailure() {
+
+        return connectionFailure;
+    }
+}
@@ -21,26 +21,29 @@ package org.wso2.carbon.gateway.httploadbalancer.utils.handlers.scheduled;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.gateway.httploadbalancer.algorithm.LoadBalancingAlgorithm;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.simple.LeastResponseTime;
 import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
 import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
 import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
 import org.wso2.carbon.gateway.httploadbalancer.utils.CommonUtil;
-import org.wso2.carbon.gateway.httploadbalancer.utils.exception.LBException;
+import org.wso2.carbon.gateway.httploadbalancer.utils.handlers.probe.HealthCheckProber;
+import org.wso2.carbon.gateway.httploadbalancer.utils.handlers.probe.ProbeResult;
 
-import java.io.IOException;
-import java.net.InetAddress;
-import java.net.InetSocketAddress;
-import java.net.Socket;
-import java.net.SocketAddress;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This handler is responsible for periodically checking whether OutboundEndpoints are healthy or not.
  * <p>
  * This is Active Health Checking and it can detect unHealthy endpoints before failure occurs.
  * <p>
- * Tries to establish socket connection to OutboundEndpoints.
+ * Tries to establish socket connection to OutboundEndpoints, or in case of HTTP health check sends
+ * configured HTTP request to them. Probes are made by the shared HealthCheckProber, so this handler
+ * never blocks its thread.
+ * <p>
+ * An endpoint whose probe fails is probed again right away, up to unHealthyRetries probes per sweep.
+ * So a dead endpoint is ejected within one sweep, instead of after unHealthyRetries sweeps.
  */
 public class ActiveHealthCheckHandler implements Runnable {
 
@@ -49,6 +52,9 @@ public class ActiveHealthCheckHandler implements Runnable {
     private final LoadBalancerConfigContext context;
     private final String handlerName;
     private final LoadBalancingAlgorithm algorithm;
+    private final HealthCheckProber prober = HealthCheckProber.getInstance();
+    //Results are processed here, as updating algorithm takes its lock and MUST NOT be done on prober thread.
+    private final LBHousekeepingScheduler scheduler = LBHousekeepingScheduler.getInstance();
     //To avoid race condition if any.
     private volatile boolean isRunning = false;
 
@@ -59,7 +65,7 @@ public class ActiveHealthCheckHandler implements Runnable {
         this.algorithm = algorithm;
         this.handlerName = configName + "-" + this.getName();
 
-        log.info(this.getHandlerName() + " started.");
+        log.info("{} started.", this.getHandlerName());
 
     }
 
@@ -76,114 +82,95 @@ public class ActiveHealthCheckHandler implements Runnable {
     public void run() {
 
         if (isRunning) {
+            //Previous sweep is still in progress.
             return;
         }
 
-        processUnHealthyEndpointList();
+        isRunning = true;
 
-        isRunning = false;
+        processEndpointList();
 
     }
 
-    private void processUnHealthyEndpointList() {
-
-        boolean hasContent = false;
-
-
-        if (context.getLbOutboundEndpoints().size() > 0) {
-            hasContent = true;
-        }
-
+    private void processEndpointList() {
 
-        //Tf there are no LBOutboundEndpoints, no need to process.
-        if (hasContent) {
+        List<CompletableFuture<Void>> probes = new ArrayList<>();
 
+        //All endpoints are probed concurrently. Results are processed as and when they arrive.
+        for (LBOutboundEndpoint lbOutboundEndpoint : context.getLbOutboundEndpoints().values()) {
 
-            List<LBOutboundEndpoint> list = new ArrayList<>(context.getLbOutboundEndpoints().values());
-
-            for (LBOutboundEndpoint lbOutboundEndpoint : list) {
+            //If it is in UnHealthyQueue, we need not establish connection and check.
+            if (context.getUnHealthyLBEPQueue().contains(lbOutboundEndpoint)) {
+                continue;
+            }
 
-                //If it is in UnHealthyQueue, we need not establish connection and check.
-                if (context.getUnHealthyLBEPQueue().contains(lbOutboundEndpoint)) {
-                    continue;
-                }
+            probes.add(probe(lbOutboundEndpoint, context.getUnHealthyRetries()));
+        }
 
-                Socket connectionSock = null;
+        //Next sweep can start once all probes of this sweep are completed.
+        CompletableFuture.allOf(probes.toArray(new CompletableFuture<?>[probes.size()]))
+                .whenComplete((result, throwable) -> {
 
-                while (true) {
-                    if (connectionSock != null && connectionSock.isConnected()) {
-                        try {
-                            connectionSock.close();
-                        } catch (IOException e) {
-                            log.error(e.toString());
-                        }
+                    if (throwable != null) {
+                        log.error("{} failed to process probe result..", this.getHandlerName(), throwable);
                     }
+                    isRunning = false;
+                });
+    }
 
-                    connectionSock = new Socket();
-                    try {
-
-                        String hostAndPort = CommonUtil.getHostAndPort(
-                                lbOutboundEndpoint.getOutboundEndpoint().getUri());
-
-                        if (hostAndPort != null) {
-
-                            InetAddress inetAddr = InetAddress.getByName(hostAndPort.split(":")[0].trim());
+    /**
+     * @param attempts maximum no of probes to be made, if they keep failing.
+     * @return future that completes once endpoint is found healthy, is ejected or attempts are exhausted.
+     */
+    private CompletableFuture<Void> probe(LBOutboundEndpoint lbOutboundEndpoint, int attempts) {
 
-                            SocketAddress socketAddr = new InetSocketAddress(inetAddr,
-                                    Integer.parseInt(hostAndPort.split(":")[1].trim()));
+        return prober.probe(lbOutboundEndpoint, context).thenComposeAsync(result -> {
 
-                            connectionSock.connect(socketAddr, LoadBalancerConstants.DEFAULT_CONN_TIMEOUT);
-                            //Waiting till timeOut..
-                            Thread.sleep(LoadBalancerConstants.DEFAULT_CONN_TIMEOUT);
+            processProbeResult(lbOutboundEndpoint, result);
 
-                            if (connectionSock.isConnected()) {
+            //Once ejected, BackToHealthyHandler takes over.
+            if (!result.isHealthy() && lbOutboundEndpoint.isHealthy() && attempts > 1) {
+                return probe(lbOutboundEndpoint, attempts - 1);
+            }
+            return CompletableFuture.completedFuture(null);
+        }, scheduler);
+    }
 
-                                log.info(lbOutboundEndpoint.getName() + " is healthy..");
-                                break;
+    private void processProbeResult(LBOutboundEndpoint lbOutboundEndpoint, ProbeResult result) {
 
-                            } else {
+        if (result.isHealthy()) {
 
-                                throw new LBException("Connection timedOut for Endpoint : "
-                                        + lbOutboundEndpoint.getName());
-                            }
+            if (log.isDebugEnabled()) {
+                log.debug("{} is healthy.. Probe latency : {}", lbOutboundEndpoint.getName(), result.getLatency());
+            }
 
-                        } else {
-                            throw new NullPointerException("<host:port> value retrieved from "
-                                    + lbOutboundEndpoint.getName() + " is null..");
+            //Unhealthy retries are counted only for consecutive failures.
+            if (lbOutboundEndpoint.getUnHealthyRetriesCount() > 0) {
+                lbOutboundEndpoint.resetUnhealthyRetriesCount();
+            }
 
-                        }
-                    } catch (IOException | InterruptedException | NullPointerException | LBException e) {
+            //HTTP probe latency is a response time sample as well.
+            if (context.getHealthCheck().equals(LoadBalancerConstants.HTTP_HEALTH_CHECK)
+                    && context.getAlgorithmName().equals(LoadBalancerConstants.LEAST_RESPONSE_TIME)) {
 
-                        log.error(e.toString());
+                ((LeastResponseTime) context.getLoadBalancingAlgorithm()).
+                        recordResponseTime(lbOutboundEndpoint, result.getLatency());
+            }
 
-                        lbOutboundEndpoint.incrementUnHealthyRetries();
+        } else {
 
-                        if (reachedUnHealthyRetriesThreshold(lbOutboundEndpoint)) {
+            log.warn("Health check failed for Endpoint : {} : {}", lbOutboundEndpoint.getName(), result.getReason());
 
-                            CommonUtil.removeUnHealthyEndpoint(context, algorithm, lbOutboundEndpoint);
+            lbOutboundEndpoint.incrementUnHealthyRetries();
 
-                        } else {
-                            log.info("No of unHealthy retries not yet reached...");
-                            continue;
-                        }
-                        //This break is MUST.
-                        break;
+            if (lbOutboundEndpoint.isHealthy() && reachedUnHealthyRetriesThreshold(lbOutboundEndpoint)) {
 
-                    } finally {
-                        if (connectionSock.isConnected()) {
-                            try {
-                                connectionSock.close();
-                            } catch (IOException e) {
-                                log.error(e.toString());
+                CommonUtil.removeUnHealthyEndpoint(context, algorithm, lbOutboundEndpoint);
 
-                            }
-                        }
-                    }
-                }
+            } else {
+                log.debug("No of unHealthy retries not yet reached...");
             }
-
         }
-
     }
 
 
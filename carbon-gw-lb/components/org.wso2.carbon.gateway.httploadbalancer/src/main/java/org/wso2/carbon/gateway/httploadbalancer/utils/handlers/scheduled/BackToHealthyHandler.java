@@ -21,28 +21,28 @@ package org.wso2.carbon.gateway.httploadbalancer.utils.handlers.scheduled;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.gateway.httploadbalancer.algorithm.LoadBalancingAlgorithm;
-import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
 import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
 import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
 import org.wso2.carbon.gateway.httploadbalancer.utils.CommonUtil;
-import org.wso2.carbon.gateway.httploadbalancer.utils.exception.LBException;
+import org.wso2.carbon.gateway.httploadbalancer.utils.handlers.probe.HealthCheckProber;
+import org.wso2.carbon.gateway.httploadbalancer.utils.handlers.probe.ProbeResult;
 
 
-import java.io.IOException;
-
-import java.net.InetAddress;
-import java.net.InetSocketAddress;
-import java.net.Socket;
-import java.net.SocketAddress;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 
 /**
  * This handler is responsible for periodic checking of
  * UnHealthyLBOutboundEndpoint list to see if any endpoint is back to healthy state again.
  * <p>
- * Tries to establish Socket Connection to unHealthyEndpoints.
+ * Tries to establish Socket Connection (or sends HTTP request in case of HTTP health check)
+ * to unHealthyEndpoints through the shared HealthCheckProber.
+ * <p>
+ * An endpoint whose probe succeeds is probed again right away, up to healthyRetries probes per sweep.
+ * So a recovered endpoint is back within one sweep, instead of after healthyRetries sweeps.
+ * A failed probe resets healthy retries and ends probing of that endpoint for this sweep.
  */
 
 public class BackToHealthyHandler implements Runnable {
@@ -52,6 +52,9 @@ public class BackToHealthyHandler implements Runnable {
     private final LoadBalancerConfigContext context;
     private final String handlerName;
     private final LoadBalancingAlgorithm algorithm;
+    private final HealthCheckProber prober = HealthCheckProber.getInstance();
+    //Results are processed here, as updating algorithm takes its lock and MUST NOT be done on prober thread.
+    private final LBHousekeepingScheduler scheduler = LBHousekeepingScheduler.getInstance();
     //To avoid race condition if any.
     private volatile boolean isRunning = false;
 
@@ -62,7 +65,7 @@ public class BackToHealthyHandler implements Runnable {
         this.algorithm = algorithm;
         this.handlerName = configName + "-" + this.getName();
 
-        log.info(this.getHandlerName() + " started.");
+        log.info("{} started.", this.getHandlerName());
 
     }
 
@@ -79,157 +82,110 @@ public class BackToHealthyHandler implements Runnable {
     public void run() {
 
         if (isRunning) {
+            //Previous sweep is still in progress.
             return;
         }
 
-        processUnHealthyEndpointList();
+        isRunning = true;
 
-        isRunning = false;
+        processUnHealthyEndpointList();
 
     }
 
     private void processUnHealthyEndpointList() {
 
-        boolean hasContent = false;
+        List<CompletableFuture<Void>> probes = new ArrayList<>();
 
-        // Only operations on ConcurrentLinkedQueue are thread safe.
-        // Since we are retrieving it's size locking is better.
-        // Lock is released after getting size.
-        synchronized (context.getUnHealthyLBEPQueue()) {
+        //All unHealthy endpoints are probed concurrently. Results are processed as and when they arrive.
+        for (LBOutboundEndpoint lbOutboundEndpoint : context.getUnHealthyLBEPQueue()) {
 
-            if (context.getUnHealthyLBEPQueue().size() > 0) {
-                hasContent = true;
-            }
+            probes.add(probe(lbOutboundEndpoint, context.getHealthyRetries()));
         }
 
+        if (probes.isEmpty()) {
+            //There is no content in list, no need to process.
+            isRunning = false;
+            return;
+        }
 
-        //Tf there is no content in list no need to process.
-        if (hasContent) {
+        //Next sweep can start once all probes of this sweep are completed.
+        CompletableFuture.allOf(probes.toArray(new CompletableFuture<?>[probes.size()]))
+                .whenComplete((result, throwable) -> {
 
+                    if (throwable != null) {
+                        log.error("{} failed to process probe result..", this.getHandlerName(), throwable);
+                    }
 
-            List<LBOutboundEndpoint> list = new ArrayList<>(context.getUnHealthyLBEPQueue());
+                    if (context.getUnHealthyLBEPQueue().size() == 0) {
 
-            for (LBOutboundEndpoint lbOutboundEndpoint : list) {
+                        log.info("All endpoints are back to healthy state.");
 
-                Socket connectionSock = null;
-                while (true) {
+                    } else {
 
-                    if (connectionSock != null && connectionSock.isConnected()) {
-                        try {
-                            connectionSock.close();
-                        } catch (IOException e) {
-                            log.error(e.toString());
-                        }
-                    }
-                    connectionSock = new Socket();
-                    try {
-                        String hostAndPort = CommonUtil.getHostAndPort(
-                                lbOutboundEndpoint.getOutboundEndpoint().getUri());
-
-
-                        if (hostAndPort != null) {
-
-                            InetAddress inetAddr = InetAddress.getByName(hostAndPort.split(":")[0].trim());
-
-                            SocketAddress socketAddr = new InetSocketAddress(inetAddr,
-                                    Integer.parseInt(hostAndPort.split(":")[1].trim()));
-
-                            connectionSock.connect(socketAddr, LoadBalancerConstants.DEFAULT_CONN_TIMEOUT);
-                            //Waiting till timeOut..
-                            Thread.sleep(LoadBalancerConstants.DEFAULT_CONN_TIMEOUT);
-
-                            if (connectionSock.isConnected()) {
-                                lbOutboundEndpoint.incrementHealthyRetries();
-
-                                if (reachedHealthyRetriesThreshold(lbOutboundEndpoint)) {
-
-                                    lbOutboundEndpoint.resetHealthPropertiesToDefault(); //Endpoint is back to healthy.
-                                    log.info(lbOutboundEndpoint.getName() + " is back to healthy..");
-
-                                    /**
-                                     * When request is received at LoadBalancerMediator,
-                                     *  1) It checks for persistence
-                                     *  2) It checks for algorithm
-                                     *  3) It checks with unHealthyList
-                                     *
-                                     * So here we are adding Endpoint in this order and finally
-                                     * adding it to unHealthyEndpoint list.
-                                     */
-
-                                    //This case will only be true in case of CLIENT_IP_HASHING
-                                    //as persistence policy.
-                                    if (context.getStrictClientIPHashing() != null) {
-
-                                        context.getStrictClientIPHashing().addLBOutboundEndpoint(lbOutboundEndpoint);
-                                    }
-
-                                    //We are acquiring lock on Object that is available in algorithm.
-                                    //We are adding the HealthyEndpoint back in Algorithm List so that it
-                                    //will be chosen by algorithm in future.
-                                    //Locking here is MUST because we want the below
-                                    //operations to happen without any interference.
-                                    synchronized (algorithm.getLock()) {
-
-                                        algorithm.addLBOutboundEndpoint(lbOutboundEndpoint);
-                                        algorithm.reset();
-
-                                    }
-
-                                    /**
-                                     * IMPORTANT: Removing endpoint from unHealthy Queue.
-                                     */
-                                    if (context.getUnHealthyLBEPQueue().contains(lbOutboundEndpoint)) {
-                                        context.getUnHealthyLBEPQueue().remove(lbOutboundEndpoint);
-                                    } else {
-                                        log.warn(lbOutboundEndpoint.getName() +
-                                                " already removed from unHealthy Queue..");
-                                    }
-
-                                } else {
-                                    log.info("No of retries not yet reached...");
-                                    continue;
-                                }
-                                //This break is MUST.
-                                break;
-
-                            } else {
-                                throw new LBException("Connection timedOut for Endpoint : "
-                                        + lbOutboundEndpoint.getName());
-                            }
-
-                        } else {
-                            throw new NullPointerException("<host:port> value retrieved from "
-                                    + lbOutboundEndpoint.getName() + " is null..");
-                        }
-                    } catch (InterruptedException | IOException | NullPointerException | LBException e) {
-                        log.error(e.toString());
-                        lbOutboundEndpoint.setHealthyRetriesCount(0);
-                        log.warn(lbOutboundEndpoint.getName() + " is still unHealthy..");
-                        break;
-                    } finally {
-                        if (connectionSock.isConnected()) {
-                            try {
-                                connectionSock.close();
-
-                            } catch (IOException e) {
-                                log.error(e.toString());
-
-                            }
-                        }
+                        log.warn("There are {} unHealthy endpoint(s).", context.getUnHealthyLBEPQueue().size());
                     }
-                }
-            }
-            if (context.getUnHealthyLBEPQueue().size() == 0) {
 
-                log.info("All endpoints are back to healthy state.");
+                    isRunning = false;
+                });
+    }
+
+    /**
+     * @param attempts maximum no of probes to be made, if they keep succeeding.
+     * @return future that completes once endpoint fails a probe, is back to healthy or attempts are exhausted.
+     */
+    private CompletableFuture<Void> probe(LBOutboundEndpoint lbOutboundEndpoint, int attempts) {
 
-            } else {
+        return prober.probe(lbOutboundEndpoint, context).thenComposeAsync(result -> {
 
-                log.warn("There are " + context.getUnHealthyLBEPQueue().size() + " unHealthy endpoint(s).");
+            processProbeResult(lbOutboundEndpoint, result);
+
+            if (result.isHealthy() && !lbOutboundEndpoint.isHealthy() && attempts > 1) {
+                return probe(lbOutboundEndpoint, attempts - 1);
             }
+            return CompletableFuture.completedFuture(null);
+        }, scheduler);
+    }
+
+    private void processProbeResult(LBOutboundEndpoint lbOutboundEndpoint, ProbeResult result) {
+
+        if (!result.isHealthy()) {
+
+            lbOutboundEndpoint.setHealthyRetriesCount(0);
+            log.warn("{} is still unHealthy.. {}", lbOutboundEndpoint.getName(), result.getReason());
+            return;
+        }
+
+        lbOutboundEndpoint.incrementHealthyRetries();
+
+        if (!reachedHealthyRetriesThreshold(lbOutboundEndpoint)) {
+            log.debug("No of retries not yet reached...");
+            return;
+        }
 
+        lbOutboundEndpoint.resetHealthPropertiesToDefault(); //Endpoint is back to healthy.
+        log.info("{} is back to healthy..", lbOutboundEndpoint.getName());
+
+        /**
+         * When request is received at LoadBalancerMediator,
+         *  1) It checks for persistence
+         *  2) It checks for algorithm
+         *  3) It checks with unHealthyList
+         *
+         * So here we are adding Endpoint in this order and finally
+         * adding it to unHealthyEndpoint list.
+         */
+
+        //If circuit is open, CircuitBreakerHandler adds it back once circuit is no longer open.
+        if (!lbOutboundEndpoint.getCircuitBreaker().isOpen()) {
+            CommonUtil.addToRotation(context, algorithm, lbOutboundEndpoint);
         }
 
+        /**
+         * IMPORTANT: Removing endpoint from unHealthy Queue.
+         */
+        if (!context.getUnHealthyLBEPQueue().remove(lbOutboundEndpoint)) {
+            log.warn("{} already removed from unHealthy Queue..", lbOutboundEndpoint.getName());
+        }
     }
 
     private boolean reachedHealthyRetriesThreshold(LBOutboundEndpoint lbOutboundEndpoint) {
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.handlers.scheduled;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.LoadBalancingAlgorithm;
+import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
+import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
+import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
+import org.wso2.carbon.gateway.httploadbalancer.utils.CommonUtil;
+import org.wso2.carbon.gateway.httploadbalancer.utils.breaker.CircuitBreaker;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Moves circuits of endpoints from OPEN to HALF_OPEN and keeps rotation in line with them.
+ * <p>
+ * Circuit opens on request threads and from then on LoadBalancerMediator doesn't send to that endpoint.
+ * This handler takes it out of rotation within a tick, so that algorithms and CLIENT_IP_HASHING stop
+ * choosing it, and puts it back once circuit is HALF_OPEN, so that trial calls can reach it.
+ * <p>
+ * It is run by LBHousekeepingScheduler once every tick of TimeoutWheel. Scheduler never runs it concurrently
+ * with itself.
+ * <p>
+ * Only endpoints whose circuit is not CLOSED are looked at. Each circuit tells this handler when it opens
+ * and its endpoint is tracked until circuit closes again. So as long as all circuits are CLOSED,
+ * a tick does nothing.
+ */
+public class CircuitBreakerHandler implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreakerHandler.class);
+
+    private final LoadBalancerConfigContext context;
+    private final String handlerName;
+    private final LoadBalancingAlgorithm algorithm;
+
+    //Endpoints taken out of rotation by this handler. Accessed only by this handler.
+    private final Set<LBOutboundEndpoint> removedFromRotation = new HashSet<>();
+
+    //Endpoints whose circuit is not CLOSED. Accessed only by this handler.
+    private final Set<LBOutboundEndpoint> notClosed = new HashSet<>();
+
+    //Endpoints whose circuit has just opened, added by threads that opened them.
+    private final Queue<LBOutboundEndpoint> opened = new ConcurrentLinkedQueue<>();
+
+    public CircuitBreakerHandler(LoadBalancerConfigContext context, LoadBalancingAlgorithm algorithm,
+                                 String configName) {
+
+        this.context = context;
+        this.algorithm = algorithm;
+        this.handlerName = configName + "-" + this.getName();
+
+        log.info("{} started.", this.getHandlerName());
+    }
+
+    public String getName() {
+
+        return "CircuitBreakerHandler";
+    }
+
+    private String getHandlerName() {
+        return handlerName;
+    }
+
+    /**
+     * @param lbOutboundEndpoint endpoint whose circuit has just opened. Called on request threads.
+     */
+    public void onOpen(LBOutboundEndpoint lbOutboundEndpoint) {
+
+        opened.add(lbOutboundEndpoint);
+    }
+
+    @Override
+    public void run() {
+
+        LBOutboundEndpoint openedEndpoint;
+        while ((openedEndpoint = opened.poll()) != null) {
+            notClosed.add(openedEndpoint);
+        }
+
+        if (notClosed.isEmpty()) {
+            return;
+        }
+
+        long currentNanos = System.nanoTime();
+        //A trial call is answered or timedOut within this time, unless it is lost before reaching endpoint.
+        //Attempts of a retried request may have a per try timeout longer than request timeout.
+        long maxTrialMillis = (long) Math.max(context.getReqTimeout(), context.getRetryPolicy().getPerTryTimeout()) +
+                LoadBalancerConstants.DEFAULT_GRACE_PERIOD + LoadBalancerConstants.DEFAULT_TIMEOUT_TIMER_PERIOD;
+
+        Iterator<LBOutboundEndpoint> iterator = notClosed.iterator();
+        while (iterator.hasNext()) {
+
+            LBOutboundEndpoint lbOutboundEndpoint = iterator.next();
+            CircuitBreaker circuitBreaker = lbOutboundEndpoint.getCircuitBreaker();
+            circuitBreaker.onTick(currentNanos, maxTrialMillis);
+            int state = circuitBreaker.getState();
+
+            if (state == CircuitBreaker.CLOSED) {
+                iterator.remove();
+            }
+
+            if (state == CircuitBreaker.OPEN) {
+
+                if (removedFromRotation.add(lbOutboundEndpoint)) {
+                    CommonUtil.removeFromRotation(context, algorithm, lbOutboundEndpoint);
+                }
+
+            } else if (removedFromRotation.remove(lbOutboundEndpoint)) {
+
+                //If it has been marked unHealthy meanwhile, BackToHealthyHandler adds it back.
+                if (lbOutboundEndpoint.isHealthy()) {
+                    CommonUtil.addToRotation(context, algorithm, lbOutboundEndpoint);
+                }
+            }
+        }
+    }
+}
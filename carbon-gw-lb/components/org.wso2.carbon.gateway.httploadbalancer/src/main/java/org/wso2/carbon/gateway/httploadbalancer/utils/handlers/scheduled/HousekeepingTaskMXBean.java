@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.handlers.scheduled;
+
+/**
+ * JMX view of a task run by LBHousekeepingScheduler.
+ * <p>
+ * Lag is delay between time at which a run was due and time at which it actually started.
+ */
+public interface HousekeepingTaskMXBean {
+
+    String getName();
+
+    long getRunCount();
+
+    long getFailureCount();
+
+    long getAvgRunTimeMicros();
+
+    long getMaxRunTimeMicros();
+
+    long getLastLagMicros();
+
+    long getMaxLagMicros();
+
+    boolean isCancelled();
+}
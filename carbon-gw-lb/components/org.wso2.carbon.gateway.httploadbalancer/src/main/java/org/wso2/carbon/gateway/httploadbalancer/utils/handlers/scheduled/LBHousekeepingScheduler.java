@@ -0,0 +1,452 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.handlers.scheduled;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
+import org.wso2.carbon.gateway.httploadbalancer.utils.metrics.MetricsRegistry;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * Housekeeping scheduler shared by all LoadBalancerMediators.
+ * <p>
+ * TimeoutHandler, ActiveHealthCheckHandler and BackToHealthyHandler of every LB config run here on a
+ * bounded number of daemon threads, instead of an executor per mediator.
+ * <p>
+ * Tasks that have to run on every tick of TimeoutWheel (TimeoutHandler, CircuitBreakerHandler) are not
+ * scheduled individually. A single periodic task, the tick, runs them of all LB configs one after another.
+ * So there is one executor task every tick however many LB configs are deployed, and tick tasks of a config
+ * are never run concurrently with each other.
+ * <p>
+ * A mediator registers its tasks under its config name and gets a Registration, which can cancel all of them.
+ * Registering again with same config name (redeploy) cancels tasks of previous registration.
+ * <p>
+ * Run time and lag (delay between scheduled and actual start) are recorded per task. Each task is registered
+ * as an MXBean named org.wso2.carbon.gateway.httploadbalancer:type=Housekeeping,task=.. and is also part of
+ * MetricsRegistry.writeText().
+ * <p>
+ * It is also an Executor for one-off work that must be kept off request and prober threads,
+ * eg: rebuilding hash of StrictClientIPHashing after a health change.
+ * <p>
+ * NOTE: Tasks MUST NOT block, otherwise they will delay tasks of other LB configs.
+ */
+public final class LBHousekeepingScheduler implements Executor {
+
+    private static final Logger log = LoggerFactory.getLogger(LBHousekeepingScheduler.class);
+
+    private static final String THREAD_NAME_PREFIX = "LB-Housekeeping-";
+
+    private static final String TICK_NAME = "LB-Tick";
+
+    private static volatile LBHousekeepingScheduler instance;
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    private final Map<String, Registration> registrations = new ConcurrentHashMap<>();
+
+    //Tick tasks of all LB configs, run in order by tick.
+    private final List<ScheduledTask> tickTasks = new CopyOnWriteArrayList<>();
+
+    private final ScheduledTask tick;
+
+    private LBHousekeepingScheduler(int threads) {
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        this.executor = new ScheduledThreadPoolExecutor(threads, threadFactory);
+        //Cancelled tasks are removed right away, so that undeployed configs don't pile up in queue.
+        this.executor.setRemoveOnCancelPolicy(true);
+
+        this.tick = new ScheduledTask(TICK_NAME, this::runTickTasks,
+                TimeUnit.MILLISECONDS.toNanos(LoadBalancerConstants.DEFAULT_TIMEOUT_TIMER_PERIOD));
+        this.tick.future = executor.scheduleAtFixedRate(tick, 0, LoadBalancerConstants.DEFAULT_TIMEOUT_TIMER_PERIOD,
+                TimeUnit.MILLISECONDS);
+        registerMBean(tick);
+    }
+
+    /**
+     * @return scheduler shared across all LB configs. It is created on first use.
+     */
+    public static LBHousekeepingScheduler getInstance() {
+
+        if (instance == null) {
+            synchronized (LBHousekeepingScheduler.class) {
+                if (instance == null) {
+                    int threads = Math.min(LoadBalancerConstants.MAX_HOUSEKEEPING_THREADS,
+                            Runtime.getRuntime().availableProcessors());
+                    instance = new LBHousekeepingScheduler(threads);
+                    log.info("LB housekeeping scheduler started with {} threads..", threads);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @return true if scheduler has been created, ie: an LB config has been deployed.
+     */
+    public static boolean isStarted() {
+
+        return instance != null;
+    }
+
+    /**
+     * @param configName name of LB config. It has to be unique across LB configs.
+     * @return new Registration to which tasks of this config are to be added.
+     * <p>
+     * If there is already a Registration with this name, its tasks are cancelled.
+     */
+    public Registration register(String configName) {
+
+        Registration registration = new Registration(configName);
+        Registration previous = registrations.put(configName, registration);
+
+        if (previous != null) {
+            log.info("Cancelling housekeeping tasks of previous deployment of {}..", configName);
+            previous.cancelTasks();
+        }
+        return registration;
+    }
+
+    /**
+     * @param task one-off task to be run as soon as a housekeeping thread is free.
+     *             Any exception thrown by it is logged.
+     */
+    @Override
+    public void execute(Runnable task) {
+
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.error("Housekeeping task failed..", e);
+            }
+        });
+    }
+
+    /**
+     * @return metrics of all scheduled tasks, tick first.
+     */
+    public List<ScheduledTask> getScheduledTasks() {
+
+        List<ScheduledTask> tasks = new ArrayList<>();
+        tasks.add(tick);
+        for (Registration registration : registrations.values()) {
+            tasks.addAll(registration.tasks);
+        }
+        return tasks;
+    }
+
+    static ObjectName getObjectName(String taskName) throws MalformedObjectNameException {
+
+        return new ObjectName(MetricsRegistry.DOMAIN + ":type=Housekeeping,task=" + ObjectName.quote(taskName));
+    }
+
+    private static void registerMBean(ScheduledTask task) {
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(task, getObjectName(task.getName()));
+        } catch (JMException e) {
+            log.error("Unable to register MBean of housekeeping task {}..", task.getName(), e);
+        }
+    }
+
+    private static void unregisterMBean(ScheduledTask task) {
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(getObjectName(task.getName()));
+        } catch (InstanceNotFoundException e) {
+            //Registration might have failed earlier. Nothing to do.
+        } catch (JMException e) {
+            log.error("Unable to unregister MBean of housekeeping task {}..", task.getName(), e);
+        }
+    }
+
+    private void runTickTasks() {
+
+        for (ScheduledTask task : tickTasks) {
+            //It might have been cancelled after this iteration began.
+            if (!task.isCancelled()) {
+                task.run();
+            }
+        }
+    }
+
+    /**
+     * Tasks of one LB config.
+     */
+    public final class Registration {
+
+        private final String configName;
+
+        private final List<ScheduledTask> tasks = new CopyOnWriteArrayList<>();
+
+        private volatile boolean cancelled = false;
+
+        private Registration(String configName) {
+
+            this.configName = configName;
+        }
+
+        public String getConfigName() {
+
+            return configName;
+        }
+
+        /**
+         * @param taskName     name of task, used in logs and metrics.
+         * @param task         task to be run periodically.
+         * @param periodMillis time between successive runs.
+         * <p>
+         * First run is right away.
+         */
+        public synchronized void scheduleAtFixedRate(String taskName, Runnable task, long periodMillis) {
+
+            if (cancelled) {
+                throw new IllegalStateException("Registration of " + configName + " has been cancelled..");
+            }
+
+            ScheduledTask scheduledTask = new ScheduledTask(configName + "-" + taskName, task,
+                    TimeUnit.MILLISECONDS.toNanos(periodMillis));
+            scheduledTask.future = executor.scheduleAtFixedRate(scheduledTask, 0, periodMillis,
+                    TimeUnit.MILLISECONDS);
+            tasks.add(scheduledTask);
+            registerMBean(scheduledTask);
+        }
+
+        /**
+         * @param taskName name of task, used in logs and metrics.
+         * @param task     task to be run on every tick of TimeoutWheel, ie: every DEFAULT_TIMEOUT_TIMER_PERIOD.
+         * <p>
+         * Tick tasks of all LB configs run one after another on the same thread, so a tick task
+         * MUST return quickly when it has nothing to do.
+         */
+        public synchronized void scheduleOnTick(String taskName, Runnable task) {
+
+            if (cancelled) {
+                throw new IllegalStateException("Registration of " + configName + " has been cancelled..");
+            }
+
+            ScheduledTask scheduledTask = new ScheduledTask(configName + "-" + taskName, task,
+                    TimeUnit.MILLISECONDS.toNanos(LoadBalancerConstants.DEFAULT_TIMEOUT_TIMER_PERIOD));
+            tasks.add(scheduledTask);
+            tickTasks.add(scheduledTask);
+            registerMBean(scheduledTask);
+        }
+
+        /**
+         * Cancels all tasks of this config. Task that is running currently is allowed to complete.
+         */
+        public void cancel() {
+
+            //Only if it has not been replaced by a newer deployment.
+            registrations.remove(configName, this);
+            cancelTasks();
+        }
+
+        public boolean isCancelled() {
+
+            return cancelled;
+        }
+
+        public List<ScheduledTask> getTasks() {
+
+            return Collections.unmodifiableList(tasks);
+        }
+
+        private synchronized void cancelTasks() {
+
+            //Already cancelled when it was replaced, MBeans now belong to tasks of new deployment.
+            if (cancelled) {
+                return;
+            }
+
+            cancelled = true;
+            for (ScheduledTask task : tasks) {
+                task.cancel();
+                unregisterMBean(task);
+            }
+            tickTasks.removeAll(tasks);
+        }
+    }
+
+    /**
+     * Periodic task along with its metrics.
+     * <p>
+     * Executor never runs same periodic task concurrently and tick runs its tasks one after another,
+     * so metrics have a single writer.
+     */
+    public static final class ScheduledTask implements Runnable, HousekeepingTaskMXBean {
+
+        private final String name;
+        private final Runnable task;
+        private final long periodNanos;
+
+        //Null for tick tasks, they are run by tick.
+        private volatile ScheduledFuture<?> future;
+
+        private volatile boolean cancelled = false;
+
+        //Time at which next run is expected to start.
+        private long expectedStartTime;
+
+        private volatile long runCount = 0;
+        private volatile long failureCount = 0;
+        private volatile long totalRunTime = 0;
+        private volatile long maxRunTime = 0;
+        private volatile long lastLag = 0;
+        private volatile long maxLag = 0;
+
+        private ScheduledTask(String name, Runnable task, long periodNanos) {
+
+            this.name = name;
+            this.task = task;
+            this.periodNanos = periodNanos;
+            this.expectedStartTime = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+
+            long startTime = System.nanoTime();
+            long lag = Math.max(0, startTime - expectedStartTime);
+
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                //Executor would suppress further runs if exception is thrown, so we are not re-throwing.
+                failureCount++;
+                log.error("Housekeeping task {} failed..", name, e);
+            }
+
+            long runTime = System.nanoTime() - startTime;
+
+            expectedStartTime += periodNanos;
+            runCount++;
+            totalRunTime += runTime;
+            lastLag = lag;
+            if (runTime > maxRunTime) {
+                maxRunTime = runTime;
+            }
+            if (lag > maxLag) {
+                maxLag = lag;
+            }
+        }
+
+        @Override
+        public String getName() {
+
+            return name;
+        }
+
+        @Override
+        public long getRunCount() {
+
+            return runCount;
+        }
+
+        @Override
+        public long getFailureCount() {
+
+            return failureCount;
+        }
+
+        /**
+         * @return average run time in microseconds.
+         */
+        @Override
+        public long getAvgRunTimeMicros() {
+
+            long runs = runCount;
+            return runs == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalRunTime / runs);
+        }
+
+        /**
+         * @return maximum run time in microseconds.
+         */
+        @Override
+        public long getMaxRunTimeMicros() {
+
+            return TimeUnit.NANOSECONDS.toMicros(maxRunTime);
+        }
+
+        /**
+         * @return lag of latest run in microseconds.
+         */
+        @Override
+        public long getLastLagMicros() {
+
+            return TimeUnit.NANOSECONDS.toMicros(lastLag);
+        }
+
+        /**
+         * @return maximum lag in microseconds.
+         */
+        @Override
+        public long getMaxLagMicros() {
+
+            return TimeUnit.NANOSECONDS.toMicros(maxLag);
+        }
+
+        @Override
+        public boolean isCancelled() {
+
+            return cancelled;
+        }
+
+        private void cancel() {
+
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        @Override
+        public String toString() {
+
+            return name + " [runs=" + runCount + ", failures=" + failureCount + ", avgRunTime=" +
+                    getAvgRunTimeMicros() + "us, maxRunTime=" + getMaxRunTimeMicros() + "us, lastLag=" +
+                    getLastLagMicros() + "us, maxLag=" + getMaxLagMicros() + "us]";
+        }
+    }
+}
@@ -27,13 +27,18 @@ import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
 import org.wso2.carbon.gateway.httploadbalancer.context.LoadBalancerConfigContext;
 import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
 import org.wso2.carbon.gateway.httploadbalancer.utils.CommonUtil;
+import org.wso2.carbon.gateway.httploadbalancer.utils.accesslog.AccessLog;
 import org.wso2.carbon.gateway.httploadbalancer.utils.handlers.error.LBErrorHandler;
 import org.wso2.carbon.messaging.DefaultCarbonMessage;
 
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * TimeoutHandler for LoadBalancerMediatorCallBack.
+ * <p>
+ * It is run by LBHousekeepingScheduler once every tick of TimeoutWheel and expires requests that have passed
+ * their deadline. Scheduler never runs it concurrently with itself, which TimeoutWheel requires.
  */
 public class TimeoutHandler implements Runnable {
 
@@ -44,8 +49,7 @@ public class TimeoutHandler implements Runnable {
     private final String handlerName;
     private final LoadBalancingAlgorithm algorithm;
 
-    //To avoid race condition if any.
-    private volatile boolean isRunning = false;
+    private final Consumer<LoadBalancerMediatorCallBack> timeoutAction = this::handleTimeout;
 
     public TimeoutHandler(LoadBalancerConfigContext context, LoadBalancingAlgorithm algorithm, String configName) {
 
@@ -53,7 +57,7 @@ public class TimeoutHandler implements Runnable {
         this.algorithm = algorithm;
         this.handlerName = configName + "-" + this.getName();
 
-        log.info(this.getHandlerName() + " started.");
+        log.info("{} started.", this.getHandlerName());
     }
 
     public String getName() {
@@ -68,131 +72,64 @@ public class TimeoutHandler implements Runnable {
     @Override
     public void run() {
 
-        if (isRunning) {
-            return;
-        }
-
         processCallBackPool();
-
-        isRunning = false;
-
     }
 
     private void processCallBackPool() {
 
-        boolean hasContent = false;
+        /**
+         * Only callbacks whose deadline has passed are handed over by the wheel.
+         * Callbacks for which response has arrived are cancelled in O(1) when they are
+         * removed from pool, so they are never visited here.
+         */
+        context.getTimeoutWheel().expireTimeouts(this.getCurrentTime(), this.timeoutAction);
+    }
 
-        // Only operations on Concurrent HashMap are thread safe.
-        // Since we are retrieving it's size locking is better.
-        // Lock is released after getting size.
-        synchronized (context.getCallBackPool()) {
+    private void handleTimeout(LoadBalancerMediatorCallBack callBack) {
 
-            if (context.getCallBackPool().size() > 0) {
-                hasContent = true;
-            }
+        //Pool releases a callback with CAS, so no synchronization is required.
+        if (!context.removeFromCallBackPool(callBack)) {
+            //Response arrived just now and it has been sent back to client.
+            //So nothing to do for this callBack.
+            return;
+        }
+        //From this point, this callback will not be available in pool.
+        //So if response arrives it will be discarded.
+
+        callBack.getLbOutboundEndpoint().getCircuitBreaker().onFailure(callBack.getCreatedNanos(), System.nanoTime());
+        callBack.getLbOutboundEndpoint().getMetrics().onTimeout();
+        context.getMetrics().onTimeout();
+        context.getAccessLog().error(AccessLog.TIMEOUT, 504, callBack.getLbOutboundEndpoint().getName(),
+                this.getCurrentTime() - callBack.getCreatedTime());
+
+        /**
+         * In case of LeastResponseTime algorithm, a timeout is recorded as a response
+         * which took request timeout, so that this endpoint gets less requests.
+         */
+        if (context.getAlgorithmName().equals(LoadBalancerConstants.LEAST_RESPONSE_TIME)) {
+
+            ((LeastResponseTime) context.getLoadBalancingAlgorithm()).
+                    recordResponseTime(callBack.getLbOutboundEndpoint(), callBack.getTimeoutMillis());
         }
 
-        //If there is no object in pool no need to process.
-        if (hasContent) {
-
-
-            /**
-             * Here also we are not locking callBackPool, because lock on concurrent HashMap will be overkill.
-             * At this point 2 cases might occur.
-             *
-             *  1) A new object will be added to the call back pool. We need not worry about it because,
-             *     it will be added just now so it will not get timedOut.
-             *
-             *  2) A response arrives and corresponding object is removed from pool. So don't worry.
-             *     We got response and it would have been sent to client.
-             *
-             *     NOTE: By iterating through Key Set we are getting callback object
-             *     from our callBackPool.
-             */
-
-            for (LoadBalancerMediatorCallBack callBack : context.getCallBackPool().keySet()) {
-
-                long currentTime = this.getCurrentTime();
-
-                /**
-                 * CallBack might be null because, we are iterating using keySet. So when getting keySet()
-                 * we will get keys of all objects present in pool at that point.
-                 *
-                 * Suppose a response arrives after getting keySet(), that callBack will be removed from
-                 * pool and it will also be reflected here because we are accessing callbackPool through
-                 * context.getCallBackPool(), instead of having a local reference to it.
-                 *
-                 * So doing null check is better.
-                 */
-                if (callBack != null) {
-
-                    if (((currentTime - (callBack.getCreatedTime()
-                            - LoadBalancerConstants.DEFAULT_GRACE_PERIOD)) > context.getReqTimeout())) {
-                        //This callBack is in pool after it has timedOut.
-
-                        //This operation is on Concurrent HashMap, so no synchronization is required.
-                        if (!context.isInCallBackPool(callBack)) {
-                            //If response arrives at this point, callBack would have been removed from pool
-                            //and it would have been sent back to client. So break here.
-                            break;
-                        } else {
-                            context.removeFromCallBackPool(callBack);
-                            //From this point, this callback will not be available in pool.
-                            //So if response arrives it will be discarded.
-
-
-                            new LBErrorHandler().handleFault
-                                    ("504", new Throwable("Gateway TimeOut"),
-                                            new DefaultCarbonMessage(true), callBack);
-
-
-                        }
-
-
-                        if (!this.context.getHealthCheck().equals(LoadBalancerConstants.NO_HEALTH_CHECK)) {
-                            /**
-                             * But here we need synchronization because, this LBOutboundEndpoint might be
-                             * used in CallMediator and LoadBalancerMediatorCallBack.
-                             *
-                             * We will be changing LBOutboundEndpoint's properties here.
-                             *
-                             * If an LBOutboundEndpoint is unHealthy it should not be available else where.
-                             * So we are locking on it, till we remove it from all the places
-                             * where it is available.
-                             *
-                             * NOTE: The below code does only HealthCheck related activities.
-                             *
-                             */
-
-
-                            callBack.getLbOutboundEndpoint().incrementUnHealthyRetries();
-                            /**
-                             * IMPORTANT: Here in case of LeastResponseTime algorithm,
-                             * we are doing send response time as 0,
-                             * other wise detection of unHealthyEndpoint will be late.
-                             */
-                            if (context.getAlgorithmName().equals(LoadBalancerConstants.LEAST_RESPONSE_TIME)) {
-
-                                ((LeastResponseTime) context.getLoadBalancingAlgorithm()).
-                                        setAvgResponseTime(callBack.getLbOutboundEndpoint(), 0);
-
-                            }
 
-                            if (this.reachedUnHealthyRetriesThreshold(callBack.getLbOutboundEndpoint())) {
+        if (!this.context.getHealthCheck().equals(LoadBalancerConstants.NO_HEALTH_CHECK)) {
 
-                                CommonUtil.removeUnHealthyEndpoint(context, algorithm,
-                                        callBack.getLbOutboundEndpoint());
-                            }
+            callBack.getLbOutboundEndpoint().incrementUnHealthyRetries();
 
+            if (this.reachedUnHealthyRetriesThreshold(callBack.getLbOutboundEndpoint())) {
 
-                        }
+                CommonUtil.removeUnHealthyEndpoint(context, algorithm,
+                        callBack.getLbOutboundEndpoint());
+            }
 
-                    }
-                }
 
-            }
         }
 
+        //Sent last, so that if request is retried, this endpoint's failure has been accounted already.
+        new LBErrorHandler().handleFault
+                ("504", new Throwable("Gateway TimeOut"),
+                        new DefaultCarbonMessage(true), callBack);
     }
 
     private boolean reachedUnHealthyRetriesThreshold(LBOutboundEndpoint lbOutboundEndpoint) {
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Request counters and upstream latency histogram of a LB config or of an endpoint.
+ * <p>
+ * Counters are LongAdders and latency is a striped LatencyHistogram, so recording never locks and
+ * threads rarely contend. In-flight requests are not counted here, they are read from
+ * whatever already tracks them.
+ */
+public final class LBMetrics implements LBMetricsMXBean {
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private final IntSupplier inFlightRequests;
+
+    /**
+     * @param inFlightRequests gauge of requests awaiting response.
+     */
+    public LBMetrics(IntSupplier inFlightRequests) {
+
+        this.inFlightRequests = inFlightRequests;
+    }
+
+    /**
+     * A request is being sent to endpoint.
+     */
+    public void onRequest() {
+
+        requests.increment();
+    }
+
+    /**
+     * A request is rejected as there are too many requests in flight.
+     */
+    public void onRejected() {
+
+        rejected.increment();
+    }
+
+    /**
+     * @param latencyMicros time taken by endpoint to respond.
+     * @param statusCode    HTTP status code of response, 0 if not known.
+     */
+    public void onResponse(long latencyMicros, int statusCode) {
+
+        latency.record(latencyMicros);
+        if (statusCode >= 500) {
+            serverErrors.increment();
+        }
+    }
+
+    /**
+     * Endpoint didn't respond within request timeout.
+     */
+    public void onTimeout() {
+
+        timeouts.increment();
+    }
+
+    public LatencyHistogram.Snapshot getLatencySnapshot() {
+
+        return latency.snapshot();
+    }
+
+    @Override
+    public long getRequestCount() {
+
+        return requests.sum();
+    }
+
+    @Override
+    public int getInFlightRequests() {
+
+        return inFlightRequests.getAsInt();
+    }
+
+    @Override
+    public long getTimeoutCount() {
+
+        return timeouts.sum();
+    }
+
+    @Override
+    public long getServerErrorCount() {
+
+        return serverErrors.sum();
+    }
+
+    @Override
+    public long getRejectedCount() {
+
+        return rejected.sum();
+    }
+
+    @Override
+    public long getLatencyCount() {
+
+        return latency.snapshot().getCount();
+    }
+
+    @Override
+    public double getLatencyMeanMillis() {
+
+        return latency.snapshot().getMean() / 1000.0;
+    }
+
+    @Override
+    public double getLatencyP50Millis() {
+
+        return latency.snapshot().getValueAtPercentile(50.0) / 1000.0;
+    }
+
+    @Override
+    public double getLatencyP90Millis() {
+
+        return latency.snapshot().getValueAtPercentile(90.0) / 1000.0;
+    }
+
+    @Override
+    public double getLatencyP99Millis() {
+
+        return latency.snapshot().getValueAtPercentile(99.0) / 1000.0;
+    }
+
+    @Override
+    public double getLatencyP999Millis() {
+
+        return latency.snapshot().getValueAtPercentile(99.9) / 1000.0;
+    }
+
+    @Override
+    public double getLatencyMaxMillis() {
+
+        return latency.snapshot().getMax() / 1000.0;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.metrics;
+
+/**
+ * JMX view of LBMetrics of a LB config or of one of its endpoints.
+ * <p>
+ * Latencies are upstream latencies, ie., from request being handed to endpoint till its response.
+ */
+public interface LBMetricsMXBean {
+
+    long getRequestCount();
+
+    int getInFlightRequests();
+
+    long getTimeoutCount();
+
+    long getServerErrorCount();
+
+    long getRejectedCount();
+
+    long getLatencyCount();
+
+    double getLatencyMeanMillis();
+
+    double getLatencyP50Millis();
+
+    double getLatencyP90Millis();
+
+    double getLatencyP99Millis();
+
+    double getLatencyP999Millis();
+
+    double getLatencyMaxMillis();
+}
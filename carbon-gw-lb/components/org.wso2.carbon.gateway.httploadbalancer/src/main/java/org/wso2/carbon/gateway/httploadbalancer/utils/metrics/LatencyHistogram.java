@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free histogram of latencies in micro seconds, in the spirit of HdrHistogram.
+ * <p>
+ * Buckets are log-linear. Each power of two is split into 32 equal sub-buckets, so any recorded
+ * value is known within ~3% and whole range (1 micro second to ~1 hour) fits in 896 counters.
+ * <p>
+ * Recording threads are spread across stripes by thread id, and each stripe is a plain
+ * AtomicLongArray. So recording is a bucket computation plus two uncontended atomic adds.
+ * Stripes are allocated on first use. Readers merge all stripes into a Snapshot, which is
+ * consistent enough for monitoring but not an atomic view.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+
+    //Values above this are recorded as this. ~71 minutes.
+    static final long MAX_TRACKABLE_VALUE = (1L << 32) - 1;
+
+    static final int BUCKET_COUNT = getBucketIndex(MAX_TRACKABLE_VALUE) + 1;
+
+    //Each stripe also holds count and sum of recorded values, after buckets.
+    private static final int COUNT_INDEX = BUCKET_COUNT;
+    private static final int SUM_INDEX = BUCKET_COUNT + 1;
+
+    private static final int MAX_STRIPES = 8;
+
+    private final AtomicReferenceArray<AtomicLongArray> stripes;
+    private final int stripeMask;
+
+    public LatencyHistogram() {
+
+        int stripeCount = Integer.highestOneBit(Math.min(MAX_STRIPES,
+                Math.max(1, Runtime.getRuntime().availableProcessors())));
+        this.stripes = new AtomicReferenceArray<>(stripeCount);
+        this.stripeMask = stripeCount - 1;
+    }
+
+    /**
+     * @param micros latency in micro seconds. Negative values are recorded as 0.
+     *               <p>
+     *               NOTE: This operation is thread safe and never blocks.
+     */
+    public void record(long micros) {
+
+        long value = Math.min(Math.max(micros, 0), MAX_TRACKABLE_VALUE);
+
+        AtomicLongArray stripe = this.getStripe((int) Thread.currentThread().getId() & stripeMask);
+        stripe.incrementAndGet(getBucketIndex(value));
+        stripe.incrementAndGet(COUNT_INDEX);
+        stripe.addAndGet(SUM_INDEX, value);
+    }
+
+    /**
+     * @return merged counts of all stripes.
+     */
+    public Snapshot snapshot() {
+
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0;
+        long sum = 0;
+
+        for (int i = 0; i < stripes.length(); i++) {
+
+            AtomicLongArray stripe = stripes.get(i);
+            if (stripe == null) {
+                continue;
+            }
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                counts[bucket] += stripe.get(bucket);
+            }
+            count += stripe.get(COUNT_INDEX);
+            sum += stripe.get(SUM_INDEX);
+        }
+        return new Snapshot(counts, count, sum);
+    }
+
+    private AtomicLongArray getStripe(int index) {
+
+        AtomicLongArray stripe = stripes.get(index);
+        if (stripe == null) {
+            stripes.compareAndSet(index, null, new AtomicLongArray(BUCKET_COUNT + 2));
+            stripe = stripes.get(index);
+        }
+        return stripe;
+    }
+
+    /**
+     * Values below 32 have a bucket each. Above that, a value whose highest bit is at position n
+     * goes into one of 32 buckets of width 2^(n - 5).
+     */
+    static int getBucketIndex(long value) {
+
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) | (int) ((value >>> shift) & SUB_BUCKET_MASK);
+    }
+
+    /**
+     * @return smallest value that falls into given bucket.
+     */
+    static long getLowestValue(int index) {
+
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        return (long) (SUB_BUCKET_COUNT | (index & SUB_BUCKET_MASK)) << shift;
+    }
+
+    /**
+     * @return largest value that falls into given bucket.
+     */
+    static long getHighestValue(int index) {
+
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        return getLowestValue(index) + (1L << shift) - 1;
+    }
+
+    /**
+     * Point in time view of a LatencyHistogram.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+
+        private Snapshot(long[] counts, long count, long sum) {
+
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+        }
+
+        public long getCount() {
+
+            return count;
+        }
+
+        /**
+         * @return sum of recorded values in micro seconds.
+         */
+        public long getSum() {
+
+            return sum;
+        }
+
+        public double getMean() {
+
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @param percentile eg: 99.9
+         * @return value in micro seconds, below or equal to which given percentile of values lie.
+         * It is the highest value of bucket, as in HdrHistogram. 0 if nothing is recorded.
+         */
+        public long getValueAtPercentile(double percentile) {
+
+            long total = 0;
+            for (long bucketCount : counts) {
+                total += bucketCount;
+            }
+            if (total == 0) {
+                return 0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return getHighestValue(i);
+                }
+            }
+            return getHighestValue(counts.length - 1);
+        }
+
+        public long getMax() {
+
+            return getValueAtPercentile(100.0);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Minimal HTTP endpoint serving MetricsRegistry.writeText() on GET /metrics.
+ * <p>
+ * Scrapes are infrequent and cheap, so a single daemon thread serves them one at a time with
+ * blocking IO. It is kept independent of gateway's transports, so metrics are available
+ * even when those are saturated.
+ * <p>
+ * There is no authentication, so it listens only on given interface (loopback by default).
+ */
+final class MetricsHttpEndpoint implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(MetricsHttpEndpoint.class);
+
+    private static final String THREAD_NAME = "LB-MetricsHttpEndpoint";
+
+    static final String PATH = "/metrics";
+
+    //A scraper has to send its request within this time.
+    private static final int READ_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(5);
+
+    private final String bindAddress;
+    private final ServerSocket serverSocket;
+    private final MetricsRegistry registry;
+
+    private MetricsHttpEndpoint(String bindAddress, ServerSocket serverSocket, MetricsRegistry registry) {
+
+        this.bindAddress = bindAddress;
+        this.serverSocket = serverSocket;
+        this.registry = registry;
+    }
+
+    /**
+     * @param bindAddress IP address of interface to listen on, eg: 127.0.0.1 or 0.0.0.0 for all interfaces.
+     * @param port        port to listen on. 0 picks a free port.
+     * @param registry    metrics to be served.
+     * @return started endpoint.
+     * @throws IOException if address is not an IP address or if port can't be bound.
+     */
+    static MetricsHttpEndpoint start(String bindAddress, int port, MetricsRegistry registry) throws IOException {
+
+        //An IP address literal is only parsed, never looked up.
+        ServerSocket serverSocket = new ServerSocket(port, 0, InetAddress.getByName(bindAddress));
+        MetricsHttpEndpoint endpoint = new MetricsHttpEndpoint(bindAddress, serverSocket, registry);
+        Thread thread = new Thread(endpoint, THREAD_NAME);
+        thread.setDaemon(true);
+        thread.start();
+        log.info("{} started on {}:{}.", THREAD_NAME, bindAddress, endpoint.getPort());
+        return endpoint;
+    }
+
+    String getBindAddress() {
+
+        return bindAddress;
+    }
+
+    int getPort() {
+
+        return serverSocket.getLocalPort();
+    }
+
+    InetAddress getInetAddress() {
+
+        return serverSocket.getInetAddress();
+    }
+
+    void stop() {
+
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            log.error(e.toString());
+        }
+    }
+
+    @Override
+    public void run() {
+
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+
+                socket.setSoTimeout(READ_TIMEOUT);
+                this.serve(socket);
+
+            } catch (SocketException e) {
+                if (!serverSocket.isClosed()) {
+                    log.error("Error in {}..", THREAD_NAME, e);
+                }
+            } catch (Throwable e) {
+                //Endpoint thread must survive a bad scrape.
+                log.error("Error in {}..", THREAD_NAME, e);
+            }
+        }
+    }
+
+    private void serve(Socket socket) throws IOException {
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                StandardCharsets.ISO_8859_1));
+
+        // eg: GET /metrics HTTP/1.1
+        String requestLine = reader.readLine();
+        if (requestLine == null) {
+            return;
+        }
+
+        //Headers are not used, but they are read so that client doesn't see a reset.
+        String header = reader.readLine();
+        while (header != null && !header.isEmpty()) {
+            header = reader.readLine();
+        }
+
+        String[] parts = requestLine.split(" ");
+        String status;
+        String body;
+        if (parts.length < 2 || !parts[0].equals("GET")) {
+            status = "405 Method Not Allowed";
+            body = "Only GET is supported.\n";
+        } else if (!parts[1].equals(PATH) && !parts[1].startsWith(PATH + "?")) {
+            status = "404 Not Found";
+            body = "Metrics are available at " + PATH + "\n";
+        } else {
+            StringBuilder text = new StringBuilder(4096);
+            registry.writeText(text);
+            status = "200 OK";
+            body = text.toString();
+        }
+
+        byte[] bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+        String head = "HTTP/1.1 " + status + "\r\n" +
+                "Content-Type: text/plain; version=0.0.4; charset=utf-8\r\n" +
+                "Content-Length: " + bodyBytes.length + "\r\n" +
+                "Connection: close\r\n\r\n";
+
+        OutputStream out = socket.getOutputStream();
+        out.write(head.getBytes(StandardCharsets.ISO_8859_1));
+        out.write(bodyBytes);
+        out.flush();
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.gateway.httploadbalancer.utils.handlers.scheduled.LBHousekeepingScheduler;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.ToLongFunction;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * Holds LBMetrics of all deployed LB configs and exposes them.
+ * <p>
+ * Each config and each of its endpoints is registered as an MXBean named
+ * org.wso2.carbon.gateway.httploadbalancer:type=LoadBalancer,config=..[,endpoint=..].
+ * <p>
+ * Same data is available as plain text in Prometheus exposition format through writeText(), which
+ * is served by MetricsHttpEndpoint if a metricsPort is configured. writeText() also includes metrics of
+ * tasks of LBHousekeepingScheduler, which registers their MXBeans itself.
+ */
+public final class MetricsRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    //Domain of all MBeans of LB.
+    public static final String DOMAIN = "org.wso2.carbon.gateway.httploadbalancer";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    //Sorted by config name, so that scrapes are stable.
+    private final Map<String, ConfigMetrics> configs = new ConcurrentSkipListMap<>();
+
+    private MetricsHttpEndpoint httpEndpoint;
+
+    private MetricsRegistry() {
+
+    }
+
+    public static MetricsRegistry getInstance() {
+
+        return INSTANCE;
+    }
+
+    /**
+     * Registers metrics of a LB config. Metrics of previous deployment with same name are replaced.
+     *
+     * @param configName      name of LB config.
+     * @param configMetrics   metrics of LB config as a whole.
+     * @param endpointMetrics metrics of endpoints of LB config, by endpoint name.
+     */
+    public void register(String configName, LBMetrics configMetrics, Map<String, LBMetrics> endpointMetrics) {
+
+        ConfigMetrics metrics = new ConfigMetrics(configMetrics,
+                Collections.unmodifiableMap(new LinkedHashMap<>(endpointMetrics)));
+
+        synchronized (this) {
+            ConfigMetrics previous = configs.put(configName, metrics);
+            if (previous != null) {
+                this.unregisterMBeans(configName, previous);
+            }
+            this.registerMBeans(configName, metrics);
+        }
+    }
+
+    /**
+     * @param configName    name of LB config.
+     * @param configMetrics metrics given while registering. If config has been redeployed since
+     *                      then, nothing is done.
+     */
+    public void unregister(String configName, LBMetrics configMetrics) {
+
+        synchronized (this) {
+            ConfigMetrics metrics = configs.get(configName);
+            if (metrics != null && metrics.config == configMetrics) {
+                configs.remove(configName);
+                this.unregisterMBeans(configName, metrics);
+            }
+        }
+    }
+
+    /**
+     * Starts serving writeText() over HTTP. Only one endpoint is started for all LB configs.
+     *
+     * @param bindAddress IP address of interface to listen on.
+     * @param port        port to listen on.
+     */
+    public synchronized void startHttpEndpoint(String bindAddress, int port) {
+
+        if (httpEndpoint != null) {
+            if (httpEndpoint.getPort() != port || !httpEndpoint.getBindAddress().equals(bindAddress)) {
+                log.warn("Metrics are already served on {}:{}. Ignoring {}:{}..",
+                        httpEndpoint.getBindAddress(), httpEndpoint.getPort(), bindAddress, port);
+            }
+            return;
+        }
+
+        try {
+            httpEndpoint = MetricsHttpEndpoint.start(bindAddress, port, this);
+        } catch (IOException e) {
+            log.error("Unable to serve metrics on {}:{}..", bindAddress, port, e);
+        }
+    }
+
+    /**
+     * Writes metrics of all configs in Prometheus text exposition format.
+     *
+     * @param out destination.
+     */
+    public void writeText(StringBuilder out) {
+
+        Map<String, ConfigMetrics> snapshot = new LinkedHashMap<>(configs);
+
+        writeCounter(out, snapshot, "lb_requests_total", "Requests sent to endpoints.", LBMetrics::getRequestCount);
+        writeCounter(out, snapshot, "lb_rejected_total", "Requests rejected as too many were in flight.",
+                LBMetrics::getRejectedCount);
+        writeCounter(out, snapshot, "lb_timeouts_total", "Requests that timed out.", LBMetrics::getTimeoutCount);
+        writeCounter(out, snapshot, "lb_server_errors_total", "5xx responses from endpoints.",
+                LBMetrics::getServerErrorCount);
+
+        out.append("# HELP lb_in_flight_requests Requests awaiting response.\n");
+        out.append("# TYPE lb_in_flight_requests gauge\n");
+        for (Map.Entry<String, ConfigMetrics> config : snapshot.entrySet()) {
+            writeSample(out, "lb_in_flight_requests", config.getKey(), null, null,
+                    config.getValue().config.getInFlightRequests());
+            for (Map.Entry<String, LBMetrics> endpoint : config.getValue().endpoints.entrySet()) {
+                writeSample(out, "lb_in_flight_requests", config.getKey(), endpoint.getKey(), null,
+                        endpoint.getValue().getInFlightRequests());
+            }
+        }
+
+        out.append("# HELP lb_upstream_latency_seconds Time taken by endpoints to respond.\n");
+        out.append("# TYPE lb_upstream_latency_seconds summary\n");
+        for (Map.Entry<String, ConfigMetrics> config : snapshot.entrySet()) {
+            writeSummary(out, config.getKey(), null, config.getValue().config.getLatencySnapshot());
+            for (Map.Entry<String, LBMetrics> endpoint : config.getValue().endpoints.entrySet()) {
+                writeSummary(out, config.getKey(), endpoint.getKey(), endpoint.getValue().getLatencySnapshot());
+            }
+        }
+
+        if (LBHousekeepingScheduler.isStarted()) {
+            writeHousekeeping(out, LBHousekeepingScheduler.getInstance().getScheduledTasks());
+        }
+    }
+
+    private static void writeHousekeeping(StringBuilder out, List<LBHousekeepingScheduler.ScheduledTask> tasks) {
+
+        writeTaskCounter(out, tasks, "lb_housekeeping_runs_total", "Runs of housekeeping tasks.",
+                LBHousekeepingScheduler.ScheduledTask::getRunCount);
+        writeTaskCounter(out, tasks, "lb_housekeeping_failures_total",
+                "Runs of housekeeping tasks that threw an exception.",
+                LBHousekeepingScheduler.ScheduledTask::getFailureCount);
+        writeTaskGauge(out, tasks, "lb_housekeeping_avg_run_time_seconds", "Average run time of housekeeping tasks.",
+                LBHousekeepingScheduler.ScheduledTask::getAvgRunTimeMicros);
+        writeTaskGauge(out, tasks, "lb_housekeeping_max_run_time_seconds", "Maximum run time of housekeeping tasks.",
+                LBHousekeepingScheduler.ScheduledTask::getMaxRunTimeMicros);
+        writeTaskGauge(out, tasks, "lb_housekeeping_last_lag_seconds",
+                "Delay in starting latest run of housekeeping tasks.",
+                LBHousekeepingScheduler.ScheduledTask::getLastLagMicros);
+        writeTaskGauge(out, tasks, "lb_housekeeping_max_lag_seconds",
+                "Maximum delay in starting a run of housekeeping tasks.",
+                LBHousekeepingScheduler.ScheduledTask::getMaxLagMicros);
+    }
+
+    private static void writeTaskCounter(StringBuilder out, List<LBHousekeepingScheduler.ScheduledTask> tasks,
+                                         String name, String help,
+                                         ToLongFunction<LBHousekeepingScheduler.ScheduledTask> counter) {
+
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        for (LBHousekeepingScheduler.ScheduledTask task : tasks) {
+            writeTaskSample(out, name, task, counter.applyAsLong(task));
+        }
+    }
+
+    /**
+     * @param micros value of gauge in microseconds. It is written in seconds.
+     */
+    private static void writeTaskGauge(StringBuilder out, List<LBHousekeepingScheduler.ScheduledTask> tasks,
+                                       String name, String help,
+                                       ToLongFunction<LBHousekeepingScheduler.ScheduledTask> micros) {
+
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+        for (LBHousekeepingScheduler.ScheduledTask task : tasks) {
+            writeTaskSample(out, name, task, micros.applyAsLong(task) / 1e6);
+        }
+    }
+
+    private static void writeTaskSample(StringBuilder out, String name, LBHousekeepingScheduler.ScheduledTask task,
+                                        Object value) {
+
+        out.append(name).append("{task=\"");
+        appendEscaped(out, task.getName());
+        out.append("\"} ").append(value).append('\n');
+    }
+
+    private static void writeCounter(StringBuilder out, Map<String, ConfigMetrics> configs, String name,
+                                     String help, ToLongFunction<LBMetrics> counter) {
+
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        for (Map.Entry<String, ConfigMetrics> config : configs.entrySet()) {
+            writeSample(out, name, config.getKey(), null, null, counter.applyAsLong(config.getValue().config));
+            for (Map.Entry<String, LBMetrics> endpoint : config.getValue().endpoints.entrySet()) {
+                writeSample(out, name, config.getKey(), endpoint.getKey(), null,
+                        counter.applyAsLong(endpoint.getValue()));
+            }
+        }
+    }
+
+    private static void writeSummary(StringBuilder out, String config, String endpoint,
+                                     LatencyHistogram.Snapshot latency) {
+
+        String name = "lb_upstream_latency_seconds";
+        for (double quantile : QUANTILES) {
+            writeSample(out, name, config, endpoint, String.valueOf(quantile),
+                    latency.getValueAtPercentile(quantile * 100) / 1e6);
+        }
+        writeSample(out, name + "_sum", config, endpoint, null, latency.getSum() / 1e6);
+        writeSample(out, name + "_count", config, endpoint, null, latency.getCount());
+    }
+
+    private static void writeSample(StringBuilder out, String name, String config, String endpoint,
+                                    String quantile, Object value) {
+
+        out.append(name).append("{config=\"");
+        appendEscaped(out, config);
+        if (endpoint != null) {
+            out.append("\",endpoint=\"");
+            appendEscaped(out, endpoint);
+        }
+        if (quantile != null) {
+            out.append("\",quantile=\"").append(quantile);
+        }
+        out.append("\"} ").append(value).append('\n');
+    }
+
+    private static void appendEscaped(StringBuilder out, String labelValue) {
+
+        for (int i = 0; i < labelValue.length(); i++) {
+            char c = labelValue.charAt(i);
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+
+    private void registerMBeans(String configName, ConfigMetrics metrics) {
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(metrics.config, getObjectName(configName, null));
+            for (Map.Entry<String, LBMetrics> endpoint : metrics.endpoints.entrySet()) {
+                server.registerMBean(endpoint.getValue(), getObjectName(configName, endpoint.getKey()));
+            }
+        } catch (JMException e) {
+            log.error("Unable to register metrics MBeans of {}..", configName, e);
+        }
+    }
+
+    private void unregisterMBeans(String configName, ConfigMetrics metrics) {
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            unregisterMBean(server, getObjectName(configName, null));
+            for (String endpoint : metrics.endpoints.keySet()) {
+                unregisterMBean(server, getObjectName(configName, endpoint));
+            }
+        } catch (JMException e) {
+            log.error("Unable to unregister metrics MBeans of {}..", configName, e);
+        }
+    }
+
+    private static void unregisterMBean(MBeanServer server, ObjectName name) throws JMException {
+
+        try {
+            server.unregisterMBean(name);
+        } catch (InstanceNotFoundException e) {
+            //Registration might have failed earlier. Nothing to do.
+        }
+    }
+
+    static ObjectName getObjectName(String configName, String endpoint) throws MalformedObjectNameException {
+
+        StringBuilder name = new StringBuilder(DOMAIN).append(":type=LoadBalancer,config=")
+                .append(ObjectName.quote(configName));
+        if (endpoint != null) {
+            name.append(",endpoint=").append(ObjectName.quote(endpoint));
+        }
+        return new ObjectName(name.toString());
+    }
+
+    /**
+     * Metrics of a LB config and its endpoints.
+     */
+    private static final class ConfigMetrics {
+
+        private final LBMetrics config;
+        private final Map<String, LBMetrics> endpoints;
+
+        private ConfigMetrics(LBMetrics config, Map<String, LBMetrics> endpoints) {
+
+            this.config = config;
+            this.endpoints = endpoints;
+        }
+    }
+}
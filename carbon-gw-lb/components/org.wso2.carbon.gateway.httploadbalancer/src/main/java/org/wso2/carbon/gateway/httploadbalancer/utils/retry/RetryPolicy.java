@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.retry;
+
+import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Which requests are retried on another endpoint and for how long.
+ * <p>
+ * Only requests with idempotent methods are retried, as a failed attempt may have reached
+ * the endpoint. An attempt is retried if LB couldn't connect to endpoint, endpoint didn't answer
+ * within per try timeout or it answered with 502, 503 or 504.
+ */
+public class RetryPolicy {
+
+    /**
+     * Requests are never retried.
+     */
+    public static final RetryPolicy DISABLED = new RetryPolicy(1, LoadBalancerConstants.DEFAULT_REQ_TIMEOUT,
+            LoadBalancerConstants.DEFAULT_REQ_TIMEOUT, LoadBalancerConstants.DEFAULT_RETRY_MAX_BODY_SIZE);
+
+    private static final Set<String> IDEMPOTENT_METHODS = new HashSet<>(
+            Arrays.asList("GET", "HEAD", "OPTIONS", "TRACE", "PUT", "DELETE"));
+
+    private final int maxAttempts;
+    private final int perTryTimeout;
+    private final int budget;
+    private final int maxBodySize;
+
+    /**
+     * @param maxAttempts   maximum no of attempts, including first one. 1 disables retries.
+     * @param perTryTimeout time in milli seconds within which each attempt has to be answered.
+     * @param budget        time in milli seconds, from first attempt, after which no attempt is made.
+     * @param maxBodySize   requests with a bigger body (in bytes) are not retried.
+     */
+    public RetryPolicy(int maxAttempts, int perTryTimeout, int budget, int maxBodySize) {
+
+        this.maxAttempts = maxAttempts;
+        this.perTryTimeout = perTryTimeout;
+        this.budget = budget;
+        this.maxBodySize = maxBodySize;
+    }
+
+    public boolean isEnabled() {
+
+        return maxAttempts > 1;
+    }
+
+    /**
+     * @param method HTTP method of request.
+     * @return true if sending request more than once has same effect as sending it once.
+     */
+    public boolean isIdempotent(String method) {
+
+        //Returns same string if it is already in upper case, which is almost always the case.
+        return method != null && IDEMPOTENT_METHODS.contains(method.toUpperCase(Locale.ENGLISH));
+    }
+
+    /**
+     * @param statusCode status code of response to an attempt. LB's own timeout is a 504.
+     * @return true if endpoint either couldn't process request or it is not reachable.
+     */
+    public boolean isRetryable(int statusCode) {
+
+        return statusCode == 502 || statusCode == 503 || statusCode == 504;
+    }
+
+    public int getMaxAttempts() {
+
+        return maxAttempts;
+    }
+
+    public int getPerTryTimeout() {
+
+        return perTryTimeout;
+    }
+
+    public int getBudget() {
+
+        return budget;
+    }
+
+    public int getMaxBodySize() {
+
+        return maxBodySize;
+    }
+
+    @Override
+    public String toString() {
+
+        if (!isEnabled()) {
+            return "DISABLED";
+        }
+        return "maxAttempts " + maxAttempts + ", perTryTimeout " + perTryTimeout + " ms, budget " + budget +
+                " ms, maxBodySize " + maxBodySize + " bytes";
+    }
+}
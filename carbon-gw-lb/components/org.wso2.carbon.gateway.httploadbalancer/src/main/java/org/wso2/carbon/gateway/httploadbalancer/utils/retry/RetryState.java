@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.retry;
+
+import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.Constants;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retry state of a single client request.
+ * <p>
+ * Headers, properties and body of request are kept, so that it can be sent again to another endpoint.
+ * Body is kept only if it has been received completely and it fits in RetryPolicy's maxBodySize.
+ * Request path never waits for body to arrive.
+ * <p>
+ * NOTE: Attempts of a request are sequential, i.e., next attempt is made only after previous one
+ * has failed. So this is never modified concurrently.
+ */
+public class RetryState {
+
+    private final RetryPolicy policy;
+
+    private final Map<String, String> headers;
+    private final Map<String, Object> properties;
+
+    //Never consumed. Each attempt gets its own duplicates.
+    private final List<ByteBuffer> body;
+
+    //System.nanoTime() after which no more attempts are made.
+    private final long deadlineNanos;
+
+    private final LBOutboundEndpoint[] triedEndpoints;
+
+    //Written after triedEndpoints, so reading it first makes them visible.
+    private volatile int attempts = 0;
+
+    private RetryState(RetryPolicy policy, CarbonMessage request, List<ByteBuffer> body, long currentNanos) {
+
+        this.policy = policy;
+        this.headers = new HashMap<>(request.getHeaders());
+        this.properties = new HashMap<>(request.getProperties());
+        this.body = body;
+        this.deadlineNanos = currentNanos + TimeUnit.MILLISECONDS.toNanos(policy.getBudget());
+        this.triedEndpoints = new LBOutboundEndpoint[policy.getMaxAttempts()];
+    }
+
+    /**
+     * @param policy  RetryPolicy of LB config.
+     * @param request client's request, before it is sent to first endpoint.
+     * @return retry state of request, or null if request can't be retried.
+     */
+    public static RetryState of(RetryPolicy policy, CarbonMessage request) {
+
+        if (!policy.isEnabled()) {
+            return null;
+        }
+        return of(policy, request, System.nanoTime());
+    }
+
+    static RetryState of(RetryPolicy policy, CarbonMessage request, long currentNanos) {
+
+        if (!policy.isEnabled() || !policy.isIdempotent((String) request.getProperty(Constants.HTTP_METHOD))) {
+            return null;
+        }
+
+        //Body is still streaming in. It can't be buffered without blocking this thread.
+        if (!request.isEndOfMsgAdded()) {
+            return null;
+        }
+
+        String contentLength = request.getHeader(
+                org.wso2.carbon.transport.http.netty.common.Constants.HTTP_CONTENT_LENGTH);
+        if (contentLength != null) {
+            try {
+                if (Long.parseLong(contentLength.trim()) > policy.getMaxBodySize()) {
+                    return null;
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        if (request.isEmpty()) {
+            return new RetryState(policy, request, Collections.emptyList(), currentNanos);
+        }
+
+        //Does not block, as end of message has been added already.
+        List<ByteBuffer> body = request.getFullMessageBody();
+        long size = 0;
+        for (ByteBuffer buffer : body) {
+            size += buffer.remaining();
+            //Putting it back for first attempt.
+            request.addMessageBody(buffer.duplicate());
+        }
+        request.setEndOfMsgAdded(true);
+
+        if (size > policy.getMaxBodySize()) {
+            return null;
+        }
+        return new RetryState(policy, request, body, currentNanos);
+    }
+
+    /**
+     * @param lbOutboundEndpoint endpoint to which request is being sent.
+     */
+    public void onAttempt(LBOutboundEndpoint lbOutboundEndpoint) {
+
+        int current = this.attempts;
+        if (current < triedEndpoints.length) {
+            triedEndpoints[current] = lbOutboundEndpoint;
+            this.attempts = current + 1;
+        }
+    }
+
+    public int getAttempts() {
+
+        return attempts;
+    }
+
+    /**
+     * @return true if request has already been sent to given endpoint.
+     */
+    public boolean hasTried(LBOutboundEndpoint lbOutboundEndpoint) {
+
+        int current = this.attempts;
+        for (int i = 0; i < current; i++) {
+            if (triedEndpoints[i] == lbOutboundEndpoint) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param statusCode status code of response to last attempt.
+     * @return true if another attempt has to be made.
+     */
+    public boolean canRetry(int statusCode) {
+
+        return canRetry(statusCode, System.nanoTime());
+    }
+
+    boolean canRetry(int statusCode, long currentNanos) {
+
+        return attempts < policy.getMaxAttempts() && policy.isRetryable(statusCode)
+                && getRemainingMillis(currentNanos) > 0;
+    }
+
+    /**
+     * @return time in milli seconds within which current attempt has to be answered.
+     * It is per try timeout, unless remaining budget is lesser than that.
+     */
+    public int getTryTimeout() {
+
+        return getTryTimeout(System.nanoTime());
+    }
+
+    int getTryTimeout(long currentNanos) {
+
+        return (int) Math.max(1, Math.min(policy.getPerTryTimeout(), getRemainingMillis(currentNanos)));
+    }
+
+    private long getRemainingMillis(long currentNanos) {
+
+        return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - currentNanos);
+    }
+
+    /**
+     * @return a fresh copy of request for next attempt, as previous one has been consumed by transport.
+     */
+    public CarbonMessage newRequest() {
+
+        DefaultCarbonMessage request = new DefaultCarbonMessage();
+        request.setHeaders(new HashMap<>(headers));
+        for (Map.Entry<String, Object> property : properties.entrySet()) {
+            request.setProperty(property.getKey(), property.getValue());
+        }
+        for (ByteBuffer buffer : body) {
+            request.addMessageBody(buffer.duplicate());
+        }
+        request.setEndOfMsgAdded(true);
+        return request;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.slab;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed capacity registry of in-flight items (eg: callbacks of requests awaiting response).
+ * <p>
+ * All slots are allocated upfront. claim() returns index of the slot given to an item and caller
+ * keeps it along with the item, so release() and contains() are a single array access. Nothing is
+ * allocated per item, so there are no map nodes to be collected or rehashed.
+ * <p>
+ * Free slots are kept in a lock-free stack of indexes. Top of the stack is packed with a stamp
+ * into one AtomicLong, so a slot that is released and claimed again in between doesn't confuse a
+ * concurrent claim (ABA).
+ * <p>
+ * Release is a CAS from item to null on its slot, so when several threads race to release an item,
+ * exactly one of them succeeds. eg: response and timeout of a request.
+ * <p>
+ * Once all slots are in use, claim() fails instead of growing, so that caller can shed load.
+ *
+ * @param <T> type of item.
+ */
+public final class InFlightSlab<T> {
+
+    /**
+     * Returned by claim() when all slots are in use. It is never a valid slot.
+     */
+    public static final int FULL = -1;
+
+    // Marks end of free stack.
+    private static final int NONE = -1;
+
+    private final AtomicReferenceArray<T> slots;
+
+    // nextFree[i] is the slot below i in free stack. Meaningful only while slot i is free.
+    private final int[] nextFree;
+
+    // Top of free stack in lower 32 bits, stamp in upper 32 bits.
+    private final AtomicLong freeTop;
+
+    private final AtomicInteger occupancy = new AtomicInteger(0);
+    private final AtomicInteger highWaterMark = new AtomicInteger(0);
+
+    /**
+     * @param capacity maximum no of items that can be in-flight at the same time.
+     */
+    public InFlightSlab(int capacity) {
+
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be greater than 0: " + capacity);
+        }
+
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.nextFree = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            this.nextFree[i] = i + 1 < capacity ? i + 1 : NONE;
+        }
+        this.freeTop = new AtomicLong(pack(0, 0));
+    }
+
+    /**
+     * @param item item to be registered. Must not be null.
+     * @return slot given to item or FULL if all slots are in use.
+     * <p>
+     * NOTE: This operation is thread safe.
+     */
+    public int claim(T item) {
+
+        while (true) {
+
+            long top = freeTop.get();
+            int slot = (int) top;
+            if (slot == NONE) {
+                return FULL;
+            }
+
+            // If slot has been claimed and released meanwhile, stamp has changed and CAS fails.
+            if (freeTop.compareAndSet(top, pack(stamp(top) + 1, nextFree[slot]))) {
+
+                slots.set(slot, item);
+
+                int current = occupancy.incrementAndGet();
+                int high = highWaterMark.get();
+                while (current > high && !highWaterMark.compareAndSet(high, current)) {
+                    high = highWaterMark.get();
+                }
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * @param slot slot returned by claim().
+     * @param item item to which slot was given.
+     * @return true if item was released by this call. False if it has already been released.
+     * <p>
+     * NOTE: This operation is thread safe.
+     */
+    public boolean release(int slot, T item) {
+
+        if (slot < 0 || slot >= nextFree.length || !slots.compareAndSet(slot, item, null)) {
+            return false;
+        }
+
+        occupancy.decrementAndGet();
+
+        while (true) {
+
+            long top = freeTop.get();
+            nextFree[slot] = (int) top;
+            if (freeTop.compareAndSet(top, pack(stamp(top) + 1, slot))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param slot slot returned by claim().
+     * @param item item to which slot was given.
+     * @return true if item has not been released yet.
+     */
+    public boolean contains(int slot, T item) {
+
+        return slot >= 0 && slot < nextFree.length && slots.get(slot) == item;
+    }
+
+    /**
+     * @return no of items in-flight now.
+     */
+    public int size() {
+
+        return occupancy.get();
+    }
+
+    /**
+     * @return maximum no of items that have been in-flight at the same time.
+     */
+    public int getHighWaterMark() {
+
+        return highWaterMark.get();
+    }
+
+    /**
+     * @return maximum no of items that can be in-flight at the same time.
+     */
+    public int capacity() {
+
+        return nextFree.length;
+    }
+
+    private static long pack(long stamp, int slot) {
+
+        return (stamp << 32) | (slot & 0xffffffffL);
+    }
+
+    private static long stamp(long top) {
+
+        return top >>> 32;
+    }
+}
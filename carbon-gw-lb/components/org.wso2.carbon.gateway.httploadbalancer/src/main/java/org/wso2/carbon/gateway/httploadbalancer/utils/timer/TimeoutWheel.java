@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel that tracks deadlines of in-flight requests.
+ * <p>
+ * Any thread can schedule a Timeout. Scheduled Timeouts are queued and moved into the wheel by the
+ * thread that calls expireTimeouts(), so the wheel itself is owned by a single thread and needs no locking.
+ * <p>
+ * Each call to expireTimeouts() visits only the buckets of ticks that have elapsed since the last call.
+ * So cost is proportional to number of due (or cancelled) entries, not to number of in-flight requests.
+ * <p>
+ * A Timeout fires no earlier than its deadline and at most one tick (plus scheduling delay) after it.
+ * <p>
+ * Cancellation is O(1). It only flips state of Timeout, entry is unlinked when its bucket is visited.
+ * <p>
+ * An exception thrown by onExpiry is logged and does not stop expiry of other Timeouts, so a tick
+ * is never visited twice.
+ *
+ * @param <T> type of item that is handed over on expiry.
+ */
+public class TimeoutWheel<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(TimeoutWheel.class);
+
+    private final long tickDuration;
+
+    private final Bucket<T>[] wheel;
+
+    private final int mask;
+
+    private final long startTime;
+
+    private final Queue<Timeout<T>> pendingTimeouts = new ConcurrentLinkedQueue<>();
+
+    // Accessed only by the thread calling expireTimeouts().
+    private long tick = 0;
+
+    /**
+     * @param tickDuration duration of one tick in milli seconds.
+     * @param ticksPerWheel number of buckets. It will be rounded up to a power of two.
+     * @param startTime     current time in milli seconds, in the same clock as deadlines.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimeoutWheel(long tickDuration, int ticksPerWheel, long startTime) {
+
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be greater than 0: " + tickDuration);
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+            throw new IllegalArgumentException("ticksPerWheel must be between 1 and 2^30: " + ticksPerWheel);
+        }
+
+        int size = Integer.highestOneBit(ticksPerWheel);
+        if (size < ticksPerWheel) {
+            size <<= 1;
+        }
+
+        this.tickDuration = tickDuration;
+        this.startTime = startTime;
+        this.mask = size - 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            this.wheel[i] = new Bucket<>();
+        }
+    }
+
+    /**
+     * @param item     item to be handed over on expiry.
+     * @param deadline time in milli seconds, in the same clock as startTime.
+     * @return Timeout which can be cancelled.
+     * <p>
+     * NOTE: This operation is thread safe.
+     */
+    public Timeout<T> schedule(T item, long deadline) {
+
+        Timeout<T> timeout = new Timeout<>(item, deadline);
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Expires all Timeouts whose deadlines are before currentTime.
+     * <p>
+     * NOTE: This method MUST be called by only one thread at a time.
+     *
+     * @param currentTime current time in milli seconds.
+     * @param onExpiry    invoked with item of each expired Timeout.
+     */
+    public void expireTimeouts(long currentTime, Consumer<T> onExpiry) {
+
+        // A tick is processed only after it has fully elapsed.
+        long lastElapsedTick = ((currentTime - startTime) / tickDuration) - 1;
+
+        transferPendingTimeouts();
+
+        while (tick <= lastElapsedTick) {
+
+            wheel[(int) (tick & mask)].expireTimeouts(onExpiry);
+            tick++;
+        }
+    }
+
+    private void transferPendingTimeouts() {
+
+        Timeout<T> timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+
+            if (timeout.isCancelled()) {
+                continue;
+            }
+
+            long calculated = Math.max(0, timeout.deadline - startTime) / tickDuration;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+
+            // Deadline has already passed, so it goes to current tick.
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * A scheduled deadline.
+     * <p>
+     * Whoever changes state first, cancel() or the wheel, owns the item.
+     *
+     * @param <T> type of item.
+     */
+    public static final class Timeout<T> {
+
+        private static final int ST_PENDING = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        // Field updater avoids allocating an atomic per request.
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final long deadline;
+
+        private volatile int state = ST_PENDING;
+
+        private T item;
+
+        // Following fields are accessed only by the wheel thread.
+        private long remainingRounds;
+        private Timeout<T> next;
+        private Timeout<T> prev;
+
+        private Timeout(T item, long deadline) {
+
+            this.item = item;
+            this.deadline = deadline;
+        }
+
+        public long getDeadline() {
+
+            return deadline;
+        }
+
+        /**
+         * @return true if this call cancelled Timeout, false if it has already expired or been cancelled.
+         */
+        public boolean cancel() {
+
+            if (STATE.compareAndSet(this, ST_PENDING, ST_CANCELLED)) {
+                // Item is released right away, entry is unlinked later by the wheel.
+                item = null;
+                return true;
+            }
+            return false;
+        }
+
+        public boolean isCancelled() {
+
+            return state == ST_CANCELLED;
+        }
+
+        public boolean isExpired() {
+
+            return state == ST_EXPIRED;
+        }
+
+        private boolean expire(Consumer<T> onExpiry) {
+
+            if (!STATE.compareAndSet(this, ST_PENDING, ST_EXPIRED)) {
+                return false;
+            }
+
+            T expiredItem = item;
+            item = null;
+            onExpiry.accept(expiredItem);
+            return true;
+        }
+    }
+
+    /**
+     * Doubly linked list of Timeouts hashed into the same slot.
+     */
+    private static final class Bucket<T> {
+
+        private Timeout<T> head;
+        private Timeout<T> tail;
+
+        private void add(Timeout<T> timeout) {
+
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        private void expireTimeouts(Consumer<T> onExpiry) {
+
+            Timeout<T> timeout = head;
+
+            while (timeout != null) {
+
+                Timeout<T> next = timeout.next;
+
+                if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    try {
+                        timeout.expire(onExpiry);
+                    } catch (RuntimeException e) {
+                        //Rest of this bucket must still be visited, otherwise their rounds are decremented again.
+                        log.error("Error while expiring timeout..", e);
+                    }
+                } else {
+                    timeout.remainingRounds--;
+                }
+
+                timeout = next;
+            }
+        }
+
+        private void remove(Timeout<T> timeout) {
+
+            Timeout<T> next = timeout.next;
+
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+
+            timeout.prev = null;
+            timeout.next = null;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer;
+
+import org.junit.Assert;
+import org.wso2.carbon.gateway.core.outbound.AbstractOutboundEndpoint;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.LoadBalancingAlgorithm;
+import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
+import org.wso2.carbon.messaging.CarbonCallback;
+import org.wso2.carbon.messaging.CarbonMessage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Endpoints and sampling helpers shared by unit tests.
+ */
+public final class TestUtil {
+
+    private TestUtil() {
+
+    }
+
+    /**
+     * @return endpoint that accepts every request and never responds.
+     */
+    public static LBOutboundEndpoint createEndpoint(String name) {
+
+        return new LBOutboundEndpoint(new AbstractOutboundEndpoint(name) {
+
+            @Override
+            public boolean receive(CarbonMessage carbonMessage, CarbonCallback carbonCallback) {
+                return true;
+            }
+        });
+    }
+
+    /**
+     * @return endpoint like createEndpoint(name), with given uri.
+     */
+    public static LBOutboundEndpoint createEndpoint(String name, String uri) {
+
+        return new LBOutboundEndpoint(new AbstractOutboundEndpoint(name) {
+
+            @Override
+            public String getUri() {
+                return uri;
+            }
+
+            @Override
+            public boolean receive(CarbonMessage carbonMessage, CarbonCallback carbonCallback) {
+                return true;
+            }
+        });
+    }
+
+    public static List<LBOutboundEndpoint> createEndpoints(String... names) {
+
+        List<LBOutboundEndpoint> endpoints = new ArrayList<>();
+        for (String name : names) {
+            endpoints.add(createEndpoint(name));
+        }
+        return endpoints;
+    }
+
+    /**
+     * @return no of times each endpoint is chosen by algorithm, by name.
+     */
+    public static Map<String, Integer> sample(LoadBalancingAlgorithm algorithm, int samples) {
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < samples; i++) {
+            counts.merge(algorithm.getNextLBOutboundEndpoint(null, null).getName(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * Asserts that observed share is within 1% (absolute) of expected share.
+     */
+    public static void assertShare(Map<String, Integer> counts, String name, double expected) {
+
+        int total = 0;
+        for (int count : counts.values()) {
+            total += count;
+        }
+        double actual = counts.getOrDefault(name, 0) / (double) total;
+        Assert.assertEquals(name + " share", expected, actual, 0.01);
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing.hashcodegenerators.Murmur3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Unit Test for ConsistentHashRing Class.
+ */
+public class ConsistentHashRingTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ConsistentHashRingTest.class);
+
+    private static final int CLIENTS = 100000;
+
+    private static List<String> createEndpoints(int count) {
+
+        List<String> endpoints = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            endpoints.add("10.0.0." + i + ":8080");
+        }
+        return endpoints;
+    }
+
+    private static String clientIP(int i) {
+
+        return "192." + ((i >>> 16) & 0xff) + "." + ((i >>> 8) & 0xff) + "." + (i & 0xff);
+    }
+
+    private static Map<String, Integer> distribute(ConsistentHashRing ring) {
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            counts.merge(ring.get(clientIP(i)), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * @return ratio of most loaded endpoint's share to its fair share.
+     */
+    private static double skew(Map<String, Integer> counts, int endpoints) {
+
+        double fairShare = CLIENTS / (double) endpoints;
+        return Collections.max(counts.values()) / fairShare;
+    }
+
+    @Test
+    public void testDistributionSkew() {
+
+        List<String> endpoints = createEndpoints(10);
+
+        StringBuilder report = new StringBuilder("Consistent hash ring skew (max / fair share) for ")
+                .append(CLIENTS).append(" clients over ").append(endpoints.size()).append(" endpoints :");
+        double skew = 0;
+        for (int virtualNodes : new int[]{1, 10, 40, 160, 640}) {
+            ConsistentHashRing ring = new ConsistentHashRing(new Murmur3(), virtualNodes, endpoints);
+            Map<String, Integer> counts = distribute(ring);
+            skew = skew(counts, endpoints.size());
+            report.append(String.format(" [virtualNodes=%d : %.3f]", virtualNodes, skew));
+            if (virtualNodes == 160) {
+                Assert.assertEquals(endpoints.size(), counts.size());
+                Assert.assertTrue("Skew with 160 virtual nodes : " + skew, skew < 1.15);
+            }
+        }
+        log.info(report.toString());
+        Assert.assertTrue("Skew with 640 virtual nodes : " + skew, skew < 1.1);
+    }
+
+    @Test
+    public void testProportionalToWeights() {
+
+        ConsistentHashRing ring = new ConsistentHashRing(new Murmur3(), 160, Collections.emptyList());
+        ring.addEndpoint("10.0.0.1:8080", 1);
+        ring.addEndpoint("10.0.0.2:8080", 2);
+        ring.addEndpoint("10.0.0.3:8080", 3);
+        Assert.assertEquals(160 * 6, ring.size());
+
+        Map<String, Integer> counts = distribute(ring);
+        Assert.assertEquals(1 / 6.0, counts.get("10.0.0.1:8080") / (double) CLIENTS, 0.03);
+        Assert.assertEquals(2 / 6.0, counts.get("10.0.0.2:8080") / (double) CLIENTS, 0.03);
+        Assert.assertEquals(3 / 6.0, counts.get("10.0.0.3:8080") / (double) CLIENTS, 0.03);
+    }
+
+    @Test
+    public void testOnlyRemovedEndpointsClientsAreRemapped() {
+
+        List<String> endpoints = createEndpoints(5);
+        ConsistentHashRing ring = new ConsistentHashRing(new Murmur3(), 160, endpoints);
+
+        String[] before = new String[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            before[i] = ring.get(clientIP(i));
+        }
+
+        ring.removeEndpoint("10.0.0.3:8080");
+
+        for (int i = 0; i < CLIENTS; i++) {
+            String after = ring.get(clientIP(i));
+            Assert.assertFalse(after.equals("10.0.0.3:8080"));
+            if (!before[i].equals("10.0.0.3:8080")) {
+                Assert.assertEquals(before[i], after);
+            }
+        }
+
+        //Adding it back restores original mapping.
+        ring.addEndpoint("10.0.0.3:8080");
+        for (int i = 0; i < CLIENTS; i++) {
+            Assert.assertEquals(before[i], ring.get(clientIP(i)));
+        }
+    }
+
+    @Test
+    public void testIndependentOfOrderOfAddition() {
+
+        List<String> endpoints = createEndpoints(4);
+        ConsistentHashRing ring = new ConsistentHashRing(new Murmur3(), 40, endpoints);
+
+        List<String> reversed = new ArrayList<>(endpoints);
+        Collections.reverse(reversed);
+        ConsistentHashRing reversedRing = new ConsistentHashRing(new Murmur3(), 40, reversed);
+
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(ring.get(clientIP(i)), reversedRing.get(clientIP(i)));
+        }
+    }
+
+    /**
+     * One hot client (eg: a NATed proxy) sends every 5th request, others send one request each.
+     * No request completes, so in-flight load only grows.
+     */
+    @Test
+    public void testBoundedLoads() {
+
+        List<String> endpoints = createEndpoints(5);
+        ConsistentHashRing ring = new ConsistentHashRing(new Murmur3(), 160, endpoints);
+
+        double boundedLoadFactor = 0.25;
+        int requests = 5000;
+        String hotClient = "203.0.113.7";
+
+        Map<String, Integer> inFlight = new HashMap<>();
+        int total = 0;
+        int otherClientsKept = 0;
+
+        for (int i = 0; i < requests; i++) {
+
+            String ipAddress = i % 5 == 0 ? hotClient : clientIP(i);
+            int maxInFlight = (int) Math.ceil((1 + boundedLoadFactor) * (total + 1) / endpoints.size());
+
+            String chosen = ring.get(ipAddress, hostAndPort -> inFlight.getOrDefault(hostAndPort, 0) >= maxInFlight);
+            Assert.assertTrue(inFlight.getOrDefault(chosen, 0) < maxInFlight);
+            inFlight.merge(chosen, 1, Integer::sum);
+            total++;
+
+            if (i == 0) {
+                Assert.assertEquals(ring.get(hotClient), chosen);
+            } else if (i % 5 != 0 && chosen.equals(ring.get(ipAddress))) {
+                otherClientsKept++;
+            }
+        }
+
+        double keptRatio = otherClientsKept / (requests * 0.8);
+        log.info(String.format("Bounded loads : in-flight per endpoint %s, other clients kept on their endpoint %.3f",
+                inFlight, keptRatio));
+
+        int cap = (int) Math.ceil((1 + boundedLoadFactor) * requests / endpoints.size());
+        for (int load : inFlight.values()) {
+            Assert.assertTrue("Load : " + load, load <= cap);
+        }
+        Assert.assertTrue("Kept : " + keptRatio, keptRatio > 0.8);
+    }
+
+    @Test
+    public void testOverloadedEndpointIsSkipped() {
+
+        ConsistentHashRing ring = new ConsistentHashRing(new Murmur3(), 160, createEndpoints(3));
+        String home = ring.get("192.168.0.1");
+
+        Assert.assertEquals(home, ring.get("192.168.0.1", hostAndPort -> false));
+
+        String next = ring.get("192.168.0.1", home::equals);
+        Assert.assertFalse(home.equals(next));
+
+        //All overloaded. Endpoint is chosen as if load is not considered.
+        Assert.assertEquals(home, ring.get("192.168.0.1", hostAndPort -> true));
+    }
+
+    @Test
+    public void testEmptyRing() {
+
+        ConsistentHashRing ring = new ConsistentHashRing(new Murmur3(), 160, Arrays.asList("10.0.0.1:8080"));
+        Assert.assertEquals("10.0.0.1:8080", ring.get("192.168.0.1"));
+
+        ring.removeEndpoint("10.0.0.1:8080");
+        Assert.assertEquals(0, ring.size());
+        Assert.assertNull(ring.get("192.168.0.1"));
+    }
+}
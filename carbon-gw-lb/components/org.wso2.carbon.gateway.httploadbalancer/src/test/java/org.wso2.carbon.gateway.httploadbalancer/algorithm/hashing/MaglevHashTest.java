@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing.hashcodegenerators.MD5;
+import org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing.hashcodegenerators.Murmur3;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Unit Test for MaglevHash Class.
+ */
+public class MaglevHashTest {
+
+    private static final Logger log = LoggerFactory.getLogger(MaglevHashTest.class);
+
+    private static final int CLIENTS = 100000;
+    private static final int TABLE_SIZE = 65537;
+
+    private static List<String> createEndpoints(int count) {
+
+        List<String> endpoints = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            endpoints.add("10.0.0." + i + ":8080");
+        }
+        return endpoints;
+    }
+
+    private static String clientIP(int i) {
+
+        return "192." + ((i >>> 16) & 0xff) + "." + ((i >>> 8) & 0xff) + "." + (i & 0xff);
+    }
+
+    private static String[] lookup(Hash hash) {
+
+        String[] result = new String[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            result[i] = hash.get(clientIP(i));
+        }
+        return result;
+    }
+
+    /**
+     * @return coefficient of variation (standard deviation / mean) of no of clients per endpoint.
+     */
+    private static double loadVariation(String[] mapping, List<String> endpoints) {
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (String endpoint : mapping) {
+            counts.merge(endpoint, 1, Integer::sum);
+        }
+
+        double mean = CLIENTS / (double) endpoints.size();
+        double variance = 0;
+        for (String endpoint : endpoints) {
+            double diff = counts.getOrDefault(endpoint, 0) - mean;
+            variance += diff * diff;
+        }
+        return Math.sqrt(variance / endpoints.size()) / mean;
+    }
+
+    /**
+     * @return fraction of clients, which were NOT on removed endpoint, but still got re-mapped.
+     */
+    private static double extraRemapping(String[] before, String[] after, String removed) {
+
+        int moved = 0;
+        for (int i = 0; i < CLIENTS; i++) {
+            Assert.assertFalse(removed.equals(after[i]));
+            if (!before[i].equals(removed) && !before[i].equals(after[i])) {
+                moved++;
+            }
+        }
+        return moved / (double) CLIENTS;
+    }
+
+    @Test
+    public void testBalanceAndRemappingAgainstRing() {
+
+        List<String> endpoints = createEndpoints(10);
+        String removed = endpoints.get(3);
+
+        Map<String, Hash> hashes = new HashMap<>();
+        hashes.put("ConsistentHash (MD5, 1 point)", new ConsistentHash(new MD5(), new ArrayList<>(endpoints)));
+        hashes.put("ConsistentHashRing (160 virtual nodes)", new ConsistentHashRing(new Murmur3(), 160, endpoints));
+        hashes.put("MaglevHash", new MaglevHash(new Murmur3(), TABLE_SIZE, endpoints));
+
+        Map<String, Double> variation = new HashMap<>();
+        Map<String, Double> remapping = new HashMap<>();
+        StringBuilder report = new StringBuilder("Load variation / extra remapping on removing 1 of ")
+                .append(endpoints.size()).append(" endpoints, for ").append(CLIENTS).append(" clients :");
+
+        for (Map.Entry<String, Hash> entry : hashes.entrySet()) {
+
+            String[] before = lookup(entry.getValue());
+            entry.getValue().removeEndpoint(removed);
+            String[] after = lookup(entry.getValue());
+
+            variation.put(entry.getKey(), loadVariation(before, endpoints));
+            remapping.put(entry.getKey(), extraRemapping(before, after, removed));
+            report.append(String.format(" [%s : %.4f / %.4f]", entry.getKey(),
+                    variation.get(entry.getKey()), remapping.get(entry.getKey())));
+        }
+        log.info(report.toString());
+
+        double maglevVariation = variation.get("MaglevHash");
+        Assert.assertTrue("Maglev variation : " + maglevVariation, maglevVariation < 0.02);
+        for (double ringVariation : variation.values()) {
+            Assert.assertTrue(maglevVariation <= ringVariation);
+        }
+
+        //Rings never move other clients. Maglev moves a small fraction of them.
+        Assert.assertTrue("Maglev extra remapping : " + remapping.get("MaglevHash"),
+                remapping.get("MaglevHash") < 0.01);
+    }
+
+    @Test
+    public void testAddedEndpointGetsFairShare() {
+
+        List<String> endpoints = createEndpoints(4);
+        MaglevHash hash = new MaglevHash(new Murmur3(), TABLE_SIZE, endpoints);
+
+        hash.addEndpoint("10.0.0.5:8080");
+        hash.addEndpoints(Collections.singletonList("10.0.0.6:8080"));
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (String endpoint : lookup(hash)) {
+            counts.merge(endpoint, 1, Integer::sum);
+        }
+        Assert.assertEquals(6, counts.size());
+        Assert.assertEquals(1 / 6.0, counts.get("10.0.0.5:8080") / (double) CLIENTS, 0.01);
+        Assert.assertEquals(1 / 6.0, counts.get("10.0.0.6:8080") / (double) CLIENTS, 0.01);
+    }
+
+    @Test
+    public void testOverloadedEndpointIsSkipped() {
+
+        List<String> endpoints = createEndpoints(3);
+        MaglevHash hash = new MaglevHash(new Murmur3(), TABLE_SIZE, endpoints);
+        String home = hash.get("192.168.0.1");
+
+        Assert.assertEquals(home, hash.get("192.168.0.1", hostAndPort -> false));
+        Assert.assertFalse(home.equals(hash.get("192.168.0.1", home::equals)));
+        Assert.assertEquals(home, hash.get("192.168.0.1", hostAndPort -> true));
+
+        //Removed endpoints are not considered.
+        List<String> others = new ArrayList<>(endpoints);
+        others.remove(home);
+        hash.removeEndpoint(others.get(0));
+        Assert.assertEquals(others.get(1), hash.get("192.168.0.1", home::equals));
+    }
+
+    @Test
+    public void testIndependentOfOrderOfAddition() {
+
+        List<String> endpoints = createEndpoints(4);
+        List<String> reversed = new ArrayList<>(endpoints);
+        Collections.reverse(reversed);
+
+        MaglevHash hash = new MaglevHash(new Murmur3(), TABLE_SIZE, endpoints);
+        MaglevHash reversedHash = new MaglevHash(new Murmur3(), TABLE_SIZE, reversed);
+
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(hash.get(clientIP(i)), reversedHash.get(clientIP(i)));
+        }
+    }
+
+    @Test
+    public void testEmptyTable() {
+
+        MaglevHash hash = new MaglevHash(new Murmur3(), TABLE_SIZE, createEndpoints(1));
+        Assert.assertEquals("10.0.0.1:8080", hash.get("192.168.0.1"));
+
+        hash.removeEndpoint("10.0.0.1:8080");
+        Assert.assertNull(hash.get("192.168.0.1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTableSizeMustBePrime() {
+
+        new MaglevHash(new Murmur3(), 65536, createEndpoints(2));
+    }
+}
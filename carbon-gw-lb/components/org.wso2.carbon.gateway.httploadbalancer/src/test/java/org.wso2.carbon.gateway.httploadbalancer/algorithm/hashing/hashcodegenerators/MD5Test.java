@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing.hashcodegenerators;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Unit Test for MD5 Class.
+ */
+public class MD5Test {
+
+    private final MD5 md5 = new MD5();
+
+    @Test
+    public void testReferenceValues() {
+
+        Assert.assertEquals("d41d8cd98f00b204e9800998ecf8427e", md5.hash(""));
+        Assert.assertEquals("5d41402abc4b2a76b9719d911017c592", md5.hash("hello"));
+        Assert.assertEquals("05ef642f508b1e5b76612ddbd5f89a4c", md5.hash("10.0.0.1:8080"));
+        //Non ASCII value is hashed over its UTF-8 bytes.
+        Assert.assertEquals("07117fe4a1ebd544965dc19573183da2", md5.hash("caf\u00e9"));
+    }
+
+    @Test
+    public void testHash64IsPrefixOfHash() {
+
+        Assert.assertEquals(0x5d41402abc4b2a76L, md5.hash64("hello"));
+        Assert.assertEquals(md5.hash64("10.0.0.1:8080"), md5.hash64(new StringBuilder("10.0.0.1:8080")));
+    }
+
+    @Test
+    public void testLongValue() {
+
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            value.append("10.0.0.").append(i).append(':');
+        }
+        //Longer than initial scratch buffer, hashed twice to make sure buffer is reused correctly.
+        Assert.assertEquals(md5.hash(value.toString()), md5.hash(value.toString()));
+        Assert.assertEquals(md5.hash(value.toString()).substring(0, 16),
+                String.format("%016x", md5.hash64(value)));
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+
+        List<String> values = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            values.add("192.168." + (i >>> 8) + "." + (i & 0xff));
+            expected.add(md5.hash(values.get(i)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(executor.submit(() -> {
+                    for (int round = 0; round < 20; round++) {
+                        for (int i = 0; i < values.size(); i++) {
+                            if (!expected.get(i).equals(md5.hash(values.get(i)))) {
+                                return false;
+                            }
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                Assert.assertTrue(result.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
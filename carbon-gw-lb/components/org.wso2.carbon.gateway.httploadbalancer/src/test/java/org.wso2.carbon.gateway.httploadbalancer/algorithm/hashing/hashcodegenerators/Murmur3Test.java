@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.algorithm.hashing.hashcodegenerators;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit Test for Murmur3 Class.
+ */
+public class Murmur3Test {
+
+    private final Murmur3 murmur3 = new Murmur3();
+
+    /**
+     * Expected values are first 64 bits of reference MurmurHash3_x64_128 with seed 0.
+     */
+    @Test
+    public void testReferenceValues() {
+
+        Assert.assertEquals(0L, murmur3.hash64(""));
+        Assert.assertEquals(0xcbd8a7b341bd9b02L, murmur3.hash64("hello"));
+        Assert.assertEquals(0xe34bbc7bbc071b6cL, murmur3.hash64("The quick brown fox jumps over the lazy dog"));
+    }
+
+    @Test
+    public void testHexIsSameAsHash64() {
+
+        Assert.assertEquals("cbd8a7b341bd9b02", murmur3.hash("hello"));
+        Assert.assertEquals(16, murmur3.hash("192.168.1.1").length());
+        Assert.assertEquals(murmur3.hash64("192.168.1.1"), Long.parseUnsignedLong(murmur3.hash("192.168.1.1"), 16));
+    }
+
+    @Test
+    public void testNonAsciiIsHashedAsUTF8() {
+
+        //"caf\u00e9" is 5 bytes in UTF-8.
+        Assert.assertEquals(0xa2e7c22a053364ddL, murmur3.hash64("caf\u00e9"));
+        //More than 16 bytes, so both blocks and tail are covered.
+        Assert.assertEquals(0x7e6b944e7a3f9e77L, murmur3.hash64("2001:db8::ff00:42:8329"));
+    }
+
+    /**
+     * hash64(high, low) must be same as hashing 16 bytes of the value in big endian order.
+     */
+    @Test
+    public void testHash64OfLongsIsSameAsBytes() {
+
+        Assert.assertEquals(murmur3.hash64("\0\0\0\0\0\0\0\0\0\0\0\0\0\0\0\0"), murmur3.hash64(0L, 0L));
+        Assert.assertEquals(murmur3.hash64("0123456789abcdef"),
+                murmur3.hash64(0x3031323334353637L, 0x3839616263646566L));
+    }
+}
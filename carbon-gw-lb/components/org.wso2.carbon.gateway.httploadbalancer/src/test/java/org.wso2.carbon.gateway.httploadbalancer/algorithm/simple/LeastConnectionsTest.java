@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.algorithm.simple;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wso2.carbon.gateway.httploadbalancer.TestUtil;
+import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit Test for LeastConnections Class.
+ */
+public class LeastConnectionsTest {
+
+    private static final int SAMPLES = 100000;
+
+    /**
+     * @return endpoint that always reports given no of in-flight requests.
+     */
+    private static LBOutboundEndpoint createEndpoint(String name, int inFlightRequests) {
+
+        return new LBOutboundEndpoint(TestUtil.createEndpoint(name).getOutboundEndpoint()) {
+
+            @Override
+            public int getInFlightRequests() {
+                return inFlightRequests;
+            }
+        };
+    }
+
+    @Test
+    public void testSampledEndpointsAreDistinct() {
+
+        //Busy one is chosen only if it is compared with itself.
+        LeastConnections algorithm = new LeastConnections(Arrays.asList(
+                createEndpoint("BUSY", 100), createEndpoint("IDLE", 0)));
+
+        Map<String, Integer> counts = TestUtil.sample(algorithm, SAMPLES);
+        Assert.assertFalse(counts.containsKey("BUSY"));
+    }
+
+    @Test
+    public void testHeavilyLoadedEndpointIsAvoided() {
+
+        List<LBOutboundEndpoint> endpoints = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            endpoints.add(createEndpoint("EP" + i, i * 10));
+        }
+        LeastConnections algorithm = new LeastConnections(endpoints);
+
+        //Out of 6 equally likely pairs, an endpoint wins those with a more loaded one.
+        Map<String, Integer> counts = TestUtil.sample(algorithm, SAMPLES);
+        TestUtil.assertShare(counts, "EP0", 3.0 / 6);
+        TestUtil.assertShare(counts, "EP1", 2.0 / 6);
+        TestUtil.assertShare(counts, "EP2", 1.0 / 6);
+        Assert.assertFalse(counts.containsKey("EP3"));
+    }
+
+    @Test
+    public void testMembershipChanges() {
+
+        List<LBOutboundEndpoint> endpoints = Arrays.asList(createEndpoint("A", 0), createEndpoint("B", 50));
+        LeastConnections algorithm = new LeastConnections(endpoints);
+
+        algorithm.removeLBOutboundEndpoint(endpoints.get(0));
+        algorithm.removeLBOutboundEndpoint(endpoints.get(0));
+        //Only one left, so it is chosen however loaded it is.
+        Assert.assertSame(endpoints.get(1), algorithm.getNextLBOutboundEndpoint(null, null));
+
+        algorithm.addLBOutboundEndpoint(endpoints.get(0));
+        algorithm.addLBOutboundEndpoint(endpoints.get(0));
+        Map<String, Integer> counts = TestUtil.sample(algorithm, SAMPLES);
+        Assert.assertEquals(1, counts.size());
+        Assert.assertTrue(counts.containsKey("A"));
+
+        algorithm.removeLBOutboundEndpoint(endpoints.get(0));
+        algorithm.removeLBOutboundEndpoint(endpoints.get(1));
+        Assert.assertNull(algorithm.getNextLBOutboundEndpoint(null, null));
+    }
+}
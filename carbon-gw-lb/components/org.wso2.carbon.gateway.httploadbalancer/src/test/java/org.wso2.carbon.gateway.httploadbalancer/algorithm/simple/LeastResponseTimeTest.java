@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.algorithm.simple;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wso2.carbon.gateway.httploadbalancer.TestUtil;
+import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit Test for LeastResponseTime Class.
+ */
+public class LeastResponseTimeTest {
+
+    private static final int SAMPLES = 100000;
+
+    // Long enough that samples recorded during a test don't decay.
+    private static final int NO_DECAY = (int) TimeUnit.HOURS.toMillis(1);
+
+    @Test
+    public void testAverageDecaysTowardsNewSamples() throws InterruptedException {
+
+        List<LBOutboundEndpoint> endpoints = TestUtil.createEndpoints("A", "B");
+        LeastResponseTime algorithm = new LeastResponseTime(endpoints, 1, 20);
+
+        Assert.assertEquals(-1, algorithm.getResponseTime(endpoints.get(0)), 0);
+        algorithm.recordResponseTime(endpoints.get(0), 100);
+        Assert.assertEquals(100, algorithm.getResponseTime(endpoints.get(0)), 0);
+
+        //After one decay period, old average carries at most 1/e of its weight.
+        Thread.sleep(25);
+        algorithm.recordResponseTime(endpoints.get(0), 10);
+        double responseTime = algorithm.getResponseTime(endpoints.get(0));
+        Assert.assertTrue("Response time : " + responseTime, responseTime > 10 && responseTime < 10 + 90 / Math.E);
+
+        //Hardly any time elapsed, so a new sample hardly moves it.
+        LeastResponseTime slow = new LeastResponseTime(endpoints, 1, NO_DECAY);
+        slow.recordResponseTime(endpoints.get(1), 100);
+        slow.recordResponseTime(endpoints.get(1), 10);
+        Assert.assertEquals(100, slow.getResponseTime(endpoints.get(1)), 1);
+    }
+
+    @Test
+    public void testProportionalToInverseOfResponseTime() {
+
+        List<LBOutboundEndpoint> endpoints = TestUtil.createEndpoints("A", "B", "C", "D");
+        LeastResponseTime algorithm = new LeastResponseTime(endpoints, 1, NO_DECAY);
+        int[] responseTimes = {2, 2, 8, 8};
+        for (int i = 0; i < responseTimes.length; i++) {
+            algorithm.recordResponseTime(endpoints.get(i), responseTimes[i]);
+        }
+
+        //Weights are 1/2, 1/2, 1/8 and 1/8.
+        Map<String, Integer> counts = TestUtil.sample(algorithm, SAMPLES);
+        TestUtil.assertShare(counts, "A", 0.4);
+        TestUtil.assertShare(counts, "B", 0.4);
+        TestUtil.assertShare(counts, "C", 0.1);
+        TestUtil.assertShare(counts, "D", 0.1);
+    }
+
+    @Test
+    public void testUnknownEndpointGetsMeanWeight() {
+
+        List<LBOutboundEndpoint> endpoints = TestUtil.createEndpoints("A", "B", "C");
+        LeastResponseTime algorithm = new LeastResponseTime(endpoints, 1, NO_DECAY);
+        algorithm.recordResponseTime(endpoints.get(0), 2);
+        algorithm.recordResponseTime(endpoints.get(1), 8);
+
+        //Weights are 1/2, 1/8 and their mean 5/16, summing up to 15/16.
+        Map<String, Integer> counts = TestUtil.sample(algorithm, SAMPLES);
+        TestUtil.assertShare(counts, "A", 8.0 / 15);
+        TestUtil.assertShare(counts, "B", 2.0 / 15);
+        TestUtil.assertShare(counts, "C", 5.0 / 15);
+
+        //Response time before it went down is forgotten once it is back.
+        algorithm.removeLBOutboundEndpoint(endpoints.get(0));
+        algorithm.addLBOutboundEndpoint(endpoints.get(0));
+        Assert.assertEquals(-1, algorithm.getResponseTime(endpoints.get(0)), 0);
+
+        counts = TestUtil.sample(algorithm, SAMPLES);
+        TestUtil.assertShare(counts, "A", 1.0 / 3);
+        TestUtil.assertShare(counts, "B", 1.0 / 3);
+        TestUtil.assertShare(counts, "C", 1.0 / 3);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.algorithm.simple;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wso2.carbon.gateway.httploadbalancer.TestUtil;
+import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
+
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Unit Test for Random Class.
+ */
+public class RandomTest {
+
+    private static final int SAMPLES = 100000;
+
+    @Test
+    public void testUniform() {
+
+        Random algorithm = new Random(TestUtil.createEndpoints("A", "B", "C", "D"));
+        Map<String, Integer> counts = TestUtil.sample(algorithm, SAMPLES);
+        for (String name : new String[]{"A", "B", "C", "D"}) {
+            TestUtil.assertShare(counts, name, 0.25);
+        }
+    }
+
+    @Test
+    public void testMembershipChanges() {
+
+        List<LBOutboundEndpoint> endpoints = TestUtil.createEndpoints("A", "B", "C");
+        Random algorithm = new Random(endpoints);
+
+        //Given list is copied, so changing it later has no effect.
+        endpoints.remove(2);
+        Assert.assertEquals(3, TestUtil.sample(algorithm, SAMPLES).size());
+
+        algorithm.removeLBOutboundEndpoint(endpoints.get(0));
+        algorithm.removeLBOutboundEndpoint(endpoints.get(0));
+        Map<String, Integer> counts = TestUtil.sample(algorithm, SAMPLES);
+        Assert.assertFalse(counts.containsKey("A"));
+        TestUtil.assertShare(counts, "B", 0.5);
+
+        algorithm.addLBOutboundEndpoint(endpoints.get(0));
+        algorithm.addLBOutboundEndpoint(endpoints.get(0));
+        counts = TestUtil.sample(algorithm, SAMPLES);
+        Assert.assertEquals(3, counts.size());
+        TestUtil.assertShare(counts, "A", 1.0 / 3);
+    }
+
+    @Test
+    public void testNoEndpoints() {
+
+        List<LBOutboundEndpoint> endpoints = TestUtil.createEndpoints("A");
+        Random algorithm = new Random(endpoints);
+
+        algorithm.removeLBOutboundEndpoint(endpoints.get(0));
+        Assert.assertNull(algorithm.getNextLBOutboundEndpoint(null, null));
+    }
+}
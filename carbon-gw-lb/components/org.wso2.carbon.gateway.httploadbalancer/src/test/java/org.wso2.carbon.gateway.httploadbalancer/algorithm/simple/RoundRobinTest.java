@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.algorithm.simple;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wso2.carbon.gateway.httploadbalancer.TestUtil;
+import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
+
+import java.util.List;
+
+
+/**
+ * Unit Test for RoundRobin Class.
+ */
+public class RoundRobinTest {
+
+    private static void assertSequence(RoundRobin algorithm, String... names) {
+
+        for (String name : names) {
+            Assert.assertEquals(name, algorithm.getNextLBOutboundEndpoint(null, null).getName());
+        }
+    }
+
+    @Test
+    public void testRotation() {
+
+        RoundRobin algorithm = new RoundRobin(TestUtil.createEndpoints("A", "B", "C"));
+        assertSequence(algorithm, "A", "B", "C", "A", "B", "C", "A");
+    }
+
+    @Test
+    public void testMembershipChanges() {
+
+        List<LBOutboundEndpoint> endpoints = TestUtil.createEndpoints("A", "B", "C");
+        RoundRobin algorithm = new RoundRobin(endpoints);
+
+        algorithm.removeLBOutboundEndpoint(endpoints.get(1));
+        algorithm.removeLBOutboundEndpoint(endpoints.get(1));
+        assertSequence(algorithm, "A", "C", "A", "C");
+
+        //Duplicate add leaves rotation as it is.
+        algorithm.addLBOutboundEndpoint(endpoints.get(0));
+        assertSequence(algorithm, "A", "C");
+
+        //Endpoint that is back to healthy is appended.
+        algorithm.addLBOutboundEndpoint(endpoints.get(1));
+        algorithm.addLBOutboundEndpoint(endpoints.get(1));
+        assertSequence(algorithm, "A", "C", "B", "A", "C", "B");
+    }
+
+    @Test
+    public void testCounterOverflow() {
+
+        //Integer.MAX_VALUE % 3 == 1. Once counter overflows, rotation restarts from first endpoint.
+        RoundRobin algorithm = new RoundRobin(TestUtil.createEndpoints("A", "B", "C"), Integer.MAX_VALUE - 1);
+        assertSequence(algorithm, "A", "B", "A", "B", "C", "A");
+    }
+
+    @Test
+    public void testNoEndpoints() {
+
+        List<LBOutboundEndpoint> endpoints = TestUtil.createEndpoints("A");
+        RoundRobin algorithm = new RoundRobin(endpoints);
+
+        algorithm.removeLBOutboundEndpoint(endpoints.get(0));
+        Assert.assertNull(algorithm.getNextLBOutboundEndpoint(null, null));
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.algorithm.simple;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wso2.carbon.gateway.httploadbalancer.TestUtil;
+import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
+import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * Unit Test for StrictClientIPHashing Class.
+ */
+public class StrictClientIPHashingTest {
+
+    private static final int CLIENTS = 10000;
+
+    private final List<Runnable> pendingRebuilds = new ArrayList<>();
+    private final Executor queuingExecutor = pendingRebuilds::add;
+
+    private static List<LBOutboundEndpoint> createEndpoints(int count) {
+
+        List<LBOutboundEndpoint> endpoints = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            endpoints.add(TestUtil.createEndpoint("EP" + i, "http://10.0.0." + i + ":8080/"));
+        }
+        return endpoints;
+    }
+
+    private static String clientIP(int i) {
+
+        return "192.168." + ((i >>> 8) & 0xff) + "." + (i & 0xff);
+    }
+
+    private static String[] lookup(StrictClientIPHashing hashing) {
+
+        String[] result = new String[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            result[i] = hashing.getOutboundEndpointName(clientIP(i));
+        }
+        return result;
+    }
+
+    private static int moved(String[] before, String[] after, String removed) {
+
+        int moved = 0;
+        for (int i = 0; i < CLIENTS; i++) {
+            Assert.assertFalse(after[i].equals(removed));
+            if (!before[i].equals(removed) && !before[i].equals(after[i])) {
+                moved++;
+            }
+        }
+        return moved;
+    }
+
+    private static StrictClientIPHashing createHashing(List<LBOutboundEndpoint> endpoints, String hashingMethod,
+                                                       Executor executor) {
+
+        return new StrictClientIPHashing(endpoints, hashingMethod, LoadBalancerConstants.DEFAULT_VIRTUAL_NODES,
+                LoadBalancerConstants.DEFAULT_BOUNDED_LOAD_FACTOR, executor);
+    }
+
+    private void runPendingRebuilds() {
+
+        List<Runnable> rebuilds = new ArrayList<>(pendingRebuilds);
+        pendingRebuilds.clear();
+        rebuilds.forEach(Runnable::run);
+    }
+
+    private static void testRemoveAndAdd(String hashingMethod) {
+
+        List<LBOutboundEndpoint> endpoints = createEndpoints(4);
+        StrictClientIPHashing hashing = createHashing(endpoints, hashingMethod, Runnable::run);
+
+        String[] before = lookup(hashing);
+
+        hashing.removeLBOutboundEndpoint(endpoints.get(1));
+        int moved = moved(before, lookup(hashing), "EP2");
+        //Ring doesn't move other clients at all. Maglev moves a few of them.
+        Assert.assertTrue(hashingMethod + " moved : " + moved, moved < CLIENTS / 100);
+
+        hashing.addLBOutboundEndpoint(endpoints.get(1));
+        Assert.assertArrayEquals(before, lookup(hashing));
+    }
+
+    @Test
+    public void testRemoveAndAddWithConsistentHash() {
+
+        testRemoveAndAdd(LoadBalancerConstants.CONSISTENT_HASHING);
+    }
+
+    @Test
+    public void testRemoveAndAddWithMaglev() {
+
+        testRemoveAndAdd(LoadBalancerConstants.MAGLEV_HASHING);
+    }
+
+    private void testRemovedEndpointIsNeverChosenBeforeRebuild(String hashingMethod) {
+
+        List<LBOutboundEndpoint> endpoints = createEndpoints(5);
+        StrictClientIPHashing hashing = createHashing(endpoints, hashingMethod, queuingExecutor);
+        String[] before = lookup(hashing);
+
+        hashing.removeLBOutboundEndpoint(endpoints.get(2));
+        Assert.assertEquals(1, pendingRebuilds.size());
+
+        //Previous hash, with removed endpoint skipped. Others keep their clients.
+        Assert.assertEquals(0, moved(before, lookup(hashing), "EP3"));
+
+        runPendingRebuilds();
+        Assert.assertTrue(moved(before, lookup(hashing), "EP3") < CLIENTS / 100);
+    }
+
+    @Test
+    public void testRemovedEndpointIsNeverChosenBeforeRebuildWithConsistentHash() {
+
+        testRemovedEndpointIsNeverChosenBeforeRebuild(LoadBalancerConstants.CONSISTENT_HASHING);
+    }
+
+    @Test
+    public void testRemovedEndpointIsNeverChosenBeforeRebuildWithMaglev() {
+
+        testRemovedEndpointIsNeverChosenBeforeRebuild(LoadBalancerConstants.MAGLEV_HASHING);
+    }
+
+    @Test
+    public void testAddedEndpointGetsClientsAfterRebuild() {
+
+        List<LBOutboundEndpoint> endpoints = createEndpoints(6);
+        StrictClientIPHashing hashing = createHashing(endpoints.subList(0, 4),
+                LoadBalancerConstants.MAGLEV_HASHING, queuingExecutor);
+
+        hashing.addLBOutboundEndpoint(endpoints.get(4));
+        //Changes are coalesced into a single rebuild.
+        hashing.addLBOutboundEndpoint(endpoints.get(5));
+        Assert.assertEquals(1, pendingRebuilds.size());
+
+        Set<String> chosen = new HashSet<>(Arrays.asList(lookup(hashing)));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("EP1", "EP2", "EP3", "EP4")), chosen);
+
+        runPendingRebuilds();
+        Assert.assertEquals(6, new HashSet<>(Arrays.asList(lookup(hashing))).size());
+    }
+
+    @Test
+    public void testEndpointAddedAfterAllWereRemovedIsChosenBeforeRebuild() {
+
+        List<LBOutboundEndpoint> endpoints = createEndpoints(3);
+        StrictClientIPHashing hashing = createHashing(endpoints.subList(0, 2),
+                LoadBalancerConstants.CONSISTENT_HASHING, queuingExecutor);
+
+        hashing.removeLBOutboundEndpoint(endpoints.get(0));
+        hashing.removeLBOutboundEndpoint(endpoints.get(1));
+        //Not in previous hash at all.
+        hashing.addLBOutboundEndpoint(endpoints.get(2));
+
+        Assert.assertEquals("EP3", hashing.getOutboundEndpointName("192.168.0.1"));
+        runPendingRebuilds();
+        Assert.assertEquals("EP3", hashing.getOutboundEndpointName("192.168.0.1"));
+    }
+
+    @Test
+    public void testNoEndpoints() {
+
+        List<LBOutboundEndpoint> endpoints = createEndpoints(1);
+        StrictClientIPHashing hashing = new StrictClientIPHashing(endpoints);
+        Assert.assertEquals("EP1", hashing.getOutboundEndpointName("192.168.0.1"));
+
+        hashing.removeLBOutboundEndpoint(endpoints.get(0));
+        Assert.assertNull(hashing.getOutboundEndpointName("192.168.0.1"));
+    }
+
+    /**
+     * Lookups run concurrently with endpoints going unhealthy and back. EP1 stays healthy throughout,
+     * so every lookup must find an endpoint.
+     */
+    @Test
+    public void testLookupsDuringHealthChanges() throws Exception {
+
+        List<LBOutboundEndpoint> endpoints = createEndpoints(4);
+        StrictClientIPHashing hashing = new StrictClientIPHashing(endpoints);
+
+        Set<String> names = new HashSet<>();
+        endpoints.forEach(endpoint -> names.add(endpoint.getName()));
+
+        AtomicBoolean done = new AtomicBoolean(false);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> readers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                readers.add(executor.submit(() -> {
+                    int lookups = 0;
+                    while (!done.get()) {
+                        String name = hashing.getOutboundEndpointName(clientIP(lookups % CLIENTS));
+                        Assert.assertTrue(String.valueOf(name), names.contains(name));
+                        lookups++;
+                    }
+                    return lookups;
+                }));
+            }
+
+            for (int round = 0; round < 200; round++) {
+                LBOutboundEndpoint endpoint = endpoints.get(1 + round % 3);
+                hashing.removeLBOutboundEndpoint(endpoint);
+                hashing.addLBOutboundEndpoint(endpoint);
+            }
+            done.set(true);
+
+            for (Future<Integer> reader : readers) {
+                Assert.assertTrue(reader.get(30, TimeUnit.SECONDS) > 0);
+            }
+        } finally {
+            done.set(true);
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.algorithm.weighted;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wso2.carbon.gateway.httploadbalancer.TestUtil;
+import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Unit Test for WeightedRandom Class.
+ */
+public class WeightedRandomTest {
+
+    private static final int SAMPLES = 200000;
+
+    @Test
+    public void testProportionalToWeights() {
+
+        WeightedRandom algorithm = new WeightedRandom(TestUtil.createEndpoints("A", "B", "C", "D"),
+                Arrays.asList(5, 3, 1, 1));
+
+        Map<String, Integer> counts = TestUtil.sample(algorithm, SAMPLES);
+        TestUtil.assertShare(counts, "A", 0.5);
+        TestUtil.assertShare(counts, "B", 0.3);
+        TestUtil.assertShare(counts, "C", 0.1);
+        TestUtil.assertShare(counts, "D", 0.1);
+    }
+
+    @Test
+    public void testTableIsRebuiltOnChanges() {
+
+        List<LBOutboundEndpoint> endpoints = TestUtil.createEndpoints("A", "B", "C");
+        WeightedRandom algorithm = new WeightedRandom(endpoints, Arrays.asList(2, 1, 1));
+
+        algorithm.removeLBOutboundEndpoint(endpoints.get(0));
+        Map<String, Integer> counts = TestUtil.sample(algorithm, SAMPLES);
+        Assert.assertFalse(counts.containsKey("A"));
+        TestUtil.assertShare(counts, "B", 0.5);
+
+        algorithm.addLBOutboundEndpoint(endpoints.get(0));
+        algorithm.setWeight(endpoints.get(2), 0);
+        counts = TestUtil.sample(algorithm, SAMPLES);
+        Assert.assertFalse(counts.containsKey("C"));
+        TestUtil.assertShare(counts, "A", 2.0 / 3);
+    }
+
+    @Test
+    public void testNoEndpoints() {
+
+        List<LBOutboundEndpoint> endpoints = TestUtil.createEndpoints("A");
+        WeightedRandom algorithm = new WeightedRandom(endpoints, Arrays.asList(1));
+
+        algorithm.removeLBOutboundEndpoint(endpoints.get(0));
+        Assert.assertNull(algorithm.getNextLBOutboundEndpoint(null, null));
+    }
+}
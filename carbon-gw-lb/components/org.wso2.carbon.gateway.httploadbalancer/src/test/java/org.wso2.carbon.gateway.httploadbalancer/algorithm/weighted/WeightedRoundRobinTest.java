@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.algorithm.weighted;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wso2.carbon.gateway.httploadbalancer.TestUtil;
+import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
+
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Unit Test for WeightedRoundRobin Class.
+ */
+public class WeightedRoundRobinTest {
+
+    private static String pick(WeightedRoundRobin algorithm, int count) {
+
+        StringBuilder sequence = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sequence.append(algorithm.getNextLBOutboundEndpoint(null, null).getName());
+        }
+        return sequence.toString();
+    }
+
+    @Test
+    public void testPicksAreInterleaved() {
+
+        WeightedRoundRobin algorithm = new WeightedRoundRobin(TestUtil.createEndpoints("A", "B", "C"),
+                Arrays.asList(5, 1, 1));
+
+        //Same sequence as nginx. A never gets more than 2 consecutive requests.
+        Assert.assertEquals("AABACAA", pick(algorithm, 7));
+        Assert.assertEquals("AABACAA", pick(algorithm, 7));
+    }
+
+    @Test
+    public void testDistributionIsExactPerRound() {
+
+        WeightedRoundRobin algorithm = new WeightedRoundRobin(TestUtil.createEndpoints("A", "B", "C", "D"),
+                Arrays.asList(7, 3, 2, 1));
+
+        //Every window of (sum of weights) picks contains each endpoint exactly weight times.
+        for (int round = 0; round < 100; round++) {
+
+            String sequence = pick(algorithm, 13);
+            Assert.assertEquals(7, sequence.chars().filter(c -> c == 'A').count());
+            Assert.assertEquals(3, sequence.chars().filter(c -> c == 'B').count());
+            Assert.assertEquals(2, sequence.chars().filter(c -> c == 'C').count());
+            Assert.assertEquals(1, sequence.chars().filter(c -> c == 'D').count());
+        }
+    }
+
+    @Test
+    public void testUnHealthyEndpointIsSkipped() {
+
+        List<LBOutboundEndpoint> endpoints = TestUtil.createEndpoints("A", "B", "C");
+        WeightedRoundRobin algorithm = new WeightedRoundRobin(endpoints, Arrays.asList(2, 1, 1));
+
+        algorithm.removeLBOutboundEndpoint(endpoints.get(0));
+        Assert.assertFalse(pick(algorithm, 20).contains("A"));
+
+        algorithm.addLBOutboundEndpoint(endpoints.get(0));
+        Assert.assertTrue(pick(algorithm, 4).contains("A"));
+    }
+
+    @Test
+    public void testLiveWeightChange() {
+
+        List<LBOutboundEndpoint> endpoints = TestUtil.createEndpoints("A", "B");
+        WeightedRoundRobin algorithm = new WeightedRoundRobin(endpoints, Arrays.asList(1, 1));
+
+        //Draining.
+        algorithm.setWeight(endpoints.get(0), 0);
+        Assert.assertEquals("BBBB", pick(algorithm, 4));
+
+        //Ramped up by 1 per pick, after which it is exactly 3:1.
+        algorithm.setWeight(endpoints.get(0), 3);
+        Assert.assertEquals(3, algorithm.getWeight(endpoints.get(0)));
+        pick(algorithm, 8);
+
+        String sequence = pick(algorithm, 400);
+        Assert.assertEquals(300, sequence.chars().filter(c -> c == 'A').count());
+    }
+
+    @Test
+    public void testNoEndpoints() {
+
+        List<LBOutboundEndpoint> endpoints = TestUtil.createEndpoints("A");
+        WeightedRoundRobin algorithm = new WeightedRoundRobin(endpoints, Arrays.asList(1));
+
+        algorithm.removeLBOutboundEndpoint(endpoints.get(0));
+        Assert.assertNull(algorithm.getNextLBOutboundEndpoint(null, null));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit Test for ClientIPCache Class.
+ */
+public class ClientIPCacheTest {
+
+    private static ClientIP clientIP(int i) {
+
+        return new ClientIP(0, 0x0000ffff00000000L | i);
+    }
+
+    @Test
+    public void testGetAndPut() {
+
+        ClientIPCache<String> cache = new ClientIPCache<>(16);
+        Assert.assertEquals(16, cache.capacity());
+
+        Assert.assertNull(cache.get(clientIP(1)));
+        cache.put(clientIP(1), "EP1");
+        Assert.assertEquals("EP1", cache.get(clientIP(1)));
+        Assert.assertNull(cache.get(clientIP(2)));
+
+        cache.put(clientIP(1), "EP2");
+        Assert.assertEquals("EP2", cache.get(clientIP(1)));
+    }
+
+    @Test
+    public void testIsBounded() {
+
+        ClientIPCache<Integer> cache = new ClientIPCache<>(100);
+        Assert.assertEquals(128, cache.capacity());
+
+        for (int i = 0; i < 10000; i++) {
+            cache.put(clientIP(i), i);
+        }
+
+        int cached = 0;
+        for (int i = 0; i < 10000; i++) {
+            Integer value = cache.get(clientIP(i));
+            if (value != null) {
+                Assert.assertEquals(i, value.intValue());
+                cached++;
+            }
+        }
+        Assert.assertTrue(cached > 0 && cached <= cache.capacity());
+    }
+
+    /**
+     * A client that keeps coming back must survive a scan of one time clients.
+     */
+    @Test
+    public void testRecentlyUsedEntriesAreRetained() {
+
+        ClientIPCache<Integer> cache = new ClientIPCache<>(64);
+        ClientIP frequent = new ClientIP(0x20010db800000000L, 1);
+        cache.put(frequent, -1);
+
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertEquals(Integer.valueOf(-1), cache.get(frequent));
+            cache.put(clientIP(i), i);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+
+
+/**
+ * Unit Test for ClientIP Class.
+ */
+public class ClientIPTest {
+
+    /**
+     * @return address parsed by InetAddress, as ClientIP.
+     */
+    private static ClientIP expected(String address) throws Exception {
+
+        byte[] bytes = InetAddress.getByName(address).getAddress();
+        if (bytes.length == 4) {
+            return new ClientIP(0, 0x0000ffff00000000L | (ByteBuffer.wrap(bytes).getInt() & 0xffffffffL));
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new ClientIP(buffer.getLong(), buffer.getLong());
+    }
+
+    @Test
+    public void testValidAddresses() throws Exception {
+
+        String[] addresses = {"1.1.1.1", "0.0.0.0", "255.255.255.255", "192.168.72.3", "10.0.10.100",
+                "2001:0db8:0a0b:12f0:0000:0000:0000:0001", "2001:db8:a0b:12f0::1", "2001:DB8:a0b:12f0::1",
+                "::", "::1", "1::", "fe80::1:2", "1:2:3:4:5:6:7::", "::2:3:4:5:6:7:8", "1:2:3:4:5:6:7:8",
+                "::ffff:192.168.1.1", "64:ff9b::192.0.2.33", "1:2:3:4:5:6:1.2.3.4",
+                "ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"};
+
+        for (String address : addresses) {
+            Assert.assertEquals(address, expected(address), ClientIP.parse(address));
+        }
+    }
+
+    @Test
+    public void testInvalidAddresses() {
+
+        String[] addresses = {"", "192.132.43", "1.1.1.1.", "257.23.1.193", " 255.23.1.193", "1.1.1.01", "1..1.1",
+                "1.1.1.1.1", "a.b.c.d", "localhost", ":", ":::", "1:2", "1::2::3", ":1:2:3:4:5:6:7",
+                "1:2:3:4:5:6:7:", "12345::", "1:2:3:4:5:6:7:8:9", "1:2:3:4:5:6:7:8::", "1:2:3:4:5:6:7::8",
+                "::ffff:1.2.3", "1.2.3.4::", "::1.2.3.4:5", "fe80::1%eth0", "[::1]", "g::1", "1.1.1.1:8080"};
+
+        for (String address : addresses) {
+            Assert.assertNull(address, ClientIP.parse(address));
+        }
+        Assert.assertNull(ClientIP.parse(null));
+    }
+
+    @Test
+    public void testIPv4IsMapped() {
+
+        ClientIP clientIP = ClientIP.parse("192.168.1.1");
+        Assert.assertTrue(clientIP.isIPv4());
+        Assert.assertEquals(clientIP, ClientIP.parse("::ffff:192.168.1.1"));
+        Assert.assertEquals(clientIP, ClientIP.parse("::ffff:c0a8:101"));
+        Assert.assertFalse(ClientIP.parse("::1").isIPv4());
+    }
+
+    @Test
+    public void testToString() {
+
+        Assert.assertEquals("192.168.1.1", ClientIP.parse("192.168.1.1").toString());
+        Assert.assertEquals("0.0.0.0", ClientIP.parse("0.0.0.0").toString());
+        Assert.assertEquals("2001:db8:0:0:0:0:0:1", ClientIP.parse("2001:DB8::1").toString());
+    }
+
+    @Test
+    public void testFrom() {
+
+        CarbonMessage carbonMessage = new DefaultCarbonMessage();
+
+        Assert.assertNull(ClientIP.from(carbonMessage));
+
+        carbonMessage.setHeader("Remote-Addr", "90.89.88.87");
+        Assert.assertEquals(ClientIP.parse("90.89.88.87"), ClientIP.from(carbonMessage));
+
+        carbonMessage.setHeader("Client-IP", "192.165.87.23");
+        Assert.assertEquals(ClientIP.parse("192.165.87.23"), ClientIP.from(carbonMessage));
+
+        carbonMessage.setHeader("X-Forwarded-For", " 10.11.12.13 , 10.2.53.8, 10.2.53.9");
+        Assert.assertEquals(ClientIP.parse("10.11.12.13"), ClientIP.from(carbonMessage));
+
+        carbonMessage.setHeader("X-Forwarded-For", "2001:db8::1");
+        Assert.assertEquals(ClientIP.parse("2001:db8::1"), ClientIP.from(carbonMessage));
+
+        //X-Forwarded-For takes precedence even if it is invalid.
+        carbonMessage.setHeader("X-Forwarded-For", "unknown, 10.2.53.8");
+        Assert.assertNull(ClientIP.from(carbonMessage));
+    }
+}
@@ -98,4 +98,19 @@ public class CommonUtilTest {
 
 
     }
+
+    @Test
+    public void testAddLBCookieToExistingCookie() {
+
+        Assert.assertEquals("---LB_COOKIE:EP1---", CommonUtil.getLBCookieFragment("EP1"));
+        Assert.assertEquals("LB_COOKIE=EP1; HttpOnly; secure", CommonUtil.getSessionCookie("EP1"));
+
+        Assert.assertEquals("JSESSIONID=abc---LB_COOKIE:EP1---",
+                CommonUtil.addLBCookieToExistingCookie("JSESSIONID=abc", "EP1"));
+        Assert.assertEquals("JSESSIONID=abc---LB_COOKIE:EP1---; Path=/; HttpOnly",
+                CommonUtil.addLBCookieToExistingCookie("JSESSIONID=abc; Path=/; HttpOnly", "EP1"));
+        Assert.assertEquals(CommonUtil.addLBCookieToExistingCookie("JSESSIONID=abc; Path=/", "EP1"),
+                CommonUtil.addLBCookieFragmentToExistingCookie("JSESSIONID=abc; Path=/",
+                        CommonUtil.getLBCookieFragment("EP1")));
+    }
 }
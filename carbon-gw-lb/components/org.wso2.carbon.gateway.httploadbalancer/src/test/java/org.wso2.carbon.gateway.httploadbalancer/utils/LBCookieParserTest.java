@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit Test for LBCookieParser Class.
+ */
+public class LBCookieParserTest {
+
+    private static String value(String cookieHeader, boolean embeddedAllowed) {
+
+        long location = LBCookieParser.locateLBCookie(cookieHeader, embeddedAllowed);
+        return location == LBCookieParser.NOT_FOUND ? null : LBCookieParser.getLBCookieValue(cookieHeader, location);
+    }
+
+    private static String remove(String cookieHeader, boolean embeddedAllowed) {
+
+        return LBCookieParser.removeLBCookie(cookieHeader,
+                LBCookieParser.locateLBCookie(cookieHeader, embeddedAllowed));
+    }
+
+    /**
+     * Browser sends back only name=value part of the cookie produced by CommonUtil.
+     */
+    private static String nameValue(String setCookie) {
+
+        return setCookie.contains(";") ? setCookie.substring(0, setCookie.indexOf(";")) : setCookie;
+    }
+
+    @Test
+    public void testEmbeddedCookie() {
+
+        //Cookie with multiple fields from BE.
+        String cookie = nameValue(CommonUtil.addLBCookieToExistingCookie(
+                "JSESSIONID=ghsgsdgsg; Path=/; HttpOnly", "a1b2c3"));
+        Assert.assertEquals("JSESSIONID=ghsgsdgsg---LB_COOKIE:a1b2c3---", cookie);
+        Assert.assertEquals("a1b2c3", value(cookie, true));
+        Assert.assertEquals("JSESSIONID=ghsgsdgsg", remove(cookie, true));
+
+        //Cookie with a single field from BE.
+        cookie = CommonUtil.addLBCookieToExistingCookie("JSESSIONID=ghsgsdgsg", "a1b2c3");
+        Assert.assertEquals("a1b2c3", value(cookie, true));
+        Assert.assertEquals("JSESSIONID=ghsgsdgsg", remove(cookie, true));
+
+        //Other cookies have to be retained.
+        cookie = "theme=dark; JSESSIONID=ghsgsdgsg---LB_COOKIE:a1b2c3---; lang=en";
+        Assert.assertEquals("a1b2c3", value(cookie, true));
+        Assert.assertEquals("theme=dark; JSESSIONID=ghsgsdgsg; lang=en", remove(cookie, true));
+
+        //Embedded format is not considered for LB_COOKIE persistence.
+        Assert.assertEquals(null, value(cookie, false));
+
+        //Unterminated LB fragment.
+        Assert.assertEquals(null, value("JSESSIONID=ghsgsdgsg---LB_COOKIE:a1b2c3; lang=en", true));
+    }
+
+    @Test
+    public void testSessionCookie() {
+
+        String cookie = nameValue(CommonUtil.getSessionCookie("a1b2c3"));
+        Assert.assertEquals("LB_COOKIE=a1b2c3", cookie);
+        Assert.assertEquals("a1b2c3", value(cookie, false));
+        Assert.assertEquals("a1b2c3", value(cookie, true));
+        Assert.assertEquals(null, remove(cookie, false));
+
+        Assert.assertEquals("a1b2c3", value("theme=dark; LB_COOKIE=a1b2c3; lang=en", false));
+        Assert.assertEquals("theme=dark; lang=en", remove("theme=dark; LB_COOKIE=a1b2c3; lang=en", false));
+        Assert.assertEquals("lang=en", remove("LB_COOKIE=a1b2c3; lang=en", false));
+        Assert.assertEquals("theme=dark", remove("theme=dark; LB_COOKIE=a1b2c3", false));
+        Assert.assertEquals("theme=dark", remove("theme=dark ;LB_COOKIE=a1b2c3 ", false));
+
+        //Cookie name has to match exactly.
+        Assert.assertEquals(null, value("MY_LB_COOKIE=a1b2c3", false));
+        Assert.assertEquals("a1b2c3", value("MY_LB_COOKIE=x; LB_COOKIE=a1b2c3", false));
+    }
+
+    @Test
+    public void testEmbeddedCookieTakesPrecedence() {
+
+        String cookie = "LB_COOKIE=d4e5f6; JSESSIONID=ghsgsdgsg---LB_COOKIE:a1b2c3---";
+        Assert.assertEquals("a1b2c3", value(cookie, true));
+        Assert.assertEquals("d4e5f6", value(cookie, false));
+    }
+
+    @Test
+    public void testNoLBCookie() {
+
+        Assert.assertEquals(LBCookieParser.NOT_FOUND, LBCookieParser.locateLBCookie(null, true));
+        Assert.assertEquals(LBCookieParser.NOT_FOUND, LBCookieParser.locateLBCookie("", true));
+        Assert.assertEquals(LBCookieParser.NOT_FOUND, LBCookieParser.locateLBCookie("JSESSIONID=ghsgsdgsg", true));
+        Assert.assertEquals(LBCookieParser.NOT_FOUND, LBCookieParser.locateLBCookie("theme=dark; lang=en", false));
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.accesslog;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+
+/**
+ * Unit Test for AccessLogWriter Class.
+ */
+public class AccessLogWriterTest {
+
+    @Test
+    public void testDrainWritesEntriesInOrder() {
+
+        List<String> lines = new ArrayList<>();
+        AccessLogWriter writer = new AccessLogWriter(4, lines::add);
+
+        writer.append(1000L, "lb", AccessLog.RESPONSE, 0, "EP1", 12);
+        writer.append(1001L, "lb", AccessLog.TIMEOUT, 504, "EP2", 5005);
+        writer.append(1002L, "lb", AccessLog.NO_ENDPOINT, 503, null, -1);
+
+        Assert.assertEquals(3, writer.drain());
+        Assert.assertEquals("1000 lb RESPONSE 0 EP1 12ms", lines.get(0));
+        Assert.assertEquals("1001 lb TIMEOUT 504 EP2 5005ms", lines.get(1));
+        Assert.assertEquals("1002 lb NO_ENDPOINT 503 - -", lines.get(2));
+
+        Assert.assertEquals(0, writer.drain());
+    }
+
+    @Test
+    public void testEntriesBeyondBufferAreDropped() {
+
+        List<String> lines = new ArrayList<>();
+        AccessLogWriter writer = new AccessLogWriter(4, lines::add);
+
+        for (int i = 0; i < 6; i++) {
+            writer.append(i, "lb", AccessLog.RESPONSE, 0, "EP" + i, i);
+        }
+
+        Assert.assertEquals(2, writer.getDroppedCount());
+        Assert.assertEquals(4, writer.drain());
+        Assert.assertEquals("3 lb RESPONSE 0 EP3 3ms", lines.get(3));
+
+        //Slots are reusable once drained.
+        writer.append(7, "lb", AccessLog.RESPONSE, 0, "EP7", 7);
+        Assert.assertEquals(1, writer.drain());
+        Assert.assertEquals("7 lb RESPONSE 0 EP7 7ms", lines.get(4));
+        Assert.assertEquals(2, writer.getDroppedCount());
+    }
+
+    @Test
+    public void testConcurrentAppends() throws InterruptedException {
+
+        final int threads = 4;
+        final int perThread = 256;
+
+        List<String> lines = Collections.synchronizedList(new ArrayList<>());
+        AccessLogWriter writer = new AccessLogWriter(threads * perThread, lines::add);
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final String endpoint = "EP" + t;
+            Thread producer = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    writer.append(i, "lb", AccessLog.RESPONSE, 0, endpoint, i);
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        Assert.assertEquals(threads * perThread, writer.drain());
+        Assert.assertEquals(0, writer.getDroppedCount());
+        Assert.assertEquals(threads * perThread, new HashSet<>(lines).size());
+    }
+
+    @Test
+    public void testSampling() {
+
+        AccessLog never = new AccessLog("lb", 0);
+        AccessLog always = new AccessLog("lb", 1);
+
+        Set<Boolean> sampled = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            Assert.assertFalse(never.isSampled());
+            Assert.assertTrue(always.isSampled());
+            sampled.add(new AccessLog("lb", 2).isSampled());
+        }
+        //1 in 2 should be sampled at least once and skipped at least once in 100 tries.
+        Assert.assertEquals(2, sampled.size());
+    }
+
+    @Test
+    public void testServerErrorsAreAlwaysSampled() {
+
+        AccessLog never = new AccessLog("lb", 0);
+
+        Assert.assertFalse(never.isSampled(200));
+        Assert.assertFalse(never.isSampled(404));
+        Assert.assertTrue(never.isSampled(500));
+        Assert.assertTrue(never.isSampled(503));
+    }
+}
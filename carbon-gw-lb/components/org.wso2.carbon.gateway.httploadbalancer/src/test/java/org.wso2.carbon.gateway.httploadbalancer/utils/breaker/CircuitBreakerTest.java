@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.breaker;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit Test for CircuitBreaker Class.
+ */
+public class CircuitBreakerTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // 50% failures or 50% of calls >= 100 ms, over at least 10 calls in 1 s. Open for 500 ms, 3 trials.
+    private static final CircuitBreakerConfig CONFIG = new CircuitBreakerConfig(50, 50, 100, 10, 1000, 500, 3);
+
+    private static void succeed(CircuitBreaker circuitBreaker, int calls, long atNanos) {
+
+        for (int i = 0; i < calls; i++) {
+            circuitBreaker.onSuccess(atNanos - MS, atNanos);
+        }
+    }
+
+    private static void fail(CircuitBreaker circuitBreaker, int calls, long atNanos) {
+
+        for (int i = 0; i < calls; i++) {
+            circuitBreaker.onFailure(atNanos - MS, atNanos);
+        }
+    }
+
+    @Test
+    public void testOpensOnFailureRate() {
+
+        CircuitBreaker circuitBreaker = new CircuitBreaker("EP1", CONFIG, 0);
+
+        succeed(circuitBreaker, 6, 10 * MS);
+        fail(circuitBreaker, 3, 20 * MS);
+        //Below minimum calls.
+        Assert.assertEquals(CircuitBreaker.CLOSED, circuitBreaker.getState());
+
+        fail(circuitBreaker, 3, 30 * MS);
+        Assert.assertEquals(CircuitBreaker.OPEN, circuitBreaker.getState());
+        Assert.assertFalse(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    public void testOpensOnSlowCallRate() {
+
+        CircuitBreaker circuitBreaker = new CircuitBreaker("EP1", CONFIG, 0);
+
+        succeed(circuitBreaker, 5, 10 * MS);
+        for (int i = 0; i < 5; i++) {
+            circuitBreaker.onResponse(20 * MS, 200 * MS, 200);
+        }
+        Assert.assertEquals(CircuitBreaker.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void testOldCallsLeaveWindow() {
+
+        CircuitBreaker circuitBreaker = new CircuitBreaker("EP1", CONFIG, 0);
+
+        fail(circuitBreaker, 9, 10 * MS);
+        succeed(circuitBreaker, 20, 2000 * MS);
+        //Failures of first second are no longer in window.
+        fail(circuitBreaker, 5, 2100 * MS);
+        Assert.assertEquals(CircuitBreaker.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void testOnOpen() {
+
+        AtomicInteger opened = new AtomicInteger();
+        CircuitBreaker circuitBreaker = new CircuitBreaker("EP1", CONFIG, opened::incrementAndGet, 0);
+
+        fail(circuitBreaker, 10, 10 * MS);
+        //Failures after circuit opened don't open it again.
+        fail(circuitBreaker, 10, 20 * MS);
+        Assert.assertEquals(1, opened.get());
+
+        circuitBreaker.onTick(600 * MS, 1000);
+        Assert.assertEquals(CircuitBreaker.HALF_OPEN, circuitBreaker.getState());
+        Assert.assertEquals(1, opened.get());
+
+        //Unanswered trials open it again.
+        circuitBreaker.onTick(1700 * MS, 1000);
+        Assert.assertEquals(2, opened.get());
+    }
+
+    @Test
+    public void testHalfOpenTrialsClose() {
+
+        CircuitBreaker circuitBreaker = new CircuitBreaker("EP1", CONFIG, 0);
+        fail(circuitBreaker, 10, 10 * MS);
+        Assert.assertTrue(circuitBreaker.isOpen());
+
+        circuitBreaker.onTick(400 * MS, 1000);
+        Assert.assertEquals(CircuitBreaker.OPEN, circuitBreaker.getState());
+
+        circuitBreaker.onTick(600 * MS, 1000);
+        Assert.assertEquals(CircuitBreaker.HALF_OPEN, circuitBreaker.getState());
+
+        //Only three trials are allowed.
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+        Assert.assertFalse(circuitBreaker.tryAcquire());
+
+        //Late success of a request sent before circuit opened doesn't count.
+        circuitBreaker.onSuccess(5 * MS, 610 * MS);
+        succeed(circuitBreaker, 2, 620 * MS);
+        Assert.assertEquals(CircuitBreaker.HALF_OPEN, circuitBreaker.getState());
+
+        succeed(circuitBreaker, 1, 630 * MS);
+        Assert.assertEquals(CircuitBreaker.CLOSED, circuitBreaker.getState());
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+
+        //Window is cleared on closing.
+        fail(circuitBreaker, 9, 640 * MS);
+        Assert.assertEquals(CircuitBreaker.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void testFailedTrialOpensAgain() {
+
+        CircuitBreaker circuitBreaker = new CircuitBreaker("EP1", CONFIG, 0);
+        fail(circuitBreaker, 10, 10 * MS);
+        circuitBreaker.onTick(600 * MS, 1000);
+
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.onResponse(610 * MS, 620 * MS, 503);
+        Assert.assertEquals(CircuitBreaker.OPEN, circuitBreaker.getState());
+
+        //Lost trials don't keep it HALF_OPEN forever.
+        circuitBreaker.onTick(1200 * MS, 1000);
+        Assert.assertEquals(CircuitBreaker.HALF_OPEN, circuitBreaker.getState());
+        circuitBreaker.onTick(2300 * MS, 1000);
+        Assert.assertEquals(CircuitBreaker.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void testReleasedTrialPermitCanBeTakenAgain() {
+
+        CircuitBreaker circuitBreaker = new CircuitBreaker("EP1", CONFIG, 0);
+        //No effect while CLOSED.
+        circuitBreaker.release();
+
+        fail(circuitBreaker, 10, 10 * MS);
+        circuitBreaker.onTick(600 * MS, 1000);
+
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+        Assert.assertFalse(circuitBreaker.tryAcquire());
+
+        //eg: request rejected as callback pool is full.
+        circuitBreaker.release();
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+        Assert.assertFalse(circuitBreaker.tryAcquire());
+
+        //Never more than configured trials.
+        for (int i = 0; i < 5; i++) {
+            circuitBreaker.release();
+        }
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+        Assert.assertFalse(circuitBreaker.tryAcquire());
+        Assert.assertEquals(CircuitBreaker.HALF_OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void testDisabled() {
+
+        CircuitBreaker circuitBreaker = new CircuitBreaker("EP1", CircuitBreakerConfig.DISABLED, 0);
+        fail(circuitBreaker, 1000, 10 * MS);
+        Assert.assertEquals(CircuitBreaker.CLOSED, circuitBreaker.getState());
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+    }
+}
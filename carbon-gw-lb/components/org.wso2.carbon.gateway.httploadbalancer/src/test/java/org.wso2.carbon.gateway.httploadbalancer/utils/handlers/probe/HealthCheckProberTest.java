@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.handlers.probe;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit Test for HealthCheckProber Class.
+ * <p>
+ * Probes are made to servers on loopback interface.
+ */
+public class HealthCheckProberTest {
+
+    private static final HttpProbeConfig HTTP_CONFIG = new HttpProbeConfig("/health", 200, 299, "UP");
+
+    // \r\n\r\n
+    private static final int END_OF_HEADERS = 0x0D0A0D0A;
+
+    private final HealthCheckProber prober = HealthCheckProber.getInstance();
+
+    private static ServerSocket openServer() throws Exception {
+
+        return new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    }
+
+    private static InetSocketAddress addressOf(ServerSocket server) {
+
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort());
+    }
+
+    private static ProbeResult await(CompletableFuture<ProbeResult> result) throws Exception {
+
+        return result.get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Answers each request on one accepted connection with given response, till connection is closed.
+     */
+    private static void serve(ServerSocket server, String response) {
+
+        Thread thread = new Thread(() -> {
+            try (Socket socket = server.accept()) {
+
+                InputStream in = socket.getInputStream();
+                OutputStream out = socket.getOutputStream();
+                //Last four bytes read.
+                int last = 0;
+                int read;
+                //Requests have no body, so each one ends with an empty line.
+                while ((read = in.read()) != -1) {
+                    last = (last << 8) | read;
+                    if (last == END_OF_HEADERS) {
+                        out.write(response.getBytes(StandardCharsets.ISO_8859_1));
+                        out.flush();
+                    }
+                }
+            } catch (Exception e) {
+                //Server is closed by test.
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Test
+    public void testConnectProbe() throws Exception {
+
+        try (ServerSocket server = openServer()) {
+
+            ProbeResult result = await(prober.probeConnect(addressOf(server), 1000));
+            Assert.assertTrue(result.isHealthy());
+            Assert.assertNull(result.getReason());
+        }
+    }
+
+    @Test
+    public void testConnectRefused() throws Exception {
+
+        InetSocketAddress address;
+        try (ServerSocket server = openServer()) {
+            address = addressOf(server);
+        }
+
+        //Nothing listens on this port any more.
+        ProbeResult result = await(prober.probeConnect(address, 1000));
+        Assert.assertFalse(result.isHealthy());
+        Assert.assertTrue(result.isConnectionFailure());
+    }
+
+    @Test
+    public void testUnresolvedAddress() throws Exception {
+
+        ProbeResult result = await(prober.probeConnect(InetSocketAddress.createUnresolved("invalid.host", 80), 1000));
+        Assert.assertFalse(result.isHealthy());
+        Assert.assertTrue(result.isConnectionFailure());
+    }
+
+    @Test
+    public void testHttpProbe() throws Exception {
+
+        try (ServerSocket server = openServer()) {
+
+            serve(server, "HTTP/1.1 200 OK\r\nContent-Length: 9\r\n\r\nstatus:UP");
+            Object connectionKey = new Object();
+
+            ProbeResult result = await(prober.probeHttp(connectionKey, addressOf(server), "localhost",
+                    HTTP_CONFIG, 1000));
+            Assert.assertTrue(result.getReason(), result.isHealthy());
+
+            //Second probe reuses keep-alive connection, server accepts only one.
+            result = await(prober.probeHttp(connectionKey, addressOf(server), "localhost", HTTP_CONFIG, 1000));
+            Assert.assertTrue(result.getReason(), result.isHealthy());
+        }
+    }
+
+    @Test
+    public void testHttpProbeUnexpectedResponse() throws Exception {
+
+        try (ServerSocket server = openServer()) {
+
+            serve(server, "HTTP/1.1 503 Service Unavailable\r\nContent-Length: 0\r\n\r\n");
+
+            ProbeResult result = await(prober.probeHttp(new Object(), addressOf(server), "localhost",
+                    HTTP_CONFIG, 1000));
+            Assert.assertFalse(result.isHealthy());
+            //Endpoint did respond.
+            Assert.assertFalse(result.isConnectionFailure());
+            Assert.assertTrue(result.getReason().contains("503"));
+        }
+    }
+
+    @Test
+    public void testHttpProbeTimeout() throws Exception {
+
+        //Connection is accepted by backlog, but no response is ever sent.
+        try (ServerSocket server = openServer()) {
+
+            long start = System.nanoTime();
+            ProbeResult result = await(prober.probeHttp(new Object(), addressOf(server), "localhost",
+                    HTTP_CONFIG, 200));
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            Assert.assertFalse(result.isHealthy());
+            Assert.assertTrue(result.isConnectionFailure());
+            Assert.assertTrue(result.getReason(), result.getReason().contains("timedOut"));
+            //Not before deadline, allowing for rounding to milli seconds.
+            Assert.assertTrue(elapsed >= 190);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.handlers.probe;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Unit Test for HttpResponseParser Class.
+ */
+public class HttpResponseParserTest {
+
+    private static ByteBuffer bytes(String s) {
+
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void testContentLength() throws Exception {
+
+        HttpResponseParser parser = new HttpResponseParser();
+
+        Assert.assertTrue(parser.parse(bytes("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nOK")));
+        Assert.assertEquals(200, parser.getStatusCode());
+        Assert.assertTrue(parser.isKeepAlive());
+        Assert.assertTrue(parser.bodyContains("OK".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testChunkedAcrossReads() throws Exception {
+
+        HttpResponseParser parser = new HttpResponseParser();
+
+        Assert.assertFalse(parser.parse(bytes("HTTP/1.1 503 Service Unavailable\r\nTransfer-Encoding: chu")));
+        Assert.assertFalse(parser.parse(bytes("nked\r\n\r\n5\r\nhel")));
+        Assert.assertFalse(parser.parse(bytes("lo\r\n6;ext=1\r\n world\r\n0\r\n")));
+        Assert.assertTrue(parser.parse(bytes("\r\n")));
+
+        Assert.assertEquals(503, parser.getStatusCode());
+        Assert.assertTrue(parser.bodyContains("hello world".getBytes(StandardCharsets.UTF_8)));
+        Assert.assertFalse(parser.bodyContains("UP".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testPipelinedResponses() throws Exception {
+
+        HttpResponseParser parser = new HttpResponseParser();
+        ByteBuffer in = bytes("HTTP/1.1 204 No Content\r\n\r\n" +
+                "HTTP/1.1 200 OK\r\nContent-Length: 0\r\nConnection: close\r\n\r\n");
+
+        Assert.assertTrue(parser.parse(in));
+        Assert.assertEquals(204, parser.getStatusCode());
+        Assert.assertTrue(in.hasRemaining());
+
+        parser.reset();
+        Assert.assertTrue(parser.isIdle());
+        Assert.assertTrue(parser.parse(in));
+        Assert.assertEquals(200, parser.getStatusCode());
+        Assert.assertFalse(parser.isKeepAlive());
+        Assert.assertFalse(in.hasRemaining());
+    }
+
+    @Test
+    public void testBodyUntilClose() throws Exception {
+
+        HttpResponseParser parser = new HttpResponseParser();
+
+        Assert.assertFalse(parser.parse(bytes("HTTP/1.0 200 OK\r\n\r\nstatus=UP")));
+        Assert.assertTrue(parser.onEndOfStream());
+        Assert.assertFalse(parser.isKeepAlive());
+        Assert.assertTrue(parser.bodyContains("UP".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testInterimResponseIsSkipped() throws Exception {
+
+        HttpResponseParser parser = new HttpResponseParser();
+
+        Assert.assertTrue(parser.parse(bytes("HTTP/1.1 100 Continue\r\n\r\n" +
+                "HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n")));
+        Assert.assertEquals(200, parser.getStatusCode());
+    }
+
+    @Test(expected = HttpResponseParser.HttpParseException.class)
+    public void testInvalidStatusLine() throws Exception {
+
+        new HttpResponseParser().parse(bytes("SSH-2.0-OpenSSH_7.4\r\n"));
+    }
+}
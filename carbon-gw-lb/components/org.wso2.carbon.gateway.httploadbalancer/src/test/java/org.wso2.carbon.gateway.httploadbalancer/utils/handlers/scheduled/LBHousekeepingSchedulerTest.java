@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.handlers.scheduled;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+
+/**
+ * Unit Test for LBHousekeepingScheduler Class.
+ */
+public class LBHousekeepingSchedulerTest {
+
+    //Each test uses its own config names, as scheduler is shared.
+    private static final LBHousekeepingScheduler SCHEDULER = LBHousekeepingScheduler.getInstance();
+
+    private static final MBeanServer SERVER = ManagementFactory.getPlatformMBeanServer();
+
+    @Test
+    public void testScheduleAtFixedRate() throws Exception {
+
+        //A run is counted after it returns, so three runs are counted once fourth one has begun.
+        CountDownLatch runs = new CountDownLatch(4);
+        LBHousekeepingScheduler.Registration registration = SCHEDULER.register("fixedRateTest");
+        registration.scheduleAtFixedRate("Task", runs::countDown, 10);
+
+        Assert.assertTrue(runs.await(5, TimeUnit.SECONDS));
+        LBHousekeepingScheduler.ScheduledTask task = registration.getTasks().get(0);
+        Assert.assertEquals("fixedRateTest-Task", task.getName());
+        Assert.assertTrue(task.getRunCount() >= 3);
+        Assert.assertTrue(SCHEDULER.getScheduledTasks().contains(task));
+        Assert.assertTrue((long) SERVER.getAttribute(
+                LBHousekeepingScheduler.getObjectName(task.getName()), "RunCount") >= 3);
+
+        registration.cancel();
+        Assert.assertTrue(task.isCancelled());
+        Assert.assertFalse(SCHEDULER.getScheduledTasks().contains(task));
+        Assert.assertFalse(SERVER.isRegistered(LBHousekeepingScheduler.getObjectName(task.getName())));
+        assertStopped(task);
+    }
+
+    @Test
+    public void testScheduleOnTick() throws Exception {
+
+        CountDownLatch runs = new CountDownLatch(3);
+        LBHousekeepingScheduler.Registration registration = SCHEDULER.register("tickTest");
+        registration.scheduleOnTick("Task", runs::countDown);
+
+        Assert.assertTrue(runs.await(5, TimeUnit.SECONDS));
+        LBHousekeepingScheduler.ScheduledTask task = registration.getTasks().get(0);
+
+        //Tick itself is listed first. Its run is counted only after its tasks have run.
+        List<LBHousekeepingScheduler.ScheduledTask> tasks = SCHEDULER.getScheduledTasks();
+        Assert.assertEquals("LB-Tick", tasks.get(0).getName());
+        Assert.assertTrue(tasks.get(0).getRunCount() >= 2);
+        Assert.assertTrue(tasks.contains(task));
+
+        registration.cancel();
+        Assert.assertTrue(task.isCancelled());
+        assertStopped(task);
+    }
+
+    @Test
+    public void testFailureDoesNotStopTask() throws Exception {
+
+        CountDownLatch runs = new CountDownLatch(3);
+        LBHousekeepingScheduler.Registration registration = SCHEDULER.register("failureTest");
+        registration.scheduleOnTick("Task", () -> {
+            runs.countDown();
+            throw new IllegalStateException("Expected");
+        });
+
+        try {
+            Assert.assertTrue(runs.await(5, TimeUnit.SECONDS));
+            LBHousekeepingScheduler.ScheduledTask task = registration.getTasks().get(0);
+            Assert.assertTrue(task.getFailureCount() >= 2);
+        } finally {
+            registration.cancel();
+        }
+    }
+
+    @Test
+    public void testRedeploy() throws Exception {
+
+        LBHousekeepingScheduler.Registration first = SCHEDULER.register("redeployTest");
+        first.scheduleOnTick("Task", () -> { });
+        LBHousekeepingScheduler.ScheduledTask firstTask = first.getTasks().get(0);
+
+        LBHousekeepingScheduler.Registration second = SCHEDULER.register("redeployTest");
+        Assert.assertTrue(first.isCancelled());
+        Assert.assertTrue(firstTask.isCancelled());
+
+        try {
+            first.scheduleOnTick("Task", () -> { });
+            Assert.fail("Cancelled registration must not accept tasks");
+        } catch (IllegalStateException e) {
+            //Expected.
+        }
+
+        second.scheduleOnTick("Task", () -> { });
+
+        //Late cancel of previous deployment must not touch tasks of new one.
+        first.cancel();
+        Assert.assertFalse(second.isCancelled());
+        Assert.assertTrue(SERVER.isRegistered(LBHousekeepingScheduler.getObjectName("redeployTest-Task")));
+
+        second.cancel();
+        Assert.assertFalse(SERVER.isRegistered(LBHousekeepingScheduler.getObjectName("redeployTest-Task")));
+    }
+
+    @Test
+    public void testExecute() throws Exception {
+
+        CountDownLatch done = new CountDownLatch(1);
+
+        SCHEDULER.execute(() -> {
+            throw new IllegalStateException("Expected");
+        });
+        SCHEDULER.execute(done::countDown);
+
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    private static void assertStopped(LBHousekeepingScheduler.ScheduledTask task) throws InterruptedException {
+
+        //A run that was in progress while cancelling is allowed to complete.
+        Thread.sleep(50);
+        long runCount = task.getRunCount();
+        Thread.sleep(50);
+        Assert.assertEquals(runCount, task.getRunCount());
+    }
+}
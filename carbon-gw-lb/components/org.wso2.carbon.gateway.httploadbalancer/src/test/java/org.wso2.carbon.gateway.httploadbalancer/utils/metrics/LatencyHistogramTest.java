@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Unit Test for LatencyHistogram Class.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketBounds() {
+
+        long previousHighest = -1;
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+
+            long lowest = LatencyHistogram.getLowestValue(i);
+            long highest = LatencyHistogram.getHighestValue(i);
+
+            //Buckets are contiguous and every value maps back to its bucket.
+            Assert.assertEquals(previousHighest + 1, lowest);
+            Assert.assertEquals(i, LatencyHistogram.getBucketIndex(lowest));
+            Assert.assertEquals(i, LatencyHistogram.getBucketIndex(highest));
+
+            //Width of a bucket is within ~3% of its values.
+            Assert.assertTrue(highest - lowest <= Math.max(0, lowest / 32));
+            previousHighest = highest;
+        }
+        Assert.assertEquals(LatencyHistogram.MAX_TRACKABLE_VALUE, previousHighest);
+    }
+
+    @Test
+    public void testPercentiles() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(1000, snapshot.getCount());
+        Assert.assertEquals(500500000L, snapshot.getSum());
+        Assert.assertEquals(500500.0, snapshot.getMean(), 0.001);
+
+        assertWithin(500000, snapshot.getValueAtPercentile(50.0));
+        assertWithin(990000, snapshot.getValueAtPercentile(99.0));
+        assertWithin(999000, snapshot.getValueAtPercentile(99.9));
+        assertWithin(1000000, snapshot.getMax());
+    }
+
+    @Test
+    public void testOutOfRangeValues() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(2, snapshot.getCount());
+        Assert.assertEquals(0, snapshot.getValueAtPercentile(50.0));
+        Assert.assertEquals(LatencyHistogram.MAX_TRACKABLE_VALUE, snapshot.getMax());
+        Assert.assertEquals(0, new LatencyHistogram().snapshot().getMax());
+    }
+
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+
+        final int threads = 8;
+        final int perThread = 10000;
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        List<Thread> recorders = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread recorder = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    histogram.record(i);
+                }
+            });
+            recorder.start();
+            recorders.add(recorder);
+        }
+        for (Thread recorder : recorders) {
+            recorder.join();
+        }
+
+        Assert.assertEquals(threads * perThread, histogram.snapshot().getCount());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+
+        Assert.assertTrue("Expected ~" + expected + " but was " + actual,
+                actual >= expected && actual <= expected + expected / 32);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wso2.carbon.gateway.httploadbalancer.constants.LoadBalancerConstants;
+import org.wso2.carbon.gateway.httploadbalancer.utils.handlers.scheduled.LBHousekeepingScheduler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.management.MBeanServer;
+
+
+/**
+ * Unit Test for MetricsRegistry Class.
+ */
+public class MetricsRegistryTest {
+
+    @Test
+    public void testWriteText() {
+
+        LBMetrics config = new LBMetrics(() -> 3);
+        LBMetrics endpoint = new LBMetrics(() -> 2);
+        config.onRequest();
+        endpoint.onRequest();
+        config.onResponse(2000, 200);
+        endpoint.onResponse(2000, 503);
+        endpoint.onTimeout();
+
+        Map<String, LBMetrics> endpoints = new LinkedHashMap<>();
+        endpoints.put("EP\"1", endpoint);
+        MetricsRegistry.getInstance().register("textTest", config, endpoints);
+
+        try {
+            StringBuilder text = new StringBuilder();
+            MetricsRegistry.getInstance().writeText(text);
+            String out = text.toString();
+
+            Assert.assertTrue(out.contains("# TYPE lb_requests_total counter\n"));
+            Assert.assertTrue(out.contains("lb_requests_total{config=\"textTest\"} 1\n"));
+            Assert.assertTrue(out.contains("lb_server_errors_total{config=\"textTest\",endpoint=\"EP\\\"1\"} 1\n"));
+            Assert.assertTrue(out.contains("lb_timeouts_total{config=\"textTest\",endpoint=\"EP\\\"1\"} 1\n"));
+            Assert.assertTrue(out.contains("lb_in_flight_requests{config=\"textTest\"} 3\n"));
+            //Highest value of bucket holding 2000 micro seconds.
+            Assert.assertTrue(out.contains(
+                    "lb_upstream_latency_seconds{config=\"textTest\",quantile=\"0.5\"} 0.002015\n"));
+            Assert.assertTrue(out.contains("lb_upstream_latency_seconds_count{config=\"textTest\"} 1\n"));
+        } finally {
+            MetricsRegistry.getInstance().unregister("textTest", config);
+        }
+    }
+
+    @Test
+    public void testWriteHousekeepingText() {
+
+        LBHousekeepingScheduler.Registration registration = LBHousekeepingScheduler.getInstance()
+                .register("housekeepingTextTest");
+        registration.scheduleOnTick("Task", () -> { });
+
+        try {
+            StringBuilder text = new StringBuilder();
+            MetricsRegistry.getInstance().writeText(text);
+            String out = text.toString();
+
+            Assert.assertTrue(out.contains("# TYPE lb_housekeeping_runs_total counter\n"));
+            Assert.assertTrue(out.contains("lb_housekeeping_runs_total{task=\"LB-Tick\"} "));
+            Assert.assertTrue(out.contains("lb_housekeeping_failures_total{task=\"housekeepingTextTest-Task\"} 0\n"));
+            Assert.assertTrue(out.contains("# TYPE lb_housekeeping_max_lag_seconds gauge\n"));
+        } finally {
+            registration.cancel();
+        }
+    }
+
+    @Test
+    public void testMBeanRegistration() throws Exception {
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        LBMetrics config = new LBMetrics(() -> 0);
+        LBMetrics endpoint = new LBMetrics(() -> 0);
+        endpoint.onRequest();
+
+        Map<String, LBMetrics> endpoints = new LinkedHashMap<>();
+        endpoints.put("EP1", endpoint);
+        MetricsRegistry.getInstance().register("jmxTest", config, endpoints);
+
+        Assert.assertTrue(server.isRegistered(MetricsRegistry.getObjectName("jmxTest", null)));
+        Assert.assertEquals(1L, server.getAttribute(MetricsRegistry.getObjectName("jmxTest", "EP1"),
+                "RequestCount"));
+
+        //Redeploy replaces MBeans. Stale unregister doesn't remove new ones.
+        LBMetrics redeployed = new LBMetrics(() -> 0);
+        MetricsRegistry.getInstance().register("jmxTest", redeployed, new LinkedHashMap<>());
+        Assert.assertFalse(server.isRegistered(MetricsRegistry.getObjectName("jmxTest", "EP1")));
+
+        MetricsRegistry.getInstance().unregister("jmxTest", config);
+        Assert.assertTrue(server.isRegistered(MetricsRegistry.getObjectName("jmxTest", null)));
+
+        MetricsRegistry.getInstance().unregister("jmxTest", redeployed);
+        Assert.assertFalse(server.isRegistered(MetricsRegistry.getObjectName("jmxTest", null)));
+    }
+
+    @Test
+    public void testHttpEndpoint() throws Exception {
+
+        MetricsHttpEndpoint httpEndpoint = MetricsHttpEndpoint.start(
+                LoadBalancerConstants.DEFAULT_METRICS_BIND_ADDRESS, 0, MetricsRegistry.getInstance());
+        try {
+            //Not reachable from other hosts unless configured.
+            Assert.assertTrue(httpEndpoint.getInetAddress().isLoopbackAddress());
+
+            String response = get(httpEndpoint.getPort(), MetricsHttpEndpoint.PATH);
+            Assert.assertTrue(response.startsWith("HTTP/1.1 200 OK\r\n"));
+            Assert.assertTrue(response.contains("# TYPE lb_upstream_latency_seconds summary\n"));
+
+            Assert.assertTrue(get(httpEndpoint.getPort(), "/").startsWith("HTTP/1.1 404"));
+        } finally {
+            httpEndpoint.stop();
+        }
+    }
+
+    private static String get(int port, String path) throws Exception {
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET " + path + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            InputStream in = socket.getInputStream();
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                response.write(buffer, 0, read);
+            }
+            return new String(response.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.retry;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wso2.carbon.gateway.httploadbalancer.TestUtil;
+import org.wso2.carbon.gateway.httploadbalancer.outbound.LBOutboundEndpoint;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.Constants;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit Test for RetryState Class.
+ */
+public class RetryStateTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // 3 attempts, 100 ms each, within 250 ms. Bodies up to 16 bytes.
+    private static final RetryPolicy POLICY = new RetryPolicy(3, 100, 250, 16);
+
+    private static CarbonMessage createRequest(String method, String body, boolean isComplete) {
+
+        DefaultCarbonMessage request = new DefaultCarbonMessage();
+        request.setProperty(Constants.HTTP_METHOD, method);
+        request.setHeader("Host", "lb.example.com");
+        if (body != null) {
+            request.addMessageBody(ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8)));
+        }
+        request.setEndOfMsgAdded(isComplete);
+        return request;
+    }
+
+    private static String readBody(CarbonMessage request) {
+
+        StringBuilder body = new StringBuilder();
+        for (ByteBuffer buffer : request.getFullMessageBody()) {
+            body.append(StandardCharsets.UTF_8.decode(buffer));
+        }
+        return body.toString();
+    }
+
+    @Test
+    public void testOnlyIdempotentRequestsAreRetried() {
+
+        Assert.assertNotNull(RetryState.of(POLICY, createRequest("GET", null, true), 0));
+        Assert.assertNotNull(RetryState.of(POLICY, createRequest("put", "{}", true), 0));
+        Assert.assertNotNull(RetryState.of(POLICY, createRequest("DELETE", null, true), 0));
+
+        Assert.assertNull(RetryState.of(POLICY, createRequest("POST", "{}", true), 0));
+        Assert.assertNull(RetryState.of(POLICY, createRequest("PATCH", "{}", true), 0));
+        Assert.assertNull(RetryState.of(POLICY, createRequest(null, null, true), 0));
+
+        Assert.assertNull(RetryState.of(RetryPolicy.DISABLED, createRequest("GET", null, true)));
+    }
+
+    @Test
+    public void testBodyIsReplayed() {
+
+        CarbonMessage request = createRequest("PUT", "0123456789", true);
+        RetryState retryState = RetryState.of(POLICY, request, 0);
+
+        Assert.assertNotNull(retryState);
+        //First attempt still gets the body.
+        Assert.assertEquals("0123456789", readBody(request));
+
+        for (int i = 0; i < 2; i++) {
+            CarbonMessage copy = retryState.newRequest();
+            Assert.assertEquals("lb.example.com", copy.getHeader("Host"));
+            Assert.assertEquals("PUT", copy.getProperty(Constants.HTTP_METHOD));
+            Assert.assertTrue(copy.isEndOfMsgAdded());
+            Assert.assertEquals("0123456789", readBody(copy));
+        }
+    }
+
+    @Test
+    public void testBodyOverLimitIsNotBuffered() {
+
+        CarbonMessage request = createRequest("PUT", "0123456789abcdefXYZ", true);
+        Assert.assertNull(RetryState.of(POLICY, request, 0));
+        //Body is left intact for the only attempt.
+        Assert.assertEquals("0123456789abcdefXYZ", readBody(request));
+
+        request = createRequest("PUT", null, true);
+        request.setHeader(org.wso2.carbon.transport.http.netty.common.Constants.HTTP_CONTENT_LENGTH, "17");
+        Assert.assertNull(RetryState.of(POLICY, request, 0));
+    }
+
+    @Test
+    public void testIncompleteBodyIsNotAwaited() {
+
+        CarbonMessage request = createRequest("PUT", "0123", false);
+        Assert.assertNull(RetryState.of(POLICY, request, 0));
+        Assert.assertFalse(request.isEmpty());
+    }
+
+    @Test
+    public void testAttemptsAndStatusCodes() {
+
+        RetryState retryState = RetryState.of(POLICY, createRequest("GET", null, true), 0);
+        LBOutboundEndpoint ep1 = TestUtil.createEndpoint("EP1");
+        LBOutboundEndpoint ep2 = TestUtil.createEndpoint("EP2");
+        LBOutboundEndpoint ep3 = TestUtil.createEndpoint("EP3");
+
+        retryState.onAttempt(ep1);
+        Assert.assertTrue(retryState.hasTried(ep1));
+        Assert.assertFalse(retryState.hasTried(ep2));
+
+        Assert.assertTrue(retryState.canRetry(502, 10 * MS));
+        Assert.assertTrue(retryState.canRetry(503, 10 * MS));
+        Assert.assertTrue(retryState.canRetry(504, 10 * MS));
+        Assert.assertFalse(retryState.canRetry(200, 10 * MS));
+        Assert.assertFalse(retryState.canRetry(500, 10 * MS));
+        Assert.assertFalse(retryState.canRetry(404, 10 * MS));
+
+        retryState.onAttempt(ep2);
+        Assert.assertTrue(retryState.canRetry(503, 10 * MS));
+
+        retryState.onAttempt(ep3);
+        Assert.assertEquals(3, retryState.getAttempts());
+        Assert.assertTrue(retryState.hasTried(ep3));
+        Assert.assertFalse(retryState.canRetry(503, 10 * MS));
+    }
+
+    @Test
+    public void testBudget() {
+
+        RetryState retryState = RetryState.of(POLICY, createRequest("GET", null, true), 0);
+        retryState.onAttempt(TestUtil.createEndpoint("EP1"));
+
+        Assert.assertEquals(100, retryState.getTryTimeout(0));
+        //Only 50 ms of budget is left.
+        Assert.assertEquals(50, retryState.getTryTimeout(200 * MS));
+
+        Assert.assertTrue(retryState.canRetry(504, 200 * MS));
+        Assert.assertFalse(retryState.canRetry(504, 250 * MS));
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.slab;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Unit Test for InFlightSlab Class.
+ */
+public class InFlightSlabTest {
+
+    @Test
+    public void testClaimUntilFull() {
+
+        InFlightSlab<Object> slab = new InFlightSlab<>(3);
+
+        Set<Integer> slots = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            int slot = slab.claim(new Object());
+            Assert.assertTrue(slot >= 0 && slot < 3);
+            slots.add(slot);
+        }
+        Assert.assertEquals(3, slots.size());
+        Assert.assertEquals(3, slab.size());
+
+        Assert.assertEquals(InFlightSlab.FULL, slab.claim(new Object()));
+        Assert.assertEquals(3, slab.size());
+    }
+
+    @Test
+    public void testRelease() {
+
+        InFlightSlab<Object> slab = new InFlightSlab<>(2);
+        Object first = new Object();
+        Object second = new Object();
+
+        int slot = slab.claim(first);
+        Assert.assertTrue(slab.contains(slot, first));
+        Assert.assertFalse(slab.contains(slot, second));
+
+        //Only one of racing releases succeeds.
+        Assert.assertTrue(slab.release(slot, first));
+        Assert.assertFalse(slab.release(slot, first));
+        Assert.assertFalse(slab.contains(slot, first));
+        Assert.assertFalse(slab.release(InFlightSlab.FULL, first));
+
+        //Released slot is reused, and an old owner can't release new one.
+        Assert.assertEquals(slot, slab.claim(second));
+        Assert.assertFalse(slab.release(slot, first));
+        Assert.assertTrue(slab.contains(slot, second));
+        Assert.assertEquals(1, slab.size());
+    }
+
+    @Test
+    public void testHighWaterMark() {
+
+        InFlightSlab<Object> slab = new InFlightSlab<>(10);
+
+        List<Object> items = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            items.add(new Object());
+            slots.add(slab.claim(items.get(i)));
+        }
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(slab.release(slots.get(i), items.get(i)));
+        }
+
+        Assert.assertEquals(2, slab.size());
+        Assert.assertEquals(7, slab.getHighWaterMark());
+        Assert.assertEquals(10, slab.capacity());
+    }
+
+    /**
+     * Threads claim and release concurrently. A slot must never be given to two items at a time
+     * and no slot must be lost.
+     */
+    @Test
+    public void testConcurrentClaimAndRelease() throws Exception {
+
+        int capacity = 64;
+        InFlightSlab<Object> slab = new InFlightSlab<>(capacity);
+        AtomicInteger[] owners = new AtomicInteger[capacity];
+        for (int i = 0; i < capacity; i++) {
+            owners[i] = new AtomicInteger(0);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                workers.add(executor.submit(() -> {
+                    for (int i = 0; i < 100000; i++) {
+                        Object item = new Object();
+                        int slot = slab.claim(item);
+                        if (slot == InFlightSlab.FULL) {
+                            continue;
+                        }
+                        Assert.assertEquals(1, owners[slot].incrementAndGet());
+                        owners[slot].decrementAndGet();
+                        Assert.assertTrue(slab.release(slot, item));
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(0, slab.size());
+        Assert.assertTrue(slab.getHighWaterMark() <= 8);
+        for (int i = 0; i < capacity; i++) {
+            Assert.assertTrue(slab.claim(new Object()) != InFlightSlab.FULL);
+        }
+        Assert.assertEquals(InFlightSlab.FULL, slab.claim(new Object()));
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ * <p>
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.gateway.httploadbalancer.utils.timer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Unit Test for TimeoutWheel Class.
+ */
+public class TimeoutWheelTest {
+
+    @Test
+    public void testExpiresOnlyDueTimeouts() {
+
+        TimeoutWheel<String> wheel = new TimeoutWheel<>(10, 8, 0);
+        List<String> expired = new ArrayList<>();
+
+        wheel.schedule("A", 25);
+        wheel.schedule("B", 55);
+
+        wheel.expireTimeouts(20, expired::add);
+        Assert.assertTrue(expired.isEmpty());
+
+        //Tick containing A's deadline has elapsed.
+        wheel.expireTimeouts(30, expired::add);
+        Assert.assertEquals(1, expired.size());
+        Assert.assertEquals("A", expired.get(0));
+
+        wheel.expireTimeouts(60, expired::add);
+        Assert.assertEquals(2, expired.size());
+        Assert.assertEquals("B", expired.get(1));
+    }
+
+    @Test
+    public void testDeadlineBeyondOneRound() {
+
+        //One round of this wheel is 40 ms.
+        TimeoutWheel<String> wheel = new TimeoutWheel<>(10, 4, 0);
+        List<String> expired = new ArrayList<>();
+
+        TimeoutWheel.Timeout<String> timeout = wheel.schedule("A", 105);
+
+        wheel.expireTimeouts(100, expired::add);
+        Assert.assertTrue(expired.isEmpty());
+
+        wheel.expireTimeouts(110, expired::add);
+        Assert.assertEquals(1, expired.size());
+        Assert.assertTrue(timeout.isExpired());
+    }
+
+    @Test
+    public void testCancel() {
+
+        TimeoutWheel<String> wheel = new TimeoutWheel<>(10, 8, 0);
+        List<String> expired = new ArrayList<>();
+
+        TimeoutWheel.Timeout<String> a = wheel.schedule("A", 15);
+        TimeoutWheel.Timeout<String> b = wheel.schedule("B", 15);
+
+        //Transfers both into the wheel.
+        wheel.expireTimeouts(0, expired::add);
+
+        Assert.assertTrue(a.cancel());
+        Assert.assertFalse(a.cancel());
+
+        wheel.expireTimeouts(20, expired::add);
+        Assert.assertEquals(1, expired.size());
+        Assert.assertEquals("B", expired.get(0));
+
+        //Already expired.
+        Assert.assertFalse(b.cancel());
+        Assert.assertTrue(a.isCancelled());
+    }
+
+    @Test
+    public void testExceptionOnExpiry() {
+
+        //One round of this wheel is 40 ms.
+        TimeoutWheel<String> wheel = new TimeoutWheel<>(10, 4, 0);
+        List<String> expired = new ArrayList<>();
+
+        wheel.schedule("A", 15);
+        wheel.schedule("B", 15);
+        //Same bucket as A and B, but one round later.
+        wheel.schedule("C", 55);
+
+        wheel.expireTimeouts(20, item -> {
+            expired.add(item);
+            if (item.equals("A")) {
+                throw new IllegalStateException("Expected");
+            }
+        });
+        Assert.assertEquals(2, expired.size());
+
+        //C's round must have been decremented only once.
+        wheel.expireTimeouts(50, expired::add);
+        Assert.assertEquals(2, expired.size());
+
+        wheel.expireTimeouts(60, expired::add);
+        Assert.assertEquals(3, expired.size());
+        Assert.assertEquals("C", expired.get(2));
+    }
+
+    @Test
+    public void testPastDeadline() {
+
+        TimeoutWheel<String> wheel = new TimeoutWheel<>(10, 8, 0);
+        List<String> expired = new ArrayList<>();
+
+        wheel.expireTimeouts(100, expired::add);
+
+        //Deadline has already passed when it reaches the wheel.
+        wheel.schedule("A", 50);
+        wheel.expireTimeouts(110, expired::add);
+        Assert.assertEquals(1, expired.size());
+    }
+}